@@ -0,0 +1,92 @@
+package com.infinity.benchmark;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.infinity.controller.dmn.DmnModelRegistry;
+import com.infinity.controller.dmn.InputBinder;
+import org.kie.dmn.api.core.DMNContext;
+import org.kie.dmn.api.core.DMNRuntime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning a request body into a DMNContext, separated from evaluation: JSON parsing into
+ * a plain Map and copying it into a fresh context (the untyped path), against binding the body to
+ * the model's input types with {@link InputBinder} in one streaming pass.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BindingBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {
+    };
+
+    @Param({"quickwins", "dxl", "srg", "line_level_denial"})
+    public String model;
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    private DMNRuntime dmnRuntime;
+    private InputBinder binder;
+    private byte[] body;
+    private Map<String, Object> parsed;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        DmnModelRegistry registry = Fixtures.registry();
+        dmnRuntime = registry.getDmnRuntime();
+        binder = registry.binder(registry.require(null, model));
+        Map<String, Object> payload = SyntheticPayloads.forModel(Fixtures.metadataIndex().require(model), 1, 42L).get(0);
+        body = objectMapper.writeValueAsBytes(payload);
+        parsed = objectMapper.readValue(body, MAP_TYPE);
+    }
+
+    @Benchmark
+    public Map<String, Object> parse() throws Exception {
+        return objectMapper.readValue(body, MAP_TYPE);
+    }
+
+    @Benchmark
+    public DMNContext bind() {
+        DMNContext context = dmnRuntime.newContext();
+        parsed.forEach(context::set);
+        return context;
+    }
+
+    @Benchmark
+    public DMNContext parseAndBind() throws Exception {
+        DMNContext context = dmnRuntime.newContext();
+        objectMapper.readValue(body, MAP_TYPE).forEach(context::set);
+        return context;
+    }
+
+    @Benchmark
+    public DMNContext typedBind() throws Exception {
+        DMNContext context = dmnRuntime.newContext();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            parser.nextToken();
+            binder.bind(parser).forEach(context::set);
+        }
+        return context;
+    }
+}
@@ -0,0 +1,42 @@
+package com.infinity.benchmark;
+
+import com.infinity.controller.dmn.DmnCompileMode;
+import com.infinity.controller.dmn.DmnModelRegistry;
+import com.infinity.controller.dmn.RulesetCompiler;
+import com.infinity.controller.metadata.DmnMetadataIndex;
+
+/**
+ * Registry and metadata index built once per forked JVM from the DMN files on the classpath, the
+ * same way the service builds them at startup (compiled at runtime). Run with
+ * {@code -jvmArgsAppend -Dbench.indexedTables=false} to measure the plain decision table row scan,
+ * and with {@code -Dbench.bkmMemo=true} to memoize pure BKMs within each evaluation.
+ */
+final class Fixtures {
+
+    private static DmnModelRegistry registry;
+    private static DmnMetadataIndex metadataIndex;
+
+    private Fixtures() {
+    }
+
+    static synchronized DmnModelRegistry registry() {
+        if (registry == null) {
+            RulesetCompiler compiler = new RulesetCompiler(compileMode());
+            registry = DmnModelRegistry.build(compiler.compile("bench", compiler.readClasspathSources()));
+        }
+        return registry;
+    }
+
+    // -Dbench.indexedTables=false compiles the plain row scan, -Dbench.bkmMemo=true memoizes pure BKMs
+    static DmnCompileMode compileMode() {
+        return new DmnCompileMode(Boolean.parseBoolean(System.getProperty("bench.indexedTables", "true")), false,
+                Boolean.getBoolean("bench.bkmMemo"), null, null);
+    }
+
+    static synchronized DmnMetadataIndex metadataIndex() {
+        if (metadataIndex == null) {
+            metadataIndex = new DmnMetadataIndex();
+        }
+        return metadataIndex;
+    }
+}
@@ -0,0 +1,207 @@
+package com.infinity.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infinity.controller.audit.AuditJournalReader;
+import com.infinity.controller.audit.AuditRecord;
+import com.infinity.controller.dmn.DecisionEvaluator;
+import com.infinity.controller.dmn.DecisionPlan;
+import com.infinity.controller.dmn.DmnModelRegistry;
+import com.infinity.controller.dmn.RegressionGate;
+import com.infinity.controller.dmn.RulesetCompiler;
+import org.kie.dmn.api.core.DMNModel;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Replays audit journal records (see {@code AuditJournal}) against a ruleset as fast as the
+ * machine allows, for load tests and for diffing decisions between ruleset versions.
+ *
+ * <pre>
+ *   java -cp target/benchmarks.jar com.infinity.benchmark.JournalReplay &lt;segment or journal dir&gt;
+ *        [--rules &lt;dir&gt;] [--threads N] [--passes N] [--mismatches &lt;file.ndjson&gt;]
+ * </pre>
+ * {@code --rules} takes a directory of DMN files, e.g. {@code <store>/versions/<id>} of the ruleset
+ * store or a checkout's {@code src/main/resources}; without it the DMN files on the classpath are
+ * used. Records are decoded up front, so the timed part is evaluation only. Each pass replays every
+ * record once; the first pass compares the outputs with the recorded ones and writes the records
+ * that differ to {@code --mismatches}.
+ */
+public class JournalReplay {
+
+    public static void main(String[] args) throws Exception {
+        Path journal = null;
+        Path rules = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int passes = 1;
+        Path mismatchFile = null;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rules": rules = Paths.get(args[++i]); break;
+                case "--threads": threads = Integer.parseInt(args[++i]); break;
+                case "--passes": passes = Integer.parseInt(args[++i]); break;
+                case "--mismatches": mismatchFile = Paths.get(args[++i]); break;
+                default:
+                    if (args[i].startsWith("--") || journal != null) usage("unknown argument " + args[i]);
+                    journal = Paths.get(args[i]);
+            }
+        }
+        if (journal == null) usage("journal segment or directory is required");
+
+        AuditJournalReader reader = new AuditJournalReader();
+        List<AuditRecord> records = reader.readAll(journal);
+        System.out.printf("Read %d records from %s (%d torn frames)%n", records.size(), journal, reader.getTornFrames());
+        if (records.isEmpty()) return;
+
+        long compileStart = System.nanoTime();
+        DmnModelRegistry registry = rules == null ? Fixtures.registry() : compile(rules);
+        System.out.printf("Ruleset %s ready in %d ms%n", rules == null ? "classpath" : rules,
+                (System.nanoTime() - compileStart) / 1_000_000);
+
+        JournalReplay replay = new JournalReplay(registry, records);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            for (int pass = 1; pass <= passes; pass++) {
+                replay.run(pool, threads, pass == 1);
+                replay.report(pass);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        if (mismatchFile != null) replay.writeMismatches(mismatchFile);
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("usage: JournalReplay <segment or journal dir> [--rules <dir>] [--threads N] [--passes N]"
+                + " [--mismatches <file.ndjson>]");
+        System.exit(2);
+    }
+
+    private static DmnModelRegistry compile(Path rules) throws IOException {
+        Map<String, byte[]> sources = new LinkedHashMap<>();
+        try (Stream<Path> files = Files.walk(rules)) {
+            for (Path p : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".dmn"))::iterator) {
+                sources.put(RulesetCompiler.kiePath(new FileSystemResource(p)), Files.readAllBytes(p));
+            }
+        }
+        if (sources.isEmpty()) throw new IllegalArgumentException("No DMN files under " + rules);
+        return DmnModelRegistry.build(new RulesetCompiler(Fixtures.compileMode()).compile("replay", sources));
+    }
+
+    private final DecisionEvaluator evaluator = new DecisionEvaluator();
+    private final DmnModelRegistry registry;
+    private final List<AuditRecord> records;
+    private final Map<String, DecisionPlan> plans = new ConcurrentHashMap<>();
+    private final long[] latencies;
+    private final List<Map<String, Object>> mismatches = Collections.synchronizedList(new ArrayList<>());
+    private final Map<String, AtomicInteger> mismatchesByModel = new ConcurrentHashMap<>();
+    private final AtomicInteger errors = new AtomicInteger();
+    private long elapsedNanos;
+
+    private JournalReplay(DmnModelRegistry registry, List<AuditRecord> records) {
+        this.registry = registry;
+        this.records = records;
+        this.latencies = new long[records.size()];
+    }
+
+    private void run(ExecutorService pool, int threads, boolean diff) throws Exception {
+        errors.set(0);
+        AtomicInteger next = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            workers.add(pool.submit(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < records.size()) replay(i, diff);
+            }));
+        }
+        for (Future<?> w : workers) w.get();
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void replay(int i, boolean diff) {
+        AuditRecord r = records.get(i);
+        Map<String, Object> outputs;
+        long start = System.nanoTime();
+        try {
+            DMNModel model = registry.require(r.getNamespace(), r.getModel());
+            // recorded inputs were already bound to the model's types when they were journaled
+            outputs = r.getDecisions() == null
+                    ? evaluator.evaluateBound(registry, model, r.getInput())
+                    : evaluator.evaluateBound(registry, model, plan(model, r.getDecisions()), r.getInput());
+        } catch (RuntimeException e) {
+            latencies[i] = System.nanoTime() - start;
+            errors.incrementAndGet();
+            if (diff && r.getError() == null) mismatch(r, null, e.getMessage());
+            return;
+        }
+        latencies[i] = System.nanoTime() - start;
+        if (diff && r.getError() == null && !RegressionGate.same(r.getOutputs(), outputs)) mismatch(r, outputs, null);
+    }
+
+    private DecisionPlan plan(DMNModel model, List<String> decisions) {
+        return plans.computeIfAbsent(model.getNamespace() + "::" + model.getName() + "::" + decisions,
+                k -> registry.plan(model, decisions));
+    }
+
+    private void mismatch(AuditRecord r, Map<String, Object> replayed, String error) {
+        mismatchesByModel.computeIfAbsent(r.getModel(), m -> new AtomicInteger()).incrementAndGet();
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("timestamp", r.getTimestampMillis());
+        m.put("model", r.getModel());
+        m.put("recordedVersion", r.getRulesetVersion());
+        m.put("input", r.getInput());
+        m.put("recorded", r.getOutputs());
+        if (error == null) {
+            m.put("replayed", replayed);
+        } else {
+            m.put("error", error);
+        }
+        mismatches.add(m);
+    }
+
+    private void report(int pass) {
+        long[] replayed = latencies.clone();
+        long[] recorded = records.stream().mapToLong(AuditRecord::getLatencyNanos).toArray();
+        Arrays.sort(replayed);
+        Arrays.sort(recorded);
+        System.out.printf("Pass %d: %d records in %d ms, %.0f evaluations/s, %d errors%n", pass, records.size(),
+                elapsedNanos / 1_000_000, records.size() / (elapsedNanos / 1e9), errors.get());
+        System.out.printf("  latency us   p50 %8d  p99 %8d  max %8d (replayed)%n",
+                percentile(replayed, 0.50), percentile(replayed, 0.99), replayed[replayed.length - 1] / 1_000);
+        System.out.printf("  latency us   p50 %8d  p99 %8d  max %8d (recorded, including cache and queueing)%n",
+                percentile(recorded, 0.50), percentile(recorded, 0.99), recorded[recorded.length - 1] / 1_000);
+        if (pass == 1) {
+            System.out.printf("  %d records differ from the recorded outputs%s%n", mismatches.size(),
+                    mismatchesByModel.isEmpty() ? "" : " " + new TreeMap<>(mismatchesByModel));
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int idx = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, idx)] / 1_000;
+    }
+
+    private void writeMismatches(Path file) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().findAndRegisterModules();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (Map<String, Object> m : mismatches) {
+                out.write(mapper.writeValueAsBytes(m));
+                out.write('\n');
+            }
+        }
+        System.out.printf("Wrote %d mismatches to %s%n", mismatches.size(), file);
+    }
+}
@@ -0,0 +1,70 @@
+package com.infinity.benchmark;
+
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import com.infinity.controller.metadata.DmnMetadataIndex.ModelMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Work behind the metadata endpoints (/models, /schema, /tables): answering from the index against
+ * rescanning and reparsing every DMN file, which is what each request cost before the index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MetadataBenchmark {
+
+    @Param({"dxl"})
+    public String model;
+
+    @Param({"Recommendation"})
+    public String decision;
+
+    private DmnMetadataIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        index = Fixtures.metadataIndex();
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> listModels() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (ModelMetadata m : index.getModels()) out.add(m.getSummary());
+        return out;
+    }
+
+    @Benchmark
+    public Map<String, Object> schema() {
+        return index.require(model).getSchema();
+    }
+
+    @Benchmark
+    public Map<String, Object> table() {
+        return index.require(model).findTable(decision);
+    }
+
+    @Benchmark
+    public long rescanAll() {
+        DmnMetadataIndex fresh = new DmnMetadataIndex();
+        return fresh.getVersion();
+    }
+}
@@ -0,0 +1,76 @@
+package com.infinity.benchmark;
+
+import com.infinity.controller.dmn.DecisionEvaluator;
+import com.infinity.controller.dmn.DecisionPlan;
+import com.infinity.controller.dmn.DmnModelRegistry;
+import org.kie.dmn.api.core.DMNModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation cost per model: the whole model (what /evaluate does without ?decisions) against
+ * evaluating only the terminal Recommendation decision through a cached {@link DecisionPlan}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class ModelEvaluationBenchmark {
+
+    @Param({"quickwins", "universal", "air_amb", "dxl", "hem", "pht_spt", "srg", "line_level_denial", "claim_level_denial"})
+    public String model;
+
+    @Param({"Recommendation"})
+    public String decision;
+
+    // payloads rotated per invocation so one branch of the tables does not dominate
+    @Param({"64"})
+    public int payloadCount;
+
+    private final DecisionEvaluator evaluator = new DecisionEvaluator();
+    private DmnModelRegistry registry;
+    private DMNModel dmnModel;
+    private DecisionPlan plan;
+    private List<Map<String, Object>> payloads;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        registry = Fixtures.registry();
+        dmnModel = registry.require(null, model);
+        plan = registry.plan(dmnModel, List.of(decision));
+        payloads = SyntheticPayloads.forModel(Fixtures.metadataIndex().require(model), payloadCount, 42L);
+    }
+
+    private Map<String, Object> nextPayload() {
+        Map<String, Object> payload = payloads.get(next);
+        next = (next + 1) % payloads.size();
+        return payload;
+    }
+
+    @Benchmark
+    public Map<String, Object> evaluateAll() {
+        return evaluator.evaluate(registry, dmnModel, nextPayload());
+    }
+
+    @Benchmark
+    public Map<String, Object> evaluateDecision() {
+        return evaluator.evaluate(registry, dmnModel, plan, nextPayload());
+    }
+}
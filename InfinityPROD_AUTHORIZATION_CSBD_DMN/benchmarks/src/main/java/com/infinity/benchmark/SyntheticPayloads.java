@@ -0,0 +1,27 @@
+package com.infinity.benchmark;
+
+import com.infinity.controller.dmn.SchemaPayloads;
+import com.infinity.controller.metadata.DmnMetadataIndex.ModelMetadata;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request payloads built from a model's indexed schema by the service's own generator
+ * ({@link SchemaPayloads}, also used by the JIT warm-up), so every model can be benchmarked without
+ * hand-written fixtures that drift from the DMN files.
+ *
+ * The seed is fixed by the caller, so runs are repeatable, and string fields take the literals of the
+ * model's tables: a set of payloads takes different paths through the FIRST-hit tables instead of
+ * always falling through. No field is left out.
+ */
+public final class SyntheticPayloads {
+
+    private SyntheticPayloads() {
+    }
+
+    /** {@code count} payloads for the model, generated from {@code seed}. */
+    public static List<Map<String, Object>> forModel(ModelMetadata model, int count, long seed) {
+        return SchemaPayloads.forModel(model, count, seed, 0d);
+    }
+}
@@ -0,0 +1,63 @@
+package com.infinity.controller;
+
+import com.infinity.controller.dmn.DecisionBatchService;
+import com.infinity.controller.dmn.Ruleset;
+import com.infinity.controller.dmn.RulesetHolder;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/decision")
+@CrossOrigin(origins = "*")
+public class DecisionBatchController {
+
+    @Autowired
+    private DecisionBatchService decisionBatchService;
+
+    @Autowired
+    private RulesetHolder rulesetHolder;
+
+    // Body is a JSON array or NDJSON stream of evaluate payloads; results are streamed back as NDJSON
+    @PostMapping("/evaluate/batch")
+    public void evaluateBatch(@RequestParam(value = "order", defaultValue = "input") String order,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(null, null, order, request, response);
+    }
+
+    @PostMapping("/models/{modelName}/evaluate/batch")
+    public void evaluateModelBatch(@PathVariable("modelName") String modelName,
+                                   @RequestParam(value = "namespace", required = false) String namespace,
+                                   @RequestParam(value = "order", defaultValue = "input") String order,
+                                   HttpServletRequest request, HttpServletResponse response) throws IOException {
+        stream(namespace, modelName, order, request, response);
+    }
+
+    private void stream(String namespace, String modelName, String order,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        DecisionBatchService.Order o = DecisionBatchService.Order.parse(order);
+        try (Ruleset ruleset = rulesetHolder.acquire()) {
+            response.setHeader(DecisionController.RULESET_VERSION_HEADER, ruleset.getVersion());
+            response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+            response.setCharacterEncoding("UTF-8");
+            decisionBatchService.evaluate(ruleset, namespace, modelName, o,
+                    request.getInputStream(), response.getOutputStream());
+        }
+    }
+
+    // A bad ?order= is rejected before anything is streamed
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, Object> handleBadRequest(IllegalArgumentException e) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("error", e.getMessage());
+        return out;
+    }
+}
@@ -1,13 +1,40 @@
 package com.infinity.controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
-import org.kie.api.runtime.KieContainer;
-import org.kie.api.runtime.KieSession;
-import org.kie.api.runtime.KieRuntimeFactory;
-import org.kie.dmn.api.core.*;
+import com.infinity.controller.audit.AuditJournal;
+import com.infinity.controller.dmn.ClaimAdjudicator;
+import com.infinity.controller.dmn.DecisionEvaluator;
+import com.infinity.controller.dmn.DecisionPlan;
+import com.infinity.controller.dmn.DecisionResultCache;
+import com.infinity.controller.dmn.DecisionTableAnalyzer;
+import com.infinity.controller.dmn.DecisionTablePatcher;
+import com.infinity.controller.dmn.DmnCompileMode;
+import com.infinity.controller.dmn.DmnModelRegistry;
+import com.infinity.controller.dmn.DmnStartupReport;
+import com.infinity.controller.dmn.EvaluationBulkhead;
+import com.infinity.controller.dmn.InputBinder;
+import com.infinity.controller.dmn.JitWarmUp;
+import com.infinity.controller.dmn.RegressionGate;
+import com.infinity.controller.dmn.ResponseProjection;
+import com.infinity.controller.dmn.RuleProjects;
+import com.infinity.controller.dmn.Ruleset;
+import com.infinity.controller.dmn.RulesetCompiler;
+import com.infinity.controller.dmn.RulesetHolder;
+import com.infinity.controller.dmn.RulesetStore;
+import com.infinity.controller.dmn.ServiceCategoryRouter;
+import com.infinity.controller.dmn.ShadowEvaluator;
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import com.infinity.controller.metrics.BkmMemoMetrics;
+import org.kie.dmn.api.core.DMNModel;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.context.request.WebRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import java.io.IOException;
 import java.util.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -19,581 +46,568 @@ public class DecisionController {
     private static final Logger logger = LoggerFactory.getLogger(DecisionController.class);
 
     @Autowired
-    private KieContainer kieContainer;
+    private RulesetHolder rulesetHolder;
 
+    @Autowired
+    private DecisionEvaluator decisionEvaluator;
+
+    @Autowired
+    private DmnCompileMode compileMode;
+
+    @Autowired
+    private ServiceCategoryRouter serviceCategoryRouter;
+
+    @Autowired
+    private ClaimAdjudicator claimAdjudicator;
+
+    @Autowired
+    private DmnMetadataIndex metadataIndex;
+
+    @Autowired
+    private RulesetCompiler rulesetCompiler;
+
+    @Autowired
+    private DmnStartupReport startupReport;
+
+    @Autowired
+    private JitWarmUp jitWarmUp;
+
+    @Autowired
+    private RuleProjects ruleProjects;
+
+    @Autowired
+    private DecisionResultCache resultCache;
+
+    @Autowired
+    private EvaluationBulkhead bulkhead;
+
+    @Autowired
+    private RulesetStore rulesetStore;
+
+    @Autowired
+    private RegressionGate regressionGate;
+
+    @Autowired
+    private AuditJournal auditJournal;
+
+    @Autowired
+    private BkmMemoMetrics bkmMemoMetrics;
+
+    @Autowired
+    private ShadowEvaluator shadowEvaluator;
+
+    @Autowired
+    private DecisionTablePatcher decisionTablePatcher;
+
+    @Autowired
+    @org.springframework.beans.factory.annotation.Qualifier("rulesetPersistExecutor")
+    private java.util.concurrent.ExecutorService rulesetPersistExecutor;
+
+    // Projection of evaluation responses when the request does not name one
+    @Value("${decision.response.projection:full}")
+    private String defaultProjection;
+
+    // Response header naming the ruleset version that served an evaluation
+    public static final String RULESET_VERSION_HEADER = "X-Ruleset-Version";
+
+    // Request bodies are bound to the model's input types while they are parsed (see InputBinder).
+    // Bodies and responses may be JSON, Smile or CBOR (Content-Type / Accept); ?projection=full|final|status
+    // trims the response (see ResponseProjection)
     @PostMapping("/evaluate")
-    public Map<String, Object> evaluate(@RequestBody Map<String, Object> input) {
-        KieSession ksession = kieContainer.newKieSession();
-        try {
-            DMNRuntime dmnRuntime = KieRuntimeFactory.of(ksession.getKieBase()).get(DMNRuntime.class);
-
-            // Try to locate a useful DMN model. The project contains Quickwin.dmn with
-            // name="quickwins" and namespace="dmnRules" so prefer that. If not found,
-            // log available models and fall back to the first one.
-            List<DMNModel> models = dmnRuntime.getModels();
-            if (models == null || models.isEmpty()) {
-                logger.error("No DMN models available on the DMN runtime");
-                throw new RuntimeException("No DMN models available");
-            }
+    public Map<String, Object> evaluate(@RequestParam(value = "projection", required = false) String projection,
+                                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return evaluate(null, null, null, projection, request, response);
+    }
 
-            // Prefer model with name "quickwins" or namespace "dmnRules"
-            DMNModel dmnModel = null;
-            for (DMNModel m : models) {
-                String name = m.getName();
-                String ns = m.getNamespace();
-                logger.info("Found DMN model: name='{}' namespace='{}'", name, ns);
-                if ("quickwins".equalsIgnoreCase(name) || "dmnRules".equalsIgnoreCase(ns)) {
-                    dmnModel = m;
-                    break;
-                }
-            }
+    // ?decisions=A&decisions=B evaluates only those decisions and their required decisions
+    @PostMapping("/models/{modelName}/evaluate")
+    public Map<String, Object> evaluateModel(@PathVariable("modelName") String modelName,
+                                             @RequestParam(value = "namespace", required = false) String namespace,
+                                             @RequestParam(value = "decisions", required = false) List<String> decisions,
+                                             @RequestParam(value = "projection", required = false) String projection,
+                                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return evaluate(namespace, modelName, decisions, projection, request, response);
+    }
 
-            // Fallback: use first model
-            if (dmnModel == null) {
-                dmnModel = models.get(0);
-                logger.warn("Using fallback DMN model: name='{}' namespace='{}'", dmnModel.getName(), dmnModel.getNamespace());
-            }
+    private Map<String, Object> evaluate(String namespace, String modelName, List<String> decisions, String projection,
+                                         HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ResponseProjection p = ResponseProjection.parse(projection, ResponseProjection.parse(defaultProjection, ResponseProjection.FULL));
+        try (Ruleset ruleset = rulesetHolder.acquire()) {
+            response.setHeader(RULESET_VERSION_HEADER, ruleset.getVersion());
+            boolean useCache = !DecisionResultCache.isBypass(request.getHeader(DecisionResultCache.BYPASS_HEADER));
+            return decisionEvaluator.evaluate(ruleset, namespace, modelName, decisions, p, request.getContentType(),
+                    request.getInputStream(), useCache);
+        }
+    }
 
-            DMNContext context = dmnRuntime.newContext();
-            input.forEach(context::set);
+    // Payloads that do not match the model's input types are rejected before evaluation
+    @ExceptionHandler(InputBinder.InputBindingException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, Object> handleInputBindingError(InputBinder.InputBindingException e) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("error", e.getMessage());
+        out.put("errors", e.getErrors());
+        return out;
+    }
 
-            DMNResult dmnResult = dmnRuntime.evaluateAll(dmnModel, context);
+    // The model's bulkhead and queue are full; clients should back off and retry
+    @ExceptionHandler(EvaluationBulkhead.BulkheadFullException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public Map<String, Object> handleBulkheadFull(EvaluationBulkhead.BulkheadFullException e, HttpServletResponse response) {
+        response.setHeader("Retry-After", "1");
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("error", e.getMessage());
+        out.put("model", e.getModel());
+        return out;
+    }
 
-            Map<String, Object> result = new HashMap<>();
-            dmnResult.getDecisionResults().forEach(d -> result.put(d.getDecisionName(), d.getResult()));
+    @ExceptionHandler(EvaluationBulkhead.DeadlineExceededException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public Map<String, Object> handleDeadlineExceeded(EvaluationBulkhead.DeadlineExceededException e) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("error", e.getMessage());
+        return out;
+    }
 
-            return result;
-        } finally {
-            // Always dispose the session to avoid leaking resources
-            try {
-                ksession.dispose();
-            } catch (Exception e) {
-                logger.debug("Error disposing KieSession: {}", e.getMessage());
-            }
+    // Malformed requests: missing body fields, a bad model version, ?projection= or table XML
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, Object> handleBadRequest(IllegalArgumentException e) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("error", e.getMessage());
+        return out;
+    }
+
+    // A table edit or rule patch was made against an older version of the model; the client re-reads the table
+    @ExceptionHandler(DecisionTablePatcher.VersionConflictException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public Map<String, Object> handleVersionConflict(DecisionTablePatcher.VersionConflictException e, HttpServletResponse response) {
+        response.setHeader("ETag", etag(e.getCurrentVersion()));
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("error", e.getMessage());
+        out.put("model", e.getModel());
+        out.put("currentVersion", e.getCurrentVersion());
+        return out;
+    }
+
+    @GetMapping("/models/{modelName}/plan")
+    public Map<String, Object> getDecisionPlan(@PathVariable("modelName") String modelName,
+                                               @RequestParam(value = "namespace", required = false) String namespace,
+                                               @RequestParam("decisions") List<String> decisions) {
+        DmnModelRegistry registry = rulesetHolder.current();
+        DecisionPlan plan = registry.plan(registry.require(namespace, modelName), decisions);
+        Map<String, Object> out = new HashMap<>();
+        out.put("model", plan.getModelName());
+        out.put("targets", plan.getTargetNames());
+        out.put("closure", plan.getClosure());
+        out.put("skipped", plan.getSkipped());
+        return out;
+    }
+
+    // Picks the category model from the payload's service category code. With pipeline=true the line
+    // runs universal -> category model -> line (or claim) denial model in one request.
+    @PostMapping("/route/evaluate")
+    public Map<String, Object> evaluateRouted(@RequestParam(value = "category", required = false) String category,
+                                              @RequestParam(value = "pipeline", defaultValue = "false") boolean pipeline,
+                                              @RequestParam(value = "denial", defaultValue = "line") String denial,
+                                              @RequestHeader(value = DecisionResultCache.BYPASS_HEADER, required = false) String cacheHeader,
+                                              @RequestBody Map<String, Object> input) {
+        boolean useCache = !DecisionResultCache.isBypass(cacheHeader);
+        if (!pipeline) {
+            return serviceCategoryRouter.route(category, input, useCache);
         }
+        ServiceCategoryRouter.DenialLevel level = ServiceCategoryRouter.DenialLevel.valueOf(denial.toUpperCase(Locale.ROOT));
+        return serviceCategoryRouter.pipeline(category, level, input, useCache);
     }
 
+    // A whole claim (Data.Lines plus the claim and auth data): every line runs the routed line pipeline
+    // in parallel, then the claim denial model runs once on the line outcomes. Reports stage timings
+    @PostMapping("/claims/evaluate")
+    public Map<String, Object> evaluateClaim(@RequestParam(value = "projection", required = false) String projection,
+                                             @RequestHeader(value = DecisionResultCache.BYPASS_HEADER, required = false) String cacheHeader,
+                                             @RequestBody Map<String, Object> claim, HttpServletResponse response) {
+        ResponseProjection p = ResponseProjection.parse(projection, ResponseProjection.parse(defaultProjection, ResponseProjection.FULL));
+        try (Ruleset ruleset = rulesetHolder.acquire()) {
+            response.setHeader(RULESET_VERSION_HEADER, ruleset.getVersion());
+            return claimAdjudicator.adjudicate(ruleset, claim, p, !DecisionResultCache.isBypass(cacheHeader));
+        }
+    }
+
+    // Hit/miss/eviction counters of the evaluation result cache
+    @GetMapping("/cache/stats")
+    public Map<String, Object> getCacheStats() {
+        return resultCache.getStats();
+    }
+
+    // Per-model concurrency limits, in-flight and queued evaluations, rejections and deadline misses
+    @GetMapping("/bulkhead/status")
+    public Map<String, Object> getBulkheadStatus() {
+        return bulkhead.getStatus();
+    }
+
+    // Audit journal segment being written, records written and dropped
+    @GetMapping("/audit/status")
+    public Map<String, Object> getAuditStatus() {
+        return auditJournal.getStatus();
+    }
+
+    // Per-evaluation BKM memo hits and misses, per project, model and BKM
+    @GetMapping("/bkm/memo")
+    public Map<String, Object> getBkmMemoStatus() {
+        return bkmMemoMetrics.getStatus();
+    }
+
+    @GetMapping("/route/categories")
+    public Map<String, String> listCategoryRoutes() {
+        Map<String, String> out = new TreeMap<>();
+        rulesetHolder.current().getModelsByCategory().forEach((code, model) -> out.put(code, model.getName()));
+        return out;
+    }
+
+    // Metadata endpoints are served from the in-memory index. Each response carries an ETag built
+    // from the index (or model) version so the UI can use conditional GETs.
     @GetMapping("/models")
-    public List<Map<String, Object>> listModels() {
-        try {
-            // Use Spring resource resolver to find DMN files on the classpath
-            org.springframework.core.io.support.PathMatchingResourcePatternResolver resolver = new org.springframework.core.io.support.PathMatchingResourcePatternResolver();
-            org.springframework.core.io.Resource[] resources = resolver.getResources("classpath*:**/*.dmn");
-            List<Map<String, Object>> out = new ArrayList<>();
-            // track seen models to avoid duplicates (same name+namespace)
-            java.util.Set<String> seen = new java.util.HashSet<>();
-            for (org.springframework.core.io.Resource r : resources) {
-                try (java.io.InputStream is = r.getInputStream()) {
-                    javax.xml.parsers.DocumentBuilderFactory dbFactory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-                    dbFactory.setNamespaceAware(true);
-                    javax.xml.parsers.DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-                    org.w3c.dom.Document doc = dBuilder.parse(is);
-                    org.w3c.dom.Element defs = doc.getDocumentElement();
-                    String name = defs.getAttribute("name");
-                    String ns = defs.getAttribute("namespace");
-
-                    Map<String, Object> mi = new HashMap<>();
-                    mi.put("name", name);
-                    mi.put("namespace", ns);
-
-                    List<Map<String, String>> inputs = new ArrayList<>();
-                    org.w3c.dom.NodeList inputDataNodes = doc.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "inputData");
-                    for (int i = 0; i < inputDataNodes.getLength(); i++) {
-                        org.w3c.dom.Element in = (org.w3c.dom.Element) inputDataNodes.item(i);
-                        String inName = in.getAttribute("name");
-                        // variable type is inside <variable name=... typeRef=... />
-                        org.w3c.dom.NodeList varNodes = in.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "variable");
-                        String typeRef = "";
-                        if (varNodes.getLength() > 0) {
-                            org.w3c.dom.Element var = (org.w3c.dom.Element) varNodes.item(0);
-                            typeRef = var.getAttribute("typeRef");
-                        }
-                        Map<String, String> iv = new HashMap<>();
-                        iv.put("name", inName);
-                        iv.put("type", typeRef);
-                        inputs.add(iv);
-                    }
-
-                    mi.put("inputs", inputs);
-                    String key = (name == null ? "" : name) + "::" + (ns == null ? "" : ns);
-                    if (seen.contains(key)) {
-                        // skip duplicate model definitions found on the classpath
-                        continue;
-                    }
-                    seen.add(key);
-                    out.add(mi);
-                } catch (Exception e) {
-                    logger.warn("Failed to read DMN resource {}: {}", r.getFilename(), e.getMessage());
-                }
-            }
-            return out;
-        } catch (Exception e) {
-            logger.error("Error listing DMN models: {}", e.getMessage(), e);
-            throw new RuntimeException(e);
+    public List<Map<String, Object>> listModels(WebRequest request) {
+        if (request.checkNotModified(etag(metadataIndex.getVersion()))) return null;
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (DmnMetadataIndex.ModelMetadata m : metadataIndex.getModels()) {
+            out.add(m.getSummary());
         }
+        return out;
     }
 
     @GetMapping("/models/{modelName}/schema")
-    public Map<String, Object> getModelSchema(@PathVariable("modelName") String modelName) {
-        try {
-            org.springframework.core.io.support.PathMatchingResourcePatternResolver resolver = new org.springframework.core.io.support.PathMatchingResourcePatternResolver();
-            org.springframework.core.io.Resource[] resources = resolver.getResources("classpath*:**/*.dmn");
-
-            for (org.springframework.core.io.Resource r : resources) {
-                try (java.io.InputStream is = r.getInputStream()) {
-                    javax.xml.parsers.DocumentBuilderFactory dbFactory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-                    dbFactory.setNamespaceAware(true);
-                    javax.xml.parsers.DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-                    org.w3c.dom.Document doc = dBuilder.parse(is);
-                    org.w3c.dom.Element defs = doc.getDocumentElement();
-                    String name = defs.getAttribute("name");
-                    if (name == null) name = "";
-                    if (!name.equalsIgnoreCase(modelName)) continue;
-
-                    // collect itemDefinition elements by name
-                    Map<String, org.w3c.dom.Element> itemDefs = new HashMap<>();
-                    org.w3c.dom.NodeList itemDefNodes = doc.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "itemDefinition");
-                    for (int i = 0; i < itemDefNodes.getLength(); i++) {
-                        org.w3c.dom.Element idEl = (org.w3c.dom.Element) itemDefNodes.item(i);
-                        String idName = idEl.getAttribute("name");
-                        if (idName != null && !idName.isEmpty()) {
-                            itemDefs.put(idName, idEl);
-                        }
-                    }
-
-                    // function to resolve a typeRef into a schema map
-                    java.util.function.Function<String, Object> resolveType = new java.util.function.Function<String, Object>() {
-                        @Override
-                        public Object apply(String typeRef) {
-                            if (typeRef == null || typeRef.isEmpty()) return Collections.singletonMap("type", "string");
-                            // if typeRef matches an itemDefinition name, expand
-                            if (itemDefs.containsKey(typeRef)) {
-                                org.w3c.dom.Element td = itemDefs.get(typeRef);
-                                Map<String, Object> out = new HashMap<>();
-                                out.put("type", typeRef);
-                                List<Map<String, Object>> fields = new ArrayList<>();
-                                org.w3c.dom.NodeList comps = td.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "itemComponent");
-                                for (int j = 0; j < comps.getLength(); j++) {
-                                    org.w3c.dom.Element comp = (org.w3c.dom.Element) comps.item(j);
-                                    String fname = comp.getAttribute("name");
-                                    String isCollection = comp.getAttribute("isCollection");
-                                    String ftype = "";
-                                    org.w3c.dom.NodeList tref = comp.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "typeRef");
-                                    if (tref != null && tref.getLength() > 0) {
-                                        org.w3c.dom.Element trefEl = (org.w3c.dom.Element) tref.item(0);
-                                        ftype = trefEl.getTextContent();
-                                    }
-                                    Map<String, Object> f = new HashMap<>();
-                                    f.put("name", fname);
-                                    f.put("isCollection", "true".equalsIgnoreCase(isCollection));
-                                    if (ftype != null && !ftype.isEmpty() && itemDefs.containsKey(ftype)) {
-                                        // nested complex type
-                                        f.put("type", ftype);
-                                        f.put("schema", this.apply(ftype));
-                                    } else {
-                                        f.put("type", (ftype == null || ftype.isEmpty()) ? "string" : ftype);
-                                    }
-                                    fields.add(f);
-                                }
-                                out.put("fields", fields);
-                                return out;
-                            } else {
-                                // primitive type
-                                Map<String, Object> prim = new HashMap<>();
-                                prim.put("type", typeRef);
-                                return prim;
-                            }
-                        }
-                    };
-
-                    // find model inputs
-                    List<Map<String, Object>> inputs = new ArrayList<>();
-                    org.w3c.dom.NodeList inputDataNodes = doc.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "inputData");
-                    for (int i = 0; i < inputDataNodes.getLength(); i++) {
-                        org.w3c.dom.Element in = (org.w3c.dom.Element) inputDataNodes.item(i);
-                        String inName = in.getAttribute("name");
-                        String typeRef = "";
-                        org.w3c.dom.NodeList varNodes = in.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "variable");
-                        if (varNodes.getLength() > 0) {
-                            org.w3c.dom.Element var = (org.w3c.dom.Element) varNodes.item(0);
-                            typeRef = var.getAttribute("typeRef");
-                        }
-                        Map<String, Object> im = new HashMap<>();
-                        im.put("name", inName);
-                        im.put("type", typeRef);
-                        // attach expanded schema if available
-                        Object expanded = resolveType.apply(typeRef);
-                        im.put("schema", expanded);
-                        inputs.add(im);
-                    }
-
-                    Map<String, Object> out = new HashMap<>();
-                    out.put("name", name);
-                    out.put("namespace", defs.getAttribute("namespace"));
-                    out.put("inputs", inputs);
-                    return out;
-                } catch (Exception e) {
-                    logger.warn("Failed to read DMN resource {}: {}", r.getFilename(), e.getMessage());
-                }
-            }
-            throw new RuntimeException("Model not found: " + modelName);
-        } catch (Exception e) {
-            logger.error("Error building schema for model {}: {}", modelName, e.getMessage(), e);
-            throw new RuntimeException(e);
-        }
+    public Map<String, Object> getModelSchema(@PathVariable("modelName") String modelName, WebRequest request) {
+        DmnMetadataIndex.ModelMetadata m = metadataIndex.require(modelName);
+        if (request.checkNotModified(etag(m.getVersion()))) return null;
+        return m.getSchema();
     }
 
     // --- Decision table endpoints ---
     @GetMapping("/models/{modelName}/tables")
-    public List<Map<String, Object>> listDecisionTables(@PathVariable("modelName") String modelName) {
-        try {
-            org.springframework.core.io.support.PathMatchingResourcePatternResolver resolver = new org.springframework.core.io.support.PathMatchingResourcePatternResolver();
-            org.springframework.core.io.Resource[] resources = resolver.getResources("classpath*:**/*.dmn");
-            for (org.springframework.core.io.Resource r : resources) {
-                try (java.io.InputStream is = r.getInputStream()) {
-                    javax.xml.parsers.DocumentBuilderFactory dbFactory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-                    dbFactory.setNamespaceAware(true);
-                    javax.xml.parsers.DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-                    org.w3c.dom.Document doc = dBuilder.parse(is);
-                    org.w3c.dom.Element defs = doc.getDocumentElement();
-                    String name = defs.getAttribute("name");
-                    if (name == null) name = "";
-                    if (!name.equalsIgnoreCase(modelName)) continue;
-
-                    List<Map<String, Object>> out = new ArrayList<>();
-                    org.w3c.dom.NodeList decs = doc.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "decision");
-                    for (int i = 0; i < decs.getLength(); i++) {
-                        org.w3c.dom.Element dec = (org.w3c.dom.Element) decs.item(i);
-                        String dname = dec.getAttribute("name");
-                        boolean hasTable = dec.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "decisionTable").getLength() > 0;
-                        Map<String, Object> m = new HashMap<>();
-                        m.put("name", dname);
-                        m.put("hasDecisionTable", hasTable);
-                        out.add(m);
-                    }
-                    return out;
-                } catch (Exception e) {
-                    logger.warn("Failed reading DMN resource for tables {}: {}", r.getFilename(), e.getMessage());
-                }
-            }
-            throw new RuntimeException("Model not found: " + modelName);
-        } catch (Exception e) {
-            logger.error("Error listing decision tables for model {}: {}", modelName, e.getMessage(), e);
-            throw new RuntimeException(e);
-        }
+    public List<Map<String, Object>> listDecisionTables(@PathVariable("modelName") String modelName, WebRequest request) {
+        DmnMetadataIndex.ModelMetadata m = metadataIndex.require(modelName);
+        if (request.checkNotModified(etag(m.getVersion()))) return null;
+        return m.getDecisions();
     }
 
     @GetMapping("/models/{modelName}/tables/{decisionName}")
-    public Map<String, Object> getDecisionTable(@PathVariable("modelName") String modelName, @PathVariable("decisionName") String decisionName) {
-        try {
-            org.springframework.core.io.support.PathMatchingResourcePatternResolver resolver = new org.springframework.core.io.support.PathMatchingResourcePatternResolver();
-            org.springframework.core.io.Resource[] resources = resolver.getResources("classpath*:**/*.dmn");
-            for (org.springframework.core.io.Resource r : resources) {
-                try (java.io.InputStream is = r.getInputStream()) {
-                    javax.xml.parsers.DocumentBuilderFactory dbFactory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-                    dbFactory.setNamespaceAware(true);
-                    javax.xml.parsers.DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-                    org.w3c.dom.Document doc = dBuilder.parse(is);
-                    org.w3c.dom.Element defs = doc.getDocumentElement();
-                    String name = defs.getAttribute("name");
-                    if (name == null) name = "";
-                    if (!name.equalsIgnoreCase(modelName)) continue;
-
-                    org.w3c.dom.NodeList decs = doc.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "decision");
-                    for (int i = 0; i < decs.getLength(); i++) {
-                        org.w3c.dom.Element dec = (org.w3c.dom.Element) decs.item(i);
-                        String dname = dec.getAttribute("name");
-                        if (!decisionName.equalsIgnoreCase(dname)) continue;
-
-                        org.w3c.dom.NodeList dtList = dec.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "decisionTable");
-                        if (dtList.getLength() == 0) {
-                            Map<String, Object> out = new HashMap<>();
-                            out.put("name", dname);
-                            out.put("decisionTableXml", null);
-                            out.put("parsed", Collections.emptyMap());
-                            return out;
-                        }
-                        org.w3c.dom.Element dt = (org.w3c.dom.Element) dtList.item(0);
-
-                        // serialize dt to XML string
-                        javax.xml.transform.TransformerFactory tf = javax.xml.transform.TransformerFactory.newInstance();
-                        javax.xml.transform.Transformer transformer = tf.newTransformer();
-                        transformer.setOutputProperty(javax.xml.transform.OutputKeys.OMIT_XML_DECLARATION, "yes");
-                        java.io.StringWriter writer = new java.io.StringWriter();
-                        transformer.transform(new javax.xml.transform.dom.DOMSource(dt), new javax.xml.transform.stream.StreamResult(writer));
-                        String dtXml = writer.toString();
-
-                        // parse a simple structured representation
-                        List<String> inputs = new ArrayList<>();
-                        List<String> outputs = new ArrayList<>();
-                        org.w3c.dom.NodeList inputNodes = dt.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "input");
-                        for (int j = 0; j < inputNodes.getLength(); j++) {
-                            org.w3c.dom.Element in = (org.w3c.dom.Element) inputNodes.item(j);
-                            org.w3c.dom.NodeList ie = in.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "inputExpression");
-                            String label = in.getAttribute("label");
-                            // If label attribute is missing, try to extract the expression text
-                            if ((label == null || label.isEmpty()) && ie.getLength() > 0) {
-                                org.w3c.dom.Element ieEl = (org.w3c.dom.Element) ie.item(0);
-                                // Prefer a nested <text> child if present
-                                org.w3c.dom.NodeList textNodes = ieEl.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "text");
-                                if (textNodes != null && textNodes.getLength() > 0) {
-                                    label = textNodes.item(0).getTextContent();
-                                } else {
-                                    // fallback to the element's text content (covers inline text nodes)
-                                    String t = ieEl.getTextContent();
-                                    if (t != null) label = t.trim();
-                                }
-                            }
-                            // Final fallbacks: input 'name' or variable name
-                            if (label == null || label.isEmpty()) {
-                                String inName = in.getAttribute("name");
-                                if (inName != null && !inName.isEmpty()) {
-                                    label = inName;
-                                } else {
-                                    org.w3c.dom.NodeList varNodes2 = in.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "variable");
-                                    if (varNodes2.getLength() > 0) {
-                                        org.w3c.dom.Element varEl = (org.w3c.dom.Element) varNodes2.item(0);
-                                        String varName = varEl.getAttribute("name");
-                                        if (varName != null && !varName.isEmpty()) label = varName;
-                                    }
-                                }
-                            }
-                            inputs.add(label == null ? "" : label);
-                        }
-                        org.w3c.dom.NodeList outputNodes = dt.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "output");
-                        for (int j = 0; j < outputNodes.getLength(); j++) {
-                            org.w3c.dom.Element outEl = (org.w3c.dom.Element) outputNodes.item(j);
-                            outputs.add(outEl.getAttribute("name"));
-                        }
-
-                        // rules
-                        List<Map<String, Object>> rules = new ArrayList<>();
-                        org.w3c.dom.NodeList ruleNodes = dt.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "rule");
-                        for (int rIdx = 0; rIdx < ruleNodes.getLength(); rIdx++) {
-                            org.w3c.dom.Element ruleEl = (org.w3c.dom.Element) ruleNodes.item(rIdx);
-                            org.w3c.dom.NodeList inEntries = ruleEl.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "inputEntry");
-                            org.w3c.dom.NodeList outEntries = ruleEl.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "outputEntry");
-                            List<String> inVals = new ArrayList<>();
-                            for (int ii = 0; ii < inEntries.getLength(); ii++) {
-                                org.w3c.dom.Element ie = (org.w3c.dom.Element) inEntries.item(ii);
-                                inVals.add(ie.getTextContent().trim());
-                            }
-                            List<String> outVals = new ArrayList<>();
-                            for (int oi = 0; oi < outEntries.getLength(); oi++) {
-                                org.w3c.dom.Element oe = (org.w3c.dom.Element) outEntries.item(oi);
-                                outVals.add(oe.getTextContent().trim());
-                            }
-                            Map<String, Object> rmap = new HashMap<>();
-                            rmap.put("inputs", inVals);
-                            rmap.put("outputs", outVals);
-                            rules.add(rmap);
-                        }
-
-                        Map<String, Object> out = new HashMap<>();
-                        out.put("name", dname);
-                        out.put("decisionTableXml", dtXml);
-                        Map<String, Object> parsed = new HashMap<>();
-                        parsed.put("inputs", inputs);
-                        parsed.put("outputs", outputs);
-                        parsed.put("rules", rules);
-                        out.put("parsed", parsed);
-                        return out;
-                    }
-                } catch (Exception e) {
-                    logger.warn("Failed reading DMN resource for decision {}: {}", r.getFilename(), e.getMessage());
-                }
-            }
+    public Map<String, Object> getDecisionTable(@PathVariable("modelName") String modelName,
+                                                @PathVariable("decisionName") String decisionName, WebRequest request) {
+        DmnMetadataIndex.ModelMetadata m = metadataIndex.require(modelName);
+        Map<String, Object> table = m.findTable(decisionName);
+        if (table == null) {
             throw new RuntimeException("Decision not found: " + decisionName + " in model " + modelName);
-        } catch (Exception e) {
-            logger.error("Error fetching decision table {} for {}: {}", decisionName, modelName, e.getMessage(), e);
-            throw new RuntimeException(e);
         }
+        if (request.checkNotModified(etag(m.getVersion()))) return null;
+        return table;
+    }
+
+    private static String etag(long version) {
+        return "\"v" + version + "\"";
     }
 
+    // Replaces a whole decision table. The edit may name the model version it was made against with
+    // If-Match (the table's ETag) or baseVersion and is then refused with 412 when the model changed
+    // since; without one the table is replaced whatever the current version. Only the edited model is
+    // recompiled, and once it is live the file (or a new stored version) is written in the background.
+    // With async=true the edit is compiled in the background too.
     @PutMapping("/models/{modelName}/tables/{decisionName}")
     public Map<String, Object> updateDecisionTable(@PathVariable("modelName") String modelName,
                                                    @PathVariable("decisionName") String decisionName,
-                                                   @RequestBody Map<String, Object> body) {
+                                                   @RequestParam(value = "async", defaultValue = "false") boolean async,
+                                                   @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                                   @RequestBody Map<String, Object> body,
+                                                   HttpServletResponse response) throws Exception {
         Object dtObj = body.get("decisionTableXml");
-        String dtXml = dtObj == null ? null : dtObj.toString();
-        if (dtXml == null) throw new IllegalArgumentException("decisionTableXml is required in body");
-        Object testCasesObj = body.get("testCases");
-        try {
-            org.springframework.core.io.support.PathMatchingResourcePatternResolver resolver = new org.springframework.core.io.support.PathMatchingResourcePatternResolver();
-            org.springframework.core.io.Resource[] resources = resolver.getResources("classpath*:**/*.dmn");
-            org.springframework.core.io.Resource targetResource = null;
-            org.w3c.dom.Document targetDoc = null;
-            for (org.springframework.core.io.Resource r : resources) {
-                try (java.io.InputStream is = r.getInputStream()) {
-                    javax.xml.parsers.DocumentBuilderFactory dbFactory = javax.xml.parsers.DocumentBuilderFactory.newInstance();
-                    dbFactory.setNamespaceAware(true);
-                    javax.xml.parsers.DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-                    org.w3c.dom.Document doc = dBuilder.parse(is);
-                    org.w3c.dom.Element defs = doc.getDocumentElement();
-                    String name = defs.getAttribute("name");
-                    if (name == null) name = "";
-                    if (!name.equalsIgnoreCase(modelName)) continue;
-
-                    org.w3c.dom.NodeList decs = doc.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "decision");
-                    for (int i = 0; i < decs.getLength(); i++) {
-                        org.w3c.dom.Element dec = (org.w3c.dom.Element) decs.item(i);
-                        String dname = dec.getAttribute("name");
-                        if (!decisionName.equalsIgnoreCase(dname)) continue;
-                        // found decision
-                        targetResource = r;
-                        // parse the provided dtXml into an Element
-                        javax.xml.parsers.DocumentBuilder dtBuilder = dbFactory.newDocumentBuilder();
-                        org.w3c.dom.Document dtDoc = dtBuilder.parse(new org.xml.sax.InputSource(new java.io.StringReader(dtXml)));
-                        org.w3c.dom.Element newDt = dtDoc.getDocumentElement();
-
-                        // import node into original doc
-                        org.w3c.dom.Node imported = doc.importNode(newDt, true);
-                        org.w3c.dom.NodeList oldDtList = dec.getElementsByTagNameNS("http://www.omg.org/spec/DMN/20180521/MODEL/", "decisionTable");
-                        if (oldDtList.getLength() > 0) {
-                            org.w3c.dom.Node old = oldDtList.item(0);
-                            dec.replaceChild(imported, old);
-                        } else {
-                            dec.appendChild(imported);
-                        }
-
-                        targetDoc = doc;
-                        break;
-                    }
-                    if (targetDoc != null) break;
+        if (dtObj == null) throw new IllegalArgumentException("decisionTableXml is required in body");
+        String dtXml = dtObj.toString();
+        Long baseVersion = (ifMatch == null || ifMatch.isBlank()) && body.get("baseVersion") == null
+                ? null : baseVersion(ifMatch, body.get("baseVersion"));
+        Map<String, byte[]> sidecars = sidecars(modelName, decisionName, body.get("testCases"));
+
+        if (async) {
+            if (baseVersion != null) decisionTablePatcher.checkVersion(modelName, baseVersion);
+            String version = rulesetHolder.nextVersion();
+            rulesetPersistExecutor.execute(() -> {
+                try {
+                    replaceTable(modelName, decisionName, baseVersion, dtXml, version, sidecars, new java.util.concurrent.atomic.AtomicReference<>());
                 } catch (Exception e) {
-                    logger.warn("Failed processing DMN resource for update {}: {}", r.getFilename(), e.getMessage());
+                    logger.error("Error updating decision table {} for {}: {}", decisionName, modelName, e.getMessage(), e);
                 }
+            });
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("model", modelName);
+            resp.put("decision", decisionName);
+            resp.put("version", version);
+            resp.put("status", "building");
+            return resp;
+        }
+
+        java.util.concurrent.atomic.AtomicReference<Map<String, Object>> regression = new java.util.concurrent.atomic.AtomicReference<>();
+        DecisionTablePatcher.Result result = replaceTable(modelName, decisionName, baseVersion, dtXml,
+                rulesetHolder.nextVersion(), sidecars, regression);
+        Map<String, Object> resp = buildResponse(modelName, decisionName, result.getVersion(), result.getBuild(), regression);
+        resp.put("modelVersion", result.getModelVersion());
+        if (result.isPublished()) response.setHeader("ETag", etag(result.getModelVersion()));
+        return resp;
+    }
+
+    // Publishes the replaced table and, once it is live, queues its write behind the earlier ones
+    private DecisionTablePatcher.Result replaceTable(String modelName, String decisionName, Long baseVersion, String dtXml,
+                                                     String version, Map<String, byte[]> sidecars,
+                                                     java.util.concurrent.atomic.AtomicReference<Map<String, Object>> regression) {
+        org.springframework.core.io.Resource targetResource = metadataIndex.require(modelName).getResource();
+        DecisionTablePatcher.Result result = decisionTablePatcher.replace(modelName, decisionName, baseVersion, dtXml, version,
+                regressionCheck(modelName, targetResource, sidecars, regression));
+        if (result.isPublished()) {
+            rulesetPersistExecutor.execute(() -> persistEdit(modelName + "/" + decisionName, result, sidecars));
+        }
+        return result;
+    }
+
+    // The test case sidecar of the edited decision, keyed by KieFileSystem path; empty without test cases
+    private Map<String, byte[]> sidecars(String modelName, String decisionName, Object testCases) throws Exception {
+        Map<String, byte[]> sidecars = new HashMap<>();
+        if (testCases != null) {
+            org.springframework.core.io.Resource targetResource = metadataIndex.require(modelName).getResource();
+            sidecars.put(RulesetCompiler.kiePath(targetResource) + "." + decisionName + ".testcases.json",
+                    new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsBytes(testCases));
+        }
+        return sidecars;
+    }
+
+    // Row-level edits: rules are added, modified, deleted or moved (see DecisionTablePatcher for the
+    // operations). The patch names the model version it was made against with If-Match (the table's
+    // ETag) or baseVersion and is refused with 412 when the model changed since. Only the patched model
+    // is recompiled; once it is live the file (or a new stored version) is written in the background.
+    @PatchMapping("/models/{modelName}/tables/{decisionName}/rules")
+    public Map<String, Object> patchDecisionTable(@PathVariable("modelName") String modelName,
+                                                  @PathVariable("decisionName") String decisionName,
+                                                  @RequestHeader(value = "If-Match", required = false) String ifMatch,
+                                                  @RequestBody Map<String, Object> body,
+                                                  HttpServletResponse response) throws Exception {
+        long baseVersion = baseVersion(ifMatch, body.get("baseVersion"));
+        if (!(body.get("operations") instanceof List)) throw new IllegalArgumentException("operations array is required in body");
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> operations = (List<Map<String, Object>>) body.get("operations");
+        org.springframework.core.io.Resource targetResource = metadataIndex.require(modelName).getResource();
+        Map<String, byte[]> sidecars = sidecars(modelName, decisionName, body.get("testCases"));
+        java.util.concurrent.atomic.AtomicReference<Map<String, Object>> regression = new java.util.concurrent.atomic.AtomicReference<>();
+        DecisionTablePatcher.Result result = decisionTablePatcher.patch(modelName, decisionName, baseVersion, operations,
+                regressionCheck(modelName, targetResource, sidecars, regression));
+
+        Map<String, Object> resp = buildResponse(modelName, decisionName, result.getVersion(), result.getBuild(), regression);
+        resp.put("operations", result.getOperations());
+        resp.put("modelVersion", result.getModelVersion());
+        if (result.isPublished()) {
+            response.setHeader("ETag", etag(result.getModelVersion()));
+            rulesetPersistExecutor.execute(() -> persistEdit(modelName + "/" + decisionName + " (patch)", result, sidecars));
+        }
+        return resp;
+    }
+
+    // If-Match wins over the body; both accept the ETag form ("v12", weak or not) or the bare number
+    private static long baseVersion(String ifMatch, Object bodyVersion) {
+        String v = ifMatch != null && !ifMatch.isBlank() ? ifMatch : bodyVersion == null ? null : bodyVersion.toString();
+        if (v == null) throw new IllegalArgumentException("If-Match header or baseVersion is required to patch a table");
+        v = v.trim();
+        if (v.startsWith("W/")) v = v.substring(2);
+        v = v.replace("\"", "");
+        if (v.startsWith("v")) v = v.substring(1);
+        try {
+            return Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a model version: " + (ifMatch != null ? ifMatch : bodyVersion));
+        }
+    }
+
+    // Runs on the persist executor after the edit went live, in the order edits went live. A failure
+    // only loses durability: the running rules keep the edit and the next successful write carries it,
+    // since a stored version is the applied one overlaid with every live edit of this instance.
+    private void persistEdit(String source, DecisionTablePatcher.Result result, Map<String, byte[]> sidecars) {
+        try {
+            if (rulesetStore.isEnabled()) {
+                Map<String, byte[]> sources = rulesetStore.readApplied();
+                sources.putAll(decisionTablePatcher.editedSources());
+                sources.putAll(sidecars);
+                rulesetStore.adopt(rulesetStore.write(sources, source));
+                return;
+            }
+            java.io.File f = result.getResource().getFile();
+            if (!f.exists() || !f.canWrite()) {
+                logger.warn("DMN resource is not a writable file; edit is applied to runtime only: {}", result.getResource().getFilename());
+                return;
+            }
+            java.io.File backup = new java.io.File(f.getAbsolutePath() + "." + System.currentTimeMillis() + ".bak");
+            java.nio.file.Files.copy(f.toPath(), backup.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            java.nio.file.Files.write(f.toPath(), result.getBytes());
+            for (Map.Entry<String, byte[]> sidecar : sidecars.entrySet()) {
+                String name = sidecar.getKey().substring(sidecar.getKey().lastIndexOf('/') + 1);
+                java.nio.file.Files.write(new java.io.File(f.getParentFile(), name).toPath(), sidecar.getValue());
             }
+            logger.info("Persisted edit {} (ruleset {}) to {}", source, result.getVersion(), f.getAbsolutePath());
+        } catch (Exception e) {
+            logger.error("Failed to persist edit {} (ruleset {}): {}", source, result.getVersion(), e.getMessage(), e);
+        }
+    }
 
-            if (targetResource == null || targetDoc == null) {
-                throw new RuntimeException("Decision not found to update: " + decisionName + " in model " + modelName);
+    // Replays the model's test case sidecars on the current ruleset and the candidate; a refusal keeps
+    // the current ruleset live. The report is kept for the response either way.
+    private java.util.function.Consumer<DmnModelRegistry> regressionCheck(String modelName,
+                                                                           org.springframework.core.io.Resource targetResource,
+                                                                           Map<String, byte[]> sources,
+                                                                           java.util.concurrent.atomic.AtomicReference<Map<String, Object>> report) {
+        return candidate -> {
+            if (!regressionGate.isEnabled()) return;
+            Map<String, byte[]> sidecars = regressionGate.findSidecars(targetResource, sources);
+            try (Ruleset current = rulesetHolder.acquire()) {
+                report.set(regressionGate.check(modelName, sidecars, current.getRegistry(), candidate));
+            } catch (RegressionGate.RegressionGateException e) {
+                report.set(e.getReport());
+                throw e;
             }
+        };
+    }
 
-            // Attempt to write back to underlying file if possible
-            try {
-                java.io.File f = targetResource.getFile();
-                if (f != null && f.exists() && f.canWrite()) {
-                    // create a timestamped backup first
-                    try {
-                        java.io.File backup = new java.io.File(f.getAbsolutePath() + "." + System.currentTimeMillis() + ".bak");
-                        java.nio.file.Files.copy(f.toPath(), backup.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                        logger.info("Created DMN backup: {}", backup.getAbsolutePath());
-                    } catch (Exception ex) {
-                        logger.warn("Failed to create DMN backup: {}", ex.getMessage());
-                    }
-
-                    javax.xml.transform.TransformerFactory tf = javax.xml.transform.TransformerFactory.newInstance();
-                    javax.xml.transform.Transformer transformer = tf.newTransformer();
-                    transformer.setOutputProperty(javax.xml.transform.OutputKeys.INDENT, "yes");
-                    java.io.FileOutputStream fos = new java.io.FileOutputStream(f);
-                    transformer.transform(new javax.xml.transform.dom.DOMSource(targetDoc), new javax.xml.transform.stream.StreamResult(fos));
-                    fos.close();
-                    logger.info("Updated DMN source file: {}", f.getAbsolutePath());
-                    // If testCases were provided, persist them to a sidecar JSON next to the DMN file
-                    if (testCasesObj != null) {
-                        try {
-                            ObjectMapper mapper = new ObjectMapper();
-                            String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(testCasesObj);
-                            java.io.File sidecar = new java.io.File(f.getParentFile(), f.getName() + "." + decisionName + ".testcases.json");
-                            try (java.io.FileWriter fw = new java.io.FileWriter(sidecar)) {
-                                fw.write(json);
-                            }
-                            logger.info("Wrote testCases sidecar: {}", sidecar.getAbsolutePath());
-                        } catch (Exception ex) {
-                            logger.warn("Failed to write testCases sidecar: {}", ex.getMessage());
-                        }
-                    }
-                } else {
-                    logger.warn("DMN resource is not a writable file; update will be applied to runtime only: {}", targetResource.getFilename());
-                    // even if DMN file isn't writable, attempt to persist testCases next to resource if possible
-                    try {
-                        java.io.File parent = targetResource.getFile().getParentFile();
-                        if (parent != null && parent.canWrite() && testCasesObj != null) {
-                            ObjectMapper mapper = new ObjectMapper();
-                            String json = mapper.writerWithDefaultPrettyPrinter().writeValueAsString(testCasesObj);
-                            java.io.File sidecar = new java.io.File(parent, targetResource.getFilename() + "." + decisionName + ".testcases.json");
-                            try (java.io.FileWriter fw = new java.io.FileWriter(sidecar)) {
-                                fw.write(json);
-                            }
-                            logger.info("Wrote testCases sidecar (non-writable DMN): {}", sidecar.getAbsolutePath());
-                        }
-                    } catch (Exception ex) {
-                        logger.warn("Could not persist testCases sidecar for non-writable DMN resource: {}", ex.getMessage());
-                    }
-                }
-            } catch (Exception e) {
-                logger.warn("Failed to write DMN file to disk: {}", e.getMessage());
+    private Map<String, Object> buildResponse(String modelName, String decisionName, String version,
+                                              java.util.concurrent.CompletableFuture<Ruleset> build,
+                                              java.util.concurrent.atomic.AtomicReference<Map<String, Object>> regression) throws InterruptedException {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("model", modelName);
+        resp.put("decision", decisionName);
+        resp.put("version", version);
+        try {
+            build.get();
+            resp.put("status", "ok");
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause() instanceof java.util.concurrent.CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof RegressionGate.RegressionGateException) {
+                resp.put("status", "regression_failed");
+                resp.put("error", cause.getMessage());
+            } else if (cause instanceof RulesetCompiler.RulesetBuildException) {
+                resp.put("status", "build_failed");
+                resp.put("errors", cause.getMessage());
+            } else {
+                logger.error("Failed to rebuild KIE runtime: {}", cause.getMessage(), cause);
+                resp.put("status", "rebuild_failed");
+                resp.put("error", cause.getMessage());
             }
+        }
+        if (regression.get() != null) resp.put("regression", regression.get());
+        return resp;
+    }
 
-            // Rebuild KIE module in-memory using KieFileSystem so runtime picks up updated DMN
-            try {
-                org.kie.api.KieServices ks = org.kie.api.KieServices.Factory.get();
-                org.kie.api.builder.KieFileSystem kfs = ks.newKieFileSystem();
-
-                // write all DMN resources found on classpath into kfs
-                org.springframework.core.io.support.PathMatchingResourcePatternResolver resolver2 = new org.springframework.core.io.support.PathMatchingResourcePatternResolver();
-                org.springframework.core.io.Resource[] allResources = resolver2.getResources("classpath*:**/*.dmn");
-                for (org.springframework.core.io.Resource rr : allResources) {
-                    try (java.io.InputStream is = rr.getInputStream()) {
-                        java.io.ByteArrayOutputStream baos = new java.io.ByteArrayOutputStream();
-                        byte[] buf = new byte[4096];
-                        int rlen;
-                        while ((rlen = is.read(buf)) != -1) {
-                            baos.write(buf, 0, rlen);
-                        }
-                        byte[] bytes = baos.toByteArray();
-                        // try to compute a path under src/main/resources
-                        String writePath = "src/main/resources/" + rr.getFilename();
-                        try {
-                            String uri = rr.getURI().getPath();
-                            int idx = uri.indexOf("src/main/resources");
-                            if (idx >= 0) writePath = uri.substring(idx + "src/main/resources/".length());
-                        } catch (Exception ex) {
-                            // fallback to filename
-                        }
-                        // ensure path starts with src/main/resources/
-                        if (!writePath.startsWith("src/main/resources/")) writePath = "src/main/resources/" + writePath;
-                        kfs.write(writePath, bytes);
-                    } catch (Exception e) {
-                        logger.warn("Failed to read DMN resource when building KieFileSystem {}: {}", rr.getFilename(), e.getMessage());
-                    }
-                }
+    @GetMapping("/rulesets/startup-report")
+    public Map<String, Object> getStartupReport() {
+        return startupReport.getReport();
+    }
 
-                org.kie.api.builder.KieBuilder kb = ks.newKieBuilder(kfs).buildAll();
-                org.kie.api.builder.Results results = kb.getResults();
-                if (results.hasMessages(org.kie.api.builder.Message.Level.ERROR)) {
-                    StringBuilder sb = new StringBuilder();
-                    results.getMessages().forEach(m -> sb.append(m.toString()).append("\n"));
-                    logger.error("KieBuilder errors: {}", sb.toString());
-                    Map<String, Object> resp = new HashMap<>();
-                    resp.put("status", "build_failed");
-                    resp.put("errors", sb.toString());
-                    return resp;
-                }
+    @GetMapping("/warmup")
+    public Map<String, Object> getWarmUp() {
+        return jitWarmUp.getReport();
+    }
 
-                org.kie.api.builder.KieModule km = kb.getKieModule();
-                org.kie.api.builder.ReleaseId rid = km.getReleaseId();
-                org.kie.api.runtime.KieContainer newContainer = ks.newKieContainer(rid);
-                // replace the controller's kieContainer so subsequent calls use updated rules
-                this.kieContainer = newContainer;
-                logger.info("Rebuilt and replaced KieContainer with releaseId {}", rid);
-            } catch (Exception e) {
-                logger.error("Failed to rebuild KIE runtime: {}", e.getMessage(), e);
-                Map<String, Object> resp = new HashMap<>();
-                resp.put("status", "rebuild_failed");
-                resp.put("error", e.getMessage());
-                return resp;
-            }
+    // Rule projects hosted by this instance and their current versions; each is served under /api/{project}/decision
+    @GetMapping("/projects")
+    public List<Map<String, Object>> listProjects() {
+        return ruleProjects.getStatus();
+    }
 
-            Map<String, Object> ok = new HashMap<>();
-            ok.put("status", "ok");
-            ok.put("model", modelName);
-            ok.put("decision", decisionName);
-            return ok;
+    @GetMapping("/rulesets/current")
+    public Map<String, Object> getCurrentRuleset() {
+        Ruleset ruleset = rulesetHolder.currentRuleset();
+        Map<String, Object> out = new HashMap<>();
+        out.put("version", ruleset.getVersion());
+        out.put("source", ruleset.getSource());
+        out.put("publishedAt", ruleset.getPublishedAt().toString());
+        out.put("references", ruleset.getReferenceCount());
+        return out;
+    }
 
-        } catch (Exception e) {
-            logger.error("Error updating decision table {} for {}: {}", decisionName, modelName, e.getMessage(), e);
-            throw new RuntimeException(e);
+    // The containers of the current ruleset, one per DMN file when partitioned: models, compile time,
+    // allocated heap (retained heap with decision.partitions.measure-retained-heap), and how many ruleset
+    // versions share each one
+    @GetMapping("/rulesets/partitions")
+    public List<Map<String, Object>> getRulesetPartitions() {
+        return rulesetHolder.current().getPartitions();
+    }
+
+    // Static analysis of the running models' decision tables: dead (shadowed or unreachable) rows and
+    // decisions no final decision depends on. With decision.tables.prune-dead-rows the dead rows are left
+    // out of runtime-compiled tables (the DMN source keeps them)
+    @GetMapping("/rulesets/analysis")
+    public Map<String, Object> getRulesetAnalysis() {
+        DmnModelRegistry registry = rulesetHolder.current();
+        List<Map<String, Object>> models = new ArrayList<>();
+        int deadRows = 0;
+        for (DMNModel model : registry.getModels()) {
+            DecisionTableAnalyzer.Analysis analysis = registry.analysis(model);
+            models.add(analysis.getReport());
+            deadRows += analysis.getDeadRowCount();
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("pruneDeadRows", compileMode.isPrunedTables());
+        out.put("deadRows", deadRows);
+        out.put("models", models);
+        return out;
+    }
+
+    @GetMapping("/models/{modelName}/analysis")
+    public Map<String, Object> getModelAnalysis(@PathVariable("modelName") String modelName,
+                                                @RequestParam(value = "namespace", required = false) String namespace) {
+        DmnModelRegistry registry = rulesetHolder.current();
+        Map<String, Object> out = new LinkedHashMap<>(registry.analysis(registry.require(namespace, modelName)).getReport());
+        out.put("pruneDeadRows", compileMode.isPrunedTables());
+        return out;
+    }
+
+    // Store HEAD, the stored version this instance runs and the stored versions; instances converge
+    // when every one reports inSync
+    @GetMapping("/rulesets/store")
+    public Map<String, Object> getRulesetStore() {
+        return rulesetStore.getStatus();
+    }
+
+    // Loads the edited table as a shadow candidate instead of publishing it: the candidate is compiled
+    // like an edit and a sample of live evaluations is replayed on it (see ShadowEvaluator)
+    @PutMapping("/models/{modelName}/tables/{decisionName}/shadow")
+    public Map<String, Object> shadowDecisionTable(@PathVariable("modelName") String modelName,
+                                                   @PathVariable("decisionName") String decisionName,
+                                                   @RequestParam(value = "sampleRate", required = false) Double sampleRate,
+                                                   @RequestBody Map<String, Object> body) throws Exception {
+        Object dtObj = body.get("decisionTableXml");
+        if (dtObj == null) throw new IllegalArgumentException("decisionTableXml is required in body");
+        byte[] edited = decisionTablePatcher.replaced(modelName, decisionName, dtObj.toString());
+        Map<String, byte[]> sources = rulesetStore.isEnabled() ? rulesetStore.readApplied() : rulesetCompiler.readClasspathSources();
+        sources.putAll(decisionTablePatcher.editedSources());
+        sources.put(RulesetCompiler.kiePath(metadataIndex.require(modelName).getResource()), edited);
+        String version = "shadow-" + rulesetHolder.nextVersion();
+
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("model", modelName);
+        resp.put("decision", decisionName);
+        resp.put("version", version);
+        try {
+            shadowEvaluator.load(version, modelName + "/" + decisionName, () -> rulesetCompiler.compile(version, sources), sampleRate).get();
+            resp.put("status", "shadowing");
+        } catch (java.util.concurrent.ExecutionException e) {
+            Throwable cause = e.getCause();
+            resp.put("status", cause instanceof RulesetCompiler.RulesetBuildException ? "build_failed" : "load_failed");
+            resp.put("error", cause.getMessage());
         }
+        return resp;
+    }
+
+    // Mismatches and latency deltas per model and decision of the shadow candidate
+    @GetMapping("/rulesets/shadow")
+    public Map<String, Object> getShadowReport() {
+        return shadowEvaluator.getReport();
+    }
+
+    // Stops shadowing and returns the final report
+    @DeleteMapping("/rulesets/shadow")
+    public Map<String, Object> stopShadow() {
+        return shadowEvaluator.unload();
     }
 }
@@ -0,0 +1,255 @@
+package com.infinity.controller;
+
+import com.infinity.controller.dmn.DecisionEvaluator;
+import com.infinity.controller.dmn.DecisionPlan;
+import com.infinity.controller.dmn.DecisionResultCache;
+import com.infinity.controller.dmn.DecisionTableAnalyzer;
+import com.infinity.controller.dmn.DmnCompileMode;
+import com.infinity.controller.dmn.DmnModelRegistry;
+import com.infinity.controller.dmn.EvaluationBulkhead;
+import com.infinity.controller.dmn.InputBinder;
+import com.infinity.controller.dmn.ResponseProjection;
+import com.infinity.controller.dmn.RuleProjects;
+import com.infinity.controller.dmn.Ruleset;
+import com.infinity.controller.dmn.RulesetCompiler;
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.kie.dmn.api.core.DMNModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletionException;
+
+// Evaluation and read-only endpoints of every hosted rule project (see RuleProjects), e.g.
+// /api/gbd/decision/models/{modelName}/evaluate. The default project is also reachable here under its
+// name; table edits, the ruleset store and shadow candidates stay on /api/decision
+@RestController
+@RequestMapping("/api/{project}/decision")
+@CrossOrigin(origins = "*")
+public class ProjectDecisionController {
+
+    @Autowired
+    private RuleProjects ruleProjects;
+
+    @Autowired
+    private DecisionEvaluator decisionEvaluator;
+
+    @Autowired
+    private DmnCompileMode compileMode;
+
+    // Projection of evaluation responses when the request does not name one
+    @Value("${decision.response.projection:full}")
+    private String defaultProjection;
+
+    @PostMapping("/evaluate")
+    public Map<String, Object> evaluate(@PathVariable("project") String project,
+                                        @RequestParam(value = "projection", required = false) String projection,
+                                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return evaluate(project, null, null, null, projection, request, response);
+    }
+
+    @PostMapping("/models/{modelName}/evaluate")
+    public Map<String, Object> evaluateModel(@PathVariable("project") String project,
+                                             @PathVariable("modelName") String modelName,
+                                             @RequestParam(value = "namespace", required = false) String namespace,
+                                             @RequestParam(value = "decisions", required = false) List<String> decisions,
+                                             @RequestParam(value = "projection", required = false) String projection,
+                                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        return evaluate(project, namespace, modelName, decisions, projection, request, response);
+    }
+
+    private Map<String, Object> evaluate(String project, String namespace, String modelName, List<String> decisions,
+                                         String projection, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ResponseProjection p = ResponseProjection.parse(projection, ResponseProjection.parse(defaultProjection, ResponseProjection.FULL));
+        try (Ruleset ruleset = ruleProjects.require(project).getHolder().acquire()) {
+            response.setHeader(DecisionController.RULESET_VERSION_HEADER, ruleset.getVersion());
+            boolean useCache = !DecisionResultCache.isBypass(request.getHeader(DecisionResultCache.BYPASS_HEADER));
+            return decisionEvaluator.evaluate(ruleset, namespace, modelName, decisions, p, request.getContentType(),
+                    request.getInputStream(), useCache);
+        }
+    }
+
+    @ExceptionHandler(RuleProjects.UnknownProjectException.class)
+    @ResponseStatus(HttpStatus.NOT_FOUND)
+    public Map<String, Object> handleUnknownProject(RuleProjects.UnknownProjectException e) {
+        return error(e.getMessage());
+    }
+
+    @ExceptionHandler(InputBinder.InputBindingException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, Object> handleInputBindingError(InputBinder.InputBindingException e) {
+        Map<String, Object> out = error(e.getMessage());
+        out.put("errors", e.getErrors());
+        return out;
+    }
+
+    @ExceptionHandler(EvaluationBulkhead.BulkheadFullException.class)
+    @ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+    public Map<String, Object> handleBulkheadFull(EvaluationBulkhead.BulkheadFullException e, HttpServletResponse response) {
+        response.setHeader("Retry-After", "1");
+        Map<String, Object> out = error(e.getMessage());
+        out.put("model", e.getModel());
+        return out;
+    }
+
+    @ExceptionHandler(EvaluationBulkhead.DeadlineExceededException.class)
+    @ResponseStatus(HttpStatus.GATEWAY_TIMEOUT)
+    public Map<String, Object> handleDeadlineExceeded(EvaluationBulkhead.DeadlineExceededException e) {
+        return error(e.getMessage());
+    }
+
+    // A bad ?projection= is rejected before evaluation
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, Object> handleBadRequest(IllegalArgumentException e) {
+        return error(e.getMessage());
+    }
+
+    // The default project is reloaded through its edit and store endpoints
+    @ExceptionHandler(RuleProjects.ProjectNotReloadableException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, Object> handleNotReloadable(RuleProjects.ProjectNotReloadableException e) {
+        return error(e.getMessage());
+    }
+
+    // Sources that no longer compile leave the current version running
+    @ExceptionHandler(RulesetCompiler.RulesetBuildException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public Map<String, Object> handleBuildError(RulesetCompiler.RulesetBuildException e) {
+        return error(e.getMessage());
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("error", message);
+        return out;
+    }
+
+    @GetMapping("/models/{modelName}/plan")
+    public Map<String, Object> getDecisionPlan(@PathVariable("project") String project,
+                                               @PathVariable("modelName") String modelName,
+                                               @RequestParam(value = "namespace", required = false) String namespace,
+                                               @RequestParam("decisions") List<String> decisions) {
+        DmnModelRegistry registry = ruleProjects.require(project).getHolder().current();
+        DecisionPlan plan = registry.plan(registry.require(namespace, modelName), decisions);
+        Map<String, Object> out = new HashMap<>();
+        out.put("model", plan.getModelName());
+        out.put("targets", plan.getTargetNames());
+        out.put("closure", plan.getClosure());
+        out.put("skipped", plan.getSkipped());
+        return out;
+    }
+
+    // Metadata comes from the project's own index, with the same ETags as /api/decision
+    @GetMapping("/models")
+    public List<Map<String, Object>> listModels(@PathVariable("project") String project, WebRequest request) {
+        DmnMetadataIndex metadataIndex = ruleProjects.require(project).getMetadataIndex();
+        if (request.checkNotModified(etag(metadataIndex.getVersion()))) return null;
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (DmnMetadataIndex.ModelMetadata m : metadataIndex.getModels()) {
+            out.add(m.getSummary());
+        }
+        return out;
+    }
+
+    @GetMapping("/models/{modelName}/schema")
+    public Map<String, Object> getModelSchema(@PathVariable("project") String project,
+                                              @PathVariable("modelName") String modelName, WebRequest request) {
+        DmnMetadataIndex.ModelMetadata m = ruleProjects.require(project).getMetadataIndex().require(modelName);
+        if (request.checkNotModified(etag(m.getVersion()))) return null;
+        return m.getSchema();
+    }
+
+    @GetMapping("/models/{modelName}/tables")
+    public List<Map<String, Object>> listDecisionTables(@PathVariable("project") String project,
+                                                        @PathVariable("modelName") String modelName, WebRequest request) {
+        DmnMetadataIndex.ModelMetadata m = ruleProjects.require(project).getMetadataIndex().require(modelName);
+        if (request.checkNotModified(etag(m.getVersion()))) return null;
+        return m.getDecisions();
+    }
+
+    @GetMapping("/models/{modelName}/tables/{decisionName}")
+    public Map<String, Object> getDecisionTable(@PathVariable("project") String project,
+                                                @PathVariable("modelName") String modelName,
+                                                @PathVariable("decisionName") String decisionName, WebRequest request) {
+        DmnMetadataIndex.ModelMetadata m = ruleProjects.require(project).getMetadataIndex().require(modelName);
+        Map<String, Object> table = m.findTable(decisionName);
+        if (table == null) {
+            throw new RuntimeException("Decision not found: " + decisionName + " in model " + modelName);
+        }
+        if (request.checkNotModified(etag(m.getVersion()))) return null;
+        return table;
+    }
+
+    private static String etag(long version) {
+        return "\"v" + version + "\"";
+    }
+
+    @GetMapping("/models/{modelName}/analysis")
+    public Map<String, Object> getModelAnalysis(@PathVariable("project") String project,
+                                                @PathVariable("modelName") String modelName,
+                                                @RequestParam(value = "namespace", required = false) String namespace) {
+        DmnModelRegistry registry = ruleProjects.require(project).getHolder().current();
+        Map<String, Object> out = new LinkedHashMap<>(registry.analysis(registry.require(namespace, modelName)).getReport());
+        out.put("pruneDeadRows", compileMode.isPrunedTables());
+        return out;
+    }
+
+    @GetMapping("/rulesets/analysis")
+    public Map<String, Object> getRulesetAnalysis(@PathVariable("project") String project) {
+        DmnModelRegistry registry = ruleProjects.require(project).getHolder().current();
+        List<Map<String, Object>> models = new ArrayList<>();
+        int deadRows = 0;
+        for (DMNModel model : registry.getModels()) {
+            DecisionTableAnalyzer.Analysis analysis = registry.analysis(model);
+            models.add(analysis.getReport());
+            deadRows += analysis.getDeadRowCount();
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("pruneDeadRows", compileMode.isPrunedTables());
+        out.put("deadRows", deadRows);
+        out.put("models", models);
+        return out;
+    }
+
+    @GetMapping("/rulesets/current")
+    public Map<String, Object> getCurrentRuleset(@PathVariable("project") String project) {
+        Ruleset ruleset = ruleProjects.require(project).getHolder().currentRuleset();
+        Map<String, Object> out = new HashMap<>();
+        out.put("project", project);
+        out.put("version", ruleset.getVersion());
+        out.put("source", ruleset.getSource());
+        out.put("publishedAt", ruleset.getPublishedAt().toString());
+        out.put("references", ruleset.getReferenceCount());
+        return out;
+    }
+
+    @GetMapping("/rulesets/partitions")
+    public List<Map<String, Object>> getRulesetPartitions(@PathVariable("project") String project) {
+        return ruleProjects.require(project).getHolder().current().getPartitions();
+    }
+
+    // Re-reads an additional project's sources and publishes them as its next version; unchanged
+    // files keep their partitions and the other projects are not touched
+    @PostMapping("/rulesets/reload")
+    public Map<String, Object> reloadRuleset(@PathVariable("project") String project) {
+        Ruleset ruleset;
+        try {
+            ruleset = ruleProjects.require(project).reload().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("project", project);
+        out.put("version", ruleset.getVersion());
+        out.put("models", ruleset.getRegistry().getModels().size());
+        return out;
+    }
+}
@@ -0,0 +1,299 @@
+package com.infinity.controller.audit;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Binary encoding of {@link AuditRecord}s.
+ *
+ * Segment file: a 16 byte header (magic {@code DMNJ}, format version, creation time) followed by
+ * frames of {@code [int length][int crc32][payload]}. The rest of a segment is zero filled, so a
+ * length of 0 ends it. The length is written last, which together with the CRC makes a frame torn
+ * by a crash read as the end of the segment.
+ *
+ * Payload: timestamp, latency, ruleset version, namespace, model, decisions, input, outputs, error.
+ * Values carry a one byte tag; integers are zig-zag varints, decimals an unscaled value and scale,
+ * strings UTF-8 with a varint length, and the FEEL temporal types keep their type so a replayed
+ * input binds exactly like the recorded one. Anything else is written as its string form.
+ */
+final class AuditCodec {
+
+    static final int MAGIC = 0x444D4E4A; // "DMNJ"
+    static final short FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int FRAME_HEADER_SIZE = 8;
+
+    private static final byte NULL = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final byte LONG = 3;
+    private static final byte DECIMAL = 4;
+    private static final byte DOUBLE = 5;
+    private static final byte STRING = 6;
+    private static final byte LIST = 7;
+    private static final byte MAP = 8;
+    private static final byte LOCAL_DATE = 9;
+    private static final byte LOCAL_TIME = 10;
+    private static final byte LOCAL_DATE_TIME = 11;
+    private static final byte OFFSET_TIME = 12;
+    private static final byte ZONED_DATE_TIME = 13;
+    private static final byte DURATION = 14;
+    private static final byte PERIOD = 15;
+
+    private AuditCodec() {
+    }
+
+    static void writeHeader(ByteBuffer buf, long createdMillis) {
+        buf.putInt(MAGIC);
+        buf.putShort(FORMAT_VERSION);
+        buf.putShort((short) 0);
+        buf.putLong(createdMillis);
+    }
+
+    static void readHeader(ByteBuffer buf) {
+        if (buf.remaining() < HEADER_SIZE || buf.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an audit journal segment");
+        }
+        short version = buf.getShort();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported audit journal format version " + version);
+        }
+        buf.getShort();
+        buf.getLong();
+    }
+
+    /** Growable byte array the writer thread reuses for every record. */
+    static final class Encoder {
+        private byte[] bytes = new byte[4096];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        byte[] bytes() {
+            return bytes;
+        }
+
+        void record(AuditRecord r) {
+            varLong(r.getTimestampMillis());
+            varLong(r.getLatencyNanos());
+            string(r.getRulesetVersion());
+            string(r.getNamespace());
+            string(r.getModel());
+            value(r.getDecisions());
+            value(r.getInput());
+            value(r.getOutputs());
+            string(r.getError());
+        }
+
+        void value(Object v) {
+            if (v == null) {
+                put(NULL);
+            } else if (v instanceof Boolean) {
+                put((Boolean) v ? TRUE : FALSE);
+            } else if (v instanceof String) {
+                put(STRING);
+                string((String) v);
+            } else if (v instanceof BigDecimal) {
+                decimal((BigDecimal) v);
+            } else if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte) {
+                put(LONG);
+                varLong(((Number) v).longValue());
+            } else if (v instanceof BigInteger) {
+                decimal(new BigDecimal((BigInteger) v));
+            } else if (v instanceof Double || v instanceof Float) {
+                put(DOUBLE);
+                long bits = Double.doubleToLongBits(((Number) v).doubleValue());
+                for (int i = 56; i >= 0; i -= 8) put((byte) (bits >>> i));
+            } else if (v instanceof Map) {
+                Map<?, ?> m = (Map<?, ?>) v;
+                put(MAP);
+                varLong(m.size());
+                for (Map.Entry<?, ?> e : m.entrySet()) {
+                    string(String.valueOf(e.getKey()));
+                    value(e.getValue());
+                }
+            } else if (v instanceof Collection) {
+                Collection<?> c = (Collection<?>) v;
+                put(LIST);
+                varLong(c.size());
+                for (Object item : c) value(item);
+            } else if (v instanceof LocalDate) {
+                put(LOCAL_DATE);
+                varLong(((LocalDate) v).toEpochDay());
+            } else if (v instanceof LocalTime) {
+                tagged(LOCAL_TIME, v);
+            } else if (v instanceof LocalDateTime) {
+                tagged(LOCAL_DATE_TIME, v);
+            } else if (v instanceof OffsetTime) {
+                tagged(OFFSET_TIME, v);
+            } else if (v instanceof ZonedDateTime) {
+                tagged(ZONED_DATE_TIME, v);
+            } else if (v instanceof Duration) {
+                tagged(DURATION, v);
+            } else if (v instanceof Period) {
+                tagged(PERIOD, v);
+            } else {
+                put(STRING);
+                string(v.toString());
+            }
+        }
+
+        private void tagged(byte tag, Object v) {
+            put(tag);
+            string(v.toString());
+        }
+
+        private void decimal(BigDecimal d) {
+            put(DECIMAL);
+            varLong(d.scale());
+            BigInteger unscaled = d.unscaledValue();
+            if (unscaled.bitLength() < 64) {
+                // length 0 marks an unscaled value that fits a varint, the common case
+                varLong(0);
+                varLong(unscaled.longValue());
+            } else {
+                byte[] b = unscaled.toByteArray();
+                varLong(b.length);
+                put(b, 0, b.length);
+            }
+        }
+
+        // null and "" differ: a null string is written as length -1
+        void string(String s) {
+            if (s == null) {
+                varLong(-1);
+                return;
+            }
+            byte[] b = s.getBytes(StandardCharsets.UTF_8);
+            varLong(b.length);
+            put(b, 0, b.length);
+        }
+
+        void varLong(long v) {
+            long zz = (v << 1) ^ (v >> 63);
+            ensure(10);
+            while ((zz & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((zz & 0x7F) | 0x80);
+                zz >>>= 7;
+            }
+            bytes[size++] = (byte) zz;
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            bytes[size++] = b;
+        }
+
+        private void put(byte[] b, int off, int len) {
+            ensure(len);
+            System.arraycopy(b, off, bytes, size, len);
+            size += len;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    static AuditRecord decode(ByteBuffer buf) {
+        long timestamp = varLong(buf);
+        long latency = varLong(buf);
+        String version = string(buf);
+        String namespace = string(buf);
+        String model = string(buf);
+        @SuppressWarnings("unchecked")
+        List<String> decisions = (List<String>) value(buf);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> input = (Map<String, Object>) value(buf);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> outputs = (Map<String, Object>) value(buf);
+        String error = string(buf);
+        return new AuditRecord(timestamp, latency, version, namespace, model, decisions, input, outputs, error);
+    }
+
+    static Object value(ByteBuffer buf) {
+        byte tag = buf.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case LONG:
+                return varLong(buf);
+            case DECIMAL: {
+                int scale = (int) varLong(buf);
+                int length = (int) varLong(buf);
+                if (length == 0) return BigDecimal.valueOf(varLong(buf), scale);
+                byte[] b = new byte[length];
+                buf.get(b);
+                return new BigDecimal(new BigInteger(b), scale);
+            }
+            case DOUBLE:
+                return Double.longBitsToDouble(buf.getLong());
+            case STRING:
+                return string(buf);
+            case LIST: {
+                int n = (int) varLong(buf);
+                List<Object> list = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) list.add(value(buf));
+                return list;
+            }
+            case MAP: {
+                int n = (int) varLong(buf);
+                Map<String, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < n; i++) map.put(string(buf), value(buf));
+                return map;
+            }
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(varLong(buf));
+            case LOCAL_TIME:
+                return LocalTime.parse(string(buf));
+            case LOCAL_DATE_TIME:
+                return LocalDateTime.parse(string(buf));
+            case OFFSET_TIME:
+                return OffsetTime.parse(string(buf));
+            case ZONED_DATE_TIME:
+                return ZonedDateTime.parse(string(buf));
+            case DURATION:
+                return Duration.parse(string(buf));
+            case PERIOD:
+                return Period.parse(string(buf));
+            default:
+                throw new IllegalArgumentException("Unknown audit value tag " + tag + " at " + (buf.position() - 1));
+        }
+    }
+
+    static String string(ByteBuffer buf) {
+        int length = (int) varLong(buf);
+        if (length < 0) return null;
+        String s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, StandardCharsets.UTF_8);
+        buf.position(buf.position() + length);
+        return s;
+    }
+
+    static long varLong(ByteBuffer buf) {
+        long zz = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            zz |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zz >>> 1) ^ -(zz & 1);
+    }
+}
@@ -0,0 +1,293 @@
+package com.infinity.controller.audit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Asynchronous audit journal of every evaluation: input, outputs, model, ruleset version and
+ * latency.
+ *
+ * {@link #record} only puts the record into a bounded lock-free ring buffer
+ * ({@code decision.audit.buffer-size} records), so an evaluating thread never waits for the disk. A
+ * single writer thread drains the buffer in batches, encodes each record ({@link AuditCodec}) and
+ * appends it to a memory-mapped segment of {@code decision.audit.segment-size} bytes in
+ * {@code decision.audit.dir}. A record that does not fit rotates to a new segment; only the newest
+ * {@code decision.audit.max-segments} are kept (0 keeps all). Mapped pages are forced to disk every
+ * {@code decision.audit.flush-interval} and on rotation and shutdown.
+ *
+ * When the writer falls behind and the buffer is full, records are dropped and counted rather than
+ * slowing evaluations down; size the buffer for the expected bursts and watch
+ * {@code dmn.audit.dropped}. Other meters: {@code dmn.audit.records}, {@code dmn.audit.bytes} and
+ * the {@code dmn.audit.buffer.depth} gauge.
+ *
+ * Segments are read back by {@link AuditJournalReader}. Disabled unless {@code decision.audit.dir}
+ * is set.
+ */
+@Component
+public class AuditJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditJournal.class);
+
+    static final String SEGMENT_PREFIX = "audit-";
+    static final String SEGMENT_SUFFIX = ".journal";
+
+    // audit-<epoch millis>-<seq>.journal; the names sort in write order
+    private static final String SEGMENT_NAME = SEGMENT_PREFIX + "%013d-%04d" + SEGMENT_SUFFIX;
+    private static final int SEQ_MODULUS = 10_000;
+    private static final int MAX_NAME_ATTEMPTS = 16;
+
+    private static final int BATCH_SIZE = 256;
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+
+    private final Path dir;
+    private final long segmentSize;
+    private final int maxSegments;
+    private final Duration flushInterval;
+    private final AuditRingBuffer<AuditRecord> buffer;
+    private final Counter written;
+    private final Counter dropped;
+    private final Counter bytes;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    // owned by the writer thread
+    private final AuditCodec.Encoder encoder = new AuditCodec.Encoder();
+    private final CRC32 crc = new CRC32();
+    private MappedByteBuffer segment;
+    private volatile Path segmentPath;
+    private int segmentSeq;
+    // name timestamp of the newest segment, so new names never sort before existing ones
+    private long segmentMillis;
+    private boolean dirty;
+    private long lastFlush;
+
+    public AuditJournal(@Value("${decision.audit.dir:}") String dir,
+                        @Value("${decision.audit.buffer-size:65536}") int bufferSize,
+                        @Value("${decision.audit.segment-size:64MB}") DataSize segmentSize,
+                        @Value("${decision.audit.max-segments:0}") int maxSegments,
+                        @Value("${decision.audit.flush-interval:PT1S}") Duration flushInterval,
+                        MeterRegistry meterRegistry) {
+        this.dir = dir == null || dir.isBlank() ? null : Paths.get(dir).toAbsolutePath();
+        // a mapped buffer is int indexed
+        this.segmentSize = Math.min(Math.max(segmentSize.toBytes(), 64 * 1024L), Integer.MAX_VALUE);
+        this.maxSegments = Math.max(0, maxSegments);
+        this.flushInterval = flushInterval;
+        this.buffer = new AuditRingBuffer<>(bufferSize);
+        this.written = Counter.builder("dmn.audit.records").description("Evaluations written to the audit journal")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("dmn.audit.dropped").description("Evaluations dropped because the audit buffer was full")
+                .register(meterRegistry);
+        this.bytes = Counter.builder("dmn.audit.bytes").baseUnit("bytes").description("Bytes appended to the audit journal")
+                .register(meterRegistry);
+        Gauge.builder("dmn.audit.buffer.depth", buffer, AuditRingBuffer::size)
+                .description("Evaluations waiting to be written to the audit journal").register(meterRegistry);
+        if (this.dir != null) start();
+    }
+
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    private void start() {
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create audit journal directory " + dir, e);
+        }
+        resumeNaming();
+        running = true;
+        Thread t = new Thread(this::writeLoop, "audit-journal-writer");
+        t.setDaemon(true);
+        t.start();
+        writer = t;
+        logger.info("Audit journal in {}: buffer {} records, segments of {} bytes, keeping {}", dir, buffer.capacity(),
+                segmentSize, maxSegments == 0 ? "all" : maxSegments);
+    }
+
+    /** Queues a record for the writer; returns right away, dropping the record when the buffer is full. */
+    public void record(AuditRecord record) {
+        if (!running) return;
+        if (!buffer.offer(record)) dropped.increment();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = writer;
+        if (t == null) return;
+        running = false;
+        LockSupport.unpark(t);
+        try {
+            t.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writeLoop() {
+        while (true) {
+            boolean stopping = !running;
+            int n = 0;
+            AuditRecord r;
+            while (n < BATCH_SIZE && (r = buffer.poll()) != null) {
+                append(r);
+                n++;
+            }
+            if (n > 0) continue;
+            // after stop(), one more empty pass drains what producers published before seeing it
+            if (stopping) break;
+            if (dirty && System.nanoTime() - lastFlush >= flushInterval.toNanos()) flush();
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        flush();
+        logger.info("Audit journal stopped; last segment {}", segmentPath);
+    }
+
+    private void append(AuditRecord r) {
+        encoder.reset();
+        try {
+            encoder.record(r);
+        } catch (RuntimeException e) {
+            logger.warn("Could not encode audit record for model {}: {}", r.getModel(), e.getMessage());
+            dropped.increment();
+            return;
+        }
+        int length = encoder.size();
+        int frame = AuditCodec.FRAME_HEADER_SIZE + length;
+        if (frame > segmentSize - AuditCodec.HEADER_SIZE) {
+            logger.warn("Audit record of {} bytes for model {} exceeds the segment size, dropped", length, r.getModel());
+            dropped.increment();
+            return;
+        }
+        try {
+            if (segment == null || segment.remaining() < frame) rotate();
+        } catch (IOException e) {
+            logger.error("Cannot open a new audit journal segment in {}: {}", dir, e.getMessage());
+            dropped.increment();
+            return;
+        }
+        crc.reset();
+        crc.update(encoder.bytes(), 0, length);
+        int start = segment.position();
+        segment.position(start + AuditCodec.FRAME_HEADER_SIZE);
+        segment.put(encoder.bytes(), 0, length);
+        segment.putInt(start + 4, (int) crc.getValue());
+        // the length goes in last: a frame without it reads as the end of the segment
+        segment.putInt(start, length);
+        dirty = true;
+        written.increment();
+        bytes.increment(frame);
+    }
+
+    private void rotate() throws IOException {
+        flush();
+        long now = System.currentTimeMillis();
+        long millis = Math.max(now, segmentMillis);
+        Path path;
+        MappedByteBuffer mapped;
+        for (int attempt = 1; ; attempt++) {
+            // a wrapped sequence number would sort before the segments of the same millisecond
+            if (segmentSeq % SEQ_MODULUS == 0 && millis == segmentMillis) millis++;
+            path = dir.resolve(String.format(SEGMENT_NAME, millis, segmentSeq++ % SEQ_MODULUS));
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                // the mapping outlives the channel; the file is extended to the full segment, zero filled
+                mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // another writer (or a clock step) took the name; the next sequence number sorts after it
+                if (attempt >= MAX_NAME_ATTEMPTS) throw e;
+                logger.debug("Audit journal segment {} already exists, trying the next name", path);
+            }
+        }
+        segment = mapped;
+        segmentMillis = millis;
+        AuditCodec.writeHeader(segment, now);
+        segmentPath = path;
+        logger.debug("Opened audit journal segment {}", path);
+        prune();
+    }
+
+    // continues after the newest segment left by a previous run
+    private void resumeNaming() {
+        List<Path> existing = segments(dir);
+        if (existing.isEmpty()) return;
+        String name = existing.get(existing.size() - 1).getFileName().toString();
+        String stem = name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length());
+        int dash = stem.indexOf('-');
+        try {
+            segmentMillis = Long.parseLong(stem.substring(0, dash));
+            segmentSeq = Integer.parseInt(stem.substring(dash + 1)) + 1;
+        } catch (RuntimeException e) {
+            // not a name this journal wrote; the collision retry in rotate() still applies
+            logger.warn("Unexpected audit journal segment name {}", name);
+        }
+    }
+
+    private void flush() {
+        if (segment != null && dirty) segment.force();
+        dirty = false;
+        lastFlush = System.nanoTime();
+    }
+
+    private void prune() {
+        if (maxSegments == 0) return;
+        List<Path> segments = segments(dir);
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            try {
+                Files.deleteIfExists(segments.get(i));
+            } catch (IOException e) {
+                logger.warn("Could not delete old audit journal segment {}: {}", segments.get(i), e.getMessage());
+            }
+        }
+    }
+
+    /** Segment files of a journal directory, oldest first. */
+    public static List<Path> segments(Path dir) {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> out = new ArrayList<>();
+            files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }).forEach(out::add);
+            Collections.sort(out);
+            return out;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list audit journal segments in " + dir, e);
+        }
+    }
+
+    /** Directory, current segment and counters, for the status endpoint. */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", isEnabled());
+        if (!isEnabled()) return out;
+        out.put("dir", dir.toString());
+        out.put("segment", segmentPath == null ? null : segmentPath.getFileName().toString());
+        out.put("segmentSize", segmentSize);
+        out.put("bufferCapacity", buffer.capacity());
+        out.put("buffered", buffer.size());
+        out.put("written", (long) written.count());
+        out.put("dropped", (long) dropped.count());
+        out.put("bytes", (long) bytes.count());
+        return out;
+    }
+}
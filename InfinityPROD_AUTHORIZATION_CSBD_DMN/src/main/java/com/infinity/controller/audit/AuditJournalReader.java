@@ -0,0 +1,78 @@
+package com.infinity.controller.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of audit journal segments written by {@link AuditJournal}, in the order they
+ * were written. Reading stops at the zero filled end of a segment, and at a frame whose CRC does
+ * not match (a record torn by a crash), which is reported by {@link #getTornFrames()}. Segments the
+ * journal is still writing can be read; records appended after the read started may be missed.
+ */
+public final class AuditJournalReader {
+
+    private long records;
+    private long tornFrames;
+
+    /** Reads a segment file, or every segment of a journal directory oldest first. */
+    public void read(Path path, Consumer<AuditRecord> consumer) throws IOException {
+        if (Files.isDirectory(path)) {
+            for (Path segment : AuditJournal.segments(path)) readSegment(segment, consumer);
+        } else {
+            readSegment(path, consumer);
+        }
+    }
+
+    /** All records of a segment file or journal directory. */
+    public List<AuditRecord> readAll(Path path) throws IOException {
+        List<AuditRecord> out = new ArrayList<>();
+        read(path, out::add);
+        return out;
+    }
+
+    private void readSegment(Path segment, Consumer<AuditRecord> consumer) throws IOException {
+        MappedByteBuffer buf;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        AuditCodec.readHeader(buf);
+        CRC32 crc = new CRC32();
+        while (buf.remaining() >= AuditCodec.FRAME_HEADER_SIZE) {
+            int length = buf.getInt();
+            if (length == 0) return;
+            int expectedCrc = buf.getInt();
+            if (length < 0 || length > buf.remaining()) {
+                tornFrames++;
+                return;
+            }
+            // decoding reads strings straight from the array, so the payload is copied off the mapping
+            byte[] payload = new byte[length];
+            buf.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != expectedCrc) {
+                tornFrames++;
+                return;
+            }
+            consumer.accept(AuditCodec.decode(ByteBuffer.wrap(payload)));
+            records++;
+        }
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getTornFrames() {
+        return tornFrames;
+    }
+}
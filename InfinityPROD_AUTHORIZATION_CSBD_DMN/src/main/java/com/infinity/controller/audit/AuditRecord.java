@@ -0,0 +1,74 @@
+package com.infinity.controller.audit;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One evaluation as written to the audit journal: when it ran, against which ruleset version and
+ * model, the bound input, the decision results (null when the evaluation failed) and how long it
+ * took. {@code decisions} is null when every decision of the model was evaluated.
+ *
+ * Records hold the maps they were given; the journal encodes them on its writer thread, so they
+ * must not be changed after an evaluation returned them.
+ */
+public final class AuditRecord {
+
+    private final long timestampMillis;
+    private final long latencyNanos;
+    private final String rulesetVersion;
+    private final String namespace;
+    private final String model;
+    private final List<String> decisions;
+    private final Map<String, Object> input;
+    private final Map<String, Object> outputs;
+    private final String error;
+
+    public AuditRecord(long timestampMillis, long latencyNanos, String rulesetVersion, String namespace, String model,
+                       List<String> decisions, Map<String, Object> input, Map<String, Object> outputs, String error) {
+        this.timestampMillis = timestampMillis;
+        this.latencyNanos = latencyNanos;
+        this.rulesetVersion = rulesetVersion;
+        this.namespace = namespace;
+        this.model = model;
+        this.decisions = decisions;
+        this.input = input;
+        this.outputs = outputs;
+        this.error = error;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public String getRulesetVersion() {
+        return rulesetVersion;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public List<String> getDecisions() {
+        return decisions;
+    }
+
+    public Map<String, Object> getInput() {
+        return input;
+    }
+
+    public Map<String, Object> getOutputs() {
+        return outputs;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
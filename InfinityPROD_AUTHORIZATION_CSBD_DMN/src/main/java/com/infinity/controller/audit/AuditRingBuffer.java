@@ -0,0 +1,60 @@
+package com.infinity.controller.audit;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue between the evaluating threads (many producers) and the journal writer
+ * (a single consumer).
+ *
+ * A producer claims a sequence number with a CAS on {@code tail} and then publishes its element
+ * into the slot of that sequence; the consumer takes slots in sequence order, clears them and
+ * advances {@code head}. A claimed slot that is not published yet reads as null, so the consumer
+ * simply stops there until the next poll. {@link #offer} never waits: when the buffer is full the
+ * element is refused and the caller decides what to do with it.
+ */
+final class AuditRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    AuditRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    /** Adds the element, or returns false when the buffer is full. Safe for any number of threads. */
+    boolean offer(E element) {
+        long t;
+        do {
+            t = tail.get();
+            if (t - head.get() > mask) return false;
+        } while (!tail.compareAndSet(t, t + 1));
+        slots.lazySet((int) t & mask, element);
+        return true;
+    }
+
+    /** Next element in sequence order, or null when there is none (yet). Single consumer only. */
+    E poll() {
+        long h = head.get();
+        int slot = (int) h & mask;
+        E element = slots.get(slot);
+        if (element == null) return null;
+        // the slot is cleared before head moves, so a producer never claims a slot still in use
+        slots.lazySet(slot, null);
+        head.lazySet(h + 1);
+        return element;
+    }
+
+    /** Elements claimed and not yet taken; approximate while producers are active. */
+    int size() {
+        return (int) Math.max(0L, tail.get() - head.get());
+    }
+}
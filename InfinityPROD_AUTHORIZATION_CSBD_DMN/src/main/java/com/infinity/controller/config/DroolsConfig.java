@@ -1,14 +1,36 @@
 package com.infinity.controller.config;
 
-import org.kie.api.KieServices;
-import org.kie.api.runtime.KieContainer;
+import com.infinity.controller.dmn.DmnCompileMode;
+import com.infinity.controller.dmn.DmnModelRegistry;
+import com.infinity.controller.dmn.DmnStartupReport;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 public class DroolsConfig {
+    // Runtime-compiled FIRST hit tables are evaluated through an equality index unless
+    // decision.tables.indexed=false; decision.tables.prune-dead-rows leaves the rows DecisionTableAnalyzer
+    // proves dead out of them, and with decision.bkm.memo.enabled pure BKMs are memoized within each
+    // evaluation. Written into the kmodule configuration of every build
+    @Bean
+    public DmnCompileMode dmnCompileMode(@Value("${decision.tables.indexed:true}") boolean indexedTables,
+                                         @Value("${decision.tables.prune-dead-rows:false}") boolean prunedTables,
+                                         @Value("${decision.bkm.memo.enabled:false}") boolean bkmMemo,
+                                         @Value("${decision.bkm.memo.pure:}") List<String> pureBkms,
+                                         @Value("${decision.bkm.memo.exclude:}") List<String> excludedBkms) {
+        return new DmnCompileMode(indexedTables, prunedTables, bkmMemo, pureBkms, excludedBkms);
+    }
+
+    // Build every DMN file into a KieBase of its own, in parallel, unless decision.partitions.enabled=false;
+    // partitions and the single classpath container prefer the DMN artifacts precompiled by the build,
+    // missing, stale or unusable ones fall back to compiling at runtime
     @Bean
-    public KieContainer kieContainer() {
-        return KieServices.get().getKieClasspathContainer();
+    public DmnModelRegistry classpathRegistry(DmnStartupReport startupReport,
+                                              @Value("${decision.partitions.enabled:true}") boolean partitioned,
+                                              @Value("${decision.precompiled.enabled:true}") boolean precompiled) {
+        return startupReport.loadClasspathRegistry(precompiled, partitioned);
     }
 }
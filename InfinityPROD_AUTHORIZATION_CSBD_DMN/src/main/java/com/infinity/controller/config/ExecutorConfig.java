@@ -0,0 +1,93 @@
+package com.infinity.controller.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ExecutorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExecutorConfig.class);
+
+    // Worker pool shared by batch evaluations and claim line fan-out; defaults to one thread per core.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService decisionBatchExecutor(@Value("${decision.batch.threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(size, namedThreadFactory("decision-batch-"));
+    }
+
+    // Regression gate replays (see RegressionGate), kept off the batch pool so live batches do not skew
+    // the p95 comparison of current and candidate rules; gates run one at a time on the build executor
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService regressionGateExecutor(@Value("${decision.gate.threads:2}") int threads) {
+        return Executors.newFixedThreadPool(Math.max(1, threads), namedThreadFactory("regression-gate-"));
+    }
+
+    // Single thread so ruleset compilations run one at a time and off the request threads
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService rulesetBuildExecutor() {
+        return Executors.newSingleThreadExecutor(namedThreadFactory("ruleset-build-"));
+    }
+
+    // Compiles the partitions of a ruleset (one per DMN file) in parallel; defaults to one thread per core.
+    // Startup and the build executor submit here, so at most one ruleset compiles at a time
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService rulesetCompileExecutor(@Value("${decision.partitions.threads:0}") int threads) {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        return Executors.newFixedThreadPool(size, namedThreadFactory("ruleset-compile-"));
+    }
+
+    // Single thread so patched rules are written to disk or the ruleset store in the order they went live
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService rulesetPersistExecutor() {
+        return Executors.newSingleThreadExecutor(namedThreadFactory("ruleset-persist-"));
+    }
+
+    // Runs admitted request evaluations so they can be given a deadline (see EvaluationBulkhead). One
+    // virtual thread per evaluation on Java 21+; the per-model bulkheads bound the platform-thread
+    // fallback on older JVMs.
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService decisionRequestExecutor(@Value("${decision.execution.virtual-threads:true}") boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                // looked up reflectively so the service still builds and runs on Java 17
+                ExecutorService executor = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                logger.info("Decision evaluations run on virtual threads");
+                return executor;
+            } catch (ReflectiveOperationException e) {
+                logger.warn("Virtual threads need Java 21 (running {}); using platform threads", Runtime.version());
+            }
+        }
+        return Executors.newCachedThreadPool(namedThreadFactory("decision-eval-"));
+    }
+
+    // Thread budget of shadow evaluations (see ShadowEvaluator); samples beyond the queue are dropped
+    // rather than queued without bound, so a slow candidate cannot build up memory
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService shadowEvaluationExecutor(@Value("${decision.shadow.threads:2}") int threads,
+                                                    @Value("${decision.shadow.max-queue:256}") int maxQueue) {
+        int size = Math.max(1, threads);
+        return new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueue)), namedThreadFactory("decision-shadow-"));
+    }
+
+    static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,308 @@
+package com.infinity.controller.dmn;
+
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.DMNResult;
+import org.kie.dmn.api.core.ast.BusinessKnowledgeModelNode;
+import org.kie.dmn.api.core.event.DMNRuntimeEventManager;
+import org.kie.dmn.core.api.DMNExpressionEvaluator;
+import org.kie.dmn.core.api.EvaluatorResult;
+import org.kie.dmn.core.ast.BusinessKnowledgeModelNodeImpl;
+import org.kie.dmn.core.ast.DMNBaseNode;
+import org.kie.dmn.core.ast.EvaluatorResultImpl;
+import org.kie.dmn.core.compiler.DMNCompilerContext;
+import org.kie.dmn.core.compiler.DMNDecisionLogicCompiler;
+import org.kie.dmn.core.impl.DMNModelImpl;
+import org.kie.dmn.feel.lang.EvaluationContext;
+import org.kie.dmn.feel.runtime.FEELFunction;
+import org.kie.dmn.feel.runtime.functions.BaseFEELFunction;
+import org.kie.dmn.model.api.BusinessKnowledgeModel;
+import org.kie.dmn.model.api.Context;
+import org.kie.dmn.model.api.ContextEntry;
+import org.kie.dmn.model.api.DecisionRule;
+import org.kie.dmn.model.api.DecisionTable;
+import org.kie.dmn.model.api.Expression;
+import org.kie.dmn.model.api.FunctionDefinition;
+import org.kie.dmn.model.api.FunctionKind;
+import org.kie.dmn.model.api.InputClause;
+import org.kie.dmn.model.api.Invocation;
+import org.kie.dmn.model.api.KnowledgeRequirement;
+import org.kie.dmn.model.api.LiteralExpression;
+import org.kie.dmn.model.api.OutputClause;
+import org.kie.dmn.model.api.Relation;
+import org.kie.dmn.model.api.UnaryTests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Memoizes invocations of pure business knowledge models within a single evaluation.
+ *
+ * The engine evaluates a BKM node once per evaluation into a function bound to that evaluation, and
+ * decisions invoke it, often several times with the same arguments (e.g. {@code Validate Units
+ * Available(... .Data.Auth)} along the PHT rule chain). When the {@link DmnCompileMode} of a build
+ * enables it, {@link Compiler} wraps the function of every pure BKM so that each evaluation gets its
+ * own memo, keyed by argument: contexts and lists by identity (chained decisions pass the same instance along, and FEEL values are not
+ * modified once built), other values by equality. The memo goes away with the evaluation, so nothing
+ * is shared between evaluations or threads.
+ *
+ * A BKM is detected as pure when it is a FEEL function whose body and required BKMs neither call
+ * {@code now()} or {@code today()} nor use a boxed expression this class does not know. BKMs can be
+ * declared pure by name ({@code decision.bkm.memo.pure}) or excluded ({@code decision.bkm.memo.exclude}).
+ *
+ * A memo hit skips the BKM body and its invoke events, so {@code dmn.bkm.invocations} only counts
+ * misses. Each memoized BKM counts its hits and misses into a {@link Stats}; once a ruleset is
+ * published they are pointed at counters shared across ruleset versions ({@link #bind}, see
+ * {@link com.infinity.controller.metrics.BkmMemoMetrics}).
+ */
+public final class BkmMemo {
+
+    private static final Logger logger = LoggerFactory.getLogger(BkmMemo.class);
+
+    private static final Pattern CLOCK = Pattern.compile("\\b(now|today)\\s*\\(");
+
+    private BkmMemo() {
+    }
+
+    /** Whether the compiled BKM was wrapped for memoization. */
+    public static boolean isMemoized(BusinessKnowledgeModelNode bkm) {
+        return memo(bkm) != null;
+    }
+
+    /** Makes the memo of a compiled BKM count into the given stats from the next evaluation on. */
+    public static void bind(BusinessKnowledgeModelNode bkm, Stats stats) {
+        MemoizingEvaluator memo = memo(bkm);
+        if (memo != null) memo.stats = stats;
+    }
+
+    private static MemoizingEvaluator memo(BusinessKnowledgeModelNode bkm) {
+        if (!(bkm instanceof BusinessKnowledgeModelNodeImpl)) return null;
+        DMNExpressionEvaluator evaluator = ((BusinessKnowledgeModelNodeImpl) bkm).getEvaluator();
+        return evaluator instanceof MemoizingEvaluator ? (MemoizingEvaluator) evaluator : null;
+    }
+
+    /** Whether a BKM of the model may be memoized: declared pure, or detected pure and not excluded. */
+    static boolean isPure(DMNModel model, BusinessKnowledgeModelNode bkm, Set<String> declaredPure, Set<String> excluded) {
+        if (excluded.contains(bkm.getName())) return false;
+        return declaredPure.contains(bkm.getName()) || detectPure(model, bkm, declaredPure, excluded, new HashSet<>());
+    }
+
+    private static boolean detectPure(DMNModel model, BusinessKnowledgeModelNode bkm, Set<String> declaredPure,
+                                      Set<String> excluded, Set<String> visiting) {
+        // a cycle is judged by the BKMs on it
+        if (!visiting.add(bkm.getId())) return true;
+        BusinessKnowledgeModel definition = bkm.getBusinessKnowledModel();
+        if (!isPure(definition.getEncapsulatedLogic())) return false;
+        for (KnowledgeRequirement requirement : definition.getKnowledgeRequirement()) {
+            BusinessKnowledgeModelNode required = requiredBkm(model, requirement);
+            if (required == null || excluded.contains(required.getName())) return false;
+            if (!declaredPure.contains(required.getName())
+                    && !detectPure(model, required, declaredPure, excluded, visiting)) return false;
+        }
+        return true;
+    }
+
+    // BKMs of imported models are not looked into
+    private static BusinessKnowledgeModelNode requiredBkm(DMNModel model, KnowledgeRequirement requirement) {
+        if (requirement.getRequiredKnowledge() == null) return null;
+        String href = requirement.getRequiredKnowledge().getHref();
+        if (href == null || !href.startsWith("#")) return null;
+        String id = href.substring(1);
+        for (BusinessKnowledgeModelNode bkm : model.getBusinessKnowledgeModels()) {
+            if (id.equals(bkm.getId())) return bkm;
+        }
+        return null;
+    }
+
+    private static boolean isPure(Expression e) {
+        if (e == null) return true;
+        if (e instanceof LiteralExpression) return isPure(((LiteralExpression) e).getText());
+        if (e instanceof FunctionDefinition) {
+            FunctionDefinition f = (FunctionDefinition) e;
+            return (f.getKind() == null || f.getKind() == FunctionKind.FEEL) && isPure(f.getExpression());
+        }
+        if (e instanceof Context) {
+            for (ContextEntry entry : ((Context) e).getContextEntry()) {
+                if (!isPure(entry.getExpression())) return false;
+            }
+            return true;
+        }
+        if (e instanceof DecisionTable) {
+            DecisionTable dt = (DecisionTable) e;
+            for (InputClause input : dt.getInput()) {
+                if (!isPure(input.getInputExpression())) return false;
+            }
+            for (OutputClause output : dt.getOutput()) {
+                if (!isPure(output.getDefaultOutputEntry())) return false;
+            }
+            for (DecisionRule rule : dt.getRule()) {
+                for (UnaryTests test : rule.getInputEntry()) {
+                    if (!isPure(test.getText())) return false;
+                }
+                for (LiteralExpression output : rule.getOutputEntry()) {
+                    if (!isPure(output)) return false;
+                }
+            }
+            return true;
+        }
+        if (e instanceof Invocation) {
+            Invocation invocation = (Invocation) e;
+            if (!isPure(invocation.getExpression())) return false;
+            return invocation.getBinding().stream().allMatch(b -> isPure(b.getExpression()));
+        }
+        if (e instanceof org.kie.dmn.model.api.List) {
+            return ((org.kie.dmn.model.api.List) e).getExpression().stream().allMatch(BkmMemo::isPure);
+        }
+        if (e instanceof Relation) {
+            return ((Relation) e).getRow().stream().allMatch(BkmMemo::isPure);
+        }
+        return false;
+    }
+
+    private static boolean isPure(String feel) {
+        return feel == null || !CLOCK.matcher(feel).find();
+    }
+
+    /** Wraps the encapsulated logic of pure BKMs; every other expression is compiled by the delegate unchanged. */
+    static final class Compiler implements DMNDecisionLogicCompiler {
+        private final DMNDecisionLogicCompiler delegate;
+        // BKM names from decision.bkm.memo.pure and decision.bkm.memo.exclude
+        private final Set<String> declaredPure;
+        private final Set<String> excluded;
+
+        Compiler(DMNDecisionLogicCompiler delegate, Set<String> declaredPure, Set<String> excluded) {
+            this.delegate = delegate;
+            this.declaredPure = declaredPure;
+            this.excluded = excluded;
+        }
+
+        @Override
+        public DMNExpressionEvaluator compileExpression(DMNCompilerContext ctx, DMNModelImpl model, DMNBaseNode node,
+                                                        String exprName, Expression expression) {
+            DMNExpressionEvaluator evaluator = delegate.compileExpression(ctx, model, node, exprName, expression);
+            if (evaluator == null || !(node instanceof BusinessKnowledgeModelNode) || !(expression instanceof FunctionDefinition)) {
+                return evaluator;
+            }
+            BusinessKnowledgeModelNode bkm = (BusinessKnowledgeModelNode) node;
+            // function definitions nested in the body are compiled for the same node
+            if (bkm.getBusinessKnowledModel().getEncapsulatedLogic() != expression) return evaluator;
+            if (!isPure(model, bkm, declaredPure, excluded)) {
+                logger.debug("BKM '{}' of model '{}' is not memoized", bkm.getName(), model.getName());
+                return evaluator;
+            }
+            return new MemoizingEvaluator(evaluator, new Stats());
+        }
+    }
+
+    private static final class MemoizingEvaluator implements DMNExpressionEvaluator {
+        private final DMNExpressionEvaluator delegate;
+        // replaced by the shared counters when the ruleset is published
+        private volatile Stats stats;
+
+        MemoizingEvaluator(DMNExpressionEvaluator delegate, Stats stats) {
+            this.delegate = delegate;
+            this.stats = stats;
+        }
+
+        @Override
+        public EvaluatorResult evaluate(DMNRuntimeEventManager eventManager, DMNResult result) {
+            EvaluatorResult function = delegate.evaluate(eventManager, result);
+            if (function.getResultType() != EvaluatorResult.ResultType.SUCCESS || !(function.getResult() instanceof FEELFunction)) {
+                return function;
+            }
+            return new EvaluatorResultImpl(new MemoizedFunction((FEELFunction) function.getResult(), stats),
+                    EvaluatorResult.ResultType.SUCCESS);
+        }
+    }
+
+    /**
+     * The function of one BKM for one evaluation. Public because the FEEL runtime finds
+     * {@link #invoke} reflectively, as for the engine's own DMN functions: named arguments are put
+     * in {@link #getParameters()} order before the call.
+     */
+    public static final class MemoizedFunction extends BaseFEELFunction {
+        private final FEELFunction target;
+        private final Stats stats;
+        // an evaluation runs on a single thread
+        private final Map<Arguments, Object> memo = new HashMap<>();
+
+        MemoizedFunction(FEELFunction target, Stats stats) {
+            super(target.getName());
+            this.target = target;
+            this.stats = stats;
+        }
+
+        public Object invoke(EvaluationContext ctx, Object[] params) {
+            Arguments key = new Arguments(params);
+            Object value = memo.get(key);
+            if (value != null || memo.containsKey(key)) {
+                stats.hits.increment();
+                return value;
+            }
+            value = target.invokeReflectively(ctx, params);
+            memo.put(key, value);
+            stats.misses.increment();
+            return value;
+        }
+
+        @Override
+        public List<List<Param>> getParameters() {
+            return target.getParameters();
+        }
+
+        @Override
+        protected boolean isCustomFunction() {
+            return true;
+        }
+    }
+
+    /** Contexts and lists compare by identity, everything else by equality. */
+    private static final class Arguments {
+        private final Object[] values;
+        private final int hash;
+
+        Arguments(Object[] values) {
+            this.values = values.clone();
+            int h = 1;
+            for (Object v : this.values) h = 31 * h + (byIdentity(v) ? System.identityHashCode(v) : Objects.hashCode(v));
+            this.hash = h;
+        }
+
+        private static boolean byIdentity(Object v) {
+            return v instanceof Map || v instanceof Collection;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Arguments)) return false;
+            Object[] other = ((Arguments) o).values;
+            if (other.length != values.length) return false;
+            for (int i = 0; i < values.length; i++) {
+                Object a = values[i], b = other[i];
+                if (byIdentity(a) || byIdentity(b) ? a != b : !Objects.equals(a, b)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /** Hits and misses of one memoized BKM. */
+    public static final class Stats {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.infinity.controller.dmn;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.kie.dmn.api.core.DMNModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adjudicates a whole claim in one request: every line runs the line pipeline of
+ * {@link ServiceCategoryRouter} (universal, category model, line denial) in parallel, then the claim
+ * denial model runs once on the line outcomes instead of once per line.
+ *
+ * The body is a claim denial payload whose {@code Data.Lines} holds the lines. The rest of
+ * {@code Data} (Auth, Claim, ...) is claim and auth scoped: it is read once and shared, not copied,
+ * by the line payloads, which only add their own {@code Data.Line}. Lines are fanned out over the
+ * batch executor against the caller's pinned ruleset, at most {@code decision.claim.max-parallel-lines}
+ * at a time. Before the claim model runs,
+ * {@code Data.allLinesDeniedAuthOnFile} and {@code Data.allLinesNoAuthOnFile} are derived from the
+ * line recommendation messages, unless the caller supplied them.
+ *
+ * Stage timings (line fan-out, slowest line, time per model summed over the lines, claim model) are
+ * returned with the result and recorded as {@code dmn.claim.stage}.
+ */
+@Service
+public class ClaimAdjudicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClaimAdjudicator.class);
+
+    static final String DATA = "Data";
+    static final String LINES = "Lines";
+    static final String LINE = "Line";
+    static final String ALL_DENIED_AUTH_ON_FILE = "allLinesDeniedAuthOnFile";
+    static final String ALL_NO_AUTH_ON_FILE = "allLinesNoAuthOnFile";
+
+    @Autowired
+    private ServiceCategoryRouter serviceCategoryRouter;
+
+    @Autowired
+    private DecisionEvaluator decisionEvaluator;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("decisionBatchExecutor")
+    private ExecutorService decisionBatchExecutor;
+
+    @Value("${decision.routing.claim-denial-model:claim_level_denial}")
+    private String claimDenialModel;
+
+    @Value("${decision.claim.max-lines:1000}")
+    private int maxLines;
+
+    // lines of one claim evaluated at once; keep below the line model's bulkhead limit
+    @Value("${decision.claim.max-parallel-lines:6}")
+    private int maxParallelLines;
+
+    // line Recommendation.Message prefixes (case-insensitive) behind the claim model's all-lines flags
+    @Value("${decision.claim.denied-auth-on-file-prefixes:Tag denied}")
+    private List<String> deniedAuthOnFilePrefixes;
+
+    @Value("${decision.claim.no-auth-on-file-prefixes:No approved authorization found}")
+    private List<String> noAuthOnFilePrefixes;
+
+    /**
+     * Evaluates the claim against a pinned ruleset. The projection trims the claim model result as
+     * for single evaluations; with anything but {@code full} the line stages keep their timings only.
+     */
+    public Map<String, Object> adjudicate(Ruleset ruleset, Map<String, Object> claim, ResponseProjection projection,
+                                          boolean useCache) {
+        long start = System.nanoTime();
+        Map<String, Object> data = claimData(claim);
+        List<Map<String, Object>> lines = lines(data);
+
+        // claim and auth scoped data, shared by every line payload
+        Map<String, Object> shared = new LinkedHashMap<>(data);
+        shared.remove(LINES);
+
+        long linesStart = System.nanoTime();
+        List<Map<String, Object>> lineResults = evaluateLines(ruleset, claim, shared, lines, useCache);
+        long linesNanos = System.nanoTime() - linesStart;
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("rulesetVersion", ruleset.getVersion());
+        out.put("lines", lineResults);
+
+        Map<String, Object> timings = new LinkedHashMap<>();
+        timings.put("linesMicros", linesNanos / 1_000);
+        timings.put("slowestLineMicros", lineResults.stream().mapToLong(l -> (Long) l.get("elapsedMicros")).max().orElse(0));
+        timings.put("lineStageMicros", stageTotals(lineResults));
+        if (projection != ResponseProjection.FULL) lineResults.forEach(ClaimAdjudicator::dropStageResults);
+
+        long failed = lineResults.stream().filter(l -> l.containsKey("error")).count();
+        if (failed > 0) {
+            // the all-lines flags cannot be derived, so the claim model is not run
+            out.put("error", failed + " of " + lineResults.size() + " lines failed");
+        } else {
+            Map<String, Object> claimData = new LinkedHashMap<>(data);
+            Map<String, Object> aggregate = aggregate(lineResults, claimData);
+            out.put("aggregate", aggregate);
+            claimData.putAll(aggregate);
+            Map<String, Object> claimInput = new LinkedHashMap<>(claim);
+            claimInput.put(DATA, claimData);
+
+            long claimStart = System.nanoTime();
+            out.put("claim", evaluateClaim(ruleset, claimInput, projection, useCache));
+            long claimNanos = System.nanoTime() - claimStart;
+            timings.put("claimMicros", claimNanos / 1_000);
+            record("claim", claimNanos);
+        }
+        long totalNanos = System.nanoTime() - start;
+        timings.put("totalMicros", totalNanos / 1_000);
+        out.put("timings", timings);
+        record("lines", linesNanos);
+        record("total", totalNanos);
+        logger.debug("Adjudicated claim with {} lines in {} us ({} failed)", lines.size(), totalNanos / 1_000, failed);
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> claimData(Map<String, Object> claim) {
+        if (!(claim.get(DATA) instanceof Map)) throw new IllegalArgumentException("Claim payload has no Data object");
+        return (Map<String, Object>) claim.get(DATA);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> lines(Map<String, Object> data) {
+        if (!(data.get(LINES) instanceof List) || ((List<?>) data.get(LINES)).isEmpty()) {
+            throw new IllegalArgumentException("Claim payload has no lines (Data.Lines)");
+        }
+        List<?> lines = (List<?>) data.get(LINES);
+        if (lines.size() > maxLines) {
+            throw new IllegalArgumentException("Claim has " + lines.size() + " lines, at most " + maxLines + " are accepted");
+        }
+        List<Map<String, Object>> out = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            if (!(lines.get(i) instanceof Map)) throw new IllegalArgumentException("Data.Lines[" + i + "] is not an object");
+            out.add((Map<String, Object>) lines.get(i));
+        }
+        return out;
+    }
+
+    private Map<String, Object> evaluateLine(Ruleset ruleset, int index, Map<String, Object> input, boolean useCache) {
+        long start = System.nanoTime();
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        try {
+            Map<String, Object> result = serviceCategoryRouter.pipeline(ruleset, null, ServiceCategoryRouter.DenialLevel.LINE,
+                    input, useCache);
+            result.remove("rulesetVersion");
+            line.putAll(result);
+        } catch (EvaluationBulkhead.BulkheadFullException | EvaluationBulkhead.DeadlineExceededException e) {
+            // overload fails the whole claim so the client backs off
+            throw e;
+        } catch (RuntimeException e) {
+            logger.debug("Claim line {} failed: {}", index, e.getMessage());
+            line.put("error", e.getMessage());
+        }
+        line.put("elapsedMicros", (System.nanoTime() - start) / 1_000);
+        return line;
+    }
+
+    /**
+     * Runs the lines with at most {@code maxParallelLines} in flight, so one claim stays within the
+     * line model's bulkhead. After an overload failure no further line starts; the lines in flight are
+     * awaited before it is rethrown, so none runs on after the caller releases the ruleset.
+     */
+    private List<Map<String, Object>> evaluateLines(Ruleset ruleset, Map<String, Object> claim, Map<String, Object> shared,
+                                                    List<Map<String, Object>> lines, boolean useCache) {
+        List<Map<String, Object>> results = new ArrayList<>(Collections.nCopies(lines.size(), null));
+        CompletionService<Map<String, Object>> completion = new ExecutorCompletionService<>(decisionBatchExecutor);
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        int next = 0;
+        int inFlight = 0;
+        while (inFlight > 0 || (failure == null && next < lines.size())) {
+            if (failure == null && next < lines.size() && inFlight < maxParallelLines) {
+                Map<String, Object> lineData = new LinkedHashMap<>(shared);
+                lineData.put(LINE, lines.get(next));
+                Map<String, Object> input = new LinkedHashMap<>(claim);
+                input.put(DATA, lineData);
+                int index = next++;
+                completion.submit(() -> evaluateLine(ruleset, index, input, useCache));
+                inFlight++;
+                continue;
+            }
+            Future<Map<String, Object>> done;
+            try {
+                done = completion.take();
+            } catch (InterruptedException e) {
+                // keep draining; the lines in flight still hold the ruleset
+                interrupted = true;
+                if (failure == null) failure = new IllegalStateException("Interrupted while waiting for claim lines", e);
+                continue;
+            }
+            inFlight--;
+            try {
+                Map<String, Object> line = done.get();
+                results.set((Integer) line.get("index"), line);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause() instanceof RuntimeException
+                            ? (RuntimeException) e.getCause() : new IllegalStateException("Claim line failed", e.getCause());
+                }
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw failure;
+        return results;
+    }
+
+    // elapsed time per model, summed over the lines
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long> stageTotals(List<Map<String, Object>> lines) {
+        Map<String, Long> totals = new LinkedHashMap<>();
+        for (Map<String, Object> line : lines) {
+            Object stages = line.get("stages");
+            if (!(stages instanceof List)) continue;
+            for (Map<String, Object> stage : (List<Map<String, Object>>) stages) {
+                totals.merge((String) stage.get("model"), (Long) stage.get("elapsedMicros"), Long::sum);
+            }
+        }
+        return totals;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void dropStageResults(Map<String, Object> line) {
+        Object stages = line.get("stages");
+        if (stages instanceof List) ((List<Map<String, Object>>) stages).forEach(stage -> stage.remove("result"));
+    }
+
+    /** The all-lines flags of the claim model; flags the caller supplied are kept. */
+    private Map<String, Object> aggregate(List<Map<String, Object>> lines, Map<String, Object> claimData) {
+        boolean allDeniedAuthOnFile = true;
+        boolean allNoAuthOnFile = true;
+        for (Map<String, Object> line : lines) {
+            String message = message(line.get("recommendation"));
+            allDeniedAuthOnFile &= startsWithAny(message, deniedAuthOnFilePrefixes);
+            allNoAuthOnFile &= startsWithAny(message, noAuthOnFilePrefixes);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put(ALL_DENIED_AUTH_ON_FILE, claimData.get(ALL_DENIED_AUTH_ON_FILE) != null
+                ? claimData.get(ALL_DENIED_AUTH_ON_FILE) : allDeniedAuthOnFile);
+        out.put(ALL_NO_AUTH_ON_FILE, claimData.get(ALL_NO_AUTH_ON_FILE) != null
+                ? claimData.get(ALL_NO_AUTH_ON_FILE) : allNoAuthOnFile);
+        return out;
+    }
+
+    private static String message(Object recommendation) {
+        if (!(recommendation instanceof Map)) return null;
+        Object message = ((Map<?, ?>) recommendation).get("Message");
+        return message == null ? null : message.toString();
+    }
+
+    private static boolean startsWithAny(String message, List<String> prefixes) {
+        if (message == null) return false;
+        for (String prefix : prefixes) {
+            String p = prefix.trim();
+            if (!p.isEmpty() && message.regionMatches(true, 0, p, 0, p.length())) return true;
+        }
+        return false;
+    }
+
+    private Map<String, Object> evaluateClaim(Ruleset ruleset, Map<String, Object> input, ResponseProjection projection,
+                                              boolean useCache) {
+        DmnModelRegistry registry = ruleset.getRegistry();
+        DMNModel model = registry.require(null, claimDenialModel);
+        List<String> targets = projection.targets(registry, model, null);
+        DecisionPlan plan = targets == null || targets.isEmpty() ? null : registry.plan(model, targets);
+        return projection.apply(decisionEvaluator.evaluate(ruleset, model, plan, input, useCache));
+    }
+
+    private void record(String stage, long nanos) {
+        meterRegistry.timer("dmn.claim.stage", "stage", stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
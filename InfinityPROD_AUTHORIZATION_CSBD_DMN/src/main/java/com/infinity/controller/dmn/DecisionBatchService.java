@@ -0,0 +1,272 @@
+package com.infinity.controller.dmn;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kie.dmn.api.core.DMNModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates a stream of request payloads against one model and writes one NDJSON line per payload.
+ *
+ * Payloads are read one at a time with the Jackson streaming parser (either a top-level JSON array
+ * or whitespace separated objects), bound to the model's input types by its {@link InputBinder}
+ * and fanned out over the shared batch executor. Every evaluated item is recorded in the audit journal
+ * like a single evaluation. Items with type errors get an error line with the offending field paths
+ * and do not stop the batch; malformed JSON does (see {@link #evaluate}). At most
+ * {@code decision.batch.max-in-flight} payloads are parsed but not yet written, so heap use does not
+ * depend on the size of the batch.
+ */
+@Service
+public class DecisionBatchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionBatchService.class);
+
+    private static final byte NEWLINE = '\n';
+
+    public enum Order {
+        INPUT, COMPLETION;
+
+        /** Parses an order name (case-insensitive); blank means {@code input}. */
+        public static Order parse(String value) {
+            if (value == null || value.isBlank()) return INPUT;
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown order '" + value + "', expected input or completion");
+            }
+        }
+    }
+
+    @Autowired
+    private DecisionEvaluator decisionEvaluator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("decisionBatchExecutor")
+    private ExecutorService decisionBatchExecutor;
+
+    @Value("${decision.batch.max-in-flight:256}")
+    private int maxInFlight;
+
+    /**
+     * Streams results for every payload in {@code in} to {@code out}. A null model name selects the
+     * default model. The caller pins the ruleset for the whole batch so every line is evaluated
+     * against the same rules; no item runs once this returns. Returns the number of payloads processed.
+     *
+     * Malformed input fails with an {@link IllegalArgumentException} or {@link JsonProcessingException}
+     * while nothing has been written yet. Once lines are out the response status is sent, so the items
+     * read so far are written and the stream ends with an error line ({@code "aborted": true}) instead.
+     */
+    public long evaluate(Ruleset ruleset, String namespace, String modelName, Order order,
+                         InputStream in, OutputStream out) throws IOException {
+        DmnModelRegistry registry = ruleset.getRegistry();
+        DMNModel model = modelName == null ? registry.getDefaultModel() : registry.require(namespace, modelName);
+        InputBinder binder = registry.binder(model);
+
+        long count = 0;
+        Lines lines = new Lines(out, order);
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            try {
+                JsonToken token = parser.nextToken();
+                boolean array = token == JsonToken.START_ARRAY;
+                if (array) token = parser.nextToken();
+
+                while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                    if (token != JsonToken.START_OBJECT) {
+                        throw new IllegalArgumentException("Expected a JSON object for batch item " + count + " but found " + token);
+                    }
+                    long index = count++;
+                    Callable<byte[]> task;
+                    try {
+                        // bound on the reading thread: the parser can only be consumed in order
+                        Map<String, Object> payload = binder.bind(parser);
+                        task = () -> evaluateLine(ruleset, model, index, payload);
+                    } catch (InputBinder.InputBindingException e) {
+                        task = () -> errorLine(index, e);
+                    }
+                    lines.submit(task);
+                    token = parser.nextToken();
+                }
+            } catch (JsonProcessingException | IllegalArgumentException e) {
+                if (lines.written == 0) throw e;
+                lines.finish();
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("index", count);
+                line.put("error", e.getMessage());
+                line.put("aborted", true);
+                lines.write(toBytes(line));
+                out.flush();
+                logger.warn("Batch against model '{}' aborted after {} payloads: {}", model.getName(), count, e.getMessage());
+                return count;
+            }
+            lines.finish();
+        } finally {
+            lines.close();
+        }
+        out.flush();
+        logger.info("Evaluated batch of {} payloads against model '{}'", count, model.getName());
+        return count;
+    }
+
+    /**
+     * The items of one batch on the batch executor, written in input or completion order with at most
+     * {@code maxInFlight} not yet written. Once closed, items that have not started do nothing and
+     * {@link #close} waits for those running, so none outlives the pinned ruleset.
+     */
+    private final class Lines {
+        private final OutputStream out;
+        private final Order order;
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        private final CompletionService<byte[]> completion = new ExecutorCompletionService<>(decisionBatchExecutor);
+        private final Set<Future<byte[]>> unwritten = new HashSet<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private volatile boolean closed;
+        private int inFlight;
+        long written;
+
+        Lines(OutputStream out, Order order) {
+            this.out = out;
+            this.order = order;
+        }
+
+        void submit(Callable<byte[]> task) throws IOException {
+            Callable<byte[]> guarded = () -> {
+                running.incrementAndGet();
+                try {
+                    return closed ? null : task.call();
+                } finally {
+                    if (running.decrementAndGet() == 0 && closed) {
+                        synchronized (this) {
+                            notifyAll();
+                        }
+                    }
+                }
+            };
+            if (order == Order.INPUT) {
+                while (pending.size() >= maxInFlight) write(pending.poll());
+                Future<byte[]> f = decisionBatchExecutor.submit(guarded);
+                unwritten.add(f);
+                pending.add(f);
+                while (!pending.isEmpty() && pending.peek().isDone()) write(pending.poll());
+            } else {
+                if (inFlight >= maxInFlight) {
+                    write(take());
+                    inFlight--;
+                }
+                unwritten.add(completion.submit(guarded));
+                inFlight++;
+                Future<byte[]> done;
+                while ((done = completion.poll()) != null) {
+                    write(done);
+                    inFlight--;
+                }
+            }
+        }
+
+        /** Writes every submitted item. */
+        void finish() throws IOException {
+            while (!pending.isEmpty()) write(pending.poll());
+            while (inFlight > 0) {
+                write(take());
+                inFlight--;
+            }
+        }
+
+        /** Cancels the items not written yet and waits for those already running. */
+        void close() {
+            closed = true;
+            unwritten.forEach(f -> f.cancel(false));
+            boolean interrupted = false;
+            synchronized (this) {
+                while (running.get() > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        private Future<byte[]> take() throws IOException {
+            try {
+                return completion.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for batch results", e);
+            }
+        }
+
+        private void write(Future<byte[]> future) throws IOException {
+            unwritten.remove(future);
+            byte[] line;
+            try {
+                line = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for batch results", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to serialize batch result", e.getCause());
+            }
+            write(line);
+        }
+
+        void write(byte[] line) throws IOException {
+            out.write(line);
+            out.write(NEWLINE);
+            written++;
+        }
+    }
+
+    private byte[] evaluateLine(Ruleset ruleset, DMNModel model, long index, Map<String, Object> payload) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        try {
+            line.put("result", decisionEvaluator.evaluateAudited(ruleset, model, payload));
+        } catch (Exception e) {
+            logger.debug("Batch item {} failed: {}", index, e.getMessage());
+            line.put("error", e.getMessage());
+        }
+        return toBytes(line);
+    }
+
+    private byte[] errorLine(long index, InputBinder.InputBindingException e) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("index", index);
+        line.put("error", e.getMessage());
+        line.put("errors", e.getErrors());
+        return toBytes(line);
+    }
+
+    private byte[] toBytes(Map<String, Object> line) {
+        try {
+            return objectMapper.writeValueAsBytes(line);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
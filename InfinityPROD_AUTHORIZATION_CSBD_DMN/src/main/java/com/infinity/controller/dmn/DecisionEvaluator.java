@@ -0,0 +1,238 @@
+package com.infinity.controller.dmn;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.infinity.controller.audit.AuditJournal;
+import com.infinity.controller.audit.AuditRecord;
+import com.infinity.controller.metrics.DecisionMetricsListener;
+import org.kie.dmn.api.core.DMNContext;
+import org.kie.dmn.api.core.DMNDecisionResult;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.DMNResult;
+import org.kie.dmn.api.core.DMNRuntime;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates request payloads against the models of a registry. Callers pin the registry through
+ * {@link RulesetHolder#acquire()} so a ruleset swap cannot dispose it mid-evaluation.
+ *
+ * Payloads are bound to the model's input types by {@link InputBinder} before they reach the
+ * DMNContext. Request bodies are bound while they are parsed; the {@code evaluateBound} methods
+ * take payloads that have already been through the binder.
+ *
+ * Evaluations against a pinned {@link Ruleset} go through the {@link DecisionResultCache} (when it
+ * is enabled) unless the caller asks to bypass it, and cache misses are admitted and timed by the
+ * model's {@link EvaluationBulkhead}. Each of them, failed ones included, is handed to the
+ * {@link AuditJournal} with its latency, and a sample of them is replayed on the shadow candidate
+ * of the {@link ShadowEvaluator} once the live result is ready. Rulesets of additional rule projects
+ * (see {@link RuleProjects}) are never shadowed.
+ */
+@Service
+public class DecisionEvaluator {
+
+    // binary request bodies; responses are negotiated by the message converters (see WebConfig)
+    private static final String SMILE_TYPE = "application/x-jackson-smile";
+    private static final String CBOR_TYPE = "application/cbor";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final JsonFactory smileFactory = new SmileFactory();
+    private final JsonFactory cborFactory = new CBORFactory();
+
+    @Autowired
+    private DecisionResultCache resultCache;
+
+    @Autowired
+    private EvaluationBulkhead bulkhead;
+
+    @Autowired
+    private AuditJournal auditJournal;
+
+    @Autowired
+    private ShadowEvaluator shadow;
+
+    /**
+     * Evaluates the named model, or the default model (quickwins) when no name is given. With a
+     * non-empty decision list only those decisions (and the decisions they require) are evaluated
+     * and returned.
+     */
+    public Map<String, Object> evaluate(DmnModelRegistry registry, String namespace, String modelName,
+                                        List<String> decisions, Map<String, Object> input) {
+        DMNModel model = modelName == null ? registry.getDefaultModel() : registry.require(namespace, modelName);
+        return evaluateBound(registry, model, decisions, registry.binder(model).bind(input));
+    }
+
+    /**
+     * Same as the map variant for a pinned ruleset, binding the request body (JSON, or Smile/CBOR
+     * by {@code contentType}) in a single streaming pass and consulting the result cache when
+     * {@code useCache} is set. The projection picks which decisions are evaluated and returned.
+     */
+    public Map<String, Object> evaluate(Ruleset ruleset, String namespace, String modelName, List<String> decisions,
+                                        ResponseProjection projection, String contentType, InputStream body,
+                                        boolean useCache) throws IOException {
+        DmnModelRegistry registry = ruleset.getRegistry();
+        DMNModel model = modelName == null ? registry.getDefaultModel() : registry.require(namespace, modelName);
+        Map<String, Object> input;
+        try (JsonParser parser = parserFactory(contentType).createParser(body)) {
+            parser.nextToken();
+            input = registry.binder(model).bind(parser);
+        }
+        List<String> targets = projection.targets(registry, model, decisions);
+        DecisionPlan plan = targets == null || targets.isEmpty() ? null : registry.plan(model, targets);
+        return projection.apply(evaluateBound(ruleset, model, plan, input, useCache));
+    }
+
+    /**
+     * Binds a JSON body in the same streaming pass as a request and evaluates every decision directly
+     * on the registry: no cache, bulkhead, audit, shadow sample or evaluation metrics. Used by
+     * {@link JitWarmUp}.
+     */
+    public Map<String, Object> evaluateUnrecorded(DmnModelRegistry registry, DMNModel model, byte[] json) throws IOException {
+        Map<String, Object> input;
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            parser.nextToken();
+            input = registry.binder(model).bind(parser);
+        }
+        return DecisionMetricsListener.unrecorded(() -> evaluateBound(registry, model, input));
+    }
+
+    private JsonFactory parserFactory(String contentType) {
+        if (contentType != null) {
+            String type = contentType.toLowerCase(Locale.ROOT);
+            if (type.startsWith(SMILE_TYPE)) return smileFactory;
+            if (type.startsWith(CBOR_TYPE)) return cborFactory;
+        }
+        return objectMapper.getFactory();
+    }
+
+    /** Evaluates a payload against a model of a pinned ruleset; a null plan evaluates every decision. */
+    public Map<String, Object> evaluate(Ruleset ruleset, DMNModel model, DecisionPlan plan, Map<String, Object> input,
+                                        boolean useCache) {
+        return evaluateBound(ruleset, model, plan, ruleset.getRegistry().binder(model).bind(input), useCache);
+    }
+
+    private Map<String, Object> evaluateBound(Ruleset ruleset, DMNModel model, DecisionPlan plan, Map<String, Object> input,
+                                              boolean useCache) {
+        DmnModelRegistry registry = ruleset.getRegistry();
+        // shadow candidates are edits of the default project's rules
+        ShadowEvaluator.Sample shadowSample = ruleset.getProject() == null ? shadow.sample(model) : null;
+        Supplier<Map<String, Object>> plain = plan == null
+                ? () -> evaluateBound(registry, model, input)
+                : () -> evaluateBound(registry, model, plan, input);
+        Supplier<Map<String, Object>> direct = shadowSample == null ? plain : shadowSample.timed(plain);
+        Supplier<Map<String, Object>> evaluation = () -> bulkhead.execute(ruleset, compartment(ruleset, model), direct);
+        Supplier<Map<String, Object>> served = !useCache ? evaluation
+                : () -> resultCache.get(ruleset.getVersion(), model, plan == null ? null : plan.getTargetNames(), input, evaluation);
+        if (!auditJournal.isEnabled() && shadowSample == null) return served.get();
+
+        long start = System.nanoTime();
+        Map<String, Object> result;
+        try {
+            result = served.get();
+        } catch (RuntimeException e) {
+            audit(ruleset, model, plan, input, null, e.getMessage(), start);
+            throw e;
+        }
+        audit(ruleset, model, plan, input, result, null, start);
+        if (shadowSample != null) shadow.submit(shadowSample, result, candidate -> evaluateOn(candidate, model, plan, input));
+        return result;
+    }
+
+    /**
+     * Evaluates every decision of a payload already bound by the model's {@link InputBinder} against a
+     * pinned ruleset and records it in the audit journal. No bulkhead, cache or shadow sample: used by
+     * {@link DecisionBatchService}, whose items are already bounded by the batch executor.
+     */
+    public Map<String, Object> evaluateAudited(Ruleset ruleset, DMNModel model, Map<String, Object> input) {
+        if (!auditJournal.isEnabled()) return evaluateBound(ruleset.getRegistry(), model, input);
+        long start = System.nanoTime();
+        Map<String, Object> result;
+        try {
+            result = evaluateBound(ruleset.getRegistry(), model, input);
+        } catch (RuntimeException e) {
+            audit(ruleset, model, null, input, null, e.getMessage(), start);
+            throw e;
+        }
+        audit(ruleset, model, null, input, result, null, start);
+        return result;
+    }
+
+    // models of additional rule projects get compartments of their own, e.g. "gbd/line_level_denial"
+    private static String compartment(Ruleset ruleset, DMNModel model) {
+        return ruleset.getProject() == null ? model.getName() : ruleset.getProject() + "/" + model.getName();
+    }
+
+    // the same evaluation against another registry (a shadow candidate), by model and decision names
+    private Map<String, Object> evaluateOn(DmnModelRegistry other, DMNModel model, DecisionPlan plan, Map<String, Object> input) {
+        DMNModel otherModel = other.require(model.getNamespace(), model.getName());
+        return plan == null
+                ? evaluateBound(other, otherModel, input)
+                : evaluateBound(other, otherModel, other.plan(otherModel, plan.getTargetNames()), input);
+    }
+
+    private void audit(Ruleset ruleset, DMNModel model, DecisionPlan plan, Map<String, Object> input,
+                       Map<String, Object> outputs, String error, long start) {
+        if (!auditJournal.isEnabled()) return;
+        long latency = System.nanoTime() - start;
+        auditJournal.record(new AuditRecord(System.currentTimeMillis(), latency, ruleset.getVersion(), model.getNamespace(),
+                model.getName(), plan == null ? null : plan.getTargetNames(), input, outputs, error));
+    }
+
+    private Map<String, Object> evaluateBound(DmnModelRegistry registry, DMNModel model, List<String> decisions,
+                                              Map<String, Object> input) {
+        if (decisions == null || decisions.isEmpty()) {
+            return evaluateBound(registry, model, input);
+        }
+        return evaluateBound(registry, model, registry.plan(model, decisions), input);
+    }
+
+    public Map<String, Object> evaluate(DmnModelRegistry registry, DMNModel model, Map<String, Object> input) {
+        return evaluateBound(registry, model, registry.binder(model).bind(input));
+    }
+
+    public Map<String, Object> evaluate(DmnModelRegistry registry, DMNModel model, DecisionPlan plan, Map<String, Object> input) {
+        return evaluateBound(registry, model, plan, registry.binder(model).bind(input));
+    }
+
+    /** Evaluates every decision of the model for a payload already bound by the model's {@link InputBinder}. */
+    public Map<String, Object> evaluateBound(DmnModelRegistry registry, DMNModel model, Map<String, Object> input) {
+        DMNRuntime dmnRuntime = registry.runtime(model);
+        DMNContext context = dmnRuntime.newContext();
+        input.forEach(context::set);
+
+        DMNResult dmnResult = dmnRuntime.evaluateAll(model, context);
+
+        Map<String, Object> result = new HashMap<>();
+        dmnResult.getDecisionResults().forEach(d -> result.put(d.getDecisionName(), d.getResult()));
+        return result;
+    }
+
+    public Map<String, Object> evaluateBound(DmnModelRegistry registry, DMNModel model, DecisionPlan plan, Map<String, Object> input) {
+        DMNRuntime dmnRuntime = registry.runtime(model);
+        DMNContext context = dmnRuntime.newContext();
+        input.forEach(context::set);
+
+        // the runtime evaluates required decisions on demand, so only the targets need to be named
+        DMNResult dmnResult = dmnRuntime.evaluateById(model, context, plan.getTargetIds());
+
+        Map<String, Object> result = new HashMap<>();
+        for (String name : plan.getTargetNames()) {
+            DMNDecisionResult d = dmnResult.getDecisionResultByName(name);
+            result.put(name, d == null ? null : d.getResult());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,122 @@
+package com.infinity.controller.dmn;
+
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.ast.DecisionNode;
+import org.kie.dmn.model.api.InformationRequirement;
+
+import java.util.*;
+
+/**
+ * Evaluation plan for a subset of a model's decisions: the requested decisions plus the transitive
+ * closure of their required decisions, in dependency order.
+ *
+ * Plans are immutable and cached per registry (see {@link DmnModelRegistry#plan}), so they are
+ * computed once per model version and dropped together with the registry on the next swap.
+ */
+public final class DecisionPlan {
+
+    private final String modelName;
+    private final List<String> targetNames;
+    private final String[] targetIds;
+    private final List<String> closure;
+    private final int skipped;
+
+    private DecisionPlan(String modelName, List<String> targetNames, String[] targetIds, List<String> closure, int skipped) {
+        this.modelName = modelName;
+        this.targetNames = targetNames;
+        this.targetIds = targetIds;
+        this.closure = closure;
+        this.skipped = skipped;
+    }
+
+    static DecisionPlan compute(DMNModel model, Collection<String> decisionNames) {
+        List<String> targetNames = new ArrayList<>();
+        List<String> targetIds = new ArrayList<>();
+        for (String name : decisionNames) {
+            DecisionNode node = model.getDecisionByName(name);
+            if (node == null) {
+                throw new IllegalArgumentException("Decision not found: " + name + " in model " + model.getName());
+            }
+            if (!targetIds.contains(node.getId())) {
+                targetNames.add(node.getName());
+                targetIds.add(node.getId());
+            }
+        }
+
+        // depth-first post-order walk over requiredDecision edges gives dependency order
+        LinkedHashSet<String> ordered = new LinkedHashSet<>();
+        Set<String> visiting = new HashSet<>();
+        for (String id : targetIds) {
+            visit(model, model.getDecisionById(id), ordered, visiting);
+        }
+        List<String> closure = new ArrayList<>();
+        for (String id : ordered) closure.add(model.getDecisionById(id).getName());
+
+        int total = model.getDecisions().size();
+        return new DecisionPlan(model.getName(), Collections.unmodifiableList(targetNames),
+                targetIds.toArray(new String[0]), Collections.unmodifiableList(closure), total - closure.size());
+    }
+
+    private static void visit(DMNModel model, DecisionNode node, Set<String> ordered, Set<String> visiting) {
+        if (node == null || ordered.contains(node.getId()) || !visiting.add(node.getId())) return;
+        List<InformationRequirement> requirements = node.getDecision().getInformationRequirement();
+        if (requirements != null) {
+            for (InformationRequirement ir : requirements) {
+                if (ir.getRequiredDecision() == null || ir.getRequiredDecision().getHref() == null) continue;
+                String href = ir.getRequiredDecision().getHref();
+                // hrefs are "#id" (or "namespace#id" for imported decisions)
+                String id = href.substring(href.indexOf('#') + 1);
+                visit(model, model.getDecisionById(id), ordered, visiting);
+            }
+        }
+        visiting.remove(node.getId());
+        ordered.add(node.getId());
+    }
+
+    /** Names of the decisions no other decision of the model requires (e.g. Recommendation), in model order. */
+    static List<String> finalDecisions(DMNModel model) {
+        Set<String> required = new HashSet<>();
+        for (DecisionNode node : model.getDecisions()) {
+            List<InformationRequirement> requirements = node.getDecision().getInformationRequirement();
+            if (requirements == null) continue;
+            for (InformationRequirement ir : requirements) {
+                if (ir.getRequiredDecision() == null || ir.getRequiredDecision().getHref() == null) continue;
+                String href = ir.getRequiredDecision().getHref();
+                required.add(href.substring(href.indexOf('#') + 1));
+            }
+        }
+        List<String> names = new ArrayList<>();
+        for (DecisionNode node : model.getDecisions()) {
+            if (!required.contains(node.getId())) names.add(node.getName());
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    static String cacheKey(DMNModel model, Collection<String> decisionNames) {
+        // a repeated name does not change the plan, so it must not make another key either
+        Set<String> sorted = new TreeSet<>(decisionNames);
+        return model.getNamespace() + "::" + model.getName() + "::" + String.join("\u0000", sorted);
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    public List<String> getTargetNames() {
+        return targetNames;
+    }
+
+    String[] getTargetIds() {
+        return targetIds;
+    }
+
+    /** Decisions the plan evaluates, dependencies first. */
+    public List<String> getClosure() {
+        return closure;
+    }
+
+    /** Number of model decisions left out of the plan. */
+    public int getSkipped() {
+        return skipped;
+    }
+}
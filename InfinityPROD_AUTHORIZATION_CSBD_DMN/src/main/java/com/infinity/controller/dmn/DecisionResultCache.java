@@ -0,0 +1,240 @@
+package com.infinity.controller.dmn;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.kie.dmn.api.core.DMNModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of evaluation results for repeated payloads (retries, resubmitted claims, UI test
+ * runs).
+ *
+ * Entries are keyed by model, ruleset version, evaluated decisions and a SHA-256 digest of the
+ * bound input. The digest is taken over a canonical form (map keys sorted, numbers compared by
+ * value, values tagged by type), so payloads that differ only in key order or in {@code 1} vs
+ * {@code 1.0} share an entry, and so do requests naming the same decisions in another order. Because the version is part of the key a new ruleset can never be
+ * served stale results; entries of older versions are dropped when a new version of the same rule
+ * project is published (the versions of other projects are left alone, see {@link RuleProjects}).
+ *
+ * Disabled unless {@code decision.cache.enabled=true}.
+ */
+@Component
+public class DecisionResultCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionResultCache.class);
+
+    // Request header that skips the cache for one evaluation, e.g. "X-Decision-Cache: bypass"
+    public static final String BYPASS_HEADER = "X-Decision-Cache";
+    public static final String BYPASS_VALUE = "bypass";
+
+    private static final char SEPARATOR = '\u0000';
+    private static final char TARGET_SEPARATOR = '\u0001';
+
+    private final boolean enabled;
+    private final long maxEntries;
+    private final Duration ttl;
+    private final Cache<String, Map<String, Object>> cache;
+    // evaluations of keys not cached yet, shared by identical requests that arrive while they run
+    private final Map<String, CompletableFuture<Map<String, Object>>> inFlight = new ConcurrentHashMap<>();
+
+    public DecisionResultCache(@Value("${decision.cache.enabled:false}") boolean enabled,
+                               @Value("${decision.cache.max-entries:10000}") long maxEntries,
+                               @Value("${decision.cache.ttl:PT5M}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        if (enabled) logger.info("Decision result cache enabled: max {} entries, ttl {}", maxEntries, ttl);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** True when the header value asks to skip the cache. */
+    public static boolean isBypass(String headerValue) {
+        return headerValue != null && BYPASS_VALUE.equalsIgnoreCase(headerValue.trim());
+    }
+
+    /**
+     * Returns the cached result for the bound input or evaluates and caches it. {@code targets} is
+     * null for evaluateAll. Concurrent identical requests wait for a single evaluation.
+     *
+     * The evaluation (bulkhead wait and deadline included) runs outside the cache, on the calling
+     * thread, so a slow evaluation never holds a lock of the cache's hash table; identical requests
+     * that arrive meanwhile wait on its future in {@code inFlight}.
+     */
+    public Map<String, Object> get(String version, DMNModel model, List<String> targets, Map<String, Object> input,
+                                   Supplier<Map<String, Object>> evaluation) {
+        if (!enabled) return evaluation.get();
+        String key = key(version, model, targets, input);
+        Map<String, Object> cached = cache.getIfPresent(key);
+        if (cached != null) return cached;
+
+        CompletableFuture<Map<String, Object>> mine = new CompletableFuture<>();
+        CompletableFuture<Map<String, Object>> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) return await(running);
+        try {
+            Map<String, Object> result = Collections.unmodifiableMap(evaluation.get());
+            cache.put(key, result);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    // the waiting request fails like the one that evaluated
+    private static Map<String, Object> await(CompletableFuture<Map<String, Object>> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    @EventListener
+    public void onRulesetPublished(RulesetPublishedEvent event) {
+        if (!enabled) return;
+        String project = event.getRuleset().getProject();
+        String latest = event.getRuleset().getVersion();
+        cache.asMap().keySet().removeIf(k -> {
+            String version = version(k);
+            return !version.equals(latest) && RulesetHolder.isVersionOf(project, version);
+        });
+        logger.info("Dropped cached results of rulesets older than {}", latest);
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("maxEntries", maxEntries);
+        out.put("ttl", ttl.toString());
+        out.put("size", cache.estimatedSize());
+        out.put("hits", stats.hitCount());
+        out.put("misses", stats.missCount());
+        out.put("evictions", stats.evictionCount());
+        out.put("hitRate", stats.hitRate());
+        return out;
+    }
+
+    // ruleset version of a key built by key()
+    private static String version(String key) {
+        int start = key.indexOf(SEPARATOR) + 1;
+        return key.substring(start, key.indexOf(SEPARATOR, start));
+    }
+
+    // model, version and targets are kept readable in the key so entries can be dropped by version
+    static String key(String version, DMNModel model, List<String> targets, Map<String, Object> input) {
+        StringBuilder sb = new StringBuilder(96)
+                .append(model.getNamespace()).append("::").append(model.getName())
+                .append(SEPARATOR).append(version).append(SEPARATOR);
+        if (targets != null) {
+            // the same decisions in any order evaluate the same plan
+            for (String target : new TreeSet<>(targets)) sb.append(TARGET_SEPARATOR).append(target);
+        }
+        sb.append(SEPARATOR);
+        MessageDigest digest = newDigest();
+        feed(digest, input);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void feed(MessageDigest digest, Object value) {
+        BigDecimal n = number(value);
+        if (value == null) {
+            digest.update((byte) 'z');
+        } else if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            digest.update((byte) 'm');
+            feedInt(digest, map.size());
+            for (String name : new TreeSet<>(map.keySet())) {
+                feedText(digest, name);
+                feed(digest, map.get(name));
+            }
+        } else if (value instanceof Collection) {
+            Collection<Object> list = (Collection<Object>) value;
+            digest.update((byte) 'l');
+            feedInt(digest, list.size());
+            for (Object item : list) feed(digest, item);
+        } else if (n != null) {
+            digest.update((byte) 'n');
+            feedText(digest, n.signum() == 0 ? "0" : n.stripTrailingZeros().toPlainString());
+        } else if (value instanceof Boolean) {
+            digest.update((byte) ((Boolean) value ? 't' : 'f'));
+        } else {
+            // strings and java.time values; the class name keeps "2024-01-01" the string and the date apart
+            digest.update((byte) 'v');
+            feedText(digest, value.getClass().getName());
+            feedText(digest, value.toString());
+        }
+    }
+
+    // bound inputs carry BigDecimal, payloads built in code may carry any of the boxed types
+    private static BigDecimal number(Object value) {
+        if (value instanceof BigDecimal) return (BigDecimal) value;
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof BigInteger) return new BigDecimal((BigInteger) value);
+        if ((value instanceof Double || value instanceof Float) && Double.isFinite(((Number) value).doubleValue())) {
+            return BigDecimal.valueOf(((Number) value).doubleValue());
+        }
+        return null;
+    }
+
+    private static void feedText(MessageDigest digest, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        feedInt(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void feedInt(MessageDigest digest, int n) {
+        digest.update((byte) (n >>> 24));
+        digest.update((byte) (n >>> 16));
+        digest.update((byte) (n >>> 8));
+        digest.update((byte) n);
+    }
+}
@@ -0,0 +1,444 @@
+package com.infinity.controller.dmn;
+
+import org.kie.dmn.model.api.Binding;
+import org.kie.dmn.model.api.Context;
+import org.kie.dmn.model.api.ContextEntry;
+import org.kie.dmn.model.api.DRGElement;
+import org.kie.dmn.model.api.Decision;
+import org.kie.dmn.model.api.DecisionRule;
+import org.kie.dmn.model.api.DecisionTable;
+import org.kie.dmn.model.api.Definitions;
+import org.kie.dmn.model.api.Expression;
+import org.kie.dmn.model.api.FunctionDefinition;
+import org.kie.dmn.model.api.HitPolicy;
+import org.kie.dmn.model.api.InformationRequirement;
+import org.kie.dmn.model.api.InputClause;
+import org.kie.dmn.model.api.Invocation;
+import org.kie.dmn.model.api.LiteralExpression;
+import org.kie.dmn.model.api.OutputClause;
+import org.kie.dmn.model.api.Relation;
+import org.kie.dmn.model.api.UnaryTests;
+
+import java.util.*;
+
+/**
+ * Static analysis of the decision tables of one model, over its parsed definitions.
+ *
+ * A row is dead when no input can make it fire:
+ * <ul>
+ * <li>unreachable: an input entry made only of literals ({@code "A","B"}, {@code true}, {@code 12})
+ * shares no value with what the column can receive, i.e. the input clause's inputValues or, when the
+ * input expression names a required decision (or one of its outputs) whose table only outputs
+ * literals, the outputs of that table's live rows;</li>
+ * <li>shadowed (FIRST hit only): an earlier live row accepts everything the row accepts in every
+ * column. An entry covers another when it is {@code -}, the same text (FEEL expressions without
+ * now()/today() included), a superset of its literals, or a {@code not(...)} of literals the other
+ * entry does not list. Ranges and other expressions only cover identical text.</li>
+ * </ul>
+ * Dead rows feed back into the possible outputs of their table, so the analysis repeats until nothing
+ * changes. Removing dead rows never changes a result: rows that cannot match are skipped under every
+ * hit policy, and a shadowed row is never the first match.
+ *
+ * Decisions no output depends on are those the model's final decisions (which no decision requires)
+ * do not reach when a requirement only counts if the requiring decision's text names the required
+ * decision outside its dead rows. They are reported only: evaluateAll still returns them.
+ */
+public final class DecisionTableAnalyzer {
+
+    private DecisionTableAnalyzer() {
+    }
+
+    /** Analysis of one model: dead rows per decision table and the report served by the API. */
+    public static final class Analysis {
+        private final Map<DecisionTable, BitSet> deadRows;
+        private final Map<String, Object> report;
+
+        Analysis(Map<DecisionTable, BitSet> deadRows, Map<String, Object> report) {
+            this.deadRows = deadRows;
+            this.report = report;
+        }
+
+        /** Dead rows (bit {@code r} for row {@code r}) of a decision table of the model, or null if none. */
+        BitSet deadRows(DecisionTable table) {
+            return deadRows.get(table);
+        }
+
+        public int getDeadRowCount() {
+            int n = 0;
+            for (BitSet rows : deadRows.values()) n += rows.cardinality();
+            return n;
+        }
+
+        public Map<String, Object> getReport() {
+            return report;
+        }
+    }
+
+    /** Parsed input entry; literal values are normalized like the keys of {@link FirstHitIndex}. */
+    private static final class Entry {
+        enum Kind { ANY, LITERALS, NOT_LITERALS, OTHER }
+
+        final Kind kind;
+        final Set<Object> values;
+        final String text;
+
+        private Entry(Kind kind, Set<Object> values, String text) {
+            this.kind = kind;
+            this.values = values;
+            this.text = text;
+        }
+
+        static Entry parse(String text) {
+            String t = text == null ? "" : text.trim();
+            if (t.isEmpty() || t.equals("-")) return new Entry(Kind.ANY, null, t);
+            List<Object> literals = FirstHitIndex.parseLiterals(t);
+            if (literals != null) return new Entry(Kind.LITERALS, new HashSet<>(literals), t);
+            if (t.startsWith("not(") && t.endsWith(")")) {
+                literals = FirstHitIndex.parseLiterals(t.substring(4, t.length() - 1));
+                if (literals != null) return new Entry(Kind.NOT_LITERALS, new HashSet<>(literals), t);
+            }
+            return new Entry(Kind.OTHER, null, t);
+        }
+
+        /** Whether this entry accepts every value {@code other} accepts. */
+        boolean covers(Entry other) {
+            switch (kind) {
+                case ANY:
+                    return true;
+                case LITERALS:
+                    return other.kind == Kind.LITERALS && values.containsAll(other.values);
+                case NOT_LITERALS:
+                    if (other.kind == Kind.LITERALS) return Collections.disjoint(values, other.values);
+                    return other.kind == Kind.NOT_LITERALS && other.values.containsAll(values);
+                default:
+                    // the same expression gives the same answer, unless it reads the clock
+                    return other.kind == Kind.OTHER && text.equals(other.text)
+                            && !text.contains("now(") && !text.contains("today(");
+            }
+        }
+    }
+
+    /** A decision table of a decision, with its entries parsed and its dead rows so far. */
+    private static final class Table {
+        final Decision decision;
+        final DecisionTable dt;
+        final HitPolicy hitPolicy;
+        final List<Entry[]> rows = new ArrayList<>();
+        // allowed literals per column from inputValues, null when unconstrained
+        final List<Set<Object>> inputValues = new ArrayList<>();
+        final BitSet dead = new BitSet();
+        final Map<Integer, Map<String, Object>> reasons = new TreeMap<>();
+
+        Table(Decision decision, DecisionTable dt) {
+            this.decision = decision;
+            this.dt = dt;
+            this.hitPolicy = dt.getHitPolicy() == null ? HitPolicy.UNIQUE : dt.getHitPolicy();
+            for (InputClause input : dt.getInput()) {
+                UnaryTests allowed = input.getInputValues();
+                List<Object> literals = allowed == null ? null : FirstHitIndex.parseLiterals(allowed.getText());
+                inputValues.add(literals == null ? null : new HashSet<>(literals));
+            }
+            for (DecisionRule rule : dt.getRule()) {
+                Entry[] entries = new Entry[dt.getInput().size()];
+                for (int c = 0; c < entries.length; c++) {
+                    entries[c] = Entry.parse(c < rule.getInputEntry().size() ? rule.getInputEntry().get(c).getText() : null);
+                }
+                rows.add(entries);
+            }
+        }
+
+        String inputText(int column) {
+            LiteralExpression e = dt.getInput().get(column).getInputExpression();
+            return e == null || e.getText() == null ? "" : e.getText().trim();
+        }
+
+        boolean singleHit() {
+            return hitPolicy == HitPolicy.FIRST || hitPolicy == HitPolicy.UNIQUE || hitPolicy == HitPolicy.ANY
+                    || hitPolicy == HitPolicy.PRIORITY;
+        }
+    }
+
+    public static Analysis analyze(Definitions definitions) {
+        Map<String, Decision> decisionsById = new LinkedHashMap<>();
+        Map<Decision, Table> tables = new LinkedHashMap<>();
+        for (DRGElement element : definitions.getDrgElement()) {
+            if (!(element instanceof Decision)) continue;
+            Decision decision = (Decision) element;
+            decisionsById.put(decision.getId(), decision);
+            if (decision.getExpression() instanceof DecisionTable) {
+                tables.put(decision, new Table(decision, (DecisionTable) decision.getExpression()));
+            }
+        }
+        Map<Decision, List<Decision>> required = new LinkedHashMap<>();
+        Set<Decision> requiredByAny = new HashSet<>();
+        for (Decision decision : decisionsById.values()) {
+            List<Decision> deps = new ArrayList<>();
+            for (InformationRequirement ir : decision.getInformationRequirement()) {
+                if (ir.getRequiredDecision() == null || ir.getRequiredDecision().getHref() == null) continue;
+                String href = ir.getRequiredDecision().getHref();
+                Decision dep = decisionsById.get(href.substring(href.indexOf('#') + 1));
+                if (dep != null) deps.add(dep);
+            }
+            required.put(decision, deps);
+            requiredByAny.addAll(deps);
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            Map<String, Set<Object>> possible = possibleValues(tables.values());
+            for (Table table : tables.values()) {
+                changed |= markDeadRows(table, required.get(table.decision), possible);
+            }
+        }
+
+        Map<DecisionTable, BitSet> deadRows = new IdentityHashMap<>();
+        List<Map<String, Object>> tableReports = new ArrayList<>();
+        int rowCount = 0;
+        for (Table table : tables.values()) {
+            rowCount += table.rows.size();
+            if (table.dead.isEmpty()) continue;
+            deadRows.put(table.dt, table.dead);
+            Map<String, Object> t = new LinkedHashMap<>();
+            t.put("decision", table.decision.getName());
+            t.put("hitPolicy", table.hitPolicy.name());
+            t.put("rows", table.rows.size());
+            t.put("deadRows", new ArrayList<>(table.reasons.values()));
+            tableReports.add(t);
+        }
+
+        List<Map<String, Object>> unused = new ArrayList<>();
+        for (Decision decision : unusedDecisions(decisionsById.values(), required, requiredByAny, tables)) {
+            Map<String, Object> u = new LinkedHashMap<>();
+            u.put("decision", decision.getName());
+            List<String> requiredBy = new ArrayList<>();
+            required.forEach((d, deps) -> {
+                if (deps.contains(decision)) requiredBy.add(d.getName());
+            });
+            u.put("requiredBy", requiredBy);
+            unused.add(u);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("model", definitions.getName());
+        report.put("namespace", definitions.getNamespace());
+        report.put("decisions", decisionsById.size());
+        report.put("decisionTables", tables.size());
+        report.put("rows", rowCount);
+        report.put("deadRows", deadRows.values().stream().mapToInt(BitSet::cardinality).sum());
+        report.put("tables", tableReports);
+        report.put("unusedDecisions", unused);
+        return new Analysis(deadRows, report);
+    }
+
+    /**
+     * Values each single hit table can produce, keyed by how an input expression refers to them: the
+     * decision name for single output tables, {@code Decision.output} otherwise. Tables with any
+     * output entry (or default) that is not a single literal are left out.
+     */
+    private static Map<String, Set<Object>> possibleValues(Collection<Table> tables) {
+        Map<String, Set<Object>> out = new HashMap<>();
+        for (Table table : tables) {
+            if (!table.singleHit()) continue;
+            List<OutputClause> outputs = table.dt.getOutput();
+            for (int o = 0; o < outputs.size(); o++) {
+                Set<Object> values = new HashSet<>();
+                boolean literal = addLiteral(values, outputs.get(o).getDefaultOutputEntry(), true);
+                for (int r = 0; r < table.rows.size() && literal; r++) {
+                    if (table.dead.get(r)) continue;
+                    List<LiteralExpression> entries = table.dt.getRule().get(r).getOutputEntry();
+                    literal = o < entries.size() && addLiteral(values, entries.get(o), false);
+                }
+                if (!literal) continue;
+                String name = table.decision.getName();
+                out.put(outputs.size() == 1 ? name : name + "." + outputs.get(o).getName(), values);
+            }
+        }
+        return out;
+    }
+
+    private static boolean addLiteral(Set<Object> values, LiteralExpression entry, boolean optional) {
+        if (entry == null || entry.getText() == null || entry.getText().isBlank()) return optional;
+        List<Object> literals = FirstHitIndex.parseLiterals(entry.getText());
+        if (literals == null || literals.size() != 1) return false;
+        values.add(literals.get(0));
+        return true;
+    }
+
+    private static boolean markDeadRows(Table table, List<Decision> required, Map<String, Set<Object>> possible) {
+        int columns = table.dt.getInput().size();
+        List<Set<Object>> allowed = new ArrayList<>(columns);
+        List<String> sources = new ArrayList<>(columns);
+        for (int c = 0; c < columns; c++) {
+            Set<Object> values = table.inputValues.get(c);
+            String source = values == null ? null : "inputValues";
+            String text = table.inputText(c);
+            Set<Object> outputs = requiresOutput(required, text) ? possible.get(text) : null;
+            if (outputs != null) {
+                values = values == null ? outputs : intersection(values, outputs);
+                source = text;
+            }
+            allowed.add(values);
+            sources.add(source);
+        }
+
+        boolean changed = false;
+        for (int r = 0; r < table.rows.size(); r++) {
+            if (table.dead.get(r)) continue;
+            Entry[] row = table.rows.get(r);
+            Map<String, Object> reason = null;
+            for (int c = 0; c < columns && reason == null; c++) {
+                if (row[c].kind == Entry.Kind.LITERALS && allowed.get(c) != null && Collections.disjoint(row[c].values, allowed.get(c))) {
+                    reason = new LinkedHashMap<>();
+                    reason.put("row", r + 1);
+                    reason.put("reason", "unreachable");
+                    reason.put("input", table.inputText(c));
+                    reason.put("entry", row[c].text);
+                    reason.put("possibleValues", sorted(allowed.get(c)));
+                    reason.put("source", sources.get(c));
+                }
+            }
+            for (int earlier = 0; reason == null && table.hitPolicy == HitPolicy.FIRST && earlier < r; earlier++) {
+                if (table.dead.get(earlier) || !covers(table.rows.get(earlier), row)) continue;
+                reason = new LinkedHashMap<>();
+                reason.put("row", r + 1);
+                reason.put("reason", "shadowed");
+                reason.put("by", earlier + 1);
+            }
+            if (reason == null) continue;
+            table.dead.set(r);
+            table.reasons.put(r, reason);
+            changed = true;
+        }
+        return changed;
+    }
+
+    // an input expression reading a required decision, or one output of it
+    private static boolean requiresOutput(List<Decision> required, String text) {
+        for (Decision d : required) {
+            if (text.equals(d.getName()) || text.startsWith(d.getName() + ".")) return true;
+        }
+        return false;
+    }
+
+    private static boolean covers(Entry[] earlier, Entry[] row) {
+        for (int c = 0; c < row.length; c++) {
+            if (!earlier[c].covers(row[c])) return false;
+        }
+        return true;
+    }
+
+    private static Set<Object> intersection(Set<Object> a, Set<Object> b) {
+        Set<Object> out = new HashSet<>(a);
+        out.retainAll(b);
+        return out;
+    }
+
+    private static List<String> sorted(Set<Object> values) {
+        List<String> out = new ArrayList<>();
+        for (Object v : values) out.add(String.valueOf(v));
+        Collections.sort(out);
+        return out;
+    }
+
+    /** Decisions the final decisions do not reach over requirements named in live expression text. */
+    private static List<Decision> unusedDecisions(Collection<Decision> decisions, Map<Decision, List<Decision>> required,
+                                                  Set<Decision> requiredByAny, Map<Decision, Table> tables) {
+        Deque<Decision> pending = new ArrayDeque<>();
+        for (Decision d : decisions) {
+            if (!requiredByAny.contains(d)) pending.add(d);
+        }
+        Set<Decision> reached = new HashSet<>(pending);
+        while (!pending.isEmpty()) {
+            Decision decision = pending.poll();
+            String text = liveText(decision, tables.get(decision));
+            for (Decision dep : required.get(decision)) {
+                // unknown expression kinds keep every requirement
+                if ((text == null || namesDecision(text, dep.getName())) && reached.add(dep)) pending.add(dep);
+            }
+        }
+        List<Decision> out = new ArrayList<>();
+        for (Decision d : decisions) {
+            if (!reached.contains(d)) out.add(d);
+        }
+        return out;
+    }
+
+    // FEEL text of a decision, without the dead rows of its table; null when it cannot be collected
+    private static String liveText(Decision decision, Table table) {
+        StringBuilder sb = new StringBuilder();
+        if (table == null) return collect(decision.getExpression(), sb) ? sb.toString() : null;
+        for (InputClause input : table.dt.getInput()) append(sb, input.getInputExpression());
+        for (OutputClause output : table.dt.getOutput()) append(sb, output.getDefaultOutputEntry());
+        for (int r = 0; r < table.rows.size(); r++) {
+            if (table.dead.get(r)) continue;
+            DecisionRule rule = table.dt.getRule().get(r);
+            for (UnaryTests test : rule.getInputEntry()) sb.append(test.getText()).append('\n');
+            for (LiteralExpression e : rule.getOutputEntry()) append(sb, e);
+        }
+        return sb.toString();
+    }
+
+    private static boolean collect(Expression expression, StringBuilder sb) {
+        if (expression == null) return true;
+        if (expression instanceof LiteralExpression) {
+            append(sb, (LiteralExpression) expression);
+            return true;
+        }
+        if (expression instanceof Context) {
+            for (ContextEntry entry : ((Context) expression).getContextEntry()) {
+                if (!collect(entry.getExpression(), sb)) return false;
+            }
+            return true;
+        }
+        if (expression instanceof Invocation) {
+            Invocation invocation = (Invocation) expression;
+            if (!collect(invocation.getExpression(), sb)) return false;
+            for (Binding binding : invocation.getBinding()) {
+                if (!collect(binding.getExpression(), sb)) return false;
+            }
+            return true;
+        }
+        if (expression instanceof FunctionDefinition) return collect(((FunctionDefinition) expression).getExpression(), sb);
+        if (expression instanceof org.kie.dmn.model.api.List) {
+            for (Expression e : ((org.kie.dmn.model.api.List) expression).getExpression()) {
+                if (!collect(e, sb)) return false;
+            }
+            return true;
+        }
+        if (expression instanceof Relation) {
+            for (org.kie.dmn.model.api.List row : ((Relation) expression).getRow()) {
+                if (!collect(row, sb)) return false;
+            }
+            return true;
+        }
+        if (expression instanceof DecisionTable) {
+            DecisionTable dt = (DecisionTable) expression;
+            for (InputClause input : dt.getInput()) append(sb, input.getInputExpression());
+            for (DecisionRule rule : dt.getRule()) {
+                for (UnaryTests test : rule.getInputEntry()) sb.append(test.getText()).append('\n');
+                for (LiteralExpression e : rule.getOutputEntry()) append(sb, e);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static void append(StringBuilder sb, LiteralExpression e) {
+        if (e != null && e.getText() != null) sb.append(e.getText()).append('\n');
+    }
+
+    // the name as a whole: "Rule 3.1" must not match inside "Rule 3.10"
+    static boolean namesDecision(String text, String name) {
+        for (int i = text.indexOf(name); i >= 0; i = text.indexOf(name, i + 1)) {
+            int end = i + name.length();
+            boolean start = i == 0 || !isNamePart(text.charAt(i - 1));
+            if (start && (end == text.length() || !isNamePart(text.charAt(end)))) return true;
+        }
+        return false;
+    }
+
+    private static boolean isNamePart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+}
@@ -0,0 +1,446 @@
+package com.infinity.controller.dmn;
+
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Applies edits to decision tables: row-level patches, where rules are added, modified, deleted or
+ * moved by index or rule id, and replacements of a whole table.
+ *
+ * Every edit starts from the model's live document kept by the {@link DmnMetadataIndex} (the one the
+ * running rules were compiled from, including edits not persisted yet), so it neither re-parses the
+ * file nor loses an earlier edit. A patch names the version it was made against (the table's ETag),
+ * a table replacement may; when the model has changed since, the edit is refused with a
+ * {@link VersionConflictException} so concurrent editors cannot overwrite each other. The edited
+ * model is compiled alone and replaces its predecessor through {@link RulesetHolder#rebuildModel},
+ * the other models are not recompiled. Edits are applied one at a time; persisting the edited
+ * document is left to the caller and may happen asynchronously, with {@link #editedSources}
+ * carrying every edit made on this instance.
+ *
+ * Operations, applied in order ({@code index} is the 0-based row position at the time the operation
+ * runs; {@code ruleId} takes precedence when both are given):
+ * <pre>
+ *   {"op": "add",    "index": 3, "inputEntries": ["\"Y\"", "-"], "outputEntries": ["\"Bypass\"", "Data"]}
+ *   {"op": "modify", "ruleId": "_1FCF...", "outputEntries": [null, "\"Manual\""], "annotations": ["..."]}
+ *   {"op": "delete", "index": 7}
+ *   {"op": "move",   "ruleId": "_1FCF...", "to": 0}
+ * </pre>
+ * Entries are FEEL texts, one per input or output column; null keeps the current text when modifying.
+ * {@code index} may be omitted on add to append the row.
+ */
+@Component
+public class DecisionTablePatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionTablePatcher.class);
+
+    private static final String DMN_NS = DmnMetadataIndex.DMN_NS;
+
+    /** Thrown when the patch was made against another version of the model than the current one. */
+    public static class VersionConflictException extends RuntimeException {
+        private final String model;
+        private final long currentVersion;
+
+        public VersionConflictException(String model, long baseVersion, long currentVersion) {
+            super("Model " + model + " is at version " + currentVersion + ", the patch was made against version " + baseVersion);
+            this.model = model;
+            this.currentVersion = currentVersion;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public long getCurrentVersion() {
+            return currentVersion;
+        }
+    }
+
+    /** Outcome of an edit; {@code build} has completed, successfully or not, when it is returned. */
+    public static final class Result {
+        private final String version;
+        private final Resource resource;
+        private final Document document;
+        private final byte[] bytes;
+        private final List<Map<String, Object>> operations;
+        private final CompletableFuture<Ruleset> build;
+        private final long modelVersion;
+
+        Result(String version, Resource resource, Document document, byte[] bytes, List<Map<String, Object>> operations,
+               CompletableFuture<Ruleset> build, long modelVersion) {
+            this.version = version;
+            this.resource = resource;
+            this.document = document;
+            this.bytes = bytes;
+            this.operations = operations;
+            this.build = build;
+            this.modelVersion = modelVersion;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public Resource getResource() {
+            return resource;
+        }
+
+        /** The edited document; do not modify, it is the model's live document once the edit is live. */
+        public Document getDocument() {
+            return document;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        /** Per patch operation: op, the rule id it touched and the row index it ended at (-1 when deleted). */
+        public List<Map<String, Object>> getOperations() {
+            return operations;
+        }
+
+        public CompletableFuture<Ruleset> getBuild() {
+            return build;
+        }
+
+        public boolean isPublished() {
+            return !build.isCompletedExceptionally();
+        }
+
+        /** Metadata version of the model after the edit, the new ETag; the current version when refused. */
+        public long getModelVersion() {
+            return modelVersion;
+        }
+    }
+
+    private final DmnMetadataIndex metadataIndex;
+    private final RulesetHolder rulesetHolder;
+
+    public DecisionTablePatcher(DmnMetadataIndex metadataIndex, RulesetHolder rulesetHolder) {
+        this.metadataIndex = metadataIndex;
+        this.rulesetHolder = rulesetHolder;
+    }
+
+    /**
+     * Applies the operations to the named decision's table, compiles the patched model, checks and
+     * publishes it, and waits for the outcome. Invalid operations fail with an
+     * {@link IllegalArgumentException} before anything is compiled.
+     */
+    public synchronized Result patch(String modelName, String decisionName, long baseVersion,
+                                     List<Map<String, Object>> operations, Consumer<DmnModelRegistry> check) {
+        if (operations == null || operations.isEmpty()) throw new IllegalArgumentException("operations are required");
+        return edit(modelName, decisionName, baseVersion, rulesetHolder.nextVersion(), " (patch)", check, doc -> {
+            Element table = decisionTable(doc, decisionName, modelName);
+            List<Map<String, Object>> applied = new ArrayList<>(operations.size());
+            for (int i = 0; i < operations.size(); i++) {
+                try {
+                    applied.add(apply(table, operations.get(i)));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("operations[" + i + "]: " + e.getMessage(), e);
+                }
+            }
+            return applied;
+        });
+    }
+
+    /**
+     * Replaces the named decision's table with {@code decisionTableXml} (a DMN decisionTable element),
+     * then compiles, checks and publishes the model as ruleset {@code version} like {@link #patch}.
+     * Without a {@code baseVersion} the table is replaced whatever version the model is at.
+     */
+    public synchronized Result replace(String modelName, String decisionName, Long baseVersion, String decisionTableXml,
+                                       String version, Consumer<DmnModelRegistry> check) {
+        return edit(modelName, decisionName, baseVersion, version, "", check, doc -> {
+            replaceTable(doc, decisionName, modelName, decisionTableXml);
+            return Collections.emptyList();
+        });
+    }
+
+    /** The model's live document with the named decision's table replaced, serialized; nothing is published. */
+    public synchronized byte[] replaced(String modelName, String decisionName, String decisionTableXml) {
+        Document doc = (Document) metadataIndex.require(modelName).getDocument().cloneNode(true);
+        replaceTable(doc, decisionName, modelName, decisionTableXml);
+        return toBytes(doc);
+    }
+
+    /** Refuses an edit made against another version of the model than the current one. */
+    public void checkVersion(String modelName, long baseVersion) {
+        checkVersion(metadataIndex.require(modelName), baseVersion);
+    }
+
+    private static void checkVersion(DmnMetadataIndex.ModelMetadata metadata, long baseVersion) {
+        if (metadata.getVersion() != baseVersion) {
+            throw new VersionConflictException(metadata.getName(), baseVersion, metadata.getVersion());
+        }
+    }
+
+    /**
+     * The live documents of the models edited on this instance, keyed by KieFileSystem path. A write to
+     * the ruleset store overlays them on the applied version, so an edit whose own write failed or is
+     * still queued is not undone by the next one.
+     */
+    public synchronized Map<String, byte[]> editedSources() {
+        Map<String, byte[]> out = new LinkedHashMap<>();
+        for (DmnMetadataIndex.ModelMetadata m : metadataIndex.getModels()) {
+            if (m.isEdited()) out.put(RulesetCompiler.kiePath(m.getResource()), toBytes(m.getDocument()));
+        }
+        return out;
+    }
+
+    // Changes a copy of the live document and publishes it; once it is live the metadata, and with it
+    // the document later edits start from, is re-indexed from the copy
+    private Result edit(String modelName, String decisionName, Long baseVersion, String version, String kind,
+                        Consumer<DmnModelRegistry> check, Function<Document, List<Map<String, Object>>> change) {
+        DmnMetadataIndex.ModelMetadata metadata = metadataIndex.require(modelName);
+        if (baseVersion != null) checkVersion(metadata, baseVersion);
+
+        long start = System.nanoTime();
+        Resource resource = metadata.getResource();
+        Document doc = (Document) metadata.getDocument().cloneNode(true);
+        List<Map<String, Object>> applied = change.apply(doc);
+        byte[] bytes = toBytes(doc);
+        String source = modelName + "/" + decisionName + kind;
+        CompletableFuture<Ruleset> build = rulesetHolder.rebuildModel(version, source, RulesetCompiler.kiePath(resource), bytes, check);
+        try {
+            build.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while compiling edit of " + modelName, e);
+        } catch (ExecutionException e) {
+            logger.warn("Edit {} not published: {}", source, e.getCause().getMessage());
+            return new Result(version, resource, doc, bytes, applied, build, metadata.getVersion());
+        }
+        DmnMetadataIndex.ModelMetadata reindexed = metadataIndex.reindex(resource, doc);
+        logger.info("Published edit {} as ruleset {} in {} ms", source, version, (System.nanoTime() - start) / 1_000_000);
+        return new Result(version, resource, doc, bytes, applied, build, reindexed.getVersion());
+    }
+
+    // a decision without a table (e.g. a literal expression) gets the table appended
+    private static void replaceTable(Document doc, String decisionName, String modelName, String decisionTableXml) {
+        Element table;
+        try {
+            table = DmnMetadataIndex.newDocumentBuilder().parse(new InputSource(new StringReader(decisionTableXml))).getDocumentElement();
+        } catch (Exception e) {
+            throw new IllegalArgumentException("decisionTableXml is not a well-formed decisionTable element: " + e.getMessage(), e);
+        }
+        for (Element decision : elements(doc.getDocumentElement(), "decision")) {
+            if (!decisionName.equalsIgnoreCase(decision.getAttribute("name"))) continue;
+            Node imported = doc.importNode(table, true);
+            List<Element> tables = elements(decision, "decisionTable");
+            if (tables.isEmpty()) {
+                decision.appendChild(imported);
+            } else {
+                decision.replaceChild(imported, tables.get(0));
+            }
+            return;
+        }
+        throw new RuntimeException("Decision not found to update: " + decisionName + " in model " + modelName);
+    }
+
+    private static Element decisionTable(Document doc, String decisionName, String modelName) {
+        for (Element decision : elements(doc.getDocumentElement(), "decision")) {
+            if (!decisionName.equalsIgnoreCase(decision.getAttribute("name"))) continue;
+            List<Element> tables = elements(decision, "decisionTable");
+            if (tables.isEmpty()) throw new IllegalArgumentException("Decision " + decisionName + " is not a decision table");
+            return tables.get(0);
+        }
+        throw new RuntimeException("Decision not found to update: " + decisionName + " in model " + modelName);
+    }
+
+    private static Map<String, Object> apply(Element table, Map<String, Object> operation) {
+        String op = String.valueOf(operation.get("op")).toLowerCase(Locale.ROOT);
+        List<Element> rules = elements(table, "rule");
+        Element rule;
+        switch (op) {
+            case "add":
+                int at = operation.get("index") == null ? rules.size() : index(operation.get("index"), rules.size());
+                rule = newRule(table, list(operation, "inputEntries", true), list(operation, "outputEntries", true),
+                        list(operation, "annotations", false));
+                insert(table, rules, rule, at);
+                break;
+            case "modify":
+                rule = find(rules, operation);
+                setTexts(rule, "inputEntry", list(operation, "inputEntries", false), columns(table, "input"));
+                setTexts(rule, "outputEntry", list(operation, "outputEntries", false), columns(table, "output"));
+                List<String> annotations = list(operation, "annotations", false);
+                if (annotations != null) {
+                    for (Element e : elements(rule, "annotationEntry")) rule.removeChild(e);
+                    for (String a : annotations) rule.appendChild(entry(rule.getOwnerDocument(), table.getPrefix(), "annotationEntry", a, false));
+                }
+                break;
+            case "delete":
+                rule = find(rules, operation);
+                table.removeChild(rule);
+                return outcome(op, rule, -1);
+            case "move":
+                rule = find(rules, operation);
+                if (operation.get("to") == null) throw new IllegalArgumentException("move needs 'to'");
+                int to = index(operation.get("to"), rules.size());
+                rules.remove(rule);
+                table.removeChild(rule);
+                insert(table, rules, rule, to);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown op '" + operation.get("op") + "', expected add, modify, delete or move");
+        }
+        return outcome(op, rule, elements(table, "rule").indexOf(rule));
+    }
+
+    private static Map<String, Object> outcome(String op, Element rule, int index) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("op", op);
+        out.put("ruleId", rule.getAttribute("id"));
+        out.put("index", index);
+        return out;
+    }
+
+    private static Element find(List<Element> rules, Map<String, Object> operation) {
+        Object ruleId = operation.get("ruleId");
+        if (ruleId != null) {
+            for (Element rule : rules) {
+                if (ruleId.toString().equals(rule.getAttribute("id"))) return rule;
+            }
+            throw new IllegalArgumentException("No rule with id " + ruleId);
+        }
+        if (operation.get("index") == null) throw new IllegalArgumentException("ruleId or index is required");
+        return rules.get(index(operation.get("index"), rules.size() - 1));
+    }
+
+    private static int index(Object value, int max) {
+        int i;
+        try {
+            i = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a row index: " + value);
+        }
+        if (i < 0 || i > max) throw new IllegalArgumentException("Row index " + i + " out of range 0.." + max);
+        return i;
+    }
+
+    // rules are the last children of a decision table, so a row past the end goes after the last rule
+    private static void insert(Element table, List<Element> rules, Element rule, int at) {
+        if (at < rules.size()) {
+            table.insertBefore(rule, rules.get(at));
+        } else {
+            table.appendChild(rule);
+        }
+    }
+
+    private static Element newRule(Element table, List<String> inputs, List<String> outputs, List<String> annotations) {
+        checkColumns(inputs, columns(table, "input"), "inputEntries");
+        checkColumns(outputs, columns(table, "output"), "outputEntries");
+        Document doc = table.getOwnerDocument();
+        String prefix = table.getPrefix();
+        Element rule = doc.createElementNS(DMN_NS, qualified(prefix, "rule"));
+        rule.setAttribute("id", newId());
+        for (String text : inputs) rule.appendChild(entry(doc, prefix, "inputEntry", text, true));
+        for (String text : outputs) rule.appendChild(entry(doc, prefix, "outputEntry", text, true));
+        if (annotations != null) {
+            for (String text : annotations) rule.appendChild(entry(doc, prefix, "annotationEntry", text, false));
+        }
+        return rule;
+    }
+
+    private static Element entry(Document doc, String prefix, String name, String text, boolean withId) {
+        Element entry = doc.createElementNS(DMN_NS, qualified(prefix, name));
+        if (withId) entry.setAttribute("id", newId());
+        entry.appendChild(text(doc, prefix, text));
+        return entry;
+    }
+
+    private static Element text(Document doc, String prefix, String text) {
+        Element t = doc.createElementNS(DMN_NS, qualified(prefix, "text"));
+        t.setTextContent(text == null ? "" : text);
+        return t;
+    }
+
+    private static void setTexts(Element rule, String entryName, List<String> texts, int columns) {
+        if (texts == null) return;
+        checkColumns(texts, columns, entryName + "s");
+        List<Element> entries = elements(rule, entryName);
+        if (entries.size() != columns) {
+            throw new IllegalArgumentException("Rule " + rule.getAttribute("id") + " has " + entries.size() + " " + entryName
+                    + " elements, the table has " + columns + " columns");
+        }
+        for (int i = 0; i < texts.size(); i++) {
+            if (texts.get(i) == null) continue;
+            List<Element> text = elements(entries.get(i), "text");
+            if (text.isEmpty()) {
+                entries.get(i).appendChild(text(rule.getOwnerDocument(), rule.getPrefix(), texts.get(i)));
+            } else {
+                text.get(0).setTextContent(texts.get(i));
+            }
+        }
+    }
+
+    private static void checkColumns(List<String> texts, int columns, String name) {
+        if (texts.size() != columns) {
+            throw new IllegalArgumentException(name + " has " + texts.size() + " entries, the table has " + columns + " columns");
+        }
+    }
+
+    private static int columns(Element table, String name) {
+        return elements(table, name).size();
+    }
+
+    private static List<String> list(Map<String, Object> operation, String name, boolean required) {
+        Object value = operation.get(name);
+        if (value == null) {
+            if (required) throw new IllegalArgumentException(name + " is required");
+            return null;
+        }
+        if (!(value instanceof List)) throw new IllegalArgumentException(name + " must be an array of FEEL texts");
+        List<String> out = new ArrayList<>();
+        for (Object o : (List<?>) value) out.add(o == null ? null : o.toString());
+        return out;
+    }
+
+    // direct DMN children with the given local name
+    private static List<Element> elements(Element parent, String localName) {
+        List<Element> out = new ArrayList<>();
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element && DMN_NS.equals(n.getNamespaceURI()) && localName.equals(n.getLocalName())) {
+                out.add((Element) n);
+            }
+        }
+        return out;
+    }
+
+    private static String qualified(String prefix, String name) {
+        return prefix == null || prefix.isEmpty() ? name : prefix + ":" + name;
+    }
+
+    private static String newId() {
+        return "_" + UUID.randomUUID().toString().toUpperCase(Locale.ROOT);
+    }
+
+    private static byte[] toBytes(Document doc) {
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            transformer.transform(new DOMSource(doc), new StreamResult(out));
+            return out.toByteArray();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialize edited DMN document", e);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.infinity.controller.dmn;
+
+import org.kie.api.builder.model.KieModuleModel;
+import org.kie.dmn.core.compiler.DMNCompilerConfigurationImpl;
+import org.kie.dmn.core.compiler.DMNCompilerImpl;
+import org.kie.dmn.core.compiler.DMNDecisionLogicCompiler;
+import org.kie.dmn.core.compiler.DMNDecisionLogicCompilerFactory;
+import org.kie.dmn.core.compiler.DMNEvaluatorCompiler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DMN compiler options of the rulesets this service builds: whether a build loads the decision tables
+ * precompiled by the kie-maven-plugin generateDMNModel goal or compiles everything at runtime, and
+ * which decision logic compilers runtime builds install.
+ *
+ * The options are written into the kmodule configuration of each build ({@link #configure}), from
+ * where the DMN assembler passes them to the compiler of that build only, so builds with different
+ * options can run at the same time.
+ *
+ * Runtime compilation can install {@link IndexedDecisionTableCompiler}, which evaluates FIRST hit
+ * decision tables through an equality index, and {@link PrunedDecisionTableCompiler}, which leaves the
+ * dead rows found by {@link DecisionTableAnalyzer} out of the compiled tables; both are left out of
+ * precompiled builds. Both modes wrap pure BKMs for per-evaluation memoization ({@link BkmMemo}) when
+ * it is enabled, with the BKMs declared pure or excluded by name.
+ */
+public final class DmnCompileMode {
+
+    // ExecModelCompilerOption: use precompiled classes when present, compile the rest at runtime
+    static final String EXEC_MODEL_OPTION = "org.kie.dmn.compiler.execmodel";
+    static final String DECISION_LOGIC_COMPILER_OPTION = "org.kie.dmn.decisionlogiccompilerfactory";
+    // read back by DecisionLogicCompilerFactory; the assembler only hands org.kie.dmn.* properties to the compiler
+    static final String INDEXED_TABLES_OPTION = "org.kie.dmn.infinity.tables.indexed";
+    static final String PRUNED_TABLES_OPTION = "org.kie.dmn.infinity.tables.pruned";
+    static final String BKM_MEMO_OPTION = "org.kie.dmn.infinity.bkm.memo";
+    // comma separated BKM names
+    static final String BKM_MEMO_PURE_OPTION = "org.kie.dmn.infinity.bkm.memo.pure";
+    static final String BKM_MEMO_EXCLUDE_OPTION = "org.kie.dmn.infinity.bkm.memo.exclude";
+
+    private final boolean indexedTables;
+    private final boolean prunedTables;
+    private final boolean bkmMemo;
+    private final Set<String> pureBkms;
+    private final Set<String> excludedBkms;
+
+    public DmnCompileMode(boolean indexedTables, boolean prunedTables) {
+        this(indexedTables, prunedTables, false, null, null);
+    }
+
+    public DmnCompileMode(boolean indexedTables, boolean prunedTables, boolean bkmMemo,
+                          Collection<String> pureBkms, Collection<String> excludedBkms) {
+        this.indexedTables = indexedTables;
+        this.prunedTables = prunedTables;
+        this.bkmMemo = bkmMemo;
+        this.pureBkms = names(pureBkms);
+        this.excludedBkms = names(excludedBkms);
+    }
+
+    private static Set<String> names(Collection<String> names) {
+        Set<String> out = new HashSet<>();
+        if (names != null) names.stream().map(String::trim).filter(n -> !n.isEmpty()).forEach(out::add);
+        return Set.copyOf(out);
+    }
+
+    /** Indexed tables, no pruning: the service defaults. */
+    public static DmnCompileMode defaults() {
+        return new DmnCompileMode(true, false);
+    }
+
+    /** Whether runtime builds compile decision tables with {@link IndexedDecisionTableCompiler}. */
+    public boolean isIndexedTables() {
+        return indexedTables;
+    }
+
+    /** Whether runtime builds leave dead decision table rows out, see {@link PrunedDecisionTableCompiler}. */
+    public boolean isPrunedTables() {
+        return prunedTables;
+    }
+
+    /** Whether builds memoize pure BKMs within each evaluation, see {@link BkmMemo}. */
+    public boolean isBkmMemo() {
+        return bkmMemo;
+    }
+
+    /** Writes the compiler options of one build, precompiled or at runtime, into its kmodule. */
+    public void configure(KieModuleModel kmodule, boolean precompiled) {
+        kmodule.setConfigurationProperty(EXEC_MODEL_OPTION, Boolean.toString(precompiled));
+        // sub-tables would be resolved to the precompiled class of the full table, so never mix the two
+        boolean indexing = indexedTables && !precompiled;
+        boolean pruning = prunedTables && !precompiled;
+        if (indexing || pruning || bkmMemo) {
+            kmodule.setConfigurationProperty(DECISION_LOGIC_COMPILER_OPTION, DecisionLogicCompilerFactory.class.getName());
+            kmodule.setConfigurationProperty(INDEXED_TABLES_OPTION, Boolean.toString(indexing));
+            kmodule.setConfigurationProperty(PRUNED_TABLES_OPTION, Boolean.toString(pruning));
+            kmodule.setConfigurationProperty(BKM_MEMO_OPTION, Boolean.toString(bkmMemo));
+            kmodule.setConfigurationProperty(BKM_MEMO_PURE_OPTION, String.join(",", pureBkms));
+            kmodule.setConfigurationProperty(BKM_MEMO_EXCLUDE_OPTION, String.join(",", excludedBkms));
+        }
+    }
+
+    /** Loaded by the DMN assembler from the {@code org.kie.dmn.decisionlogiccompilerfactory} option. */
+    public static class DecisionLogicCompilerFactory implements DMNDecisionLogicCompilerFactory {
+        @Override
+        public DMNDecisionLogicCompiler newDMNDecisionLogicCompiler(DMNCompilerImpl compiler,
+                                                                    DMNCompilerConfigurationImpl config) {
+            Map<String, String> options = config.getProperties();
+            DMNDecisionLogicCompiler logic = DMNEvaluatorCompiler.dmnEvaluatorCompilerFactory(compiler, config);
+            if (Boolean.parseBoolean(options.get(BKM_MEMO_OPTION))) {
+                logic = new BkmMemo.Compiler(logic, option(options, BKM_MEMO_PURE_OPTION), option(options, BKM_MEMO_EXCLUDE_OPTION));
+            }
+            if (Boolean.parseBoolean(options.get(INDEXED_TABLES_OPTION))) logic = new IndexedDecisionTableCompiler(logic);
+            return Boolean.parseBoolean(options.get(PRUNED_TABLES_OPTION)) ? new PrunedDecisionTableCompiler(logic) : logic;
+        }
+
+        private static Set<String> option(Map<String, String> options, String name) {
+            String value = options.get(name);
+            return value == null ? Set.of() : names(Arrays.asList(value.split(",")));
+        }
+    }
+}
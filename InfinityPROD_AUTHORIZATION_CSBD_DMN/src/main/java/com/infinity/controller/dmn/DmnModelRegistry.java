@@ -0,0 +1,311 @@
+package com.infinity.controller.dmn;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.kie.api.runtime.KieContainer;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.DMNRuntime;
+import org.kie.dmn.api.core.event.DMNRuntimeEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable snapshot of the DMN models of one ruleset version.
+ *
+ * Models are evaluated on the DMNRuntime of the container they were compiled into, so evaluations
+ * never allocate a KieSession, and lookups by model name (or namespace + name) are plain hash lookups.
+ * A ruleset is normally compiled as partitions, one container per DMN file (see {@link RulesetPart});
+ * the classpath container with partitioning disabled holds all models. A rule patch compiles the
+ * edited model alone and {@link #replace(RulesetPart) replaces} it in a copy of the registry that
+ * shares the other models' containers. A new registry is built whenever the rules change and swapped
+ * in as a whole by {@link RulesetHolder}.
+ *
+ * Category models are named after the service categories they cover (e.g. {@code PHT,SPT.dmn}), so
+ * the registry also keeps a category code to model table derived from the model resource names.
+ */
+public final class DmnModelRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(DmnModelRegistry.class);
+
+    // The project contains Quickwin.dmn with name="quickwins" and namespace="dmnRules"; the legacy
+    // /evaluate endpoint prefers it when no model is named.
+    static final String DEFAULT_MODEL_NAME = "quickwins";
+    static final String DEFAULT_NAMESPACE = "dmnRules";
+
+    private static final Pattern CATEGORY_CODE = Pattern.compile("[A-Z]{3}");
+
+    // plans are keyed by client-chosen decision subsets, so only the most used ones are kept
+    static final int MAX_PLANS = 1024;
+
+    // the first part (the replacement after a patch) backs getKieContainer() and getDmnRuntime()
+    private final List<RulesetPart> parts;
+    private final Map<String, RulesetPart> partsByModel;
+    private final Map<String, DMNModel> modelsByName;
+    private final Map<String, DMNModel> modelsByQualifiedName;
+    private final Map<String, DMNModel> modelsByCategory;
+    private final DMNModel defaultModel;
+    // Decision plans are derived from the models above, so they live and die with this registry
+    private final Cache<String, DecisionPlan> plans = Caffeine.newBuilder().maximumSize(MAX_PLANS).build();
+    private final Map<String, InputBinder> binders = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> finalDecisions = new ConcurrentHashMap<>();
+    private final Map<String, DecisionTableAnalyzer.Analysis> analyses = new ConcurrentHashMap<>();
+
+    private DmnModelRegistry(List<RulesetPart> parts, Map<String, RulesetPart> partsByModel, Map<String, DMNModel> modelsByName,
+                             Map<String, DMNModel> modelsByQualifiedName, Map<String, DMNModel> modelsByCategory,
+                             DMNModel defaultModel) {
+        this.parts = parts;
+        this.partsByModel = partsByModel;
+        this.modelsByName = modelsByName;
+        this.modelsByQualifiedName = modelsByQualifiedName;
+        this.modelsByCategory = modelsByCategory;
+        this.defaultModel = defaultModel;
+    }
+
+    public static DmnModelRegistry build(KieContainer kieContainer) {
+        return build(kieContainer, Collections.emptyList());
+    }
+
+    /** Builds the registry and attaches the given listeners (metrics, tracing) to its DMNRuntime. */
+    public static DmnModelRegistry build(KieContainer kieContainer, Collection<? extends DMNRuntimeEventListener> listeners) {
+        DmnModelRegistry registry = build(List.of(new RulesetPart(kieContainer, true)));
+        registry.addListeners(listeners);
+        return registry;
+    }
+
+    /** Builds a registry over compiled partitions, which it owns; no listeners are attached. */
+    static DmnModelRegistry build(List<RulesetPart> parts) {
+        List<DMNModel> models = new ArrayList<>();
+        Map<String, RulesetPart> partsByModel = new HashMap<>();
+        for (RulesetPart part : parts) {
+            for (DMNModel m : part.getDmnRuntime().getModels()) {
+                models.add(m);
+                partsByModel.putIfAbsent(qualifiedKey(m), part);
+            }
+        }
+        if (models.isEmpty()) {
+            logger.error("No DMN models available on the DMN runtime");
+            throw new RuntimeException("No DMN models available");
+        }
+        return index(new ArrayList<>(parts), partsByModel, models);
+    }
+
+    /**
+     * Returns a registry in which the models compiled into {@code part} replace the models of the
+     * same namespace and name; the other models keep running on their current containers, which the
+     * new registry retains. The caller must keep this registry pinned while the copy is built. The
+     * new registry owns {@code part}; no listeners are attached to it.
+     */
+    DmnModelRegistry replace(RulesetPart part) {
+        List<DMNModel> replacements = part.getDmnRuntime().getModels();
+        if (replacements == null || replacements.isEmpty()) {
+            throw new RuntimeException("No DMN models available in " + part.getKieContainer().getReleaseId());
+        }
+        Map<String, DMNModel> byKey = new LinkedHashMap<>();
+        Map<String, RulesetPart> partsByModel = new HashMap<>();
+        for (DMNModel m : modelsByName.values()) {
+            byKey.put(qualifiedKey(m), m);
+            partsByModel.put(qualifiedKey(m), this.partsByModel.get(qualifiedKey(m)));
+        }
+        for (DMNModel m : replacements) {
+            byKey.put(qualifiedKey(m), m);
+            partsByModel.put(qualifiedKey(m), part);
+        }
+        List<RulesetPart> kept = new ArrayList<>();
+        kept.add(part);
+        for (RulesetPart p : parts) {
+            if (partsByModel.containsValue(p)) kept.add(p.retain());
+        }
+        return index(kept, partsByModel, new ArrayList<>(byKey.values()));
+    }
+
+    private static DmnModelRegistry index(List<RulesetPart> parts, Map<String, RulesetPart> partsByModel, List<DMNModel> models) {
+        Map<String, DMNModel> byName = new LinkedHashMap<>();
+        Map<String, DMNModel> byQualifiedName = new HashMap<>();
+        Map<String, DMNModel> byCategory = new TreeMap<>();
+        DMNModel byDefaultName = null;
+        DMNModel byDefaultNamespace = null;
+        for (DMNModel m : models) {
+            String name = m.getName() == null ? "" : m.getName();
+            String ns = m.getNamespace() == null ? "" : m.getNamespace();
+            if (byName.putIfAbsent(key(name), m) != null) {
+                logger.warn("Duplicate DMN model name '{}' (namespace '{}'); keeping the first one", name, ns);
+            }
+            byQualifiedName.putIfAbsent(qualifiedKey(ns, name), m);
+            for (String code : categoryCodes(m)) {
+                DMNModel previous = byCategory.putIfAbsent(code, m);
+                if (previous != null && previous != m) {
+                    logger.warn("Service category {} is claimed by models '{}' and '{}'; routing to '{}'",
+                            code, previous.getName(), name, previous.getName());
+                }
+            }
+            if (byDefaultName == null && DEFAULT_MODEL_NAME.equalsIgnoreCase(name)) byDefaultName = m;
+            if (byDefaultNamespace == null && DEFAULT_NAMESPACE.equalsIgnoreCase(ns)) byDefaultNamespace = m;
+        }
+
+        DMNModel defaultModel = byDefaultName != null ? byDefaultName
+                : byDefaultNamespace != null ? byDefaultNamespace
+                : models.get(0);
+        if (byDefaultName == null) {
+            logger.warn("Using fallback DMN model: name='{}' namespace='{}'", defaultModel.getName(), defaultModel.getNamespace());
+        }
+        logger.info("Built DMN model registry with {} models on {} containers: {}", byName.size(), parts.size(), byName.keySet());
+        logger.info("Service category routing table covers {} categories", byCategory.size());
+        return new DmnModelRegistry(Collections.unmodifiableList(parts), Collections.unmodifiableMap(partsByModel),
+                Collections.unmodifiableMap(byName), Collections.unmodifiableMap(byQualifiedName),
+                Collections.unmodifiableMap(byCategory), defaultModel);
+    }
+
+    /** Attaches listeners (metrics, tracing) to the DMNRuntimes of all containers. */
+    void addListeners(Collection<? extends DMNRuntimeEventListener> listeners) {
+        for (RulesetPart part : parts) listeners.forEach(part.getDmnRuntime()::addListener);
+    }
+
+    /** Partitions by source path, for the next compilation to take over the unchanged ones. */
+    Map<String, RulesetPart> partitionsBySource() {
+        Map<String, RulesetPart> out = new HashMap<>();
+        for (RulesetPart part : parts) {
+            if (part.getPath() != null) out.put(part.getPath(), part);
+        }
+        return out;
+    }
+
+    /** One entry per container: release id, source file, models, compile time and heap figures. */
+    public List<Map<String, Object>> getPartitions() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        parts.forEach(p -> out.add(p.describe()));
+        return out;
+    }
+
+    /** Gives back this registry's references to its containers; see {@link Ruleset#close()}. */
+    void release() {
+        parts.forEach(RulesetPart::release);
+    }
+
+    // Category codes are the comma separated, three letter upper-case parts of the resource file
+    // name, e.g. "HEM,CHE,HHC,PRX,OPH,PHO,RAD.dmn". Other models (universal, denial_*) yield none.
+    static List<String> categoryCodes(DMNModel model) {
+        String sourcePath = null;
+        try {
+            if (model.getResource() != null) sourcePath = model.getResource().getSourcePath();
+        } catch (Exception e) {
+            logger.debug("No resource available for DMN model {}: {}", model.getName(), e.getMessage());
+        }
+        if (sourcePath == null || sourcePath.isEmpty()) return Collections.emptyList();
+
+        String fileName = sourcePath.substring(Math.max(sourcePath.lastIndexOf('/'), sourcePath.lastIndexOf('\\')) + 1);
+        if (fileName.endsWith(".dmn")) fileName = fileName.substring(0, fileName.length() - ".dmn".length());
+        List<String> codes = new ArrayList<>();
+        for (String part : fileName.split(",")) {
+            String code = part.trim();
+            if (CATEGORY_CODE.matcher(code).matches()) codes.add(code);
+        }
+        return codes;
+    }
+
+    /** Returns the model with the given name (case-insensitive), or null. */
+    public DMNModel find(String modelName) {
+        return modelName == null ? null : modelsByName.get(key(modelName));
+    }
+
+    /** Returns the model with the given namespace and name, or null. */
+    public DMNModel find(String namespace, String modelName) {
+        if (namespace == null || namespace.isEmpty()) return find(modelName);
+        return modelName == null ? null : modelsByQualifiedName.get(qualifiedKey(namespace, modelName));
+    }
+
+    public DMNModel require(String namespace, String modelName) {
+        DMNModel model = find(namespace, modelName);
+        if (model == null) {
+            throw new RuntimeException("Model not found: " + modelName);
+        }
+        return model;
+    }
+
+    /** Returns the category model covering the given service category code, or null. */
+    public DMNModel findByCategory(String categoryCode) {
+        return categoryCode == null ? null : modelsByCategory.get(categoryCode.trim().toUpperCase(Locale.ROOT));
+    }
+
+    public Map<String, DMNModel> getModelsByCategory() {
+        return modelsByCategory;
+    }
+
+    /**
+     * Returns the cached evaluation plan for the given decisions of a model, computing it on first use.
+     * At most {@link #MAX_PLANS} plans are kept per registry; evicted ones are computed again.
+     */
+    public DecisionPlan plan(DMNModel model, Collection<String> decisionNames) {
+        String key = DecisionPlan.cacheKey(model, decisionNames);
+        DecisionPlan plan = plans.getIfPresent(key);
+        if (plan == null) {
+            plan = plans.get(key, k -> DecisionPlan.compute(model, decisionNames));
+            logger.debug("Computed decision plan for model '{}' targets {}: {} decisions, {} skipped",
+                    model.getName(), plan.getTargetNames(), plan.getClosure().size(), plan.getSkipped());
+        }
+        return plan;
+    }
+
+    long cachedPlans() {
+        plans.cleanUp();
+        return plans.estimatedSize();
+    }
+
+    /** Returns the cached names of the model's final decisions, those no other decision requires. */
+    public List<String> finalDecisions(DMNModel model) {
+        return finalDecisions.computeIfAbsent(qualifiedKey(model.getNamespace(), model.getName()),
+                k -> DecisionPlan.finalDecisions(model));
+    }
+
+    /** Returns the cached static analysis of a model's decision tables, see {@link DecisionTableAnalyzer}. */
+    public DecisionTableAnalyzer.Analysis analysis(DMNModel model) {
+        return analyses.computeIfAbsent(qualifiedKey(model.getNamespace(), model.getName()),
+                k -> DecisionTableAnalyzer.analyze(model.getDefinitions()));
+    }
+
+    /** Returns the cached input binder for a model, building it from the model's input types on first use. */
+    public InputBinder binder(DMNModel model) {
+        return binders.computeIfAbsent(qualifiedKey(model.getNamespace(), model.getName()), k -> InputBinder.forModel(model));
+    }
+
+    public DMNModel getDefaultModel() {
+        return defaultModel;
+    }
+
+    public Collection<DMNModel> getModels() {
+        return modelsByName.values();
+    }
+
+    /** The DMNRuntime of the container the model was compiled into; evaluate the model on this one. */
+    public DMNRuntime runtime(DMNModel model) {
+        RulesetPart part = partsByModel.get(qualifiedKey(model));
+        return part == null ? getDmnRuntime() : part.getDmnRuntime();
+    }
+
+    /**
+     * The DMNRuntime of the first container, e.g. to create contexts; a model must be evaluated on
+     * {@link #runtime(DMNModel)}, partitions do not see each other's models.
+     */
+    public DMNRuntime getDmnRuntime() {
+        return parts.get(0).getDmnRuntime();
+    }
+
+    public KieContainer getKieContainer() {
+        return parts.get(0).getKieContainer();
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    private static String qualifiedKey(DMNModel model) {
+        return qualifiedKey(model.getNamespace() == null ? "" : model.getNamespace(), model.getName() == null ? "" : model.getName());
+    }
+
+    private static String qualifiedKey(String namespace, String name) {
+        return namespace.toLowerCase(Locale.ROOT) + "::" + name.toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,218 @@
+package com.infinity.controller.dmn;
+
+import org.kie.api.KieServices;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieRuntimeFactory;
+import org.kie.dmn.api.core.DMNRuntime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Loads the classpath ruleset at startup and records how long it took: partitioned, one KieBase per
+ * DMN file built in parallel, or as a single classpath container. Either way the decision tables are
+ * loaded from the build-time precompiled DMN artifacts or compiled at runtime. Precompiled artifacts
+ * are only used for the DMN files whose digest recorded by the build matches the file on the
+ * classpath (per partition, or all files for the single container).
+ *
+ * With {@code decision.precompiled.compare-on-startup} the other single-container path is also timed
+ * once the application is ready (on the ruleset build executor, so it never competes with an edit)
+ * and the loads are reported side by side.
+ */
+@Component
+public class DmnStartupReport {
+
+    private static final Logger logger = LoggerFactory.getLogger(DmnStartupReport.class);
+
+    // written by the maven-antrun checksum task of the dmn-precompile profile
+    private static final String DIGESTS_DIR = "META-INF/dmn-digests/";
+    private static final String DIGEST_EXTENSION = ".SHA-256";
+    private static final String RESOURCES_ROOT = "src/main/resources/";
+
+    private final List<Map<String, Object>> entries = Collections.synchronizedList(new ArrayList<>());
+    private final ExecutorService buildExecutor;
+
+    @Value("${decision.precompiled.compare-on-startup:false}")
+    private boolean compareOnStartup;
+
+    @Value("${decision.partitions.measure-retained-heap:false}")
+    private boolean measureRetainedHeap;
+
+    private volatile boolean precompiledUsed;
+    private volatile boolean partitionsUsed;
+
+    private final RulesetCompiler rulesetCompiler;
+    private final DmnCompileMode compileMode;
+
+    public DmnStartupReport(@Qualifier("rulesetBuildExecutor") ExecutorService buildExecutor, RulesetCompiler rulesetCompiler,
+                            DmnCompileMode compileMode) {
+        this.buildExecutor = buildExecutor;
+        this.rulesetCompiler = rulesetCompiler;
+        this.compileMode = compileMode;
+    }
+
+    /**
+     * Loads the classpath rules into the registry of the first ruleset version. With {@code partitioned}
+     * every DMN file gets a KieBase of its own, built in parallel; with {@code precompiled} the files
+     * the build precompiled load those classes, the others are compiled at runtime.
+     */
+    public DmnModelRegistry loadClasspathRegistry(boolean precompiled, boolean partitioned) {
+        if (!partitioned) return DmnModelRegistry.build(loadClasspathContainer(precompiled), Collections.emptyList());
+        Map<String, byte[]> sources = rulesetCompiler.readClasspathSources();
+        Set<String> precompiledPaths = new HashSet<>();
+        if (precompiled) {
+            List<String> stale = staleSources(sources);
+            for (String path : sources.keySet()) {
+                if (!stale.contains(path.substring(RESOURCES_ROOT.length()))) precompiledPaths.add(path);
+            }
+            if (!stale.isEmpty()) {
+                logger.warn("Precompiled DMN artifacts do not match the DMN sources {}, compiling those partitions at runtime", stale);
+            }
+        }
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        if (measureRetainedHeap) memory.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long start = System.nanoTime();
+        DmnModelRegistry registry = DmnModelRegistry.build(
+                rulesetCompiler.compilePartitions("classpath", sources, Collections.emptyMap(), precompiledPaths));
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        if (measureRetainedHeap) memory.gc();
+        partitionsUsed = true;
+        int precompiledParts = 0;
+        for (Map<String, Object> part : registry.getPartitions()) {
+            if (Boolean.TRUE.equals(part.get("precompiled"))) precompiledParts++;
+        }
+        precompiledUsed = precompiledParts > 0;
+        warnUnindexed(precompiledUsed);
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("mode", "partitioned");
+        entry.put("phase", "startup");
+        entry.put("millis", millis);
+        entry.put("models", registry.getModels().size());
+        entry.put("precompiledPartitions", precompiledParts);
+        entry.put("retainedBytes", measureRetainedHeap ? Math.max(0, memory.getHeapMemoryUsage().getUsed() - heapBefore) : null);
+        entry.put("partitions", registry.getPartitions());
+        entries.add(entry);
+        logger.info("Loaded {} DMN models in {} partitions ({} precompiled) in {} ms", registry.getModels().size(),
+                registry.getPartitions().size(), precompiledParts, millis);
+        return registry;
+    }
+
+    /**
+     * Loads the classpath container, compiling at runtime when the precompiled load fails or the
+     * precompiled classes were generated from other DMN sources than those on the classpath.
+     */
+    public KieContainer loadClasspathContainer(boolean precompiled) {
+        Map<String, byte[]> sources = rulesetCompiler.readClasspathSources();
+        if (precompiled) {
+            List<String> stale = staleSources(sources);
+            if (!stale.isEmpty()) {
+                logger.warn("Precompiled DMN artifacts do not match the DMN sources {}, compiling at runtime", stale);
+            } else {
+                try {
+                    KieContainer container = timedLoad(sources, true, "startup");
+                    precompiledUsed = true;
+                    warnUnindexed(true);
+                    return container;
+                } catch (RuntimeException e) {
+                    logger.warn("Loading precompiled DMN artifacts failed, compiling at runtime: {}", e.getMessage());
+                }
+            }
+        }
+        precompiledUsed = false;
+        return timedLoad(sources, false, "startup");
+    }
+
+    // precompiled tables are loaded as generated, so neither indexed nor pruned until they are edited
+    private void warnUnindexed(boolean precompiled) {
+        if (precompiled && (compileMode.isIndexedTables() || compileMode.isPrunedTables())) {
+            logger.warn("Precompiled DMN decision tables are loaded as generated: decision.tables.indexed and "
+                    + "decision.tables.prune-dead-rows only apply to tables compiled at runtime (edited models, or "
+                    + "decision.precompiled.enabled=false)");
+        }
+    }
+
+    /**
+     * Sources whose SHA-256 differs from the digest the dmn-precompile build recorded next to the
+     * generated classes ({@code META-INF/dmn-digests/<path>.SHA-256}), or that have no digest, e.g.
+     * a DMN file rewritten by a table edit after the build.
+     */
+    static List<String> staleSources(Map<String, byte[]> sources) {
+        List<String> stale = new ArrayList<>();
+        ClassLoader classLoader = DmnStartupReport.class.getClassLoader();
+        for (Map.Entry<String, byte[]> source : sources.entrySet()) {
+            String path = source.getKey().substring(RESOURCES_ROOT.length());
+            try (InputStream is = classLoader.getResourceAsStream(DIGESTS_DIR + path + DIGEST_EXTENSION)) {
+                String recorded = is == null ? null : new String(is.readAllBytes(), StandardCharsets.US_ASCII).trim();
+                if (recorded == null || !recorded.equalsIgnoreCase(RulesetCompiler.digest(source.getValue()))) stale.add(path);
+            } catch (IOException e) {
+                stale.add(path);
+            }
+        }
+        return stale;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void compareOnReady() {
+        if (!compareOnStartup) return;
+        boolean other = !precompiledUsed;
+        buildExecutor.submit(() -> {
+            try {
+                Map<String, byte[]> sources = rulesetCompiler.readClasspathSources();
+                if (other && !staleSources(sources).isEmpty()) {
+                    logger.info("DMN startup comparison skipped: precompiled artifacts do not match the DMN sources");
+                    return;
+                }
+                KieContainer container = timedLoad(sources, other, "comparison");
+                container.dispose();
+                KieServices.Factory.get().getRepository().removeKieModule(container.getReleaseId());
+                logger.info("DMN startup comparison: {}", entries);
+            } catch (Exception e) {
+                logger.warn("DMN startup comparison ({}) failed: {}", mode(other), e.getMessage());
+            }
+        });
+    }
+
+    private KieContainer timedLoad(Map<String, byte[]> sources, boolean precompiled, String phase) {
+        long start = System.nanoTime();
+        // compile() builds the KieBase, which is what compiles the DMN models, so it is inside the timing
+        KieContainer container = rulesetCompiler.compile("classpath-" + mode(precompiled) + "-" + phase, sources, precompiled);
+        DMNRuntime runtime = KieRuntimeFactory.of(container.getKieBase()).get(DMNRuntime.class);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("mode", mode(precompiled));
+        entry.put("phase", phase);
+        entry.put("millis", millis);
+        entry.put("models", runtime.getModels().size());
+        entries.add(entry);
+        logger.info("Loaded {} DMN models ({}) in {} ms", runtime.getModels().size(), mode(precompiled), millis);
+        return container;
+    }
+
+    private static String mode(boolean precompiled) {
+        return precompiled ? "precompiled" : "runtime";
+    }
+
+    public Map<String, Object> getReport() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("activeMode", partitionsUsed ? "partitioned-" + mode(precompiledUsed) : mode(precompiledUsed));
+        synchronized (entries) {
+            out.put("loads", new ArrayList<>(entries));
+        }
+        return out;
+    }
+}
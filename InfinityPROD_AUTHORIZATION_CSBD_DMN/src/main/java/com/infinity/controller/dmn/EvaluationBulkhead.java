@@ -0,0 +1,252 @@
+package com.infinity.controller.dmn;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Per-model concurrency limits and deadlines for evaluations.
+ *
+ * Every model gets its own compartment of {@code decision.bulkhead.default-limit} concurrent
+ * evaluations (overridable per model with {@code decision.bulkhead.limits}), so a burst on a heavy
+ * model such as line_level_denial cannot take the capacity the cheap models need. A request that
+ * finds its compartment full waits in a queue of at most {@code decision.bulkhead.max-queue}
+ * requests for up to {@code decision.bulkhead.max-wait}; otherwise it is rejected right away with
+ * {@link BulkheadFullException} (HTTP 429).
+ *
+ * Admitted evaluations run on the decision request executor (virtual threads when the JVM has them)
+ * and the caller waits until {@code decision.deadline}, counted from admission request, before giving
+ * up with {@link DeadlineExceededException} (HTTP 504). The DMN engine cannot be interrupted
+ * mid-evaluation, so an abandoned evaluation keeps its permit and its ruleset reference until it
+ * finishes; one that has not started yet is dropped.
+ *
+ * Meters, per model: {@code dmn.bulkhead.active}, {@code dmn.bulkhead.queue.depth},
+ * {@code dmn.bulkhead.rejected} (reason queue_full or queue_timeout) and
+ * {@code dmn.evaluation.deadline.exceeded}.
+ */
+@Component
+public class EvaluationBulkhead {
+
+    private static final Logger logger = LoggerFactory.getLogger(EvaluationBulkhead.class);
+
+    /** Thrown when a model's compartment and queue are full; mapped to 429. */
+    public static class BulkheadFullException extends RuntimeException {
+        private final String model;
+
+        public BulkheadFullException(String model, String reason) {
+            super("Too many concurrent evaluations of model " + model + " (" + reason + ")");
+            this.model = model;
+        }
+
+        public String getModel() {
+            return model;
+        }
+    }
+
+    /** Thrown when an evaluation does not finish before its deadline; mapped to 504. */
+    public static class DeadlineExceededException extends RuntimeException {
+        public DeadlineExceededException(String model, Duration deadline) {
+            super("Evaluation of model " + model + " did not finish within " + deadline.toMillis() + " ms");
+        }
+    }
+
+    private final class Compartment {
+        final String model;
+        final int limit;
+        final Semaphore permits;
+        final AtomicInteger waiting = new AtomicInteger();
+        final Counter queueFull;
+        final Counter queueTimeout;
+        final Counter deadlineExceeded;
+
+        Compartment(String model, int limit) {
+            this.model = model;
+            this.limit = limit;
+            this.permits = new Semaphore(limit);
+            Gauge.builder("dmn.bulkhead.active", permits, p -> limit - p.availablePermits())
+                    .description("Evaluations holding a bulkhead permit").tag("model", model).register(meterRegistry);
+            Gauge.builder("dmn.bulkhead.queue.depth", waiting, AtomicInteger::get)
+                    .description("Evaluations waiting for a bulkhead permit").tag("model", model).register(meterRegistry);
+            this.queueFull = rejected(model, "queue_full");
+            this.queueTimeout = rejected(model, "queue_timeout");
+            this.deadlineExceeded = Counter.builder("dmn.evaluation.deadline.exceeded")
+                    .description("Evaluations abandoned at their deadline").tag("model", model).register(meterRegistry);
+        }
+
+        private Counter rejected(String model, String reason) {
+            return Counter.builder("dmn.bulkhead.rejected")
+                    .description("Evaluations rejected by the bulkhead")
+                    .tag("model", model).tag("reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+
+    private final boolean enabled;
+    private final int defaultLimit;
+    private final Map<String, Integer> limits;
+    private final int maxQueue;
+    private final Duration maxWait;
+    private final Duration deadline;
+    private final ExecutorService executor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Compartment> compartments = new ConcurrentHashMap<>();
+
+    public EvaluationBulkhead(@Value("${decision.bulkhead.enabled:false}") boolean enabled,
+                              @Value("${decision.bulkhead.default-limit:32}") int defaultLimit,
+                              @Value("${decision.bulkhead.limits:}") List<String> limits,
+                              @Value("${decision.bulkhead.max-queue:0}") int maxQueue,
+                              @Value("${decision.bulkhead.max-wait:PT0S}") Duration maxWait,
+                              @Value("${decision.deadline:PT0S}") Duration deadline,
+                              @Qualifier("decisionRequestExecutor") ExecutorService executor,
+                              MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.defaultLimit = Math.max(1, defaultLimit);
+        this.limits = parseLimits(limits);
+        this.maxQueue = Math.max(0, maxQueue);
+        this.maxWait = maxWait;
+        this.deadline = deadline;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        if (enabled) {
+            logger.info("Evaluation bulkhead: {} per model (overrides {}), queue {} for up to {}, deadline {}",
+                    this.defaultLimit, this.limits, this.maxQueue, maxWait, deadline.isZero() ? "none" : deadline);
+        }
+    }
+
+    // "line_level_denial=8,claim_level_denial=8"
+    private static Map<String, Integer> parseLimits(List<String> entries) {
+        Map<String, Integer> out = new TreeMap<>();
+        for (String entry : entries) {
+            if (entry == null || entry.isBlank()) continue;
+            int eq = entry.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("decision.bulkhead.limits entry must be model=limit: " + entry);
+            out.put(entry.substring(0, eq).trim(), Math.max(1, Integer.parseInt(entry.substring(eq + 1).trim())));
+        }
+        return out;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs {@code evaluation} against the pinned {@code ruleset} within the compartment of
+     * {@code model}. The ruleset stays pinned until the evaluation has finished, even when the
+     * caller has already given up on it.
+     */
+    public <T> T execute(Ruleset ruleset, String model, Supplier<T> evaluation) {
+        if (!enabled) return evaluation.get();
+        long start = System.nanoTime();
+        Compartment c = compartments.computeIfAbsent(model, m -> new Compartment(m, limits.getOrDefault(m, defaultLimit)));
+        admit(c, start);
+        if (deadline.isZero()) {
+            try {
+                return evaluation.get();
+            } finally {
+                c.permits.release();
+            }
+        }
+
+        // claimed by whichever of the task and the timed-out caller gets to it first
+        AtomicBoolean claimed = new AtomicBoolean();
+        ruleset.retain();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                if (!claimed.compareAndSet(false, true)) return null;
+                try {
+                    return evaluation.get();
+                } finally {
+                    c.permits.release();
+                    ruleset.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            c.permits.release();
+            ruleset.close();
+            throw e;
+        }
+
+        long remaining = deadline.toNanos() - (System.nanoTime() - start);
+        try {
+            return future.get(Math.max(0L, remaining), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            abandon(c, claimed, future, ruleset);
+            c.deadlineExceeded.increment();
+            throw new DeadlineExceededException(model, deadline);
+        } catch (InterruptedException e) {
+            abandon(c, claimed, future, ruleset);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while evaluating model " + model, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private void admit(Compartment c, long start) {
+        if (c.permits.tryAcquire()) return;
+        if (c.waiting.incrementAndGet() > maxQueue) {
+            c.waiting.decrementAndGet();
+            c.queueFull.increment();
+            throw new BulkheadFullException(c.model, "queue_full");
+        }
+        try {
+            long wait = maxWait.toNanos();
+            if (!deadline.isZero()) wait = Math.min(wait, deadline.toNanos() - (System.nanoTime() - start));
+            if (wait > 0 && c.permits.tryAcquire(wait, TimeUnit.NANOSECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            c.waiting.decrementAndGet();
+        }
+        c.queueTimeout.increment();
+        throw new BulkheadFullException(c.model, "queue_timeout");
+    }
+
+    // a task that never started gives its permit and ruleset reference back here
+    private static void abandon(Compartment c, AtomicBoolean claimed, Future<?> future, Ruleset ruleset) {
+        if (claimed.compareAndSet(false, true)) {
+            c.permits.release();
+            ruleset.close();
+        }
+        future.cancel(true);
+    }
+
+    /** Limits and current occupancy per model, for the status endpoint. */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("defaultLimit", defaultLimit);
+        out.put("limits", limits);
+        out.put("maxQueue", maxQueue);
+        out.put("maxWait", maxWait.toString());
+        out.put("deadline", deadline.toString());
+        Map<String, Object> models = new TreeMap<>();
+        compartments.forEach((model, c) -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("limit", c.limit);
+            m.put("active", c.limit - c.permits.availablePermits());
+            m.put("queued", c.waiting.get());
+            m.put("rejected", (long) (c.queueFull.count() + c.queueTimeout.count()));
+            m.put("deadlineExceeded", (long) c.deadlineExceeded.count());
+            models.put(model, m);
+        });
+        out.put("models", models);
+        return out;
+    }
+}
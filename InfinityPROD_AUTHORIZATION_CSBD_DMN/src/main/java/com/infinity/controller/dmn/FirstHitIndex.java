@@ -0,0 +1,184 @@
+package com.infinity.controller.dmn;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Equality index over the input entries of a FIRST hit decision table.
+ *
+ * For every indexed input column the rows are split into rows whose entry is a plain literal (or a
+ * list of literals: {@code "A","B"}, {@code true}, {@code 12.5}), keyed by the literal, and rows
+ * that accept any value as far as the index is concerned ({@code -} and every other unary test).
+ * The candidate rows for an input are the intersection over the indexed columns of
+ * {@code rows[value] | wildcards}. A row outside the candidate set has a literal entry that differs
+ * from the input, so it cannot match; candidate rows still have to be checked by the engine, which
+ * is why FIRST semantics are kept as long as candidates are checked lowest row first.
+ *
+ * Row sets are bit masks, so tables with more than {@link #MAX_ROWS} rows are not indexed. Values
+ * the index does not know how to compare (dates, lists, contexts) never narrow the candidates: such a
+ * column is skipped silently, which sends the evaluation to the full scan when no other column
+ * narrows. {@link IndexedDecisionTableCompiler} counts those evaluations ({@link #hasUnkeyedValue}).
+ */
+final class FirstHitIndex {
+
+    static final int MAX_ROWS = 64;
+
+    private final int rowCount;
+    private final long allRows;
+    // input positions of the indexed columns, with one key map and wildcard mask per column
+    private final int[] columns;
+    private final List<Map<Object, Long>> keyRows;
+    private final long[] wildcardRows;
+    private final Set<Long> candidateSets;
+
+    private FirstHitIndex(int rowCount, long allRows, int[] columns, List<Map<Object, Long>> keyRows,
+                          long[] wildcardRows, Set<Long> candidateSets) {
+        this.rowCount = rowCount;
+        this.allRows = allRows;
+        this.columns = columns;
+        this.keyRows = keyRows;
+        this.wildcardRows = wildcardRows;
+        this.candidateSets = Collections.unmodifiableSet(candidateSets);
+    }
+
+    /**
+     * Builds the index from the input entry texts ({@code entries.get(row).get(column)}). Columns
+     * are added left to right while the number of distinct candidate sets stays within
+     * {@code maxCandidateSets}. Returns null when no column narrows the rows.
+     */
+    static FirstHitIndex build(List<List<String>> entries, int inputCount, int maxCandidateSets) {
+        int rowCount = entries.size();
+        if (rowCount == 0 || rowCount > MAX_ROWS) return null;
+        long all = rowCount == MAX_ROWS ? -1L : (1L << rowCount) - 1;
+
+        List<Integer> columns = new ArrayList<>();
+        List<Map<Object, Long>> keyRows = new ArrayList<>();
+        List<Long> wildcards = new ArrayList<>();
+        Set<Long> candidateSets = new HashSet<>(Collections.singleton(all));
+        for (int c = 0; c < inputCount; c++) {
+            Map<Object, Long> keys = new HashMap<>();
+            long wildcard = 0L;
+            for (int r = 0; r < rowCount; r++) {
+                List<String> row = entries.get(r);
+                List<Object> literals = c < row.size() ? parseLiterals(row.get(c)) : null;
+                if (literals == null) {
+                    wildcard |= 1L << r;
+                } else {
+                    for (Object key : literals) keys.merge(key, 1L << r, (a, b) -> a | b);
+                }
+            }
+            if (keys.isEmpty()) continue;
+
+            Set<Long> next = new HashSet<>();
+            for (long set : candidateSets) {
+                next.add(set & wildcard);
+                for (long rows : keys.values()) next.add(set & (rows | wildcard));
+            }
+            if (next.size() > maxCandidateSets) continue;
+            candidateSets = next;
+            columns.add(c);
+            keyRows.add(keys);
+            wildcards.add(wildcard);
+        }
+        if (columns.isEmpty()) return null;
+        return new FirstHitIndex(rowCount, all,
+                columns.stream().mapToInt(Integer::intValue).toArray(),
+                keyRows,
+                wildcards.stream().mapToLong(Long::longValue).toArray(),
+                candidateSets);
+    }
+
+    int getRowCount() {
+        return rowCount;
+    }
+
+    long getAllRows() {
+        return allRows;
+    }
+
+    int getIndexedColumnCount() {
+        return columns.length;
+    }
+
+    /** Candidate rows (bit {@code r} set for row {@code r}) for the evaluated input values. */
+    long candidates(Object[] inputs) {
+        long set = allRows;
+        for (int i = 0; i < columns.length && set != 0L; i++) {
+            Object value = inputs[columns[i]];
+            if (value != null && !isKeyType(value)) continue;
+            Long rows = value == null ? null : keyRows.get(i).get(key(value));
+            set &= rows == null ? wildcardRows[i] : rows | wildcardRows[i];
+        }
+        return set;
+    }
+
+    /** Whether an indexed column got a value that is not a key type, so {@link #candidates} skipped it. */
+    boolean hasUnkeyedValue(Object[] inputs) {
+        for (int column : columns) {
+            Object value = inputs[column];
+            if (value != null && !isKeyType(value)) return true;
+        }
+        return false;
+    }
+
+    /** Every candidate set {@link #candidates} can return, so they can be prepared up front. */
+    Set<Long> candidateSets() {
+        return candidateSets;
+    }
+
+    private static boolean isKeyType(Object value) {
+        return value instanceof String || value instanceof Boolean || value instanceof Number;
+    }
+
+    // FEEL compares numbers by value, so 5 and 5.00 must share a key
+    private static Object key(Object value) {
+        if (value instanceof BigDecimal) return normalize((BigDecimal) value);
+        if (value instanceof Number) return normalize(new BigDecimal(value.toString()));
+        return value;
+    }
+
+    private static BigDecimal normalize(BigDecimal n) {
+        return n.signum() == 0 ? BigDecimal.ZERO : n.stripTrailingZeros();
+    }
+
+    /**
+     * The literal values of a unary test made only of comma separated string, boolean and number
+     * literals, or null for anything else ({@code -}, ranges, negations, expressions).
+     */
+    static List<Object> parseLiterals(String text) {
+        if (text == null) return null;
+        List<Object> values = new ArrayList<>();
+        int i = 0;
+        int n = text.length();
+        while (true) {
+            while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+            if (i == n) return null;
+            int start = i;
+            if (text.charAt(i) == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end < 0) return null;
+                String value = text.substring(i + 1, end);
+                // escapes are left to the FEEL engine
+                if (value.indexOf('\\') >= 0) return null;
+                values.add(value);
+                i = end + 1;
+            } else {
+                while (i < n && text.charAt(i) != ',' && !Character.isWhitespace(text.charAt(i))) i++;
+                Object value = parseToken(text.substring(start, i));
+                if (value == null) return null;
+                values.add(value);
+            }
+            while (i < n && Character.isWhitespace(text.charAt(i))) i++;
+            if (i == n) return values;
+            if (text.charAt(i) != ',') return null;
+            i++;
+        }
+    }
+
+    private static Object parseToken(String token) {
+        if ("true".equals(token)) return Boolean.TRUE;
+        if ("false".equals(token)) return Boolean.FALSE;
+        if (!token.matches("-?\\d+(\\.\\d+)?")) return null;
+        return normalize(new BigDecimal(token));
+    }
+}
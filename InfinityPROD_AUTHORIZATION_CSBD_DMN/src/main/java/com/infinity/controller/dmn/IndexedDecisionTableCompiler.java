@@ -0,0 +1,336 @@
+package com.infinity.controller.dmn;
+
+import org.kie.dmn.api.core.DMNResult;
+import org.kie.dmn.api.core.event.AfterEvaluateBKMEvent;
+import org.kie.dmn.api.core.event.AfterEvaluateContextEntryEvent;
+import org.kie.dmn.api.core.event.AfterEvaluateDecisionTableEvent;
+import org.kie.dmn.api.core.event.AfterInvokeBKMEvent;
+import org.kie.dmn.api.core.event.BeforeEvaluateBKMEvent;
+import org.kie.dmn.api.core.event.BeforeEvaluateContextEntryEvent;
+import org.kie.dmn.api.core.event.BeforeEvaluateDecisionTableEvent;
+import org.kie.dmn.api.core.event.BeforeInvokeBKMEvent;
+import org.kie.dmn.api.core.event.DMNRuntimeEventListener;
+import org.kie.dmn.api.core.event.DMNRuntimeEventManager;
+import org.kie.dmn.core.api.DMNExpressionEvaluator;
+import org.kie.dmn.core.api.EvaluatorResult;
+import org.kie.dmn.core.ast.DMNBaseNode;
+import org.kie.dmn.core.compiler.DMNCompilerContext;
+import org.kie.dmn.core.compiler.DMNDecisionLogicCompiler;
+import org.kie.dmn.core.impl.DMNModelImpl;
+import org.kie.dmn.model.api.DecisionRule;
+import org.kie.dmn.model.api.DecisionTable;
+import org.kie.dmn.model.api.Expression;
+import org.kie.dmn.model.api.HitPolicy;
+import org.kie.dmn.model.api.InputClause;
+import org.kie.dmn.model.api.UnaryTests;
+import org.kie.dmn.model.v1_2.TDecisionTable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decision logic compiler that evaluates FIRST hit decision tables through a {@link FirstHitIndex}
+ * instead of testing every row.
+ *
+ * Each table is still compiled by the default KIE compiler and kept as the scan fallback. When some
+ * input column holds literal entries, the input expressions are compiled on their own and, for every
+ * candidate row set the index can produce, the table is compiled once more with only those rows (in
+ * their original order). At evaluation time the inputs are evaluated, the index picks the candidate
+ * set and the matching sub-table is evaluated by the engine, so FIRST semantics, default outputs and
+ * FEEL error handling are exactly those of the full table. Rule numbers reported in decision table
+ * events are mapped back to the rows of the full table.
+ *
+ * The sub-tables are recompiled copies of the decision table that hold the same InputClause,
+ * OutputClause and DecisionRule instances as the full table ({@link #subTable}); only the list of rules
+ * differs. Every sub-table is compiled when the ruleset is built, never during an evaluation.
+ *
+ * Evaluations answered by a sub-table and those that fall back to the scan (no narrowing, no
+ * candidate row, or an input value the index cannot key, such as a date) are counted across rulesets
+ * and reported as {@code dmn.table.index} by {@link com.infinity.controller.metrics.TableIndexMetrics}.
+ *
+ * Tables with other hit policies, more than {@link FirstHitIndex#MAX_ROWS} rows or only range and
+ * expression entries keep the scan. Installed by {@link DmnCompileMode} for runtime compilation only:
+ * tables loaded from precompiled classes (see {@link RulesetCompiler}) bypass the index completely
+ * and are neither indexed nor counted.
+ */
+public class IndexedDecisionTableCompiler implements DMNDecisionLogicCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedDecisionTableCompiler.class);
+
+    // bounds the number of sub-tables compiled per decision table
+    static final int MAX_CANDIDATE_SETS = 32;
+
+    // evaluations of indexed tables by outcome, across rulesets
+    private static final LongAdder SUB_TABLE_EVALUATIONS = new LongAdder();
+    private static final LongAdder SCAN_EVALUATIONS = new LongAdder();
+    private static final LongAdder UNKEYED_EVALUATIONS = new LongAdder();
+
+    private final DMNDecisionLogicCompiler delegate;
+
+    /** Evaluations of indexed tables answered by a sub-table. */
+    public static long getSubTableEvaluations() {
+        return SUB_TABLE_EVALUATIONS.sum();
+    }
+
+    /** Evaluations of indexed tables that fell back to the full scan, the unkeyed ones included. */
+    public static long getScanEvaluations() {
+        return SCAN_EVALUATIONS.sum();
+    }
+
+    /** Scan fallbacks with an input value of a type the index cannot key (dates, lists, contexts). */
+    public static long getUnkeyedEvaluations() {
+        return UNKEYED_EVALUATIONS.sum();
+    }
+
+    public IndexedDecisionTableCompiler(DMNDecisionLogicCompiler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public DMNExpressionEvaluator compileExpression(DMNCompilerContext ctx, DMNModelImpl model, DMNBaseNode node,
+                                                    String exprName, Expression expression) {
+        DMNExpressionEvaluator scan = delegate.compileExpression(ctx, model, node, exprName, expression);
+        if (scan == null || !(expression instanceof DecisionTable)) return scan;
+        DecisionTable dt = (DecisionTable) expression;
+        if (dt.getHitPolicy() != HitPolicy.FIRST) return scan;
+
+        List<List<String>> entries = new ArrayList<>(dt.getRule().size());
+        for (DecisionRule rule : dt.getRule()) {
+            List<String> row = new ArrayList<>(rule.getInputEntry().size());
+            for (UnaryTests test : rule.getInputEntry()) row.add(test.getText());
+            entries.add(row);
+        }
+        FirstHitIndex index = FirstHitIndex.build(entries, dt.getInput().size(), MAX_CANDIDATE_SETS);
+        if (index == null) return scan;
+
+        try {
+            List<InputClause> inputs = dt.getInput();
+            DMNExpressionEvaluator[] inputEvaluators = new DMNExpressionEvaluator[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                inputEvaluators[i] = delegate.compileExpression(ctx, model, node, exprName, inputs.get(i).getInputExpression());
+                if (inputEvaluators[i] == null) return scan;
+            }
+            Map<Long, SubTable> subTables = new HashMap<>();
+            for (long rows : index.candidateSets()) {
+                // no candidates and no narrowing both go to the scan, which also yields the default output
+                if (rows == 0L || rows == index.getAllRows()) continue;
+                SubTable sub = compileSubTable(ctx, model, node, exprName, dt, rows);
+                if (sub.evaluator == null) return scan;
+                subTables.put(rows, sub);
+            }
+            logger.debug("Indexed decision table '{}' of model '{}': {} rows, {} indexed columns, {} sub-tables",
+                    exprName, model.getName(), index.getRowCount(), index.getIndexedColumnCount(), subTables.size());
+            return new IndexedEvaluator(index, inputEvaluators, subTables, scan);
+        } catch (RuntimeException e) {
+            logger.warn("Decision table '{}' of model '{}' not indexed, using the row scan: {}",
+                    exprName, model.getName(), e.getMessage());
+            return scan;
+        }
+    }
+
+    private SubTable compileSubTable(DMNCompilerContext ctx, DMNModelImpl model, DMNBaseNode node, String exprName,
+                                     DecisionTable dt, long rows) {
+        int[] ruleNumbers = new int[Long.bitCount(rows)];
+        int n = 0;
+        for (int r = 0; r < dt.getRule().size(); r++) {
+            if ((rows & (1L << r)) != 0L) ruleNumbers[n++] = r + 1;
+        }
+        return new SubTable(delegate.compileExpression(ctx, model, node, exprName, subTable(dt, ruleNumbers)), ruleNumbers);
+    }
+
+    /** A copy of the table with only the given rows (1-based rule numbers, ascending); clauses and rules are shared. */
+    static TDecisionTable subTable(DecisionTable dt, int[] ruleNumbers) {
+        TDecisionTable sub = new TDecisionTable();
+        sub.setId(dt.getId());
+        sub.setParent(dt.getParent());
+        sub.setTypeRef(dt.getTypeRef());
+        sub.setHitPolicy(dt.getHitPolicy());
+        sub.setAggregation(dt.getAggregation());
+        sub.setPreferredOrientation(dt.getPreferredOrientation());
+        sub.setOutputLabel(dt.getOutputLabel());
+        sub.getInput().addAll(dt.getInput());
+        sub.getOutput().addAll(dt.getOutput());
+        for (int number : ruleNumbers) sub.getRule().add(dt.getRule().get(number - 1));
+        return sub;
+    }
+
+    private static final class SubTable {
+        final DMNExpressionEvaluator evaluator;
+        // 1-based rule number in the full table of each sub-table row
+        final int[] ruleNumbers;
+
+        SubTable(DMNExpressionEvaluator evaluator, int[] ruleNumbers) {
+            this.evaluator = evaluator;
+            this.ruleNumbers = ruleNumbers;
+        }
+    }
+
+    static final class IndexedEvaluator implements DMNExpressionEvaluator {
+        private final FirstHitIndex index;
+        private final DMNExpressionEvaluator[] inputEvaluators;
+        private final Map<Long, SubTable> subTables;
+        private final DMNExpressionEvaluator scan;
+
+        IndexedEvaluator(FirstHitIndex index, DMNExpressionEvaluator[] inputEvaluators, Map<Long, SubTable> subTables,
+                         DMNExpressionEvaluator scan) {
+            this.index = index;
+            this.inputEvaluators = inputEvaluators;
+            this.subTables = subTables;
+            this.scan = scan;
+        }
+
+        @Override
+        public EvaluatorResult evaluate(DMNRuntimeEventManager eventManager, DMNResult result) {
+            Object[] inputs = new Object[inputEvaluators.length];
+            for (int i = 0; i < inputs.length; i++) {
+                EvaluatorResult input = inputEvaluators[i].evaluate(eventManager, result);
+                // let the full table report the failure
+                if (input.getResultType() != EvaluatorResult.ResultType.SUCCESS) return scan.evaluate(eventManager, result);
+                inputs[i] = input.getResult();
+            }
+            SubTable sub = subTables.get(index.candidates(inputs));
+            if (sub == null) {
+                SCAN_EVALUATIONS.increment();
+                if (index.hasUnkeyedValue(inputs)) UNKEYED_EVALUATIONS.increment();
+                return scan.evaluate(eventManager, result);
+            }
+            SUB_TABLE_EVALUATIONS.increment();
+            if (!eventManager.hasListeners()) return sub.evaluator.evaluate(eventManager, result);
+            return sub.evaluator.evaluate(new RuleNumberingEventManager(eventManager, sub.ruleNumbers), result);
+        }
+    }
+
+    /** Passes events through, translating sub-table rule numbers back to full-table rule numbers. */
+    static final class RuleNumberingEventManager implements DMNRuntimeEventManager {
+        private final DMNRuntimeEventManager target;
+        private final int[] ruleNumbers;
+
+        RuleNumberingEventManager(DMNRuntimeEventManager target, int[] ruleNumbers) {
+            this.target = target;
+            this.ruleNumbers = ruleNumbers;
+        }
+
+        @Override
+        public void addListener(DMNRuntimeEventListener listener) {
+            target.addListener(listener);
+        }
+
+        @Override
+        public void removeListener(DMNRuntimeEventListener listener) {
+            target.removeListener(listener);
+        }
+
+        @Override
+        public boolean hasListeners() {
+            return target.hasListeners();
+        }
+
+        @Override
+        public Set<DMNRuntimeEventListener> getListeners() {
+            Set<DMNRuntimeEventListener> listeners = new LinkedHashSet<>();
+            for (DMNRuntimeEventListener l : target.getListeners()) listeners.add(new RenumberingListener(l, ruleNumbers));
+            return listeners;
+        }
+    }
+
+    private static final class RenumberingListener implements DMNRuntimeEventListener {
+        private final DMNRuntimeEventListener target;
+        private final int[] ruleNumbers;
+
+        RenumberingListener(DMNRuntimeEventListener target, int[] ruleNumbers) {
+            this.target = target;
+            this.ruleNumbers = ruleNumbers;
+        }
+
+        @Override
+        public void beforeEvaluateDecisionTable(BeforeEvaluateDecisionTableEvent event) {
+            target.beforeEvaluateDecisionTable(event);
+        }
+
+        @Override
+        public void afterEvaluateDecisionTable(AfterEvaluateDecisionTableEvent event) {
+            target.afterEvaluateDecisionTable(new Renumbered(event, ruleNumbers));
+        }
+
+        // output entries may invoke BKMs
+        @Override
+        public void beforeEvaluateBKM(BeforeEvaluateBKMEvent event) {
+            target.beforeEvaluateBKM(event);
+        }
+
+        @Override
+        public void afterEvaluateBKM(AfterEvaluateBKMEvent event) {
+            target.afterEvaluateBKM(event);
+        }
+
+        @Override
+        public void beforeInvokeBKM(BeforeInvokeBKMEvent event) {
+            target.beforeInvokeBKM(event);
+        }
+
+        @Override
+        public void afterInvokeBKM(AfterInvokeBKMEvent event) {
+            target.afterInvokeBKM(event);
+        }
+
+        @Override
+        public void beforeEvaluateContextEntry(BeforeEvaluateContextEntryEvent event) {
+            target.beforeEvaluateContextEntry(event);
+        }
+
+        @Override
+        public void afterEvaluateContextEntry(AfterEvaluateContextEntryEvent event) {
+            target.afterEvaluateContextEntry(event);
+        }
+    }
+
+    private static final class Renumbered implements AfterEvaluateDecisionTableEvent {
+        private final AfterEvaluateDecisionTableEvent event;
+        private final int[] ruleNumbers;
+
+        Renumbered(AfterEvaluateDecisionTableEvent event, int[] ruleNumbers) {
+            this.event = event;
+            this.ruleNumbers = ruleNumbers;
+        }
+
+        private List<Integer> map(List<Integer> rules) {
+            if (rules == null || rules.isEmpty()) return rules;
+            List<Integer> out = new ArrayList<>(rules.size());
+            for (Integer r : rules) out.add(r == null || r < 1 || r > ruleNumbers.length ? r : ruleNumbers[r - 1]);
+            return out;
+        }
+
+        @Override
+        public String getNodeName() {
+            return event.getNodeName();
+        }
+
+        @Override
+        public String getDecisionTableName() {
+            return event.getDecisionTableName();
+        }
+
+        @Override
+        public List<Integer> getMatches() {
+            return map(event.getMatches());
+        }
+
+        @Override
+        public List<Integer> getSelected() {
+            return map(event.getSelected());
+        }
+
+        @Override
+        public DMNResult getResult() {
+            return event.getResult();
+        }
+
+        @Override
+        public String toString() {
+            return "AfterEvaluateDecisionTableEvent{nodeName=" + getNodeName() + ", matches=" + getMatches()
+                    + ", selected=" + getSelected() + "}";
+        }
+    }
+}
@@ -0,0 +1,412 @@
+package com.infinity.controller.dmn;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.DMNType;
+import org.kie.dmn.api.core.ast.InputDataNode;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+
+/**
+ * Binds request payloads to the input types of one model, producing FEEL-native values
+ * ({@link LocalDate}, {@link BigDecimal}, {@link Boolean}, ...) so decision tables compare values
+ * directly instead of working on the strings and doubles Jackson produces.
+ *
+ * The type tree is built once from the model's itemDefinitions (through the compiled DMNType of
+ * each inputData) and cached per registry. A request body is bound in one pass over the Jackson
+ * streaming parser; payloads that are already maps (routed and pipelined calls) go through the
+ * same rules. Fields the model does not declare are kept as plain JSON values. All type errors of
+ * a payload are collected with their field path and reported together.
+ *
+ * An empty or blank string given for a number, boolean, date, date and time or time field binds to
+ * null, as an absent value: clients send "" for fields they leave empty. String fields keep it.
+ */
+public final class InputBinder {
+
+    private static final int MAX_ERRORS = 50;
+    // guards recursive itemDefinitions; the deepest model type here is Data.Auth.caseTypeCode
+    private static final int MAX_DEPTH = 16;
+
+    enum Kind {
+        STRING("string"), NUMBER("number"), BOOLEAN("boolean"), DATE("date"), DATE_TIME("date and time"),
+        TIME("time"), COMPOSITE("object"), ANY("any");
+
+        final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    private static final Map<String, Kind> BUILT_IN_TYPES = Map.of(
+            "string", Kind.STRING,
+            "number", Kind.NUMBER,
+            "boolean", Kind.BOOLEAN,
+            "date", Kind.DATE,
+            "date and time", Kind.DATE_TIME,
+            "dateTime", Kind.DATE_TIME,
+            "time", Kind.TIME);
+
+    private static final Node ANY = new Node(Kind.ANY, false, Collections.emptyMap(), null);
+
+    /** One typed position in the input tree; collections keep their element type separately. */
+    static final class Node {
+        final Kind kind;
+        final boolean collection;
+        final Map<String, Node> fields;
+        final Node element;
+
+        Node(Kind kind, boolean collection, Map<String, Node> fields, Node element) {
+            this.kind = kind;
+            this.collection = collection;
+            this.fields = fields;
+            this.element = element;
+        }
+
+        String label() {
+            return collection ? "list of " + kind.label : kind.label;
+        }
+    }
+
+    /** Thrown when a payload does not match the model's input types; carries one entry per bad field. */
+    public static class InputBindingException extends IllegalArgumentException {
+        private final List<Map<String, String>> errors;
+
+        InputBindingException(List<Map<String, String>> errors, int total) {
+            super(message(errors, total));
+            this.errors = Collections.unmodifiableList(errors);
+        }
+
+        /** Each entry has {@code path}, {@code expected} and {@code actual}. */
+        public List<Map<String, String>> getErrors() {
+            return errors;
+        }
+
+        private static String message(List<Map<String, String>> errors, int total) {
+            StringBuilder sb = new StringBuilder("Invalid input: ");
+            Map<String, String> first = errors.get(0);
+            sb.append(first.get("path")).append(" expected ").append(first.get("expected"))
+                    .append(" but was ").append(first.get("actual"));
+            if (total > 1) sb.append(" (and ").append(total - 1).append(" more)");
+            return sb.toString();
+        }
+    }
+
+    private final String modelName;
+    private final Map<String, Node> inputs;
+
+    InputBinder(String modelName, Map<String, Node> inputs) {
+        this.modelName = modelName;
+        this.inputs = inputs;
+    }
+
+    static InputBinder forModel(DMNModel model) {
+        Map<String, Node> inputs = new LinkedHashMap<>();
+        for (InputDataNode input : model.getInputs()) {
+            inputs.put(input.getName(), node(input.getType(), 0));
+        }
+        return new InputBinder(model.getName(), Collections.unmodifiableMap(inputs));
+    }
+
+    public String getModelName() {
+        return modelName;
+    }
+
+    private static Node node(DMNType type, int depth) {
+        if (type == null || depth > MAX_DEPTH) return ANY;
+        boolean collection = type.isCollection();
+        Node single;
+        if (type.isComposite()) {
+            Map<String, Node> fields = new LinkedHashMap<>();
+            type.getFields().forEach((name, fieldType) -> fields.put(name, node(fieldType, depth + 1)));
+            single = new Node(Kind.COMPOSITE, false, Collections.unmodifiableMap(fields), null);
+        } else {
+            single = new Node(builtInKind(type), false, Collections.emptyMap(), null);
+        }
+        return collection ? new Node(single.kind, true, single.fields, single) : single;
+    }
+
+    // follows base types so aliases such as "tCode: string" bind like their built-in type
+    private static Kind builtInKind(DMNType type) {
+        for (DMNType t = type; t != null; t = t.getBaseType()) {
+            Kind kind = BUILT_IN_TYPES.get(t.getName());
+            if (kind != null) return kind;
+            if (t.getBaseType() == t) break;
+        }
+        return Kind.ANY;
+    }
+
+    /** Collects field errors for one payload and caps how many are kept. */
+    private static final class Errors {
+        final List<Map<String, String>> entries = new ArrayList<>();
+        int total;
+
+        void add(String path, Node node, String actual) {
+            total++;
+            if (entries.size() >= MAX_ERRORS) return;
+            Map<String, String> e = new LinkedHashMap<>();
+            e.put("path", path);
+            e.put("expected", node.label());
+            e.put("actual", actual);
+            entries.add(e);
+        }
+
+        void throwIfAny() {
+            if (total > 0) throw new InputBindingException(entries, total);
+        }
+    }
+
+    // --- streaming ---
+
+    /**
+     * Reads one JSON object from the parser, which must be positioned on its START_OBJECT, and
+     * leaves it on the matching END_OBJECT. The whole object is consumed even when it has type
+     * errors, so the parser can continue with the next payload of a batch.
+     */
+    public Map<String, Object> bind(JsonParser parser) throws IOException {
+        Errors errors = new Errors();
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            errors.add("$", new Node(Kind.COMPOSITE, false, inputs, null), describe(parser));
+            if (parser.currentToken() == JsonToken.START_ARRAY) parser.skipChildren();
+            errors.throwIfAny();
+        }
+        Map<String, Object> out = readObject(parser, inputs, "", errors);
+        errors.throwIfAny();
+        return out;
+    }
+
+    private Map<String, Object> readObject(JsonParser p, Map<String, Node> fields, String path, Errors errors) throws IOException {
+        Map<String, Object> out = new LinkedHashMap<>();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            p.nextToken();
+            Node field = fields.get(name);
+            String fieldPath = path.isEmpty() ? name : path + "." + name;
+            out.put(name, field == null ? readAny(p) : read(p, field, fieldPath, errors));
+        }
+        return out;
+    }
+
+    private Object read(JsonParser p, Node node, String path, Errors errors) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == JsonToken.VALUE_NULL) return null;
+
+        if (node.collection) {
+            if (token != JsonToken.START_ARRAY) return reject(p, node, path, errors);
+            List<Object> list = new ArrayList<>();
+            int i = 0;
+            while (p.nextToken() != JsonToken.END_ARRAY) {
+                list.add(read(p, node.element, path + "[" + i++ + "]", errors));
+            }
+            return list;
+        }
+
+        switch (node.kind) {
+            case COMPOSITE:
+                if (token != JsonToken.START_OBJECT) return reject(p, node, path, errors);
+                return readObject(p, node.fields, path, errors);
+            case ANY:
+                return readAny(p);
+            case STRING:
+                if (!token.isScalarValue()) return reject(p, node, path, errors);
+                return p.getText();
+            case NUMBER:
+                if (token.isNumeric()) return p.getDecimalValue();
+                if (token == JsonToken.VALUE_STRING) return parsed(node, path, p.getText(), errors);
+                return reject(p, node, path, errors);
+            case BOOLEAN:
+                if (token.isBoolean()) return p.getBooleanValue();
+                if (token == JsonToken.VALUE_STRING) return parsed(node, path, p.getText(), errors);
+                return reject(p, node, path, errors);
+            default:
+                if (token != JsonToken.VALUE_STRING) return reject(p, node, path, errors);
+                return parsed(node, path, p.getText(), errors);
+        }
+    }
+
+    private static Object reject(JsonParser p, Node node, String path, Errors errors) throws IOException {
+        errors.add(path, node, describe(p));
+        p.skipChildren();
+        return null;
+    }
+
+    private static String describe(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        if (token == null) return "nothing";
+        switch (token) {
+            case START_OBJECT:
+                return "object";
+            case START_ARRAY:
+                return "list";
+            case VALUE_STRING:
+                return "\"" + p.getText() + "\"";
+            default:
+                return p.getText();
+        }
+    }
+
+    // JSON values of undeclared fields; numbers become BigDecimal like every FEEL number
+    private static Object readAny(JsonParser p) throws IOException {
+        JsonToken token = p.currentToken();
+        switch (token) {
+            case START_OBJECT: {
+                Map<String, Object> map = new LinkedHashMap<>();
+                while (p.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = p.currentName();
+                    p.nextToken();
+                    map.put(name, readAny(p));
+                }
+                return map;
+            }
+            case START_ARRAY: {
+                List<Object> list = new ArrayList<>();
+                while (p.nextToken() != JsonToken.END_ARRAY) list.add(readAny(p));
+                return list;
+            }
+            case VALUE_STRING:
+                return p.getText();
+            case VALUE_NUMBER_INT:
+            case VALUE_NUMBER_FLOAT:
+                return p.getDecimalValue();
+            case VALUE_TRUE:
+                return Boolean.TRUE;
+            case VALUE_FALSE:
+                return Boolean.FALSE;
+            default:
+                return null;
+        }
+    }
+
+    // --- already parsed payloads ---
+
+    /**
+     * Binds a payload that has already been parsed into maps and lists. Values that already have
+     * their FEEL type are kept as they are, so binding an already bound payload is harmless.
+     */
+    public Map<String, Object> bind(Map<String, Object> input) {
+        Errors errors = new Errors();
+        Map<String, Object> out = convertObject(input, inputs, "", errors);
+        errors.throwIfAny();
+        return out;
+    }
+
+    private Map<String, Object> convertObject(Map<String, Object> input, Map<String, Node> fields, String path, Errors errors) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        input.forEach((name, value) -> {
+            Node field = fields.get(name);
+            String fieldPath = path.isEmpty() ? name : path + "." + name;
+            out.put(name, field == null ? convertAny(value) : convert(value, field, fieldPath, errors));
+        });
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object convert(Object value, Node node, String path, Errors errors) {
+        if (value == null) return null;
+
+        if (node.collection) {
+            if (!(value instanceof Collection)) return mismatch(value, node, path, errors);
+            List<Object> list = new ArrayList<>();
+            int i = 0;
+            for (Object item : (Collection<Object>) value) {
+                list.add(convert(item, node.element, path + "[" + i++ + "]", errors));
+            }
+            return list;
+        }
+
+        switch (node.kind) {
+            case COMPOSITE:
+                if (!(value instanceof Map)) return mismatch(value, node, path, errors);
+                return convertObject((Map<String, Object>) value, node.fields, path, errors);
+            case ANY:
+                return convertAny(value);
+            case STRING:
+                if (value instanceof Map || value instanceof Collection) return mismatch(value, node, path, errors);
+                return value.toString();
+            case NUMBER:
+                if (value instanceof BigDecimal) return value;
+                if (value instanceof Number) return toBigDecimal((Number) value);
+                if (value instanceof String) return parsed(node, path, (String) value, errors);
+                return mismatch(value, node, path, errors);
+            case BOOLEAN:
+                if (value instanceof Boolean) return value;
+                if (value instanceof String) return parsed(node, path, (String) value, errors);
+                return mismatch(value, node, path, errors);
+            default:
+                if (value instanceof TemporalAccessor) return value;
+                if (value instanceof String) return parsed(node, path, (String) value, errors);
+                return mismatch(value, node, path, errors);
+        }
+    }
+
+    private static Object mismatch(Object value, Node node, String path, Errors errors) {
+        String actual = value instanceof Map ? "object"
+                : value instanceof Collection ? "list"
+                : value instanceof String ? "\"" + value + "\""
+                : String.valueOf(value);
+        errors.add(path, node, actual);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object convertAny(Object value) {
+        if (value instanceof Map) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            ((Map<String, Object>) value).forEach((k, v) -> out.put(k, convertAny(v)));
+            return out;
+        }
+        if (value instanceof Collection) {
+            List<Object> out = new ArrayList<>();
+            for (Object item : (Collection<Object>) value) out.add(convertAny(item));
+            return out;
+        }
+        if (value instanceof Number && !(value instanceof BigDecimal)) return toBigDecimal((Number) value);
+        return value;
+    }
+
+    private static BigDecimal toBigDecimal(Number n) {
+        if (n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte) {
+            return BigDecimal.valueOf(n.longValue());
+        }
+        return new BigDecimal(n.toString());
+    }
+
+    // --- text conversions shared by both paths ---
+
+    private static Object parsed(Node node, String path, String text, Errors errors) {
+        if (node.kind != Kind.STRING && node.kind != Kind.ANY && text.isBlank()) return null;
+        try {
+            switch (node.kind) {
+                case NUMBER:
+                    return new BigDecimal(text.trim());
+                case BOOLEAN:
+                    if ("true".equalsIgnoreCase(text.trim())) return Boolean.TRUE;
+                    if ("false".equalsIgnoreCase(text.trim())) return Boolean.FALSE;
+                    break;
+                case DATE:
+                    return LocalDate.parse(text.trim());
+                case DATE_TIME:
+                    return DateTimeFormatter.ISO_DATE_TIME.parseBest(text.trim(), ZonedDateTime::from, LocalDateTime::from);
+                case TIME:
+                    return DateTimeFormatter.ISO_TIME.parseBest(text.trim(), OffsetTime::from, LocalTime::from);
+                default:
+                    return text;
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            // reported below
+        }
+        errors.add(path, node, "\"" + text + "\"");
+        return null;
+    }
+}
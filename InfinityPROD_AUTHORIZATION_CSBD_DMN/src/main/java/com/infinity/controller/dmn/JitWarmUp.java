@@ -0,0 +1,237 @@
+package com.infinity.controller.dmn;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import org.kie.dmn.api.core.DMNModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Warms up the JIT before the instance takes traffic. Synthetic payloads are generated from each
+ * model's input schema by {@link SchemaPayloads}, with some fields left out. The payloads are
+ * serialized once and then bound and evaluated like request bodies
+ * ({@link DecisionEvaluator#evaluateUnrecorded}), round after round over every model, on threads of
+ * the batch pool until the duration or the iteration budget is used up.
+ *
+ * It runs in the ApplicationReadyEvent, after the other startup listeners, and Spring Boot only
+ * switches readiness to ACCEPTING_TRAFFIC once the event listeners returned, so
+ * {@code /actuator/health/readiness} reports OUT_OF_SERVICE until the warm-up finished. A failing
+ * warm-up is logged and does not keep the instance out of service. The round latency of the first and
+ * the last rounds is logged and reported at GET /api/decision/warmup.
+ */
+@Component
+public class JitWarmUp {
+
+    private static final Logger logger = LoggerFactory.getLogger(JitWarmUp.class);
+
+    // fraction of optional fields left out of a payload, so null checks are warmed up too
+    private static final double OMIT_FIELD = 0.1;
+
+    @Autowired
+    private RulesetHolder rulesetHolder;
+
+    @Autowired
+    private DecisionEvaluator decisionEvaluator;
+
+    @Autowired
+    private DmnMetadataIndex metadataIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    @Qualifier("decisionBatchExecutor")
+    private ExecutorService decisionBatchExecutor;
+
+    @Value("${decision.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${decision.warmup.duration:PT20S}")
+    private Duration duration;
+
+    @Value("${decision.warmup.iterations:2000}")
+    private int iterations;
+
+    @Value("${decision.warmup.threads:2}")
+    private int threads;
+
+    @Value("${decision.warmup.payloads:32}")
+    private int payloadsPerModel;
+
+    // rounds compared at the start and the end of the warm-up
+    @Value("${decision.warmup.window:50}")
+    private int window;
+
+    private volatile Map<String, Object> report = Collections.singletonMap("state", "pending");
+
+    /** One model and its serialized payloads. */
+    private static final class Target {
+        final DMNModel model;
+        final List<byte[]> payloads;
+        final AtomicLong failures = new AtomicLong();
+        volatile String firstError;
+
+        Target(DMNModel model, List<byte[]> payloads) {
+            this.model = model;
+            this.payloads = payloads;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void warmUp() {
+        if (!enabled || (duration.isZero() && iterations <= 0)) {
+            report = Collections.singletonMap("state", "disabled");
+            return;
+        }
+        Map<String, Object> running = new LinkedHashMap<>();
+        running.put("state", "running");
+        report = running;
+        try {
+            report = run();
+        } catch (Exception e) {
+            logger.warn("JIT warm-up failed, reporting ready anyway: {}", e.getMessage());
+            Map<String, Object> failed = new LinkedHashMap<>();
+            failed.put("state", "failed");
+            failed.put("error", e.getMessage());
+            report = failed;
+        }
+    }
+
+    private Map<String, Object> run() throws Exception {
+        long start = System.nanoTime();
+        try (Ruleset ruleset = rulesetHolder.acquire()) {
+            DmnModelRegistry registry = ruleset.getRegistry();
+            List<Target> targets = targets(registry);
+            if (targets.isEmpty()) throw new IllegalStateException("No model to warm up");
+
+            long budgetNanos = duration.isZero() ? Long.MAX_VALUE : duration.toNanos();
+            int workers = Math.max(1, threads);
+            List<Future<List<Long>>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                int offset = w;
+                futures.add(decisionBatchExecutor.submit(() -> rounds(registry, targets, offset, start, budgetNanos)));
+            }
+            List<List<Long>> rounds = new ArrayList<>(workers);
+            for (Future<List<Long>> f : futures) rounds.add(await(f));
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            return report(ruleset.getVersion(), targets, rounds, millis);
+        }
+    }
+
+    private List<Target> targets(DmnModelRegistry registry) throws Exception {
+        List<Target> targets = new ArrayList<>();
+        for (DmnMetadataIndex.ModelMetadata metadata : metadataIndex.getModels()) {
+            DMNModel model = registry.find(metadata.getNamespace(), metadata.getName());
+            if (model == null) continue;
+            List<byte[]> payloads = new ArrayList<>(payloadsPerModel);
+            for (Map<String, Object> payload : SchemaPayloads.forModel(metadata, Math.max(1, payloadsPerModel), 42L, OMIT_FIELD)) {
+                payloads.add(objectMapper.writeValueAsBytes(payload));
+            }
+            targets.add(new Target(model, payloads));
+        }
+        return targets;
+    }
+
+    // one list of round times (nanos) per worker; workers start on different payloads
+    private List<Long> rounds(DmnModelRegistry registry, List<Target> targets, int offset, long start, long budgetNanos) {
+        List<Long> rounds = new ArrayList<>();
+        for (int i = 0; (iterations <= 0 || i < iterations) && System.nanoTime() - start < budgetNanos; i++) {
+            long roundStart = System.nanoTime();
+            for (Target target : targets) {
+                byte[] body = target.payloads.get((i + offset) % target.payloads.size());
+                try {
+                    decisionEvaluator.evaluateUnrecorded(registry, target.model, body);
+                } catch (Exception e) {
+                    if (target.failures.getAndIncrement() == 0) target.firstError = e.getMessage();
+                }
+            }
+            rounds.add(System.nanoTime() - roundStart);
+        }
+        return rounds;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during JIT warm-up", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw new IllegalStateException("JIT warm-up failed", e.getCause());
+        }
+    }
+
+    private Map<String, Object> report(String version, List<Target> targets, List<List<Long>> rounds, long millis) {
+        List<Long> first = new ArrayList<>();
+        List<Long> last = new ArrayList<>();
+        long total = 0;
+        for (List<Long> worker : rounds) {
+            int n = Math.min(Math.max(1, window), worker.size() / 2);
+            first.addAll(worker.subList(0, n));
+            last.addAll(worker.subList(worker.size() - n, worker.size()));
+            total += worker.size();
+        }
+        Map<String, Object> failures = new LinkedHashMap<>();
+        for (Target target : targets) {
+            if (target.failures.get() == 0) continue;
+            failures.put(target.model.getName(), target.failures.get());
+            logger.warn("JIT warm-up: {} evaluations of {} failed, first error: {}", target.failures.get(),
+                    target.model.getName(), target.firstError);
+        }
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("state", "done");
+        out.put("rulesetVersion", version);
+        out.put("millis", millis);
+        out.put("models", targets.size());
+        out.put("threads", rounds.size());
+        out.put("rounds", total);
+        out.put("evaluations", total * targets.size());
+        out.put("failures", failures);
+        out.put("before", latency(first, targets.size()));
+        out.put("after", latency(last, targets.size()));
+        logger.info("JIT warm-up finished in {} ms: {} rounds over {} models, round p50 {} us -> {} us, p99 {} us -> {} us",
+                millis, total, targets.size(), percentileMicros(first, 0.50), percentileMicros(last, 0.50),
+                percentileMicros(first, 0.99), percentileMicros(last, 0.99));
+        return out;
+    }
+
+    private static Map<String, Object> latency(List<Long> rounds, int models) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("rounds", rounds.size());
+        out.put("p50Micros", percentileMicros(rounds, 0.50));
+        out.put("p99Micros", percentileMicros(rounds, 0.99));
+        long sum = 0;
+        for (long r : rounds) sum += r;
+        out.put("meanEvaluationMicros", rounds.isEmpty() ? 0 : sum / rounds.size() / models / 1_000);
+        return out;
+    }
+
+    private static long percentileMicros(List<Long> nanos, double p) {
+        if (nanos.isEmpty()) return 0;
+        List<Long> sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+        return sorted.get(Math.min(sorted.size() - 1, (int) Math.ceil(p * sorted.size()) - 1)) / 1_000;
+    }
+
+    public Map<String, Object> getReport() {
+        return report;
+    }
+}
@@ -0,0 +1,82 @@
+package com.infinity.controller.dmn;
+
+import org.kie.dmn.api.core.DMNResult;
+import org.kie.dmn.api.core.event.DMNRuntimeEventManager;
+import org.kie.dmn.core.api.DMNExpressionEvaluator;
+import org.kie.dmn.core.api.EvaluatorResult;
+import org.kie.dmn.core.ast.DMNBaseNode;
+import org.kie.dmn.core.compiler.DMNCompilerContext;
+import org.kie.dmn.core.compiler.DMNDecisionLogicCompiler;
+import org.kie.dmn.core.impl.DMNModelImpl;
+import org.kie.dmn.model.api.DecisionTable;
+import org.kie.dmn.model.api.Definitions;
+import org.kie.dmn.model.api.Expression;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Decision logic compiler that leaves the dead rows found by {@link DecisionTableAnalyzer} out of the
+ * decision tables it compiles. The DMN source is not touched: the table handed to the next compiler
+ * (the {@link IndexedDecisionTableCompiler} when indexing is on) is a copy without those rows, and
+ * rule numbers in decision table events are mapped back to the rows of the source table.
+ *
+ * Each model is analyzed once per build, on its first decision table. Installed by
+ * {@link DmnCompileMode} for runtime compilation when {@code decision.tables.prune-dead-rows} is set.
+ */
+public class PrunedDecisionTableCompiler implements DMNDecisionLogicCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrunedDecisionTableCompiler.class);
+
+    private final DMNDecisionLogicCompiler delegate;
+    private final Map<Definitions, DecisionTableAnalyzer.Analysis> analyses = new IdentityHashMap<>();
+
+    public PrunedDecisionTableCompiler(DMNDecisionLogicCompiler delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public DMNExpressionEvaluator compileExpression(DMNCompilerContext ctx, DMNModelImpl model, DMNBaseNode node,
+                                                    String exprName, Expression expression) {
+        if (!(expression instanceof DecisionTable)) return delegate.compileExpression(ctx, model, node, exprName, expression);
+        DecisionTable dt = (DecisionTable) expression;
+        BitSet dead = analysis(model).deadRows(dt);
+        if (dead == null || dead.isEmpty()) return delegate.compileExpression(ctx, model, node, exprName, expression);
+
+        int[] ruleNumbers = new int[dt.getRule().size() - dead.cardinality()];
+        int n = 0;
+        for (int r = 0; r < dt.getRule().size(); r++) {
+            if (!dead.get(r)) ruleNumbers[n++] = r + 1;
+        }
+        DMNExpressionEvaluator pruned = delegate.compileExpression(ctx, model, node, exprName,
+                IndexedDecisionTableCompiler.subTable(dt, ruleNumbers));
+        if (pruned == null) return delegate.compileExpression(ctx, model, node, exprName, expression);
+        logger.info("Decision table '{}' of model '{}': {} of {} rows left out as dead", exprName, model.getName(),
+                dead.cardinality(), dt.getRule().size());
+        return new RenumberedEvaluator(pruned, ruleNumbers);
+    }
+
+    private synchronized DecisionTableAnalyzer.Analysis analysis(DMNModelImpl model) {
+        return analyses.computeIfAbsent(model.getDefinitions(), DecisionTableAnalyzer::analyze);
+    }
+
+    /** Evaluates the pruned table, reporting matched rules by their number in the source table. */
+    private static final class RenumberedEvaluator implements DMNExpressionEvaluator {
+        private final DMNExpressionEvaluator evaluator;
+        private final int[] ruleNumbers;
+
+        RenumberedEvaluator(DMNExpressionEvaluator evaluator, int[] ruleNumbers) {
+            this.evaluator = evaluator;
+            this.ruleNumbers = ruleNumbers;
+        }
+
+        @Override
+        public EvaluatorResult evaluate(DMNRuntimeEventManager eventManager, DMNResult result) {
+            if (!eventManager.hasListeners()) return evaluator.evaluate(eventManager, result);
+            return evaluator.evaluate(new IndexedDecisionTableCompiler.RuleNumberingEventManager(eventManager, ruleNumbers), result);
+        }
+    }
+}
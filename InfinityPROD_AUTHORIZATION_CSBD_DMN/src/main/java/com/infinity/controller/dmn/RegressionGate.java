@@ -0,0 +1,353 @@
+package com.infinity.controller.dmn;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.kie.dmn.api.core.DMNModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Replays the test case sidecars of an edited model ({@code <file>.<decision>.testcases.json})
+ * against the current ruleset and a compiled candidate before the candidate goes live.
+ *
+ * A sidecar holds a JSON array of cases; a case with an {@code input} payload is evaluated
+ * against every decision of the model on both versions:
+ * <pre>
+ *   {"description": "...", "input": {"Data": {...}}, "expected": {"Recommendation": {...}}}
+ * </pre>
+ * With {@code expected} (decision name to value, or a bare value for the sidecar's decision) the
+ * candidate must produce it; without it the candidate must produce the same outputs as the current
+ * version. Cases without an input payload (the table-level cases the UI keeps) are skipped.
+ *
+ * Cases run in parallel on the gate's own pool ({@code decision.gate.threads}), not the batch
+ * executor, so live batches do not load one version's timings more than the other's. Each case runs
+ * on one worker: evaluated once on both versions to warm up, then {@code decision.gate.repetitions}
+ * times with the current and candidate versions back to back, keeping the fastest run of each. The candidate is refused when any case fails, or when its p95 exceeds
+ * {@code decision.gate.max-p95} or {@code decision.gate.max-p95-ratio} times the current p95
+ * (the ratio is not applied below {@code decision.gate.latency-floor}, where timings are noise).
+ */
+@Component
+public class RegressionGate {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegressionGate.class);
+
+    private static final String SIDECAR_SUFFIX = ".testcases.json";
+    private static final int MAX_REPORTED_FAILURES = 20;
+
+    /** Thrown from the rebuild check when the candidate is refused; carries the report. */
+    public static class RegressionGateException extends RuntimeException {
+        private final Map<String, Object> report;
+
+        public RegressionGateException(String message, Map<String, Object> report) {
+            super(message);
+            this.report = report;
+        }
+
+        public Map<String, Object> getReport() {
+            return report;
+        }
+    }
+
+    private final boolean enabled;
+    private final int repetitions;
+    private final double maxP95Ratio;
+    private final Duration maxP95;
+    private final Duration latencyFloor;
+    private final ExecutorService executor;
+    private final DecisionEvaluator decisionEvaluator;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public RegressionGate(@Value("${decision.gate.enabled:true}") boolean enabled,
+                          @Value("${decision.gate.repetitions:5}") int repetitions,
+                          @Value("${decision.gate.max-p95-ratio:1.5}") double maxP95Ratio,
+                          @Value("${decision.gate.max-p95:PT0S}") Duration maxP95,
+                          @Value("${decision.gate.latency-floor:PT0.0005S}") Duration latencyFloor,
+                          @Qualifier("regressionGateExecutor") ExecutorService executor,
+                          DecisionEvaluator decisionEvaluator) {
+        this.enabled = enabled;
+        this.repetitions = Math.max(1, repetitions);
+        this.maxP95Ratio = maxP95Ratio;
+        this.maxP95 = maxP95;
+        this.latencyFloor = latencyFloor;
+        this.executor = executor;
+        this.decisionEvaluator = decisionEvaluator;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sidecars of a model, by file name: those carried in {@code sources} (KieFileSystem path to
+     * bytes) next to the model's path, plus those on disk next to the model resource.
+     */
+    public Map<String, byte[]> findSidecars(Resource modelResource, Map<String, byte[]> sources) {
+        Map<String, byte[]> sidecars = new TreeMap<>();
+        String prefix = RulesetCompiler.kiePath(modelResource) + ".";
+        sources.forEach((path, bytes) -> {
+            if (path.startsWith(prefix) && path.endsWith(SIDECAR_SUFFIX)) {
+                sidecars.put(path.substring(path.lastIndexOf('/') + 1), bytes);
+            }
+        });
+        try {
+            File file = modelResource.getFile();
+            File[] onDisk = file.getParentFile().listFiles((dir, name) ->
+                    name.startsWith(file.getName() + ".") && name.endsWith(SIDECAR_SUFFIX));
+            if (onDisk != null) {
+                for (File f : onDisk) sidecars.putIfAbsent(f.getName(), Files.readAllBytes(f.toPath()));
+            }
+        } catch (Exception e) {
+            // not a file (e.g. inside a jar): only the sources carry sidecars
+        }
+        return sidecars;
+    }
+
+    /**
+     * Replays the sidecars of {@code modelName} on {@code current} and {@code candidate}. Returns the
+     * report when the candidate passes and throws {@link RegressionGateException} when it does not.
+     */
+    public Map<String, Object> check(String modelName, Map<String, byte[]> sidecars, DmnModelRegistry current,
+                                     DmnModelRegistry candidate) {
+        long start = System.nanoTime();
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("model", modelName);
+        DMNModel currentModel = current.require(null, modelName);
+        DMNModel candidateModel = candidate.require(null, modelName);
+
+        List<Case> cases = new ArrayList<>();
+        int skipped = 0;
+        for (Map.Entry<String, byte[]> sidecar : sidecars.entrySet()) {
+            String decision = sidecarDecision(sidecar.getKey());
+            List<?> entries;
+            try {
+                Object parsed = objectMapper.readValue(new String(sidecar.getValue(), StandardCharsets.UTF_8), Object.class);
+                entries = parsed instanceof List ? (List<?>) parsed : Collections.emptyList();
+            } catch (Exception e) {
+                logger.warn("Skipping unreadable test case sidecar {}: {}", sidecar.getKey(), e.getMessage());
+                continue;
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                Object entry = entries.get(i);
+                if (!(entry instanceof Map) || !(((Map<?, ?>) entry).get("input") instanceof Map)) {
+                    skipped++;
+                    continue;
+                }
+                cases.add(new Case(sidecar.getKey() + "#" + i, decision, castMap(entry)));
+            }
+        }
+        report.put("sidecars", new ArrayList<>(sidecars.keySet()));
+        report.put("cases", cases.size());
+        report.put("skipped", skipped);
+
+        List<Future<Outcome>> futures = new ArrayList<>(cases.size());
+        for (Case c : cases) {
+            futures.add(executor.submit(() -> replay(c, current, currentModel, candidate, candidateModel)));
+        }
+        List<Outcome> outcomes = new ArrayList<>(cases.size());
+        try {
+            for (Future<Outcome> f : futures) outcomes.add(f.get());
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying test cases", e);
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            throw new IllegalStateException("Test case replay failed: " + e.getCause().getMessage(), e.getCause());
+        }
+
+        List<Map<String, Object>> failures = new ArrayList<>();
+        int failed = 0;
+        int changed = 0;
+        for (Outcome o : outcomes) {
+            if (o.changed) changed++;
+            if (o.failure == null) continue;
+            failed++;
+            if (failures.size() < MAX_REPORTED_FAILURES) failures.add(o.failure);
+        }
+        report.put("failed", failed);
+        report.put("changedOutputs", changed);
+        report.put("failures", failures);
+
+        List<String> refusedBecause = new ArrayList<>();
+        if (failed > 0) refusedBecause.add(failed + " test case(s) failed");
+        if (!outcomes.isEmpty()) {
+            long currentP95 = p95(outcomes, true);
+            long candidateP95 = p95(outcomes, false);
+            Map<String, Object> latency = new LinkedHashMap<>();
+            latency.put("currentP95Micros", currentP95 / 1_000);
+            latency.put("candidateP95Micros", candidateP95 / 1_000);
+            latency.put("ratio", currentP95 == 0 ? null : (double) candidateP95 / currentP95);
+            latency.put("maxRatio", maxP95Ratio);
+            if (!maxP95.isZero()) latency.put("maxP95Micros", maxP95.toNanos() / 1_000);
+            report.put("latency", latency);
+            if (!maxP95.isZero() && candidateP95 > maxP95.toNanos()) {
+                refusedBecause.add("candidate p95 " + candidateP95 / 1_000 + " us exceeds " + maxP95.toNanos() / 1_000 + " us");
+            }
+            if (candidateP95 > latencyFloor.toNanos() && candidateP95 > currentP95 * maxP95Ratio) {
+                refusedBecause.add("candidate p95 " + candidateP95 / 1_000 + " us is more than " + maxP95Ratio
+                        + "x the current " + currentP95 / 1_000 + " us");
+            }
+        }
+        report.put("elapsedMillis", (System.nanoTime() - start) / 1_000_000);
+        report.put("passed", refusedBecause.isEmpty());
+        if (!refusedBecause.isEmpty()) {
+            report.put("refusedBecause", refusedBecause);
+            logger.warn("Regression gate refused the edit of {}: {}", modelName, refusedBecause);
+            throw new RegressionGateException("Regression gate refused the edit of " + modelName + ": "
+                    + String.join("; ", refusedBecause), report);
+        }
+        logger.info("Regression gate passed for {}: {} cases ({} skipped) in {} ms", modelName, cases.size(), skipped,
+                report.get("elapsedMillis"));
+        return report;
+    }
+
+    private static final class Case {
+        final String id;
+        final String decision;
+        final Map<String, Object> spec;
+
+        Case(String id, String decision, Map<String, Object> spec) {
+            this.id = id;
+            this.decision = decision;
+            this.spec = spec;
+        }
+    }
+
+    private static final class Outcome {
+        long currentNanos = Long.MAX_VALUE;
+        long candidateNanos = Long.MAX_VALUE;
+        boolean changed;
+        Map<String, Object> failure;
+    }
+
+    private Outcome replay(Case c, DmnModelRegistry current, DMNModel currentModel,
+                           DmnModelRegistry candidate, DMNModel candidateModel) {
+        Map<String, Object> input = castMap(c.spec.get("input"));
+        Outcome o = new Outcome();
+        Map<String, Object> before;
+        Map<String, Object> after;
+        try {
+            // warm-up runs, which also give the outputs to compare
+            before = decisionEvaluator.evaluate(current, currentModel, input);
+            after = decisionEvaluator.evaluate(candidate, candidateModel, input);
+            for (int i = 0; i < repetitions; i++) {
+                long t0 = System.nanoTime();
+                decisionEvaluator.evaluate(current, currentModel, input);
+                long t1 = System.nanoTime();
+                decisionEvaluator.evaluate(candidate, candidateModel, input);
+                long t2 = System.nanoTime();
+                o.currentNanos = Math.min(o.currentNanos, t1 - t0);
+                o.candidateNanos = Math.min(o.candidateNanos, t2 - t1);
+            }
+        } catch (RuntimeException e) {
+            o.currentNanos = 0;
+            o.candidateNanos = 0;
+            o.failure = failure(c, "evaluation failed: " + e.getMessage(), null, null);
+            return o;
+        }
+        o.changed = !same(before, after);
+
+        Object expected = c.spec.get("expected");
+        if (expected instanceof Map) {
+            for (Map.Entry<?, ?> e : ((Map<?, ?>) expected).entrySet()) {
+                String decision = String.valueOf(e.getKey());
+                if (!same(e.getValue(), after.get(decision))) {
+                    o.failure = failure(c, "decision '" + decision + "' differs from expected", before.get(decision), after.get(decision));
+                    o.failure.put("expected", e.getValue());
+                    return o;
+                }
+            }
+        } else if (expected != null && !"".equals(expected) && c.decision != null) {
+            Object actual = after.get(c.decision);
+            if (!sameOrField(expected, actual)) {
+                o.failure = failure(c, "decision '" + c.decision + "' differs from expected", before.get(c.decision), actual);
+                o.failure.put("expected", expected);
+            }
+        } else if (o.changed) {
+            o.failure = failure(c, "outputs changed and the case has no expected value", before, after);
+        }
+        return o;
+    }
+
+    private static Map<String, Object> failure(Case c, String reason, Object current, Object candidate) {
+        Map<String, Object> f = new LinkedHashMap<>();
+        f.put("case", c.id);
+        Object description = c.spec.get("description");
+        if (description != null) f.put("description", description);
+        f.put("reason", reason);
+        f.put("current", current);
+        f.put("candidate", candidate);
+        return f;
+    }
+
+    private static long p95(List<Outcome> outcomes, boolean current) {
+        long[] nanos = outcomes.stream().mapToLong(o -> current ? o.currentNanos : o.candidateNanos).sorted().toArray();
+        int idx = (int) Math.ceil(0.95 * nanos.length) - 1;
+        return nanos[Math.max(0, idx)];
+    }
+
+    // "Quickwin.dmn.Rule 1- Check Bypass.testcases.json" -> "Rule 1- Check Bypass"
+    private static String sidecarDecision(String fileName) {
+        String name = fileName.substring(0, fileName.length() - SIDECAR_SUFFIX.length());
+        int dmn = name.indexOf(".dmn.");
+        return dmn < 0 ? null : name.substring(dmn + ".dmn.".length());
+    }
+
+    // a bare expected value may name the decision output itself or one field of it (the UI keeps one output column)
+    private static boolean sameOrField(Object expected, Object actual) {
+        if (same(expected, actual)) return true;
+        if (actual instanceof Map) {
+            for (Object v : ((Map<?, ?>) actual).values()) {
+                if (same(expected, v)) return true;
+            }
+        }
+        return false;
+    }
+
+    /** Value equality across JSON and FEEL representations: numbers by value, maps and lists deeply. */
+    public static boolean same(Object a, Object b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        if (a instanceof Number && b instanceof Number) {
+            return new BigDecimal(a.toString()).compareTo(new BigDecimal(b.toString())) == 0;
+        }
+        if (a instanceof Map && b instanceof Map) {
+            Map<?, ?> ma = (Map<?, ?>) a;
+            Map<?, ?> mb = (Map<?, ?>) b;
+            if (ma.size() != mb.size()) return false;
+            for (Map.Entry<?, ?> e : ma.entrySet()) {
+                if (!mb.containsKey(e.getKey()) || !same(e.getValue(), mb.get(e.getKey()))) return false;
+            }
+            return true;
+        }
+        if (a instanceof List && b instanceof List) {
+            List<?> la = (List<?>) a;
+            List<?> lb = (List<?>) b;
+            if (la.size() != lb.size()) return false;
+            for (int i = 0; i < la.size(); i++) {
+                if (!same(la.get(i), lb.get(i))) return false;
+            }
+            return true;
+        }
+        if (a instanceof String || b instanceof String) return a.toString().equals(b.toString());
+        return a.equals(b);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castMap(Object value) {
+        return (Map<String, Object>) value;
+    }
+}
@@ -0,0 +1,61 @@
+package com.infinity.controller.dmn;
+
+import org.kie.dmn.api.core.DMNModel;
+
+import java.util.*;
+
+/**
+ * How much of an evaluation is returned ({@code ?projection=}).
+ *
+ * Chained decisions carry their inputs forward (e.g. {@code Data.Line} inside every check), so a
+ * full response repeats large parts of the request once per decision.
+ * <ul>
+ *   <li>{@code full} - every evaluated decision, as before (the trace)</li>
+ *   <li>{@code final} - only the requested decisions, or without {@code ?decisions=} the model's
+ *       final decisions (those no other decision requires, e.g. Recommendation). Only those are
+ *       targeted, so the engine also skips decisions they do not require.</li>
+ *   <li>{@code status} - like {@code final}, keeping only the plain values of each result (e.g.
+ *       Recommendation's Decision and Message, without ExecutionInfo or carried-forward context)</li>
+ * </ul>
+ */
+public enum ResponseProjection {
+
+    FULL, FINAL, STATUS;
+
+    /** Parses a projection name (case-insensitive); blank means {@code fallback}. */
+    public static ResponseProjection parse(String value, ResponseProjection fallback) {
+        if (value == null || value.isBlank()) return fallback;
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown projection '" + value + "', expected full, final or status");
+        }
+    }
+
+    /** Decisions to evaluate: the requested ones, the final ones when projecting, or null for all. */
+    public List<String> targets(DmnModelRegistry registry, DMNModel model, List<String> requested) {
+        if (requested != null && !requested.isEmpty()) return requested;
+        return this == FULL ? null : registry.finalDecisions(model);
+    }
+
+    /** Applies the projection to the results of the targeted decisions. */
+    public Map<String, Object> apply(Map<String, Object> results) {
+        if (this != STATUS) return results;
+        Map<String, Object> out = new LinkedHashMap<>();
+        results.forEach((decision, result) -> out.put(decision, status(result)));
+        return out;
+    }
+
+    private static Object status(Object result) {
+        if (!(result instanceof Map)) return isPlain(result) ? result : null;
+        Map<String, Object> out = new LinkedHashMap<>();
+        ((Map<?, ?>) result).forEach((k, v) -> {
+            if (isPlain(v)) out.put(String.valueOf(k), v);
+        });
+        return out;
+    }
+
+    private static boolean isPlain(Object value) {
+        return !(value instanceof Map) && !(value instanceof Collection);
+    }
+}
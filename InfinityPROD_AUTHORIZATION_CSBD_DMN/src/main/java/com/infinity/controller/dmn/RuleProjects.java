@@ -0,0 +1,205 @@
+package com.infinity.controller.dmn;
+
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import com.infinity.controller.metrics.DecisionMetricsListener;
+import org.kie.dmn.api.core.event.DMNRuntimeEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * The DMN rule projects hosted by this instance, served under {@code /api/{project}/decision}.
+ *
+ * The default project ({@code decision.project.name}) is the classpath ruleset of the
+ * {@link RulesetHolder} bean and the {@link DmnMetadataIndex} bean, which the {@code /api/decision}
+ * endpoints (edits, store, shadow) work on. Additional projects are listed in {@code decision.projects}
+ * as {@code name=resource pattern}. Each one gets a holder and a metadata index of its own, so it is
+ * versioned and reloaded independently, while the compiler, the build and evaluation executors, the
+ * runtime listeners and the caches are shared with the default project. The metrics listener is the
+ * exception: each project gets a copy that tags its meters with the project name.
+ */
+@Component
+public class RuleProjects {
+
+    private static final Logger logger = LoggerFactory.getLogger(RuleProjects.class);
+
+    // project names appear in URLs and ruleset versions ("gbd-r3")
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_]+");
+
+    /** Thrown for a project name that is not hosted here. */
+    public static class UnknownProjectException extends RuntimeException {
+        public UnknownProjectException(String project) {
+            super("Rule project not found: " + project);
+        }
+    }
+
+    /** Thrown when the default project is asked to reload; it changes through its edit and store endpoints. */
+    public static class ProjectNotReloadableException extends RuntimeException {
+        public ProjectNotReloadableException(String project) {
+            super("The default project '" + project + "' is updated through /api/decision");
+        }
+    }
+
+    /** One hosted rule project: its ruleset holder and metadata index. */
+    public final class Project {
+        private final String name;
+        // resource pattern of the sources, null for the default project
+        private final String location;
+        private final RulesetHolder holder;
+        private final DmnMetadataIndex metadataIndex;
+
+        Project(String name, String location, RulesetHolder holder, DmnMetadataIndex metadataIndex) {
+            this.name = name;
+            this.location = location;
+            this.holder = holder;
+            this.metadataIndex = metadataIndex;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDefault() {
+            return location == null;
+        }
+
+        public RulesetHolder getHolder() {
+            return holder;
+        }
+
+        public DmnMetadataIndex getMetadataIndex() {
+            return metadataIndex;
+        }
+
+        /**
+         * Re-reads the project's sources, publishes them as a new version (files that did not change
+         * keep their partitions) and re-indexes the metadata from the same bytes. The default project
+         * changes through its edit and store endpoints instead.
+         */
+        public CompletableFuture<Ruleset> reload() {
+            if (isDefault()) {
+                throw new ProjectNotReloadableException(name);
+            }
+            AtomicReference<Map<String, byte[]>> read = new AtomicReference<>();
+            return holder.rebuild(holder.nextVersion(), location, () -> {
+                read.set(rulesetCompiler.readSources(location));
+                return read.get();
+            }, registry -> { }).thenApply(ruleset -> {
+                metadataIndex.rebuild(resources(read.get()));
+                return ruleset;
+            });
+        }
+
+        public Map<String, Object> getStatus() {
+            Ruleset ruleset = holder.currentRuleset();
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("name", name);
+            out.put("default", isDefault());
+            out.put("location", isDefault() ? "classpath" : location);
+            out.put("version", ruleset.getVersion());
+            out.put("publishedAt", ruleset.getPublishedAt().toString());
+            out.put("models", ruleset.getRegistry().getModels().size());
+            return out;
+        }
+    }
+
+    private final RulesetCompiler rulesetCompiler;
+    // keyed by lower-case name, default project first
+    private final Map<String, Project> projects = new LinkedHashMap<>();
+
+    public RuleProjects(@Value("${decision.project.name:csbd}") String defaultName,
+                        @Value("${decision.projects:}") List<String> entries,
+                        RulesetHolder rulesetHolder, DmnMetadataIndex metadataIndex, RulesetCompiler rulesetCompiler,
+                        @Qualifier("rulesetBuildExecutor") ExecutorService buildExecutor,
+                        ApplicationEventPublisher events, ObjectProvider<DMNRuntimeEventListener> listeners) {
+        this.rulesetCompiler = rulesetCompiler;
+        add(new Project(name(defaultName), null, rulesetHolder, metadataIndex));
+        List<DMNRuntimeEventListener> shared = listeners.orderedStream().toList();
+        for (Map.Entry<String, String> e : parse(entries).entrySet()) {
+            String name = e.getKey();
+            String location = e.getValue();
+            long start = System.nanoTime();
+            Map<String, byte[]> sources = rulesetCompiler.readSources(location);
+            DmnModelRegistry registry = DmnModelRegistry.build(
+                    rulesetCompiler.compilePartitions(name + "-startup", sources, Collections.emptyMap()));
+            RulesetHolder holder = new RulesetHolder(name, location, registry, rulesetCompiler, buildExecutor, events,
+                    listeners(shared, name));
+            add(new Project(name, location, holder, new DmnMetadataIndex(resources(sources))));
+            logger.info("Loaded rule project '{}' from {}: {} DMN models in {} ms", name, location,
+                    registry.getModels().size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private static List<DMNRuntimeEventListener> listeners(List<DMNRuntimeEventListener> shared, String project) {
+        return shared.stream()
+                .map(l -> l instanceof DecisionMetricsListener ? ((DecisionMetricsListener) l).forProject(project) : l)
+                .toList();
+    }
+
+    // "gbd=file:/opt/rules/gbd/**/*.dmn,minheading=classpath*:minheading/**/*.dmn"
+    private static Map<String, String> parse(List<String> entries) {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (String entry : entries) {
+            if (entry == null || entry.isBlank()) continue;
+            int eq = entry.indexOf('=');
+            if (eq <= 0 || eq == entry.length() - 1) {
+                throw new IllegalArgumentException("decision.projects entry must be name=resource pattern: " + entry);
+            }
+            out.put(name(entry.substring(0, eq)), entry.substring(eq + 1).trim());
+        }
+        return out;
+    }
+
+    private static String name(String name) {
+        String trimmed = name.trim();
+        if (!NAME.matcher(trimmed).matches()) {
+            throw new IllegalArgumentException("Rule project name must be letters, digits or '_': " + name);
+        }
+        return trimmed;
+    }
+
+    private void add(Project project) {
+        if (projects.putIfAbsent(key(project.getName()), project) != null) {
+            throw new IllegalArgumentException("Rule project configured twice: " + project.getName());
+        }
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    // the metadata of a project is indexed from the bytes that were compiled
+    private static List<Resource> resources(Map<String, byte[]> sources) {
+        List<Resource> out = new ArrayList<>(sources.size());
+        sources.forEach((path, bytes) -> out.add(new ByteArrayResource(bytes, path)));
+        return out;
+    }
+
+    public Project require(String name) {
+        Project project = name == null ? null : projects.get(key(name));
+        if (project == null) throw new UnknownProjectException(name);
+        return project;
+    }
+
+    public Collection<Project> getProjects() {
+        return projects.values();
+    }
+
+    public List<Map<String, Object>> getStatus() {
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Project project : projects.values()) out.add(project.getStatus());
+        return out;
+    }
+}
@@ -0,0 +1,93 @@
+package com.infinity.controller.dmn;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One published version of the rules: the model registry and the KieContainers it was built from.
+ *
+ * Rulesets are reference counted. {@link RulesetHolder} owns one reference while the ruleset is
+ * current, and every evaluation takes another through {@link RulesetHolder#acquire()} and gives it
+ * back with {@link #close()}. Once a newer version has been published and the last in-flight
+ * evaluation finishes, the registry releases its containers (see {@link RulesetPart}); containers it
+ * does not share with a newer version are disposed and their KieModules removed from the repository.
+ */
+public final class Ruleset implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(Ruleset.class);
+
+    private final String project;
+    private final String version;
+    private final String source;
+    private final DmnModelRegistry registry;
+    private final Instant publishedAt = Instant.now();
+    // starts at 1 for the holder's reference; 0 means disposed
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    Ruleset(String version, String source, DmnModelRegistry registry) {
+        this(null, version, source, registry);
+    }
+
+    Ruleset(String project, String version, String source, DmnModelRegistry registry) {
+        this.project = project;
+        this.version = version;
+        this.source = source;
+        this.registry = registry;
+    }
+
+    /** Takes a reference unless the ruleset has already been disposed. */
+    boolean retain() {
+        for (;;) {
+            int n = refs.get();
+            if (n <= 0) return false;
+            if (refs.compareAndSet(n, n + 1)) return true;
+        }
+    }
+
+    /** Gives back a reference taken by {@link RulesetHolder#acquire()}. */
+    @Override
+    public void close() {
+        if (refs.decrementAndGet() == 0) dispose();
+    }
+
+    /** Drops the holder's reference once a newer ruleset has been published. */
+    void retire() {
+        logger.info("Retiring ruleset {} ({} in-flight evaluations)", version, Math.max(0, refs.get() - 1));
+        close();
+    }
+
+    private void dispose() {
+        registry.release();
+        logger.info("Disposed ruleset {}", version);
+    }
+
+    /** Rule project the version belongs to, null for the default project (see {@link RuleProjects}). */
+    public String getProject() {
+        return project;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /** What produced this version, e.g. "classpath" or the edited model and decision. */
+    public String getSource() {
+        return source;
+    }
+
+    public DmnModelRegistry getRegistry() {
+        return registry;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    /** References currently held, including the holder's own while the ruleset is current. */
+    public int getReferenceCount() {
+        return Math.max(0, refs.get());
+    }
+}
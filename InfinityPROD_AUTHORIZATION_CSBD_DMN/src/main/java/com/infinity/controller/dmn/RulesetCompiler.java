@@ -0,0 +1,290 @@
+package com.infinity.controller.dmn;
+
+import org.kie.api.KieServices;
+import org.kie.api.builder.KieBuilder;
+import org.kie.api.builder.KieFileSystem;
+import org.kie.api.builder.Message;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.builder.Results;
+import org.kie.api.builder.model.KieModuleModel;
+import org.kie.api.runtime.KieContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles DMN sources into a new KieContainer through an in-memory KieFileSystem.
+ *
+ * Every compilation gets its own ReleaseId so containers of different versions can coexist in the
+ * KieRepository until the older one is drained and disposed.
+ *
+ * Rulesets are compiled as partitions, one KieBase per DMN file, in parallel on the ruleset compile
+ * executor (see {@link #compilePartitions}). Partitions whose source did not change are taken over from
+ * the running version instead of being compiled again, so a reload costs time and memory in proportion
+ * to the edited files. Each compiled partition records its compile time, the bytes its compile thread
+ * allocated and, when it was compiled on its own, the heap it retains.
+ */
+@Component
+public class RulesetCompiler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RulesetCompiler.class);
+
+    static final String GROUP_ID = "com.myspace";
+    static final String ARTIFACT_ID = "AUTHORIZATION_CSBD_DMN-runtime";
+    private static final String DMN_PATTERN = "classpath*:**/*.dmn";
+
+    // keeps the ReleaseIds of partitions unique when a version is compiled again
+    private final AtomicLong partitionBuilds = new AtomicLong();
+
+    // null outside Spring (e.g. the benchmarks), then partitions compile one after another
+    @Autowired(required = false)
+    @Qualifier("rulesetCompileExecutor")
+    private ExecutorService compileExecutor;
+
+    // GC before and after a partition compiled on its own to report the heap it retains; off by
+    // default since those partitions are compiled by live edits, which would pay for two full GCs
+    @Value("${decision.partitions.measure-retained-heap:false}")
+    private boolean measureRetainedHeap;
+
+    private final DmnCompileMode compileMode;
+
+    public RulesetCompiler(DmnCompileMode compileMode) {
+        this.compileMode = compileMode;
+    }
+
+    /** Thrown when the KieBuilder reports errors; the message holds the builder output. */
+    public static class RulesetBuildException extends RuntimeException {
+        public RulesetBuildException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Reads every DMN resource on the classpath, keyed by its KieFileSystem path.
+     */
+    public Map<String, byte[]> readClasspathSources() {
+        return readSources(DMN_PATTERN);
+    }
+
+    /**
+     * Reads every DMN resource matching a resource pattern, e.g. {@code file:/opt/rules/gbd/**}{@code /*.dmn}
+     * for the sources of an additional rule project, keyed by its KieFileSystem path.
+     */
+    public Map<String, byte[]> readSources(String pattern) {
+        Map<String, byte[]> sources = new LinkedHashMap<>();
+        try {
+            Resource[] resources = new PathMatchingResourcePatternResolver().getResources(pattern);
+            for (Resource r : resources) {
+                try (InputStream is = r.getInputStream()) {
+                    sources.putIfAbsent(kiePath(r), is.readAllBytes());
+                } catch (Exception e) {
+                    logger.warn("Failed to read DMN resource when building KieFileSystem {}: {}", r.getFilename(), e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to scan DMN resources", e);
+        }
+        return sources;
+    }
+
+    /** Compiles the given sources (KieFileSystem path to DMN bytes) into a container for {@code version}. */
+    public KieContainer compile(String version, Map<String, byte[]> sources) {
+        // edited sources must never pick up classes precompiled from the previous DMN text
+        return compile(version, sources, false);
+    }
+
+    /**
+     * Like {@link #compile(String, Map)}; with {@code precompiled} the decision tables are loaded from
+     * the classes generated at build time where they exist. Only for sources those classes were
+     * generated from, see {@link DmnStartupReport}.
+     */
+    public KieContainer compile(String version, Map<String, byte[]> sources, boolean precompiled) {
+        long start = System.nanoTime();
+        KieServices ks = KieServices.Factory.get();
+        KieFileSystem kfs = ks.newKieFileSystem();
+        ReleaseId releaseId = ks.newReleaseId(GROUP_ID, ARTIFACT_ID, "1.0.0-" + version);
+        kfs.generateAndWritePomXML(releaseId);
+        KieModuleModel kmodule = ks.newKieModuleModel();
+        compileMode.configure(kmodule, precompiled);
+        kfs.writeKModuleXML(kmodule.toXML());
+        sources.forEach(kfs::write);
+
+        KieBuilder kb = ks.newKieBuilder(kfs).buildAll();
+        Results results = kb.getResults();
+        if (results.hasMessages(Message.Level.ERROR)) {
+            StringBuilder sb = new StringBuilder();
+            results.getMessages().forEach(m -> sb.append(m.toString()).append("\n"));
+            logger.error("KieBuilder errors: {}", sb);
+            ks.getRepository().removeKieModule(releaseId);
+            throw new RulesetBuildException(sb.toString());
+        }
+
+        KieContainer container = ks.newKieContainer(releaseId);
+        container.getKieBase();
+        logger.info("Compiled {} DMN resources into {} in {} ms", sources.size(), releaseId,
+                (System.nanoTime() - start) / 1_000_000);
+        return container;
+    }
+
+    /**
+     * Compiles every DMN file of {@code sources} into a partition of its own, in parallel. A file whose
+     * path and digest match a partition in {@code reusable} (the running version's, see
+     * {@link DmnModelRegistry#partitionsBySource()}) takes that partition over instead; the caller
+     * must keep its version pinned until this returns. If any file fails to compile, the partitions
+     * already created or taken over are released and a {@link RulesetBuildException} names the failures.
+     */
+    List<RulesetPart> compilePartitions(String version, Map<String, byte[]> sources, Map<String, RulesetPart> reusable) {
+        return compilePartitions(version, sources, reusable, Collections.emptySet());
+    }
+
+    /**
+     * Like {@link #compilePartitions(String, Map, Map)}; the files in {@code precompiledPaths} load the
+     * decision tables precompiled by the build, and are compiled at runtime when that load fails. Only
+     * for files those classes were generated from, see {@link DmnStartupReport}.
+     */
+    List<RulesetPart> compilePartitions(String version, Map<String, byte[]> sources, Map<String, RulesetPart> reusable,
+                                        Set<String> precompiledPaths) {
+        long start = System.nanoTime();
+        List<String> paths = new ArrayList<>();
+        for (String path : sources.keySet()) {
+            if (path.endsWith(".dmn")) paths.add(path);
+        }
+        if (paths.isEmpty()) throw new RulesetBuildException("No DMN sources to compile");
+
+        List<RulesetPart> parts = new ArrayList<>(paths.size());
+        List<String> toCompile = new ArrayList<>();
+        for (String path : paths) {
+            RulesetPart previous = reusable.get(path);
+            if (previous != null && previous.getDigest().equals(digest(sources.get(path)))) {
+                parts.add(previous.retain());
+            } else {
+                toCompile.add(path);
+            }
+        }
+        // retained heap is only attributable when a single partition compiles at a time
+        boolean alone = toCompile.size() == 1 || compileExecutor == null;
+        Map<String, Future<RulesetPart>> futures = new LinkedHashMap<>();
+        for (String path : toCompile) {
+            boolean precompiled = precompiledPaths.contains(path);
+            Callable<RulesetPart> task = () -> compilePartition(version, path, sources.get(path), alone, precompiled);
+            futures.put(path, compileExecutor == null ? runNow(task) : compileExecutor.submit(task));
+        }
+        StringBuilder errors = new StringBuilder();
+        for (Map.Entry<String, Future<RulesetPart>> f : futures.entrySet()) {
+            try {
+                parts.add(f.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                errors.append(f.getKey()).append(": interrupted\n");
+            } catch (ExecutionException e) {
+                errors.append(f.getKey()).append(": ").append(e.getCause().getMessage()).append("\n");
+            }
+        }
+        if (errors.length() > 0) {
+            parts.forEach(RulesetPart::release);
+            throw new RulesetBuildException(errors.toString());
+        }
+        logger.info("Ruleset {}: compiled {} of {} DMN partitions in {} ms ({} unchanged, taken over)", version,
+                toCompile.size(), paths.size(), (System.nanoTime() - start) / 1_000_000, paths.size() - toCompile.size());
+        return parts;
+    }
+
+    /** Compiles one DMN file into a partition of its own, see {@link #compilePartitions}. */
+    RulesetPart compilePartition(String version, String path, byte[] dmn, boolean alone) {
+        return compilePartition(version, path, dmn, alone, false);
+    }
+
+    private RulesetPart compilePartition(String version, String path, byte[] dmn, boolean alone, boolean precompiled) {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        boolean measureRetained = alone && measureRetainedHeap;
+        if (measureRetained) memory.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        KieContainer container = null;
+        if (precompiled) {
+            try {
+                container = compile(version + "-p" + partitionBuilds.incrementAndGet(), Map.of(path, dmn), true);
+            } catch (RuntimeException e) {
+                logger.warn("Loading precompiled DMN artifacts of {} failed, compiling at runtime: {}", path, e.getMessage());
+            }
+        }
+        boolean loadedPrecompiled = container != null;
+        if (container == null) container = compile(version + "-p" + partitionBuilds.incrementAndGet(), Map.of(path, dmn));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("precompiled", loadedPrecompiled);
+        stats.put("compileMillis", (System.nanoTime() - start) / 1_000_000);
+        long allocatedAfter = allocatedBytes();
+        stats.put("allocatedBytes", allocatedBefore < 0 || allocatedAfter < 0 ? null : allocatedAfter - allocatedBefore);
+        if (measureRetained) memory.gc();
+        stats.put("retainedBytes", measureRetained ? Math.max(0, memory.getHeapMemoryUsage().getUsed() - heapBefore) : null);
+        stats.put("compiledAt", Instant.now().toString());
+        return new RulesetPart(container, true, path, digest(dmn), Collections.unmodifiableMap(stats));
+    }
+
+    // bytes allocated by the current thread so far, -1 where the JVM does not count them
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static <T> Future<T> runNow(Callable<T> task) {
+        CompletableFuture<T> f = new CompletableFuture<>();
+        try {
+            f.complete(task.call());
+        } catch (Exception e) {
+            f.completeExceptionally(e);
+        }
+        return f;
+    }
+
+    static String digest(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** KieFileSystem path for a classpath resource, preserving its package directory when known. */
+    public static String kiePath(Resource r) {
+        // try to compute a path under src/main/resources
+        String writePath = "src/main/resources/" + r.getFilename();
+        try {
+            String uri = r.getURI().getPath();
+            // last occurrence: stored ruleset versions live under <store>/versions/<id>/src/main/resources
+            int idx = uri.lastIndexOf("src/main/resources");
+            if (idx >= 0) writePath = uri.substring(idx + "src/main/resources/".length());
+        } catch (Exception ex) {
+            // fallback to filename
+        }
+        // ensure path starts with src/main/resources/
+        if (!writePath.startsWith("src/main/resources/")) writePath = "src/main/resources/" + writePath;
+        return writePath;
+    }
+}
@@ -0,0 +1,204 @@
+package com.infinity.controller.dmn;
+
+import org.kie.api.runtime.KieContainer;
+import org.kie.dmn.api.core.event.DMNRuntimeEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Holds the ruleset version currently used for evaluation.
+ *
+ * The first version is built at startup from the classpath rules. New versions are compiled on
+ * the single-threaded ruleset build executor, so edits never compile on a request thread and never
+ * race each other, and are published with one atomic swap. Evaluations pin a version with
+ * {@link #acquire()}; the previous version is disposed once its last evaluation has finished.
+ * Every swap is announced with a {@link RulesetPublishedEvent}. A rebuild can be given a check
+ * (e.g. the {@link RegressionGate}) that sees the compiled candidate before it is published and
+ * refuses it by throwing. A rule patch {@link #rebuildModel rebuilds} only the edited model and
+ * shares the containers of the other models with the current version.
+ *
+ * The Spring bean holds the default project. {@link RuleProjects} creates one more holder per
+ * additional rule project; those share the compiler, the executors and the runtime listeners, and
+ * their versions are prefixed with the project name ({@code gbd-r3}) so they never collide with the
+ * default project's in caches, audit records or ReleaseIds.
+ */
+@Component
+public class RulesetHolder {
+
+    private static final Logger logger = LoggerFactory.getLogger(RulesetHolder.class);
+
+    private final AtomicReference<Ruleset> current = new AtomicReference<>();
+    private final AtomicLong versions = new AtomicLong();
+    // null for the default project
+    private final String project;
+    private final RulesetCompiler rulesetCompiler;
+    private final ExecutorService buildExecutor;
+    private final ApplicationEventPublisher events;
+    // attached to the DMNRuntime of every version
+    private final List<DMNRuntimeEventListener> listeners;
+
+    @Autowired
+    public RulesetHolder(DmnModelRegistry classpathRegistry, RulesetCompiler rulesetCompiler,
+                         @Qualifier("rulesetBuildExecutor") ExecutorService buildExecutor,
+                         ApplicationEventPublisher events, ObjectProvider<DMNRuntimeEventListener> listeners) {
+        this(null, "classpath", classpathRegistry, rulesetCompiler, buildExecutor, events, listeners.orderedStream().toList());
+    }
+
+    /** Holder of an additional rule project, starting at {@code initial}. */
+    RulesetHolder(String project, String source, DmnModelRegistry initial, RulesetCompiler rulesetCompiler,
+                  ExecutorService buildExecutor, ApplicationEventPublisher events, List<DMNRuntimeEventListener> listeners) {
+        this.project = project;
+        this.rulesetCompiler = rulesetCompiler;
+        this.buildExecutor = buildExecutor;
+        this.events = events;
+        this.listeners = listeners;
+        initial.addListeners(this.listeners);
+        current.set(new Ruleset(project, nextVersion(), source, initial));
+    }
+
+    /** Rule project of this holder, null for the default project. */
+    public String getProject() {
+        return project;
+    }
+
+    /**
+     * Pins the current ruleset for the duration of an evaluation. Callers must close the returned
+     * ruleset, preferably with try-with-resources.
+     */
+    public Ruleset acquire() {
+        for (;;) {
+            Ruleset ruleset = current.get();
+            if (ruleset.retain()) return ruleset;
+            // lost a race with a swap that disposed this version; the next read sees the new one
+        }
+    }
+
+    /**
+     * Registry of the current version, for callers that only read model metadata and do not
+     * evaluate. Use {@link #acquire()} for evaluations.
+     */
+    public DmnModelRegistry current() {
+        return current.get().getRegistry();
+    }
+
+    public Ruleset currentRuleset() {
+        return current.get();
+    }
+
+    public String nextVersion() {
+        return versionPrefix(project) + versions.incrementAndGet();
+    }
+
+    private static String versionPrefix(String project) {
+        return project == null ? "r" : project + "-r";
+    }
+
+    /** True when {@code version} was numbered by the holder of {@code project} (null for the default project). */
+    static boolean isVersionOf(String project, String version) {
+        String prefix = versionPrefix(project);
+        if (version == null || version.length() <= prefix.length() || !version.startsWith(prefix)) return false;
+        for (int i = prefix.length(); i < version.length(); i++) {
+            if (!Character.isDigit(version.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Compiles a new version from {@code sources} (KieFileSystem path to bytes, read on the build
+     * executor) and publishes it. Every DMN file becomes a partition; files whose content matches a
+     * partition of the current version take that partition over, only the others are compiled, in
+     * parallel (see {@link RulesetCompiler#compilePartitions}).
+     *
+     * {@code check} runs against the compiled candidate first. A check that throws refuses the
+     * candidate: the partitions compiled for it are disposed and the returned future fails with the
+     * check's exception. Runtime listeners are attached to the new partitions only once the candidate
+     * passed, so check evaluations do not show up in the metrics.
+     */
+    public CompletableFuture<Ruleset> rebuild(String version, String source, Supplier<Map<String, byte[]>> sources,
+                                              Consumer<DmnModelRegistry> check) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, byte[]> files = sources.get();
+            List<RulesetPart> parts;
+            Set<RulesetPart> shared = Collections.newSetFromMap(new IdentityHashMap<>());
+            // the base stays pinned until the unchanged partitions have been taken over
+            try (Ruleset base = acquire()) {
+                Map<String, RulesetPart> reusable = base.getRegistry().partitionsBySource();
+                shared.addAll(reusable.values());
+                parts = rulesetCompiler.compilePartitions(version, files, reusable);
+            }
+            DmnModelRegistry candidate;
+            try {
+                candidate = DmnModelRegistry.build(parts);
+            } catch (RuntimeException e) {
+                parts.forEach(RulesetPart::release);
+                throw e;
+            }
+            List<RulesetPart> compiled = new ArrayList<>(parts);
+            compiled.removeIf(shared::contains);
+            return publishChecked(version, source, candidate, compiled, check);
+        }, buildExecutor);
+    }
+
+    /**
+     * Like {@link #rebuild(String, String, Supplier, Consumer)} for a single DMN file: it is compiled
+     * alone and its models replace those of the same name in the current version, every other model
+     * keeps running on the current containers. Works whether or not the current version is
+     * partitioned.
+     */
+    public CompletableFuture<Ruleset> rebuildModel(String version, String source, String path, byte[] dmn,
+                                                   Consumer<DmnModelRegistry> check) {
+        return CompletableFuture.supplyAsync(() -> {
+            RulesetPart part = rulesetCompiler.compilePartition(version, path, dmn, true);
+            DmnModelRegistry candidate;
+            // the base stays pinned until the candidate has retained the containers it shares
+            try (Ruleset base = acquire()) {
+                candidate = base.getRegistry().replace(part);
+            } catch (RuntimeException e) {
+                part.release();
+                throw e;
+            }
+            return publishChecked(version, source, candidate, List.of(part), check);
+        }, buildExecutor);
+    }
+
+    // the shared partitions already carry the listeners
+    private Ruleset publishChecked(String version, String source, DmnModelRegistry candidate, List<RulesetPart> compiled,
+                                   Consumer<DmnModelRegistry> check) {
+        try {
+            check.accept(candidate);
+        } catch (RuntimeException e) {
+            candidate.release();
+            logger.warn("Ruleset {} ({}) refused before publishing: {}", version, source, e.getMessage());
+            throw e;
+        }
+        for (RulesetPart part : compiled) listeners.forEach(part.getDmnRuntime()::addListener);
+        return publish(version, source, candidate);
+    }
+
+    /** Builds a registry for the given container and publishes it for subsequent evaluations. */
+    public Ruleset publish(String version, String source, KieContainer kieContainer) {
+        return publish(version, source, DmnModelRegistry.build(kieContainer, listeners));
+    }
+
+    private Ruleset publish(String version, String source, DmnModelRegistry registry) {
+        Ruleset next = new Ruleset(project, version, source, registry);
+        Ruleset previous = current.getAndSet(next);
+        logger.info("Published ruleset {} ({}) with container {}", version, source, registry.getKieContainer().getReleaseId());
+        if (previous != null) previous.retire();
+        events.publishEvent(new RulesetPublishedEvent(next, previous == null ? null : previous.getVersion()));
+        return next;
+    }
+}
@@ -0,0 +1,101 @@
+package com.infinity.controller.dmn;
+
+import org.kie.api.KieServices;
+import org.kie.api.builder.ReleaseId;
+import org.kie.api.runtime.KieContainer;
+import org.kie.api.runtime.KieRuntimeFactory;
+import org.kie.dmn.api.core.DMNRuntime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One compiled KieContainer of a ruleset and the DMNRuntime over its KieBase.
+ *
+ * Rulesets are partitioned: every DMN file (one model, or one service category group) is compiled
+ * into a container of its own (see {@link RulesetCompiler#compilePartitions}), and a partition
+ * remembers the path and digest of its source. A new version recompiles only the files whose content
+ * changed and shares the other partitions with the previous version, so parts are reference counted
+ * by the registries using them: the container is disposed, and its KieModule removed from the
+ * repository, once the last registry holding it has been released. The single classpath container
+ * (with partitioning disabled) is a part without a source path and is never shared.
+ */
+final class RulesetPart {
+
+    private static final Logger logger = LoggerFactory.getLogger(RulesetPart.class);
+
+    private final KieContainer kieContainer;
+    private final DMNRuntime dmnRuntime;
+    private final boolean ownsKieModule;
+    // KieFileSystem path and SHA-256 of the single DMN source, null for containers of several files
+    private final String path;
+    private final String digest;
+    // compile time and heap figures recorded by RulesetCompiler
+    private final Map<String, Object> stats;
+    // starts at 1 for the registry that created the part; 0 means disposed
+    private final AtomicInteger refs = new AtomicInteger(1);
+
+    RulesetPart(KieContainer kieContainer, boolean ownsKieModule) {
+        this(kieContainer, ownsKieModule, null, null, Collections.emptyMap());
+    }
+
+    RulesetPart(KieContainer kieContainer, boolean ownsKieModule, String path, String digest, Map<String, Object> stats) {
+        this.kieContainer = kieContainer;
+        this.dmnRuntime = KieRuntimeFactory.of(kieContainer.getKieBase()).get(DMNRuntime.class);
+        this.ownsKieModule = ownsKieModule;
+        this.path = path;
+        this.digest = digest;
+        this.stats = stats;
+    }
+
+    /** Takes a reference for another registry; parts are only shared while a holder pins them. */
+    RulesetPart retain() {
+        if (refs.getAndIncrement() <= 0) throw new IllegalStateException("Ruleset part already disposed");
+        return this;
+    }
+
+    void release() {
+        if (refs.decrementAndGet() != 0) return;
+        ReleaseId releaseId = kieContainer.getReleaseId();
+        try {
+            kieContainer.dispose();
+            if (ownsKieModule && releaseId != null) {
+                KieServices.Factory.get().getRepository().removeKieModule(releaseId);
+            }
+            logger.info("Disposed container {}", releaseId);
+        } catch (Exception e) {
+            logger.warn("Error disposing container {}: {}", releaseId, e.getMessage());
+        }
+    }
+
+    KieContainer getKieContainer() {
+        return kieContainer;
+    }
+
+    DMNRuntime getDmnRuntime() {
+        return dmnRuntime;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    String getDigest() {
+        return digest;
+    }
+
+    /** Release id, source, models and compile figures, for the partition report. */
+    Map<String, Object> describe() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("releaseId", String.valueOf(kieContainer.getReleaseId()));
+        out.put("source", path);
+        List<String> models = new ArrayList<>();
+        dmnRuntime.getModels().forEach(m -> models.add(m.getName()));
+        out.put("models", models);
+        out.putAll(stats);
+        out.put("references", Math.max(0, refs.get()));
+        return out;
+    }
+}
@@ -0,0 +1,25 @@
+package com.infinity.controller.dmn;
+
+/**
+ * Published by {@link RulesetHolder} after a new ruleset has been swapped in, so components that
+ * keep per-version state (caches, reports) can drop what belongs to older versions.
+ */
+public class RulesetPublishedEvent {
+
+    private final Ruleset ruleset;
+    private final String previousVersion;
+
+    RulesetPublishedEvent(Ruleset ruleset, String previousVersion) {
+        this.ruleset = ruleset;
+        this.previousVersion = previousVersion;
+    }
+
+    public Ruleset getRuleset() {
+        return ruleset;
+    }
+
+    /** Version that was current before the swap, or null for the first ruleset. */
+    public String getPreviousVersion() {
+        return previousVersion;
+    }
+}
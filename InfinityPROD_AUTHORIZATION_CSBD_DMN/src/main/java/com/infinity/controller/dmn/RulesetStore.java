@@ -0,0 +1,381 @@
+package com.infinity.controller.dmn;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Ruleset versions shared by every instance through a directory (a shared volume, or a local
+ * directory for a single instance).
+ *
+ * Layout:
+ * <pre>
+ *   versions/&lt;id&gt;/manifest.json        id, content digest, source, creation time, file list
+ *   versions/&lt;id&gt;/src/main/resources/... the DMN files (and test case sidecars) of the version
+ *   HEAD                                  id of the version every instance should run
+ * </pre>
+ * A version id is the start of the SHA-256 digest over its file paths and contents, so a version is
+ * written once and never changes, and publishing the same content twice yields the same id. Version
+ * directories and HEAD are written to a temporary name and moved into place atomically.
+ *
+ * The instance that publishes an edit compiles it first and moves HEAD only once the build
+ * succeeded. Every instance watches the directory with a {@link WatchService} (and re-reads HEAD every
+ * {@code decision.store.poll-interval}, for shared file systems that do not deliver events); when
+ * HEAD names a version it does not run yet, the version is compiled on the ruleset build executor and
+ * swapped in by {@link RulesetHolder}. On first start the classpath rules are stored as the initial
+ * version.
+ *
+ * Disabled unless {@code decision.store.dir} is set.
+ */
+@Component
+public class RulesetStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(RulesetStore.class);
+
+    private static final String HEAD = "HEAD";
+    private static final String VERSIONS = "versions";
+    private static final String MANIFEST = "manifest.json";
+    private static final int ID_LENGTH = 16;
+
+    private final Path root;
+    private final Duration pollInterval;
+    private final RulesetHolder rulesetHolder;
+    private final RulesetCompiler rulesetCompiler;
+    private final DmnMetadataIndex metadataIndex;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // stored version the current ruleset was built from, and the one being built
+    private volatile String appliedVersion;
+    private volatile String pendingVersion;
+    private volatile Instant appliedAt;
+    private volatile Thread watcher;
+
+    public RulesetStore(@Value("${decision.store.dir:}") String dir,
+                        @Value("${decision.store.poll-interval:PT30S}") Duration pollInterval,
+                        RulesetHolder rulesetHolder, RulesetCompiler rulesetCompiler, DmnMetadataIndex metadataIndex) {
+        this.root = dir == null || dir.isBlank() ? null : Paths.get(dir).toAbsolutePath().normalize();
+        this.pollInterval = pollInterval;
+        this.rulesetHolder = rulesetHolder;
+        this.rulesetCompiler = rulesetCompiler;
+        this.metadataIndex = metadataIndex;
+    }
+
+    public boolean isEnabled() {
+        return root != null;
+    }
+
+    /** Seeds the store with the classpath rules if it is empty, catches up with HEAD and starts watching. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!isEnabled()) return;
+        try {
+            Files.createDirectories(root.resolve(VERSIONS));
+            // the running ruleset was built from the classpath, so it is that version
+            String classpath = write(rulesetCompiler.readClasspathSources(), "classpath");
+            appliedVersion = classpath;
+            appliedAt = Instant.now();
+            if (readHead() == null) {
+                moveHead(classpath);
+                logger.info("Initialized ruleset store {} with the classpath rules as version {}", root, classpath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot initialize ruleset store " + root, e);
+        }
+        sync();
+        Thread t = new Thread(this::watch, "ruleset-store-watch");
+        t.setDaemon(true);
+        t.start();
+        watcher = t;
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = watcher;
+        if (t != null) t.interrupt();
+    }
+
+    /**
+     * Writes an immutable version with the given sources (KieFileSystem path to bytes) and returns
+     * its id. Writing content that is already stored returns the existing id.
+     */
+    public String write(Map<String, byte[]> sources, String source) throws IOException {
+        SortedMap<String, byte[]> files = new TreeMap<>(sources);
+        String digest = digest(files);
+        String id = digest.substring(0, ID_LENGTH);
+        Path dir = versionDir(id);
+        if (Files.isDirectory(dir)) return id;
+
+        Path tmp = Files.createTempDirectory(root.resolve(VERSIONS), "." + id + "-");
+        for (Map.Entry<String, byte[]> e : files.entrySet()) {
+            Path file = resolveInside(tmp, e.getKey());
+            Files.createDirectories(file.getParent());
+            Files.write(file, e.getValue());
+        }
+        Map<String, Object> manifest = new LinkedHashMap<>();
+        manifest.put("id", id);
+        manifest.put("sha256", digest);
+        manifest.put("source", source);
+        manifest.put("createdAt", Instant.now().toString());
+        manifest.put("files", new ArrayList<>(files.keySet()));
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(tmp.resolve(MANIFEST).toFile(), manifest);
+        try {
+            Files.move(tmp, dir, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Stored ruleset version {} ({}, {} files)", id, source, files.size());
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            // another instance stored the same content first
+            deleteTree(tmp);
+        }
+        return id;
+    }
+
+    /** Sources of a stored version, keyed by KieFileSystem path. */
+    public Map<String, byte[]> read(String id) throws IOException {
+        Path dir = versionDir(id);
+        Map<String, Object> manifest = readManifest(id);
+        Map<String, byte[]> sources = new LinkedHashMap<>();
+        for (Object path : (List<?>) manifest.get("files")) {
+            sources.put(path.toString(), Files.readAllBytes(resolveInside(dir, path.toString())));
+        }
+        return sources;
+    }
+
+    /** Sources of the version the current ruleset was built from. */
+    public Map<String, byte[]> readApplied() throws IOException {
+        return read(appliedVersion);
+    }
+
+    /**
+     * Compiles a stored version, publishes it on this instance and, once it is live, points HEAD at it
+     * so the other instances follow. A failed build leaves HEAD where it was.
+     */
+    public CompletableFuture<Ruleset> publish(String id) {
+        return apply(id, true, candidate -> { });
+    }
+
+    /**
+     * Like {@link #publish(String)}, but the compiled candidate must pass {@code check} first (see
+     * {@link RulesetHolder#rebuild(String, String, java.util.function.Supplier, Consumer)}). A refused
+     * version stays in the store without HEAD moving to it.
+     */
+    public CompletableFuture<Ruleset> publish(String id, Consumer<DmnModelRegistry> check) {
+        return apply(id, true, check);
+    }
+
+    // versions other instances published were checked there, so following HEAD applies them unchecked
+    private synchronized CompletableFuture<Ruleset> apply(String id, boolean moveHead, Consumer<DmnModelRegistry> check) {
+        pendingVersion = id;
+        String source = String.valueOf(readManifestQuietly(id).getOrDefault("source", "store"));
+        // files that did not change since the running version keep their compiled partitions
+        CompletableFuture<Ruleset> build = rulesetHolder.rebuild(id, "store:" + source, () -> {
+            try {
+                return read(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, check);
+        if (moveHead) {
+            // HEAD moves before appliedVersion so the watcher never mistakes the old HEAD for news
+            build = build.thenApply(ruleset -> {
+                try {
+                    moveHead(id);
+                } catch (IOException e) {
+                    // the next sync brings this instance back to the fleet's HEAD
+                    appliedVersion = id;
+                    throw new UncheckedIOException("Published " + id + " locally but could not move " + HEAD, e);
+                }
+                return ruleset;
+            });
+        }
+        return build.whenComplete((ruleset, e) -> {
+            synchronized (this) {
+                if (id.equals(pendingVersion)) pendingVersion = null;
+            }
+            if (e != null) {
+                logger.error("Failed to apply stored ruleset version {}: {}", id, e.getMessage());
+                return;
+            }
+            appliedVersion = id;
+            appliedAt = Instant.now();
+            metadataIndex.rebuild(dmnResources(id));
+        });
+    }
+
+    /**
+     * Records a stored version that is already live on this instance, e.g. a rule patch compiled
+     * model by model (see {@link DecisionTablePatcher}), as applied and points HEAD at it so the other
+     * instances follow.
+     */
+    public synchronized void adopt(String id) throws IOException {
+        appliedVersion = id;
+        appliedAt = Instant.now();
+        moveHead(id);
+    }
+
+    /** Applies the version named by HEAD unless it is already running or being built. */
+    public synchronized void sync() {
+        if (!isEnabled()) return;
+        String head;
+        try {
+            head = readHead();
+        } catch (IOException e) {
+            logger.warn("Cannot read {} of ruleset store {}: {}", HEAD, root, e.getMessage());
+            return;
+        }
+        if (head == null || head.equals(appliedVersion) || head.equals(pendingVersion)) return;
+        logger.info("Ruleset store {} moved to version {} (running {}), applying it", HEAD, head, appliedVersion);
+        apply(head, false, candidate -> { });
+    }
+
+    private void watch() {
+        try (WatchService ws = root.getFileSystem().newWatchService()) {
+            root.register(ws, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = ws.poll(pollInterval.toMillis(), java.util.concurrent.TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+                // also on timeout: shared volumes do not always deliver events
+                sync();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Ruleset store watcher stopped: {}", e.getMessage(), e);
+        }
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", isEnabled());
+        if (!isEnabled()) return out;
+        out.put("dir", root.toString());
+        String head = null;
+        try {
+            head = readHead();
+        } catch (IOException e) {
+            out.put("error", e.getMessage());
+        }
+        out.put("head", head);
+        out.put("applied", appliedVersion);
+        out.put("appliedAt", appliedAt == null ? null : appliedAt.toString());
+        out.put("pending", pendingVersion);
+        out.put("inSync", head != null && head.equals(appliedVersion));
+        out.put("activeRuleset", rulesetHolder.currentRuleset().getVersion());
+        List<Map<String, Object>> versions = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(root.resolve(VERSIONS))) {
+            dirs.filter(Files::isDirectory)
+                    .map(d -> d.getFileName().toString())
+                    .filter(name -> !name.startsWith("."))
+                    .forEach(id -> {
+                        Map<String, Object> m = new LinkedHashMap<>(readManifestQuietly(id));
+                        m.remove("files");
+                        versions.add(m);
+                    });
+        } catch (IOException e) {
+            out.put("error", e.getMessage());
+        }
+        versions.sort(Comparator.comparing(m -> String.valueOf(m.get("createdAt"))));
+        out.put("versions", versions);
+        return out;
+    }
+
+    private List<Resource> dmnResources(String id) {
+        List<Resource> resources = new ArrayList<>();
+        for (Object path : (List<?>) readManifestQuietly(id).getOrDefault("files", Collections.emptyList())) {
+            if (path.toString().endsWith(".dmn")) resources.add(new FileSystemResource(resolveInside(versionDir(id), path.toString())));
+        }
+        return resources;
+    }
+
+    private String readHead() throws IOException {
+        Path head = root.resolve(HEAD);
+        if (!Files.exists(head)) return null;
+        String id = new String(Files.readAllBytes(head), StandardCharsets.UTF_8).trim();
+        return id.isEmpty() ? null : id;
+    }
+
+    private void moveHead(String id) throws IOException {
+        if (!Files.isDirectory(versionDir(id))) throw new IllegalArgumentException("Unknown ruleset version: " + id);
+        Path tmp = Files.createTempFile(root, "." + HEAD + "-", ".tmp");
+        Files.write(tmp, (id + "\n").getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, root.resolve(HEAD), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        logger.info("Ruleset store {} now points at version {}", HEAD, id);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readManifest(String id) throws IOException {
+        Path manifest = versionDir(id).resolve(MANIFEST);
+        if (!Files.exists(manifest)) throw new IllegalArgumentException("Unknown ruleset version: " + id);
+        return objectMapper.readValue(manifest.toFile(), Map.class);
+    }
+
+    private Map<String, Object> readManifestQuietly(String id) {
+        try {
+            return readManifest(id);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Cannot read manifest of ruleset version {}: {}", id, e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    private Path versionDir(String id) {
+        if (!id.matches("[0-9a-f]{" + ID_LENGTH + "}")) throw new IllegalArgumentException("Invalid ruleset version id: " + id);
+        return root.resolve(VERSIONS).resolve(id);
+    }
+
+    // KieFileSystem paths are relative; refuse anything that would escape the version directory
+    private static Path resolveInside(Path dir, String relative) {
+        Path file = dir.resolve(relative).normalize();
+        if (!file.startsWith(dir)) throw new IllegalArgumentException("Invalid ruleset file path: " + relative);
+        return file;
+    }
+
+    private static String digest(SortedMap<String, byte[]> files) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        for (Map.Entry<String, byte[]> e : files.entrySet()) {
+            digest.update(e.getKey().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Integer.toString(e.getValue().length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(e.getValue());
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+}
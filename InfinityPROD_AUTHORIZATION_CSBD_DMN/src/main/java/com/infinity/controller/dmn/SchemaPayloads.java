@@ -0,0 +1,112 @@
+package com.infinity.controller.dmn;
+
+import com.infinity.controller.metadata.DmnMetadataIndex;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates request payloads from a model's input schema (the itemDefinition expansion of
+ * GET /models/{model}/schema), for the JIT warm-up ({@link JitWarmUp}) and the benchmarks, so neither
+ * needs hand-written fixtures that drift from the DMN files.
+ *
+ * String fields take the literals of the model's decision table input entries, so the tables match
+ * rows instead of falling through; the other primitives get random values in the form of a JSON
+ * request (numbers, ISO dates and times as strings), collections one to three elements. A fraction
+ * of the fields can be left out so null checks are exercised too. Values only depend on the seed.
+ */
+public final class SchemaPayloads {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final int MAX_DEPTH = 16;
+    private static final LocalDate BASE_DATE = LocalDate.of(2020, 1, 1);
+
+    private SchemaPayloads() {
+    }
+
+    /** {@code count} payloads for the model from {@code seed}, leaving out a fraction {@code omitField} of the fields. */
+    public static List<Map<String, Object>> forModel(DmnMetadataIndex.ModelMetadata model, int count, long seed,
+                                                     double omitField) {
+        Random random = new Random(seed);
+        List<String> literals = literals(model);
+        List<Map<String, Object>> payloads = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            payloads.add(payload(model.getSchema(), literals, random, omitField));
+        }
+        return payloads;
+    }
+
+    // quoted strings of the model's decision table input entries, the values rows compare against
+    @SuppressWarnings("unchecked")
+    private static List<String> literals(DmnMetadataIndex.ModelMetadata metadata) {
+        Set<String> out = new LinkedHashSet<>();
+        for (Map<String, Object> decision : metadata.getDecisions()) {
+            Map<String, Object> table = metadata.findTable((String) decision.get("name"));
+            if (table == null || !(table.get("parsed") instanceof Map)) continue;
+            Object rules = ((Map<String, Object>) table.get("parsed")).get("rules");
+            if (!(rules instanceof List)) continue;
+            for (Map<String, Object> rule : (List<Map<String, Object>>) rules) {
+                for (String entry : (List<String>) rule.get("inputs")) {
+                    Matcher m = STRING_LITERAL.matcher(entry);
+                    while (m.find()) out.add(m.group(1));
+                }
+            }
+        }
+        return new ArrayList<>(out);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> payload(Map<String, Object> schema, List<String> literals, Random random, double omitField) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Map<String, Object> input : (List<Map<String, Object>>) schema.get("inputs")) {
+            out.put((String) input.get("name"), value((Map<String, Object>) input.get("schema"), literals, random, omitField, 0));
+        }
+        return out;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object value(Map<String, Object> schema, List<String> literals, Random random, double omitField, int depth) {
+        Object fields = schema == null ? null : schema.get("fields");
+        // itemDefinitions without components (constrained strings such as tcaseTypeCode) are primitives
+        if (!(fields instanceof List) || ((List<?>) fields).isEmpty() || depth >= MAX_DEPTH) {
+            return primitive(schema == null ? null : (String) schema.get("type"), literals, random);
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        for (Map<String, Object> field : (List<Map<String, Object>>) fields) {
+            if (random.nextDouble() < omitField) continue;
+            Map<String, Object> element = field.get("schema") instanceof Map
+                    ? (Map<String, Object>) field.get("schema")
+                    : Collections.singletonMap("type", field.get("type"));
+            if (Boolean.TRUE.equals(field.get("isCollection"))) {
+                int size = 1 + random.nextInt(3);
+                List<Object> items = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) items.add(value(element, literals, random, omitField, depth + 1));
+                out.put((String) field.get("name"), items);
+            } else {
+                out.put((String) field.get("name"), value(element, literals, random, omitField, depth + 1));
+            }
+        }
+        return out;
+    }
+
+    private static Object primitive(String type, List<String> literals, Random random) {
+        switch (type == null ? "" : type.toLowerCase(Locale.ROOT)) {
+            case "boolean":
+                return random.nextBoolean();
+            case "number":
+                return random.nextInt(1000);
+            case "date":
+                return BASE_DATE.plusDays(random.nextInt(2500)).toString();
+            case "date and time":
+            case "datetime":
+                return BASE_DATE.plusDays(random.nextInt(2500)).atTime(random.nextInt(24), 0).toString();
+            case "time":
+                return LocalTime.of(random.nextInt(24), random.nextInt(60)).toString();
+            default:
+                return literals.isEmpty() ? "W" + random.nextInt(100) : literals.get(random.nextInt(literals.size()));
+        }
+    }
+}
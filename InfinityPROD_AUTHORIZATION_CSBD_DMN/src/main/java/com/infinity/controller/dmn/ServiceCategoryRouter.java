@@ -0,0 +1,199 @@
+package com.infinity.controller.dmn;
+
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import jakarta.annotation.PostConstruct;
+import org.kie.dmn.api.core.DMNModel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Routes a line payload to the category model covering its service category.
+ *
+ * The category code is read from the first configured payload path that holds a value (or taken
+ * from the caller) and looked up in the registry's category table. The paths are checked against the
+ * universal model's input schema at startup, so a path no model declares fails fast. In pipeline mode the line is
+ * additionally run through universal before, and the line or claim denial model after, the
+ * category model so callers get the whole adjudication in one request.
+ */
+@Service
+public class ServiceCategoryRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceCategoryRouter.class);
+
+    static final String RECOMMENDATION = "Recommendation";
+
+    public enum DenialLevel { NONE, LINE, CLAIM }
+
+    @Autowired
+    private RulesetHolder rulesetHolder;
+
+    @Autowired
+    private DecisionEvaluator decisionEvaluator;
+
+    @Autowired
+    private DmnMetadataIndex metadataIndex;
+
+    @Value("${decision.routing.category-paths:Data.Line.serviceClassificationCode}")
+    private List<String> categoryPaths;
+
+    @Value("${decision.routing.universal-model:universal}")
+    private String universalModel;
+
+    @Value("${decision.routing.line-denial-model:line_level_denial}")
+    private String lineDenialModel;
+
+    @Value("${decision.routing.claim-denial-model:claim_level_denial}")
+    private String claimDenialModel;
+
+    // Recommendation.Decision values from universal that end the pipeline before the category model
+    @Value("${decision.routing.stop-decisions:Bypass,ClaimLevelBypass}")
+    private Set<String> stopDecisions;
+
+    // every line passes universal first, so its schema declares the fields a routed payload can carry
+    @PostConstruct
+    void checkCategoryPaths() {
+        DmnMetadataIndex.ModelMetadata universal = metadataIndex.require(universalModel);
+        List<String> missing = new ArrayList<>();
+        for (String path : categoryPaths) {
+            if (!universal.hasInputPath(path.trim())) missing.add(path.trim());
+        }
+        if (missing.size() == categoryPaths.size()) {
+            throw new IllegalStateException("None of decision.routing.category-paths " + categoryPaths
+                    + " is an input of model " + universal.getName());
+        }
+        if (!missing.isEmpty()) {
+            logger.warn("decision.routing.category-paths {} are not inputs of model {}", missing, universal.getName());
+        }
+    }
+
+    /** Evaluates only the category model for the payload. */
+    public Map<String, Object> route(String categoryCode, Map<String, Object> input, boolean useCache) {
+        try (Ruleset ruleset = rulesetHolder.acquire()) {
+            DmnModelRegistry registry = ruleset.getRegistry();
+            String category = resolveCategory(categoryCode, input);
+            DMNModel model = requireCategoryModel(registry, category);
+
+            Map<String, Object> out = new LinkedHashMap<>();
+            out.put("category", category);
+            out.put("model", model.getName());
+            out.put("rulesetVersion", ruleset.getVersion());
+            out.put("result", decisionEvaluator.evaluate(ruleset, model, null, input, useCache));
+            return out;
+        }
+    }
+
+    /**
+     * Runs universal, the category model and the selected denial model in sequence against one
+     * registry. The category Recommendation message is passed on to the denial model as
+     * Data.Line.previousSOPRecommendation unless the caller already supplied one.
+     */
+    public Map<String, Object> pipeline(String categoryCode, DenialLevel denialLevel, Map<String, Object> input,
+                                        boolean useCache) {
+        try (Ruleset ruleset = rulesetHolder.acquire()) {
+            return pipeline(ruleset, categoryCode, denialLevel, input, useCache);
+        }
+    }
+
+    // also runs the lines of a claim, see ClaimAdjudicator
+    Map<String, Object> pipeline(Ruleset ruleset, String categoryCode, DenialLevel denialLevel,
+                                         Map<String, Object> input, boolean useCache) {
+        DmnModelRegistry registry = ruleset.getRegistry();
+        String category = resolveCategory(categoryCode, input);
+        DMNModel categoryModel = requireCategoryModel(registry, category);
+
+        List<Map<String, Object>> stages = new ArrayList<>();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("category", category);
+        out.put("rulesetVersion", ruleset.getVersion());
+        out.put("stages", stages);
+
+        Map<String, Object> universal = runStage(ruleset, registry.require(null, universalModel), input, stages, useCache);
+        String universalDecision = recommendationField(universal, "Decision");
+        if (universalDecision != null && stopDecisions.contains(universalDecision)) {
+            out.put("stoppedAt", universalModel);
+            out.put("recommendation", universal.get(RECOMMENDATION));
+            return out;
+        }
+
+        Map<String, Object> categoryResult = runStage(ruleset, categoryModel, input, stages, useCache);
+        Object recommendation = categoryResult.get(RECOMMENDATION);
+
+        if (denialLevel != DenialLevel.NONE) {
+            String denialModel = denialLevel == DenialLevel.CLAIM ? claimDenialModel : lineDenialModel;
+            Map<String, Object> denialInput = withPreviousRecommendation(input, recommendationField(categoryResult, "Message"));
+            Map<String, Object> denial = runStage(ruleset, registry.require(null, denialModel), denialInput, stages, useCache);
+            recommendation = denial.get(RECOMMENDATION);
+        }
+        out.put("recommendation", recommendation);
+        return out;
+    }
+
+    private Map<String, Object> runStage(Ruleset ruleset, DMNModel model, Map<String, Object> input,
+                                         List<Map<String, Object>> stages, boolean useCache) {
+        long start = System.nanoTime();
+        Map<String, Object> result = decisionEvaluator.evaluate(ruleset, model, null, input, useCache);
+        Map<String, Object> stage = new LinkedHashMap<>();
+        stage.put("model", model.getName());
+        stage.put("elapsedMicros", (System.nanoTime() - start) / 1_000);
+        stage.put("result", result);
+        stages.add(stage);
+        return result;
+    }
+
+    String resolveCategory(String categoryCode, Map<String, Object> input) {
+        if (categoryCode != null && !categoryCode.isBlank()) return categoryCode.trim().toUpperCase(Locale.ROOT);
+        for (String path : categoryPaths) {
+            Object value = readPath(input, path.trim());
+            if (value != null && !value.toString().isBlank()) return value.toString().trim().toUpperCase(Locale.ROOT);
+        }
+        throw new IllegalArgumentException("No service category code found in payload (looked at " + categoryPaths + ")");
+    }
+
+    private static DMNModel requireCategoryModel(DmnModelRegistry registry, String category) {
+        DMNModel model = registry.findByCategory(category);
+        if (model == null) {
+            logger.warn("No category model for service category {}", category);
+            throw new RuntimeException("No model found for service category: " + category);
+        }
+        return model;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Object readPath(Map<String, Object> input, String path) {
+        Object current = input;
+        for (String segment : path.split("\\.")) {
+            if (!(current instanceof Map)) return null;
+            current = ((Map<String, Object>) current).get(segment);
+        }
+        return current;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String recommendationField(Map<String, Object> result, String field) {
+        Object recommendation = result.get(RECOMMENDATION);
+        if (!(recommendation instanceof Map)) return null;
+        Object value = ((Map<String, Object>) recommendation).get(field);
+        return value == null ? null : value.toString();
+    }
+
+    // Copies Data and Data.Line so earlier stage results that carry the input forward are not modified
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> withPreviousRecommendation(Map<String, Object> input, String message) {
+        if (message == null || !(input.get("Data") instanceof Map)) return input;
+        Map<String, Object> data = new LinkedHashMap<>((Map<String, Object>) input.get("Data"));
+        Map<String, Object> line = data.get("Line") instanceof Map
+                ? new LinkedHashMap<>((Map<String, Object>) data.get("Line"))
+                : new LinkedHashMap<>();
+        if (line.get("previousSOPRecommendation") != null) return input;
+        line.put("previousSOPRecommendation", message);
+        data.put("Line", line);
+        Map<String, Object> copy = new LinkedHashMap<>(input);
+        copy.put("Data", data);
+        return copy;
+    }
+}
@@ -0,0 +1,346 @@
+package com.infinity.controller.dmn;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.kie.api.runtime.KieContainer;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.event.AfterEvaluateDecisionEvent;
+import org.kie.dmn.api.core.event.BeforeEvaluateDecisionEvent;
+import org.kie.dmn.api.core.event.DMNRuntimeEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Shadow evaluation of a candidate ruleset on sampled live traffic.
+ *
+ * A candidate (compiled like an edit, but never published) is loaded next to the live ruleset. A
+ * fraction ({@code sampleRate}) of the evaluations against the live ruleset is then evaluated
+ * again against the candidate on the shadow executor ({@code decision.shadow.threads} threads, at
+ * most {@code decision.shadow.max-queue} waiting). The live response never waits for it: a sample
+ * is only handed over after the live evaluation returned, and samples that find the queue full are
+ * dropped and counted.
+ *
+ * Per model and decision the report counts compared and mismatching outputs (with a few examples)
+ * and the mean self time of the decision on both versions. Self times come from this class acting
+ * as a runtime listener, on the live runtime (attached by {@link RulesetHolder} like the metrics
+ * listener) and on the candidate's; outside a sampled evaluation an event costs one thread-local
+ * read. Live evaluations served from the result cache have no timings and only compare outputs.
+ *
+ * Meters: {@code dmn.shadow.evaluations}, {@code dmn.shadow.mismatches} (per model),
+ * {@code dmn.shadow.dropped} and {@code dmn.shadow.errors}.
+ */
+@Component
+public class ShadowEvaluator implements DMNRuntimeEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShadowEvaluator.class);
+
+    private static final int MAX_DEPTH = 64;
+    private static final int MAX_EXAMPLES = 20;
+
+    /** One sampled live evaluation, with the live timings once it has run. */
+    public final class Sample {
+        private final DMNModel model;
+        private long liveNanos = -1;
+        private Map<String, Long> liveDecisionNanos;
+
+        private Sample(DMNModel model) {
+            this.model = model;
+        }
+
+        /** Wraps the live evaluation so its timings are captured on whichever thread runs it. */
+        public Supplier<Map<String, Object>> timed(Supplier<Map<String, Object>> evaluation) {
+            return () -> {
+                Capture c = capture.get();
+                c.begin();
+                long start = System.nanoTime();
+                try {
+                    return evaluation.get();
+                } finally {
+                    liveNanos = System.nanoTime() - start;
+                    liveDecisionNanos = c.end();
+                }
+            };
+        }
+    }
+
+    /** Per-thread decision timing, active only while a sampled evaluation runs on the thread. */
+    private static final class Capture {
+        boolean active;
+        int depth;
+        final long[] frameStart = new long[MAX_DEPTH];
+        final long[] frameChildren = new long[MAX_DEPTH];
+        Map<String, Long> selfNanos;
+
+        void begin() {
+            active = true;
+            depth = 0;
+            selfNanos = new HashMap<>();
+        }
+
+        Map<String, Long> end() {
+            active = false;
+            Map<String, Long> out = selfNanos;
+            selfNanos = null;
+            return out;
+        }
+    }
+
+    private static final class DecisionStats {
+        final LongAdder compared = new LongAdder();
+        final LongAdder mismatched = new LongAdder();
+        final LongAdder timed = new LongAdder();
+        final LongAdder liveNanos = new LongAdder();
+        final LongAdder shadowNanos = new LongAdder();
+    }
+
+    private final ThreadLocal<Capture> capture = ThreadLocal.withInitial(Capture::new);
+    private final double defaultSampleRate;
+    private final ExecutorService executor;
+    private final ExecutorService buildExecutor;
+    private final MeterRegistry meterRegistry;
+    private final AtomicReference<Ruleset> candidate = new AtomicReference<>();
+    private volatile double sampleRate;
+    private volatile Instant loadedAt;
+
+    private final Map<String, Map<String, DecisionStats>> stats = new ConcurrentHashMap<>();
+    private final Map<String, DecisionStats> modelStats = new ConcurrentHashMap<>();
+    private final Deque<Map<String, Object>> examples = new ConcurrentLinkedDeque<>();
+    private final Map<String, Counter> mismatchCounters = new ConcurrentHashMap<>();
+    private final Counter evaluations;
+    private final Counter dropped;
+    private final Counter errors;
+
+    public ShadowEvaluator(@Value("${decision.shadow.sample-rate:0.05}") double defaultSampleRate,
+                           @Qualifier("shadowEvaluationExecutor") ExecutorService executor,
+                           @Qualifier("rulesetBuildExecutor") ExecutorService buildExecutor,
+                           MeterRegistry meterRegistry) {
+        this.defaultSampleRate = clamp(defaultSampleRate);
+        this.executor = executor;
+        this.buildExecutor = buildExecutor;
+        this.meterRegistry = meterRegistry;
+        this.evaluations = Counter.builder("dmn.shadow.evaluations").description("Live evaluations replayed on the shadow candidate")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("dmn.shadow.dropped").description("Shadow samples dropped because the shadow queue was full")
+                .register(meterRegistry);
+        this.errors = Counter.builder("dmn.shadow.errors").description("Shadow evaluations that failed on the candidate")
+                .register(meterRegistry);
+    }
+
+    private static double clamp(double rate) {
+        return Math.max(0d, Math.min(1d, rate));
+    }
+
+    public boolean isActive() {
+        return candidate.get() != null;
+    }
+
+    /**
+     * Compiles a candidate on the ruleset build executor and starts shadowing {@code sampleRate} of
+     * the live evaluations against it (the configured default when null). A candidate already
+     * loaded is replaced and its report reset.
+     */
+    public CompletableFuture<Ruleset> load(String version, String source, Supplier<KieContainer> compiler, Double sampleRate) {
+        return CompletableFuture.supplyAsync(() -> {
+            DmnModelRegistry registry = DmnModelRegistry.build(compiler.get(), List.of(this));
+            Ruleset next = new Ruleset(version, source, registry);
+            stats.clear();
+            modelStats.clear();
+            examples.clear();
+            this.sampleRate = sampleRate == null ? defaultSampleRate : clamp(sampleRate);
+            this.loadedAt = Instant.now();
+            Ruleset previous = candidate.getAndSet(next);
+            if (previous != null) previous.retire();
+            logger.info("Shadowing {} of live evaluations against candidate {} ({})", this.sampleRate, version, source);
+            return next;
+        }, buildExecutor);
+    }
+
+    /** Stops shadowing and returns the final report. */
+    public Map<String, Object> unload() {
+        Map<String, Object> report = getReport();
+        Ruleset previous = candidate.getAndSet(null);
+        if (previous != null) {
+            logger.info("Stopped shadowing candidate {}", previous.getVersion());
+            previous.retire();
+        }
+        return report;
+    }
+
+    /** A sample for this live evaluation, or null when it is not shadowed. Called on the request path. */
+    public Sample sample(DMNModel model) {
+        if (candidate.get() == null) return null;
+        double rate = sampleRate;
+        if (rate < 1d && (rate <= 0d || ThreadLocalRandom.current().nextDouble() >= rate)) return null;
+        return new Sample(model);
+    }
+
+    /**
+     * Hands a sample whose live evaluation returned {@code liveOutputs} to the shadow executor.
+     * {@code evaluation} evaluates the same input against a registry. Never blocks.
+     */
+    public void submit(Sample sample, Map<String, Object> liveOutputs,
+                       Function<DmnModelRegistry, Map<String, Object>> evaluation) {
+        Ruleset c = candidate.get();
+        if (c == null || !c.retain()) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    shadow(c, sample, liveOutputs, evaluation);
+                } finally {
+                    c.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            c.close();
+            dropped.increment();
+        }
+    }
+
+    private void shadow(Ruleset c, Sample sample, Map<String, Object> liveOutputs,
+                        Function<DmnModelRegistry, Map<String, Object>> evaluation) {
+        String model = sample.model.getName();
+        Capture cap = capture.get();
+        Map<String, Object> outputs;
+        long shadowNanos;
+        Map<String, Long> shadowDecisionNanos;
+        cap.begin();
+        long start = System.nanoTime();
+        try {
+            outputs = evaluation.apply(c.getRegistry());
+        } catch (RuntimeException e) {
+            errors.increment();
+            example(model, null, "candidate failed: " + e.getMessage(), null, null);
+            return;
+        } finally {
+            shadowNanos = System.nanoTime() - start;
+            shadowDecisionNanos = cap.end();
+        }
+        evaluations.increment();
+
+        DecisionStats total = modelStats.computeIfAbsent(model, m -> new DecisionStats());
+        total.compared.increment();
+        if (sample.liveNanos >= 0) {
+            total.timed.increment();
+            total.liveNanos.add(sample.liveNanos);
+            total.shadowNanos.add(shadowNanos);
+        }
+        Set<String> decisions = new TreeSet<>(liveOutputs.keySet());
+        decisions.addAll(outputs.keySet());
+        boolean mismatch = false;
+        for (String decision : decisions) {
+            DecisionStats s = stats.computeIfAbsent(model, m -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(decision, d -> new DecisionStats());
+            s.compared.increment();
+            Object live = liveOutputs.get(decision);
+            Object shadow = outputs.get(decision);
+            if (!RegressionGate.same(live, shadow)) {
+                s.mismatched.increment();
+                mismatch = true;
+                example(model, decision, "outputs differ", live, shadow);
+            }
+            Long liveSelf = sample.liveDecisionNanos == null ? null : sample.liveDecisionNanos.get(decision);
+            Long shadowSelf = shadowDecisionNanos.get(decision);
+            if (liveSelf != null && shadowSelf != null) {
+                s.timed.increment();
+                s.liveNanos.add(liveSelf);
+                s.shadowNanos.add(shadowSelf);
+            }
+        }
+        if (mismatch) {
+            total.mismatched.increment();
+            mismatchCounters.computeIfAbsent(model, m -> Counter.builder("dmn.shadow.mismatches")
+                    .description("Shadow evaluations whose outputs differ from the live ones")
+                    .tag("model", m).register(meterRegistry)).increment();
+        }
+    }
+
+    private void example(String model, String decision, String reason, Object live, Object shadow) {
+        if (examples.size() >= MAX_EXAMPLES) return;
+        Map<String, Object> e = new LinkedHashMap<>();
+        e.put("model", model);
+        if (decision != null) e.put("decision", decision);
+        e.put("reason", reason);
+        e.put("live", live);
+        e.put("candidate", shadow);
+        examples.add(e);
+    }
+
+    @Override
+    public void beforeEvaluateDecision(BeforeEvaluateDecisionEvent event) {
+        Capture c = capture.get();
+        if (!c.active) return;
+        if (c.depth < MAX_DEPTH) {
+            c.frameStart[c.depth] = System.nanoTime();
+            c.frameChildren[c.depth] = 0;
+        }
+        c.depth++;
+    }
+
+    @Override
+    public void afterEvaluateDecision(AfterEvaluateDecisionEvent event) {
+        Capture c = capture.get();
+        if (!c.active || c.depth == 0) return;
+        int depth = --c.depth;
+        if (depth >= MAX_DEPTH) return;
+        long elapsed = System.nanoTime() - c.frameStart[depth];
+        if (depth > 0) c.frameChildren[depth - 1] += elapsed;
+        c.selfNanos.merge(event.getDecision().getName(), elapsed - c.frameChildren[depth], Long::sum);
+    }
+
+    /** Candidate, sample rate and per model and decision comparisons, for the shadow endpoint. */
+    public Map<String, Object> getReport() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        Ruleset c = candidate.get();
+        out.put("active", c != null);
+        if (c == null) return out;
+        out.put("candidate", c.getVersion());
+        out.put("source", c.getSource());
+        out.put("loadedAt", String.valueOf(loadedAt));
+        out.put("sampleRate", sampleRate);
+        out.put("evaluations", (long) evaluations.count());
+        out.put("dropped", (long) dropped.count());
+        out.put("errors", (long) errors.count());
+        Map<String, Object> models = new TreeMap<>();
+        modelStats.forEach((model, total) -> {
+            Map<String, Object> m = summary(total);
+            Map<String, Object> decisions = new TreeMap<>();
+            stats.getOrDefault(model, Collections.emptyMap()).forEach((d, s) -> decisions.put(d, summary(s)));
+            m.put("decisions", decisions);
+            models.put(model, m);
+        });
+        out.put("models", models);
+        out.put("examples", new ArrayList<>(examples));
+        return out;
+    }
+
+    private static Map<String, Object> summary(DecisionStats s) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("compared", s.compared.sum());
+        m.put("mismatched", s.mismatched.sum());
+        long timed = s.timed.sum();
+        if (timed > 0) {
+            double live = s.liveNanos.sum() / 1_000d / timed;
+            double shadow = s.shadowNanos.sum() / 1_000d / timed;
+            m.put("timed", timed);
+            m.put("liveMeanMicros", round(live));
+            m.put("candidateMeanMicros", round(shadow));
+            m.put("deltaMeanMicros", round(shadow - live));
+        }
+        return m;
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 100d) / 100d;
+    }
+}
@@ -0,0 +1,435 @@
+package com.infinity.controller.metadata;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory index of the DMN files on the classpath: model names and namespaces, expanded input
+ * schemas, decision lists and parsed decision tables.
+ *
+ * The classpath is scanned and parsed once at startup, and the whole index is rebuilt from the
+ * files of a stored ruleset version when one is applied. A decision table update re-indexes only the
+ * edited model from its in-memory document. Every indexed model keeps that document, the model's live
+ * source that the next edit starts from, and carries a version that changes on re-index, which the
+ * controller exposes as an ETag.
+ */
+@Component
+public class DmnMetadataIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(DmnMetadataIndex.class);
+
+    public static final String DMN_NS = "http://www.omg.org/spec/DMN/20180521/MODEL/";
+    private static final String DMN_PATTERN = "classpath*:**/*.dmn";
+
+    private final AtomicLong versions = new AtomicLong();
+    // keyed by lower-case model name; replaced as a whole so readers always see a consistent map
+    private volatile Map<String, ModelMetadata> models = Collections.emptyMap();
+    private volatile long version;
+
+    public DmnMetadataIndex() {
+        rebuild();
+    }
+
+    /** Index of the given DMN resources instead of the classpath, e.g. those of an additional rule project. */
+    public DmnMetadataIndex(Collection<? extends Resource> resources) {
+        rebuild(resources);
+    }
+
+    /** Rescans the classpath and replaces the whole index. */
+    public void rebuild() {
+        Resource[] resources;
+        try {
+            resources = new PathMatchingResourcePatternResolver().getResources(DMN_PATTERN);
+        } catch (Exception e) {
+            logger.error("Error scanning DMN resources: {}", e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+        rebuild(Arrays.asList(resources));
+    }
+
+    /** Replaces the whole index with the given DMN resources, e.g. the files of a stored ruleset version. */
+    public synchronized void rebuild(Collection<? extends Resource> resources) {
+        long start = System.nanoTime();
+        Map<String, ModelMetadata> next = new LinkedHashMap<>();
+        try {
+            DocumentBuilder builder = newDocumentBuilder();
+            for (Resource r : resources) {
+                try (InputStream is = r.getInputStream()) {
+                    Document doc = builder.parse(is);
+                    ModelMetadata m = index(r, doc, versions.incrementAndGet(), false);
+                    // skip duplicate model definitions found on the classpath
+                    next.putIfAbsent(key(m.getName()), m);
+                } catch (Exception e) {
+                    logger.warn("Failed to read DMN resource {}: {}", r.getFilename(), e.getMessage());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Error indexing DMN resources: {}", e.getMessage(), e);
+            throw new RuntimeException(e);
+        }
+        models = Collections.unmodifiableMap(next);
+        version = versions.incrementAndGet();
+        logger.info("Indexed {} DMN models in {} ms", next.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Re-indexes one model from an already parsed (and possibly edited) document. */
+    public synchronized ModelMetadata reindex(Resource resource, Document doc) {
+        ModelMetadata m = index(resource, doc, versions.incrementAndGet(), true);
+        Map<String, ModelMetadata> next = new LinkedHashMap<>(models);
+        next.put(key(m.getName()), m);
+        models = Collections.unmodifiableMap(next);
+        version = versions.incrementAndGet();
+        logger.info("Re-indexed DMN model '{}' at version {}", m.getName(), m.getVersion());
+        return m;
+    }
+
+    public Collection<ModelMetadata> getModels() {
+        return models.values();
+    }
+
+    public ModelMetadata find(String modelName) {
+        return modelName == null ? null : models.get(key(modelName));
+    }
+
+    public ModelMetadata require(String modelName) {
+        ModelMetadata m = find(modelName);
+        if (m == null) {
+            throw new RuntimeException("Model not found: " + modelName);
+        }
+        return m;
+    }
+
+    /** Version of the index as a whole; changes whenever any model is (re-)indexed. */
+    public long getVersion() {
+        return version;
+    }
+
+    public static DocumentBuilder newDocumentBuilder() throws Exception {
+        DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
+        dbFactory.setNamespaceAware(true);
+        return dbFactory.newDocumentBuilder();
+    }
+
+    private static String key(String name) {
+        return (name == null ? "" : name).toLowerCase(Locale.ROOT);
+    }
+
+    static ModelMetadata index(Resource resource, Document doc, long version, boolean edited) {
+        Element defs = doc.getDocumentElement();
+        String name = defs.getAttribute("name");
+        String ns = defs.getAttribute("namespace");
+
+        // collect itemDefinition elements by name
+        Map<String, Element> itemDefs = new HashMap<>();
+        NodeList itemDefNodes = doc.getElementsByTagNameNS(DMN_NS, "itemDefinition");
+        for (int i = 0; i < itemDefNodes.getLength(); i++) {
+            Element idEl = (Element) itemDefNodes.item(i);
+            String idName = idEl.getAttribute("name");
+            if (idName != null && !idName.isEmpty()) {
+                itemDefs.put(idName, idEl);
+            }
+        }
+
+        List<Map<String, String>> inputs = new ArrayList<>();
+        List<Map<String, Object>> schemaInputs = new ArrayList<>();
+        NodeList inputDataNodes = doc.getElementsByTagNameNS(DMN_NS, "inputData");
+        for (int i = 0; i < inputDataNodes.getLength(); i++) {
+            Element in = (Element) inputDataNodes.item(i);
+            String inName = in.getAttribute("name");
+            // variable type is inside <variable name=... typeRef=... />
+            String typeRef = "";
+            NodeList varNodes = in.getElementsByTagNameNS(DMN_NS, "variable");
+            if (varNodes.getLength() > 0) {
+                typeRef = ((Element) varNodes.item(0)).getAttribute("typeRef");
+            }
+            Map<String, String> iv = new HashMap<>();
+            iv.put("name", inName);
+            iv.put("type", typeRef);
+            inputs.add(iv);
+
+            Map<String, Object> im = new HashMap<>();
+            im.put("name", inName);
+            im.put("type", typeRef);
+            // attach expanded schema if available
+            im.put("schema", resolveType(itemDefs, typeRef));
+            schemaInputs.add(im);
+        }
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("name", name);
+        summary.put("namespace", ns);
+        summary.put("inputs", inputs);
+
+        Map<String, Object> schema = new HashMap<>();
+        schema.put("name", name);
+        schema.put("namespace", ns);
+        schema.put("inputs", schemaInputs);
+
+        List<Map<String, Object>> decisions = new ArrayList<>();
+        Map<String, Map<String, Object>> tables = new LinkedHashMap<>();
+        NodeList decs = doc.getElementsByTagNameNS(DMN_NS, "decision");
+        for (int i = 0; i < decs.getLength(); i++) {
+            Element dec = (Element) decs.item(i);
+            String dname = dec.getAttribute("name");
+            NodeList dtList = dec.getElementsByTagNameNS(DMN_NS, "decisionTable");
+            Map<String, Object> m = new HashMap<>();
+            m.put("name", dname);
+            m.put("hasDecisionTable", dtList.getLength() > 0);
+            decisions.add(m);
+            try {
+                tables.putIfAbsent(key(dname), parseTable(dname, dtList.getLength() > 0 ? (Element) dtList.item(0) : null));
+            } catch (Exception e) {
+                logger.warn("Failed to parse decision table {} in {}: {}", dname, name, e.getMessage());
+            }
+        }
+
+        return new ModelMetadata(name, ns, resource, doc, edited, version, Collections.unmodifiableMap(summary),
+                Collections.unmodifiableMap(schema), Collections.unmodifiableList(decisions), Collections.unmodifiableMap(tables));
+    }
+
+    // resolve a typeRef into a schema map, expanding itemDefinitions recursively
+    private static Object resolveType(Map<String, Element> itemDefs, String typeRef) {
+        if (typeRef == null || typeRef.isEmpty()) return Collections.singletonMap("type", "string");
+        if (!itemDefs.containsKey(typeRef)) {
+            // primitive type
+            Map<String, Object> prim = new HashMap<>();
+            prim.put("type", typeRef);
+            return prim;
+        }
+        Element td = itemDefs.get(typeRef);
+        Map<String, Object> out = new HashMap<>();
+        out.put("type", typeRef);
+        List<Map<String, Object>> fields = new ArrayList<>();
+        NodeList comps = td.getElementsByTagNameNS(DMN_NS, "itemComponent");
+        for (int j = 0; j < comps.getLength(); j++) {
+            Element comp = (Element) comps.item(j);
+            String fname = comp.getAttribute("name");
+            String isCollection = comp.getAttribute("isCollection");
+            String ftype = "";
+            NodeList tref = comp.getElementsByTagNameNS(DMN_NS, "typeRef");
+            if (tref != null && tref.getLength() > 0) {
+                ftype = tref.item(0).getTextContent();
+            }
+            Map<String, Object> f = new HashMap<>();
+            f.put("name", fname);
+            f.put("isCollection", "true".equalsIgnoreCase(isCollection));
+            if (ftype != null && !ftype.isEmpty() && itemDefs.containsKey(ftype)) {
+                // nested complex type
+                f.put("type", ftype);
+                f.put("schema", resolveType(itemDefs, ftype));
+            } else {
+                f.put("type", (ftype == null || ftype.isEmpty()) ? "string" : ftype);
+            }
+            fields.add(f);
+        }
+        out.put("fields", fields);
+        return out;
+    }
+
+    private static Map<String, Object> parseTable(String dname, Element dt) throws Exception {
+        Map<String, Object> out = new HashMap<>();
+        out.put("name", dname);
+        if (dt == null) {
+            out.put("decisionTableXml", null);
+            out.put("parsed", Collections.emptyMap());
+            return out;
+        }
+
+        // serialize dt to XML string
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        StringWriter writer = new StringWriter();
+        transformer.transform(new DOMSource(dt), new StreamResult(writer));
+
+        // parse a simple structured representation
+        List<String> inputs = new ArrayList<>();
+        List<String> outputs = new ArrayList<>();
+        NodeList inputNodes = dt.getElementsByTagNameNS(DMN_NS, "input");
+        for (int j = 0; j < inputNodes.getLength(); j++) {
+            inputs.add(inputLabel((Element) inputNodes.item(j)));
+        }
+        NodeList outputNodes = dt.getElementsByTagNameNS(DMN_NS, "output");
+        for (int j = 0; j < outputNodes.getLength(); j++) {
+            outputs.add(((Element) outputNodes.item(j)).getAttribute("name"));
+        }
+
+        List<Map<String, Object>> rules = new ArrayList<>();
+        NodeList ruleNodes = dt.getElementsByTagNameNS(DMN_NS, "rule");
+        for (int rIdx = 0; rIdx < ruleNodes.getLength(); rIdx++) {
+            Element ruleEl = (Element) ruleNodes.item(rIdx);
+            NodeList inEntries = ruleEl.getElementsByTagNameNS(DMN_NS, "inputEntry");
+            NodeList outEntries = ruleEl.getElementsByTagNameNS(DMN_NS, "outputEntry");
+            List<String> inVals = new ArrayList<>();
+            for (int ii = 0; ii < inEntries.getLength(); ii++) {
+                inVals.add(inEntries.item(ii).getTextContent().trim());
+            }
+            List<String> outVals = new ArrayList<>();
+            for (int oi = 0; oi < outEntries.getLength(); oi++) {
+                outVals.add(outEntries.item(oi).getTextContent().trim());
+            }
+            Map<String, Object> rmap = new HashMap<>();
+            rmap.put("inputs", inVals);
+            rmap.put("outputs", outVals);
+            rules.add(rmap);
+        }
+
+        out.put("decisionTableXml", writer.toString());
+        Map<String, Object> parsed = new HashMap<>();
+        parsed.put("inputs", inputs);
+        parsed.put("outputs", outputs);
+        parsed.put("rules", rules);
+        out.put("parsed", parsed);
+        return out;
+    }
+
+    private static String inputLabel(Element in) {
+        NodeList ie = in.getElementsByTagNameNS(DMN_NS, "inputExpression");
+        String label = in.getAttribute("label");
+        // If label attribute is missing, try to extract the expression text
+        if ((label == null || label.isEmpty()) && ie.getLength() > 0) {
+            Element ieEl = (Element) ie.item(0);
+            // Prefer a nested <text> child if present
+            NodeList textNodes = ieEl.getElementsByTagNameNS(DMN_NS, "text");
+            if (textNodes != null && textNodes.getLength() > 0) {
+                label = textNodes.item(0).getTextContent();
+            } else {
+                // fallback to the element's text content (covers inline text nodes)
+                String t = ieEl.getTextContent();
+                if (t != null) label = t.trim();
+            }
+        }
+        // Final fallbacks: input 'name' or variable name
+        if (label == null || label.isEmpty()) {
+            String inName = in.getAttribute("name");
+            if (inName != null && !inName.isEmpty()) {
+                label = inName;
+            } else {
+                NodeList varNodes = in.getElementsByTagNameNS(DMN_NS, "variable");
+                if (varNodes.getLength() > 0) {
+                    String varName = ((Element) varNodes.item(0)).getAttribute("name");
+                    if (varName != null && !varName.isEmpty()) label = varName;
+                }
+            }
+        }
+        return label == null ? "" : label;
+    }
+
+    /** Indexed view of one DMN file. */
+    public static final class ModelMetadata {
+        private final String name;
+        private final String namespace;
+        private final Resource resource;
+        private final Document document;
+        private final boolean edited;
+        private final long version;
+        private final Map<String, Object> summary;
+        private final Map<String, Object> schema;
+        private final List<Map<String, Object>> decisions;
+        private final Map<String, Map<String, Object>> tables;
+
+        ModelMetadata(String name, String namespace, Resource resource, Document document, boolean edited, long version,
+                      Map<String, Object> summary, Map<String, Object> schema, List<Map<String, Object>> decisions,
+                      Map<String, Map<String, Object>> tables) {
+            this.name = name;
+            this.namespace = namespace;
+            this.resource = resource;
+            this.document = document;
+            this.edited = edited;
+            this.version = version;
+            this.summary = summary;
+            this.schema = schema;
+            this.decisions = decisions;
+            this.tables = tables;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getNamespace() {
+            return namespace;
+        }
+
+        /** The classpath resource the model was read from. */
+        public Resource getResource() {
+            return resource;
+        }
+
+        /**
+         * The model's live document: as read from its resource, or as left by the last table edit that
+         * went live. Shared and not thread-safe, so it is only read under the
+         * {@link com.infinity.controller.dmn.DecisionTablePatcher} lock and cloned before a change.
+         */
+        public Document getDocument() {
+            return document;
+        }
+
+        /** Whether the document comes from a table edit made on this instance rather than from the resource. */
+        public boolean isEdited() {
+            return edited;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /** Name, namespace and inputs as returned by GET /models. */
+        public Map<String, Object> getSummary() {
+            return summary;
+        }
+
+        /** Inputs with expanded itemDefinition schemas as returned by GET /models/{model}/schema. */
+        public Map<String, Object> getSchema() {
+            return schema;
+        }
+
+        public List<Map<String, Object>> getDecisions() {
+            return decisions;
+        }
+
+        /**
+         * True when a dotted payload path (input name, then item components, e.g.
+         * {@code Data.Line.serviceClassificationCode}) exists in the model's input schema.
+         */
+        public boolean hasInputPath(String path) {
+            Object fields = schema.get("inputs");
+            for (String segment : path.split("\\.")) {
+                Map<?, ?> match = null;
+                if (fields instanceof List) {
+                    for (Object f : (List<?>) fields) {
+                        if (f instanceof Map && segment.equals(((Map<?, ?>) f).get("name"))) {
+                            match = (Map<?, ?>) f;
+                            break;
+                        }
+                    }
+                }
+                if (match == null) return false;
+                Object nested = match.get("schema");
+                fields = nested instanceof Map ? ((Map<?, ?>) nested).get("fields") : null;
+            }
+            return true;
+        }
+
+        public Map<String, Object> findTable(String decisionName) {
+            return decisionName == null ? null : tables.get(key(decisionName));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.infinity.controller.metrics;
+
+import com.infinity.controller.dmn.BkmMemo;
+import com.infinity.controller.dmn.DmnCompileMode;
+import com.infinity.controller.dmn.DmnModelRegistry;
+import com.infinity.controller.dmn.RuleProjects;
+import com.infinity.controller.dmn.RulesetPublishedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.ast.BusinessKnowledgeModelNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts the hits and misses of memoized BKMs ({@link BkmMemo}) per rule project, model and BKM across
+ * ruleset versions, as {@code dmn.bkm.memo.hits} and {@code dmn.bkm.memo.misses}.
+ *
+ * Memo hits fire no runtime events, so the memoized BKMs of every published ruleset are bound to the
+ * counters here: the rulesets loaded at startup once the application is ready, later versions when
+ * they are published. Candidates that are never published (refused edits, shadow rulesets) are not
+ * counted.
+ */
+@Component
+public class BkmMemoMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final DmnCompileMode compileMode;
+    private final RuleProjects ruleProjects;
+    private final String defaultProject;
+
+    private final Map<String, Counted> stats = new ConcurrentHashMap<>();
+
+    private static final class Counted {
+        final String project;
+        final String model;
+        final String bkm;
+        final BkmMemo.Stats stats = new BkmMemo.Stats();
+
+        Counted(String project, String model, String bkm) {
+            this.project = project;
+            this.model = model;
+            this.bkm = bkm;
+        }
+    }
+
+    public BkmMemoMetrics(MeterRegistry meterRegistry, DmnCompileMode compileMode, RuleProjects ruleProjects,
+                          @Value("${decision.project.name:csbd}") String defaultProject) {
+        this.meterRegistry = meterRegistry;
+        this.compileMode = compileMode;
+        this.ruleProjects = ruleProjects;
+        this.defaultProject = defaultProject.trim();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void bindStartupRulesets() {
+        if (!compileMode.isBkmMemo()) return;
+        for (RuleProjects.Project project : ruleProjects.getProjects()) {
+            bind(project.getName(), project.getHolder().current());
+        }
+    }
+
+    @EventListener
+    public void onRulesetPublished(RulesetPublishedEvent event) {
+        if (!compileMode.isBkmMemo()) return;
+        String project = event.getRuleset().getProject();
+        bind(project == null ? defaultProject : project, event.getRuleset().getRegistry());
+    }
+
+    // models shared with the previous version are bound again to the same counters
+    private void bind(String project, DmnModelRegistry registry) {
+        for (DMNModel model : registry.getModels()) {
+            for (BusinessKnowledgeModelNode bkm : model.getBusinessKnowledgeModels()) {
+                if (!BkmMemo.isMemoized(bkm)) continue;
+                String key = project + "::" + model.getNamespace() + "::" + model.getName() + "::" + bkm.getName();
+                Counted counted = stats.computeIfAbsent(key, k -> register(new Counted(project, model.getName(), bkm.getName())));
+                BkmMemo.bind(bkm, counted.stats);
+            }
+        }
+    }
+
+    private Counted register(Counted counted) {
+        FunctionCounter.builder("dmn.bkm.memo.hits", counted.stats, BkmMemo.Stats::getHits)
+                .description("BKM invocations answered from the per-evaluation memo")
+                .tag("project", counted.project).tag("model", counted.model).tag("bkm", counted.bkm)
+                .register(meterRegistry);
+        FunctionCounter.builder("dmn.bkm.memo.misses", counted.stats, BkmMemo.Stats::getMisses)
+                .description("Memoized BKM invocations that ran the BKM body")
+                .tag("project", counted.project).tag("model", counted.model).tag("bkm", counted.bkm)
+                .register(meterRegistry);
+        return counted;
+    }
+
+    /** Hits and misses per project, model and BKM, most hits first. */
+    public Map<String, Object> getStatus() {
+        List<Counted> all = new ArrayList<>(stats.values());
+        all.sort(Comparator.comparingLong((Counted c) -> c.stats.getHits()).reversed());
+        List<Map<String, Object>> bkms = new ArrayList<>();
+        long hits = 0, misses = 0;
+        for (Counted c : all) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("project", c.project);
+            m.put("model", c.model);
+            m.put("bkm", c.bkm);
+            m.put("hits", c.stats.getHits());
+            m.put("misses", c.stats.getMisses());
+            bkms.add(m);
+            hits += c.stats.getHits();
+            misses += c.stats.getMisses();
+        }
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", compileMode.isBkmMemo());
+        out.put("hits", hits);
+        out.put("misses", misses);
+        out.put("bkms", bkms);
+        return out;
+    }
+}
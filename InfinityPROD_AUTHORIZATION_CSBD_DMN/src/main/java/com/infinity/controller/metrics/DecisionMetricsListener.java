@@ -0,0 +1,249 @@
+package com.infinity.controller.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.kie.dmn.api.core.event.AfterEvaluateAllEvent;
+import org.kie.dmn.api.core.event.AfterEvaluateDecisionEvent;
+import org.kie.dmn.api.core.event.AfterEvaluateDecisionTableEvent;
+import org.kie.dmn.api.core.event.BeforeEvaluateAllEvent;
+import org.kie.dmn.api.core.event.BeforeEvaluateDecisionEvent;
+import org.kie.dmn.api.core.event.BeforeInvokeBKMEvent;
+import org.kie.dmn.api.core.event.DMNRuntimeEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records DMN evaluation metrics from runtime events. {@link com.infinity.controller.dmn.RulesetHolder}
+ * attaches it to the DMNRuntime of every ruleset version.
+ *
+ * Every meter is tagged with the rule project ({@code project}), since projects may host models of the
+ * same name. The bean records the default project; {@link com.infinity.controller.dmn.RuleProjects}
+ * attaches a copy per additional project ({@link #forProject}).
+ *
+ * Meters (served at /actuator/prometheus):
+ * <ul>
+ *   <li>{@code dmn.evaluation} - latency of a whole-model evaluation, per model</li>
+ *   <li>{@code dmn.decision} - self time of each decision (excluding the required decisions it
+ *       triggered), per model and decision</li>
+ *   <li>{@code dmn.rule.matched} - rule row selected by each decision table, per model, decision and
+ *       1-based rule index ("none" when no row matched)</li>
+ *   <li>{@code dmn.bkm.invocations} - BKM invocations, per model and BKM</li>
+ *   <li>{@code dmn.bkm.memo.hits}, {@code dmn.bkm.memo.misses} - invocations of memoized BKMs
+ *       answered from the memo or run, per model and BKM (see {@link BkmMemoMetrics}; not sampled)</li>
+ * </ul>
+ *
+ * Only a fraction ({@code decision.metrics.sample-rate}) of evaluations is recorded. The decision is
+ * taken once per evaluation (or per top-level decision for targeted evaluations). A sampled evaluation
+ * borrows its frame state from a small shared pool and returns it when it ends; the thread only holds
+ * a reference while the evaluation runs, so request threads (virtual ones included) carry no
+ * per-thread copy. Evaluations run through {@link #unrecorded} (the JIT warm-up) are never sampled.
+ */
+@Component
+public class DecisionMetricsListener implements DMNRuntimeEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionMetricsListener.class);
+
+    private static final int MAX_DEPTH = 64;
+    private static final int POOL_SIZE = 256;
+    // Fixed buckets keep the number of series per decision small; decision tables run in micro- to milliseconds
+    private static final Duration[] BUCKETS = {
+            Duration.ofNanos(50_000), Duration.ofNanos(100_000), Duration.ofNanos(250_000), Duration.ofNanos(500_000),
+            Duration.ofMillis(1), Duration.ofNanos(2_500_000), Duration.ofMillis(5), Duration.ofMillis(10),
+            Duration.ofMillis(25), Duration.ofMillis(100), Duration.ofMillis(250), Duration.ofSeconds(1)};
+
+    // set on threads whose evaluations are not recorded
+    private static final ThreadLocal<Boolean> UNRECORDED = new ThreadLocal<>();
+
+    private final MeterRegistry meterRegistry;
+    private final double sampleRate;
+    private final String project;
+
+    private final Map<String, Timer> evaluationTimers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Timer>> decisionTimers = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Map<Integer, Counter>>> ruleCounters = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Counter>> bkmCounters = new ConcurrentHashMap<>();
+
+    /** Frame state of one sampled evaluation, pooled so sampling does not allocate. */
+    private static final class State {
+        // true when sampling started at a top-level decision (evaluateById/ByName) instead of evaluateAll
+        boolean targeted;
+        String model;
+        long start;
+        int depth;
+        final long[] frameStart = new long[MAX_DEPTH];
+        final long[] frameChildren = new long[MAX_DEPTH];
+    }
+
+    // marks an evaluateAll that is not sampled, so its decisions are not sampled one by one
+    private static final State UNSAMPLED = new State();
+
+    private final ThreadLocal<State> current = new ThreadLocal<>();
+    private final BlockingQueue<State> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public DecisionMetricsListener(MeterRegistry meterRegistry,
+                                   @Value("${decision.metrics.sample-rate:1.0}") double sampleRate,
+                                   @Value("${decision.project.name:csbd}") String project) {
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = Math.max(0d, Math.min(1d, sampleRate));
+        this.project = project.trim();
+        logger.info("DMN evaluation metrics of project '{}' sampling {} of evaluations", this.project, this.sampleRate);
+    }
+
+    /** A listener with the same registry and sample rate that tags its meters with the given project. */
+    public DecisionMetricsListener forProject(String project) {
+        return new DecisionMetricsListener(meterRegistry, sampleRate, project);
+    }
+
+    /** Runs evaluations that no listener records, such as the JIT warm-up. */
+    public static <T> T unrecorded(Supplier<T> evaluation) {
+        UNRECORDED.set(Boolean.TRUE);
+        try {
+            return evaluation.get();
+        } finally {
+            UNRECORDED.remove();
+        }
+    }
+
+    private boolean sample() {
+        if (UNRECORDED.get() != null) return false;
+        return sampleRate >= 1d || (sampleRate > 0d && ThreadLocalRandom.current().nextDouble() < sampleRate);
+    }
+
+    private State borrow(String model, boolean targeted) {
+        State s = pool.poll();
+        if (s == null) s = new State();
+        s.model = model;
+        s.targeted = targeted;
+        s.depth = 0;
+        current.set(s);
+        return s;
+    }
+
+    private void release(State s) {
+        current.remove();
+        s.model = null;
+        pool.offer(s);
+    }
+
+    // the state of the sampled evaluation running on this thread, or null
+    private State sampled() {
+        State s = current.get();
+        return s == UNSAMPLED ? null : s;
+    }
+
+    @Override
+    public void beforeEvaluateAll(BeforeEvaluateAllEvent event) {
+        if (!sample()) {
+            current.set(UNSAMPLED);
+            return;
+        }
+        borrow(event.getModelName(), false).start = System.nanoTime();
+    }
+
+    @Override
+    public void afterEvaluateAll(AfterEvaluateAllEvent event) {
+        State s = sampled();
+        if (s == null) {
+            current.remove();
+            return;
+        }
+        evaluationTimer(s.model).record(System.nanoTime() - s.start, TimeUnit.NANOSECONDS);
+        release(s);
+    }
+
+    @Override
+    public void beforeEvaluateDecision(BeforeEvaluateDecisionEvent event) {
+        State s = current.get();
+        if (s == null) {
+            // targeted evaluations fire no evaluateAll events; sample per top-level decision
+            if (!sample()) return;
+            s = borrow(event.getDecision().getModelName(), true);
+        }
+        if (s == UNSAMPLED) return;
+        if (s.depth < MAX_DEPTH) {
+            s.frameStart[s.depth] = System.nanoTime();
+            s.frameChildren[s.depth] = 0;
+        }
+        s.depth++;
+    }
+
+    @Override
+    public void afterEvaluateDecision(AfterEvaluateDecisionEvent event) {
+        State s = sampled();
+        if (s == null || s.depth == 0) return;
+        int depth = --s.depth;
+        if (depth < MAX_DEPTH) {
+            long elapsed = System.nanoTime() - s.frameStart[depth];
+            if (depth > 0) s.frameChildren[depth - 1] += elapsed;
+            decisionTimer(s.model, event.getDecision().getName())
+                    .record(elapsed - s.frameChildren[depth], TimeUnit.NANOSECONDS);
+        }
+        if (depth == 0 && s.targeted) release(s);
+    }
+
+    @Override
+    public void afterEvaluateDecisionTable(AfterEvaluateDecisionTableEvent event) {
+        State s = sampled();
+        if (s == null) return;
+        List<Integer> selected = event.getSelected();
+        if (selected == null || selected.isEmpty()) {
+            ruleCounter(s.model, event.getNodeName(), 0).increment();
+            return;
+        }
+        for (Integer rule : selected) ruleCounter(s.model, event.getNodeName(), rule).increment();
+    }
+
+    @Override
+    public void beforeInvokeBKM(BeforeInvokeBKMEvent event) {
+        State s = sampled();
+        if (s == null) return;
+        String model = s.model;
+        String bkm = event.getBusinessKnowledgeModel().getName();
+        bkmCounters.computeIfAbsent(model, m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(bkm, b -> Counter.builder("dmn.bkm.invocations")
+                        .tag("project", project).tag("model", model).tag("bkm", b)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    private Timer evaluationTimer(String model) {
+        return evaluationTimers.computeIfAbsent(model, m -> Timer.builder("dmn.evaluation")
+                .description("Whole-model DMN evaluation latency")
+                .tag("project", project).tag("model", m)
+                .serviceLevelObjectives(BUCKETS)
+                .register(meterRegistry));
+    }
+
+    private Timer decisionTimer(String model, String decision) {
+        return decisionTimers.computeIfAbsent(model, m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(decision, d -> Timer.builder("dmn.decision")
+                        .description("Decision self time, excluding required decisions")
+                        .tag("project", project).tag("model", model).tag("decision", d)
+                        .serviceLevelObjectives(BUCKETS)
+                        .register(meterRegistry));
+    }
+
+    // rule 0 stands for "no row matched"
+    private Counter ruleCounter(String model, String decision, int rule) {
+        return ruleCounters.computeIfAbsent(model, m -> new ConcurrentHashMap<>())
+                .computeIfAbsent(decision, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(rule, r -> Counter.builder("dmn.rule.matched")
+                        .description("Decision table rule selected (FIRST hit)")
+                        .tag("project", project).tag("model", model).tag("decision", decision)
+                        .tag("rule", r == 0 ? "none" : String.valueOf(r))
+                        .register(meterRegistry));
+    }
+}
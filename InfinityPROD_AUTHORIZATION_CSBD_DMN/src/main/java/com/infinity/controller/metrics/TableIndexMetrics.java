@@ -0,0 +1,39 @@
+package com.infinity.controller.metrics;
+
+import com.infinity.controller.dmn.DmnCompileMode;
+import com.infinity.controller.dmn.IndexedDecisionTableCompiler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Reports how indexed FIRST hit decision tables ({@link IndexedDecisionTableCompiler}) were evaluated,
+ * as {@code dmn.table.index} tagged with the outcome: {@code subtable} when the index narrowed the rows
+ * to a sub-table, {@code scan} when it fell back to the full table, and {@code unkeyed} for the scans
+ * caused by an input value the index cannot key. A high scan share means the index does not pay for
+ * the sub-tables it compiles. Counted across rulesets and projects; not registered when runtime builds
+ * do not index tables.
+ */
+@Component
+public class TableIndexMetrics {
+
+    public TableIndexMetrics(MeterRegistry meterRegistry, DmnCompileMode compileMode) {
+        if (!compileMode.isIndexedTables()) return;
+        register(meterRegistry, "subtable", "Indexed decision table evaluations answered by a sub-table",
+                IndexedDecisionTableCompiler::getSubTableEvaluations);
+        register(meterRegistry, "scan", "Indexed decision table evaluations that fell back to the full scan",
+                IndexedDecisionTableCompiler::getScanEvaluations);
+        register(meterRegistry, "unkeyed", "Scan fallbacks caused by an input value the index cannot key",
+                IndexedDecisionTableCompiler::getUnkeyedEvaluations);
+    }
+
+    private static void register(MeterRegistry meterRegistry, String outcome, String description,
+                                 LongSupplier count) {
+        FunctionCounter.builder("dmn.table.index", count, c -> (double) c.getAsLong())
+                .description(description)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+}
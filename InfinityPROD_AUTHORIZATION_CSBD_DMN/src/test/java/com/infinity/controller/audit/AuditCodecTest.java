@@ -0,0 +1,181 @@
+package com.infinity.controller.audit;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Round trips of {@link AuditRecord}s through {@link AuditCodec}, value by value and as segment
+ * files read back by {@link AuditJournalReader}, including a frame torn by a crash.
+ */
+public class AuditCodecTest {
+
+    @Test
+    public void recordsRoundTrip() {
+        Map<String, Object> input = new LinkedHashMap<>();
+        input.put("Data", Map.of("Line", List.of(Map.of("code", "PHT", "units", new BigDecimal("2.50")))));
+        input.put("serviceDate", LocalDate.of(2024, 3, 1));
+        input.put("missing", null);
+        Map<String, Object> outputs = Map.of("Recommendation", Map.of("Message", "Tag denied", "Bypass", false));
+        AuditRecord r = new AuditRecord(1_700_000_000_123L, 45_678L, "r12", "dmnRules", "quickwins",
+                List.of("Recommendation"), input, outputs, null);
+
+        AuditRecord back = roundTrip(r);
+        assertEquals(r.getTimestampMillis(), back.getTimestampMillis());
+        assertEquals(r.getLatencyNanos(), back.getLatencyNanos());
+        assertEquals("r12", back.getRulesetVersion());
+        assertEquals("dmnRules", back.getNamespace());
+        assertEquals("quickwins", back.getModel());
+        assertEquals(List.of("Recommendation"), back.getDecisions());
+        assertEquals(input, back.getInput());
+        assertEquals(outputs, back.getOutputs());
+        assertNull(back.getError());
+    }
+
+    @Test
+    public void failedEvaluationsKeepTheirErrorAndNoOutputs() {
+        AuditRecord back = roundTrip(new AuditRecord(1L, 2L, "r1", null, "m", null, Map.of(), null, "Invalid input: x"));
+        assertNull(back.getNamespace());
+        assertNull(back.getDecisions());
+        assertNull(back.getOutputs());
+        assertEquals("Invalid input: x", back.getError());
+    }
+
+    @Test
+    public void nullAndEmptyStringsDiffer() {
+        assertNull(value(null));
+        assertEquals("", value(""));
+        assertEquals("h\u00e9llo \u2713", value("h\u00e9llo \u2713"));
+    }
+
+    @Test
+    public void numbersKeepTheirValueAndScale() {
+        assertEquals(new BigDecimal("12.50"), value(new BigDecimal("12.50")));
+        assertEquals(new BigDecimal("-0.001"), value(new BigDecimal("-0.001")));
+        assertEquals(new BigDecimal("1E+3"), value(new BigDecimal("1E+3")));
+        BigDecimal huge = new BigDecimal(BigInteger.TEN.pow(40).negate(), 7);
+        assertEquals(huge, value(huge));
+        assertEquals(new BigDecimal(new BigInteger("123456789012345678901234567890")),
+                value(new BigInteger("123456789012345678901234567890")));
+        // integral types come back as long
+        assertEquals(42L, value(42));
+        assertEquals(Long.MIN_VALUE, value(Long.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, value(Long.MAX_VALUE));
+        assertEquals(-1L, value((short) -1));
+        assertEquals(0.1d, value(0.1d));
+        assertEquals((double) 1.5f, value(1.5f));
+    }
+
+    @Test
+    public void temporalValuesKeepTheirType() {
+        List<Object> values = List.of(
+                LocalDate.of(1999, 12, 31),
+                LocalTime.of(17, 30, 5),
+                LocalDateTime.of(2024, 3, 1, 10, 15),
+                OffsetTime.of(8, 0, 0, 0, ZoneOffset.ofHours(2)),
+                ZonedDateTime.of(2024, 3, 1, 10, 15, 0, 0, ZoneId.of("Europe/Paris")),
+                Duration.ofMinutes(90),
+                Period.of(1, 2, 3));
+        for (Object v : values) {
+            Object back = value(v);
+            assertEquals(v.getClass(), back.getClass());
+            assertEquals(v, back);
+        }
+    }
+
+    @Test
+    public void otherValuesAreWrittenAsTheirStringForm() {
+        assertEquals("EUR", value(Currency.getInstance("EUR")));
+        assertEquals(List.of("a", 1L, true), value(new LinkedHashSet<>(List.of("a", 1, true))));
+    }
+
+    @Test
+    public void segmentsAreReadBackInOrder() throws IOException {
+        Path dir = Files.createTempDirectory("audit");
+        List<AuditRecord> written = new ArrayList<>();
+        for (int i = 0; i < 3; i++) written.add(record(i));
+        Path segment = dir.resolve(AuditJournal.SEGMENT_PREFIX + "0000000000001-0000" + AuditJournal.SEGMENT_SUFFIX);
+        Files.write(segment, segment(written, false, 4096));
+
+        AuditJournalReader reader = new AuditJournalReader();
+        List<AuditRecord> read = reader.readAll(dir);
+        assertEquals(3, read.size());
+        for (int i = 0; i < 3; i++) assertEquals(written.get(i).getInput(), read.get(i).getInput());
+        assertEquals(3, reader.getRecords());
+        assertEquals(0, reader.getTornFrames());
+    }
+
+    @Test
+    public void aTornFrameEndsTheSegment() throws IOException {
+        Path segment = Files.createTempFile("audit", AuditJournal.SEGMENT_SUFFIX);
+        Files.write(segment, segment(List.of(record(0), record(1), record(2)), true, 4096));
+
+        AuditJournalReader reader = new AuditJournalReader();
+        List<AuditRecord> read = reader.readAll(segment);
+        assertEquals(2, read.size());
+        assertEquals(1, reader.getTornFrames());
+    }
+
+    @Test
+    public void segmentsWithoutTheHeaderAreRejected() throws IOException {
+        Path segment = Files.createTempFile("audit", AuditJournal.SEGMENT_SUFFIX);
+        Files.write(segment, new byte[64]);
+        try {
+            new AuditJournalReader().readAll(segment);
+            throw new AssertionError("a zero filled file is not a segment");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Not an audit journal segment"));
+        }
+    }
+
+    private static AuditRecord record(int i) {
+        return new AuditRecord(i, i * 10L, "r" + i, "ns", "m", null, Map.of("i", (long) i), Map.of("out", "v" + i), null);
+    }
+
+    private static AuditRecord roundTrip(AuditRecord r) {
+        AuditCodec.Encoder encoder = new AuditCodec.Encoder();
+        encoder.record(r);
+        return AuditCodec.decode(ByteBuffer.wrap(Arrays.copyOf(encoder.bytes(), encoder.size())));
+    }
+
+    private static Object value(Object v) {
+        AuditCodec.Encoder encoder = new AuditCodec.Encoder();
+        encoder.value(v);
+        ByteBuffer buf = ByteBuffer.wrap(Arrays.copyOf(encoder.bytes(), encoder.size()));
+        Object back = AuditCodec.value(buf);
+        assertEquals("bytes left after " + v, 0, buf.remaining());
+        return back;
+    }
+
+    // a zero filled segment as the journal writes it; tearLast flips a payload byte of the last frame
+    private static byte[] segment(List<AuditRecord> records, boolean tearLast, int size) {
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        AuditCodec.writeHeader(buf, 1L);
+        AuditCodec.Encoder encoder = new AuditCodec.Encoder();
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < records.size(); i++) {
+            encoder.reset();
+            encoder.record(records.get(i));
+            crc.reset();
+            crc.update(encoder.bytes(), 0, encoder.size());
+            buf.putInt(encoder.size());
+            buf.putInt((int) crc.getValue());
+            int start = buf.position();
+            buf.put(encoder.bytes(), 0, encoder.size());
+            if (tearLast && i == records.size() - 1) buf.put(start, (byte) (buf.get(start) ^ 0x01));
+        }
+        return buf.array();
+    }
+}
@@ -0,0 +1,101 @@
+package com.infinity.controller.audit;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Capacity, ordering and the full-buffer refusal of {@link AuditRingBuffer}, and no element lost or
+ * taken twice with several producers and the writer's single consumer running at once.
+ */
+public class AuditRingBufferTest {
+
+    @Test
+    public void capacityIsRoundedUpToAPowerOfTwo() {
+        assertEquals(4, new AuditRingBuffer<>(1).capacity());
+        assertEquals(4, new AuditRingBuffer<>(4).capacity());
+        assertEquals(8, new AuditRingBuffer<>(5).capacity());
+        assertEquals(65536, new AuditRingBuffer<>(65536).capacity());
+    }
+
+    @Test
+    public void elementsComeOutInOfferOrder() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(8);
+        assertNull(buffer.poll());
+        for (int i = 0; i < 5; i++) assertTrue(buffer.offer(i));
+        assertEquals(5, buffer.size());
+        for (int i = 0; i < 5; i++) assertEquals(Integer.valueOf(i), buffer.poll());
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void aFullBufferRefusesUntilTheConsumerTakesOne() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) assertTrue(buffer.offer(i));
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+    }
+
+    @Test
+    public void slotsAreReusedAcrossWraps() {
+        AuditRingBuffer<Integer> buffer = new AuditRingBuffer<>(4);
+        int next = 0;
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 3; i++) assertTrue(buffer.offer(round * 3 + i));
+            for (int i = 0; i < 3; i++) assertEquals(Integer.valueOf(next++), buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws InterruptedException {
+        int producers = 4;
+        int perProducer = 50_000;
+        AuditRingBuffer<int[]> buffer = new AuditRingBuffer<>(256);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    // the journal drops a refused record; here it is retried so every one arrives
+                    while (!buffer.offer(new int[]{producer, i})) Thread.yield();
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+
+        int[] nextOf = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            int[] element = buffer.poll();
+            if (element == null) {
+                Thread.yield();
+                continue;
+            }
+            assertEquals("producer " + element[0], nextOf[element[0]], element[1]);
+            nextOf[element[0]]++;
+            received++;
+        }
+        for (Thread t : threads) t.join();
+        assertNull(buffer.poll());
+        for (int p = 0; p < producers; p++) assertEquals(perProducer, nextOf[p]);
+    }
+}
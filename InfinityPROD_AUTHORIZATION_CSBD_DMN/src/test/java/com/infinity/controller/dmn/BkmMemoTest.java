@@ -0,0 +1,184 @@
+package com.infinity.controller.dmn;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.ast.BusinessKnowledgeModelNode;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Purity detection of {@link BkmMemo} and the hits and misses of memoized BKMs, on a model where
+ * each decision invokes one BKM several times: Double and Sum are pure, Stamp calls {@code today()},
+ * Uses Stamp requires Stamp, Clock calls {@code today()} but is declared pure and Kept is excluded.
+ */
+public class BkmMemoTest {
+
+    private static final String NAMESPACE = "bkmMemoTest";
+    private static final String MODEL = "bkmMemo";
+    private static final String PATH = "src/main/resources/com/infinity/test/bkmMemo.dmn";
+    private static final Set<String> PURE = Set.of("Clock");
+    private static final Set<String> EXCLUDED = Set.of("Kept");
+
+    private static DmnModelRegistry registry;
+    private static DMNModel model;
+
+    @BeforeClass
+    public static void compile() {
+        RulesetCompiler compiler = new RulesetCompiler(new DmnCompileMode(false, false, true, PURE, EXCLUDED));
+        registry = DmnModelRegistry.build(compiler.compile("bkmMemo", Map.of(PATH, dmn())));
+        model = registry.require(NAMESPACE, MODEL);
+    }
+
+    @Test
+    public void bkmsWithoutClockCallsAreDetectedPure() {
+        Set<String> none = Set.of();
+        assertTrue(BkmMemo.isPure(model, bkm("Double"), none, none));
+        assertTrue(BkmMemo.isPure(model, bkm("Sum"), none, none));
+        assertFalse(BkmMemo.isPure(model, bkm("Stamp"), none, none));
+        assertFalse(BkmMemo.isPure(model, bkm("Clock"), none, none));
+    }
+
+    @Test
+    public void bkmsRequiringImpureBkmsAreImpure() {
+        Set<String> none = Set.of();
+        assertFalse(BkmMemo.isPure(model, bkm("Uses Stamp"), none, none));
+        // unless the required BKM is declared pure
+        assertTrue(BkmMemo.isPure(model, bkm("Uses Stamp"), Set.of("Stamp"), none));
+        assertFalse(BkmMemo.isPure(model, bkm("Uses Stamp"), Set.of("Stamp"), Set.of("Stamp")));
+    }
+
+    @Test
+    public void declarationsWinOverDetectionAndExclusionsOverBoth() {
+        assertTrue(BkmMemo.isPure(model, bkm("Clock"), PURE, EXCLUDED));
+        assertFalse(BkmMemo.isPure(model, bkm("Kept"), PURE, EXCLUDED));
+        assertFalse(BkmMemo.isPure(model, bkm("Double"), Set.of("Double"), Set.of("Double")));
+    }
+
+    @Test
+    public void onlyPureBkmsAreMemoized() {
+        assertTrue(BkmMemo.isMemoized(bkm("Double")));
+        assertTrue(BkmMemo.isMemoized(bkm("Sum")));
+        assertTrue(BkmMemo.isMemoized(bkm("Clock")));
+        assertFalse(BkmMemo.isMemoized(bkm("Stamp")));
+        assertFalse(BkmMemo.isMemoized(bkm("Uses Stamp")));
+        assertFalse(BkmMemo.isMemoized(bkm("Kept")));
+    }
+
+    @Test
+    public void repeatedArgumentsHitTheMemoOfTheEvaluation() {
+        Map<String, BkmMemo.Stats> stats = bindStats("Double", "Sum", "Clock");
+        Map<String, Object> result = evaluate();
+
+        assertEquals(0, new BigDecimal("8").compareTo((BigDecimal) result.get("Doubled")));
+        assertEquals(0, new BigDecimal("18").compareTo((BigDecimal) result.get("Summed")));
+        assertEquals(0, new BigDecimal("6").compareTo((BigDecimal) result.get("Declared")));
+        assertEquals(0, new BigDecimal("2").compareTo((BigDecimal) result.get("Excluded")));
+        // Double(X), Double(X), Double(X + 1): numbers are compared by value
+        assertCounts(stats.get("Double"), 1, 2);
+        // Sum(Items), Sum(Items), Sum([1, 2, 3]): lists are compared by identity
+        assertCounts(stats.get("Sum"), 1, 2);
+        assertCounts(stats.get("Clock"), 1, 1);
+    }
+
+    @Test
+    public void memosAreNotSharedBetweenEvaluations() {
+        Map<String, BkmMemo.Stats> stats = bindStats("Double");
+        evaluate();
+        evaluate();
+        assertCounts(stats.get("Double"), 2, 4);
+    }
+
+    private static void assertCounts(BkmMemo.Stats stats, long hits, long misses) {
+        assertEquals("hits", hits, stats.getHits());
+        assertEquals("misses", misses, stats.getMisses());
+    }
+
+    private static Map<String, BkmMemo.Stats> bindStats(String... names) {
+        Map<String, BkmMemo.Stats> stats = new HashMap<>();
+        for (String name : names) {
+            BkmMemo.Stats s = new BkmMemo.Stats();
+            BkmMemo.bind(bkm(name), s);
+            stats.put(name, s);
+        }
+        return stats;
+    }
+
+    private static Map<String, Object> evaluate() {
+        return new DecisionEvaluator().evaluate(registry, model, Map.of("X", 1, "Items", List.of(1, 2, 3)));
+    }
+
+    private static BusinessKnowledgeModelNode bkm(String name) {
+        for (BusinessKnowledgeModelNode bkm : model.getBusinessKnowledgeModels()) {
+            if (bkm.getName().equals(name)) return bkm;
+        }
+        throw new AssertionError("No BKM " + name);
+    }
+
+    private static byte[] dmn() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<dmn:definitions xmlns:dmn=\"http://www.omg.org/spec/DMN/20180521/MODEL/\"")
+                .append(" id=\"bkmMemo\" name=\"").append(MODEL).append("\" namespace=\"").append(NAMESPACE).append("\"")
+                .append(" expressionLanguage=\"http://www.omg.org/spec/DMN/20180521/FEEL/\"")
+                .append(" typeLanguage=\"http://www.omg.org/spec/DMN/20180521/FEEL/\">");
+        sb.append("<dmn:itemDefinition id=\"tNumbers\" name=\"tNumbers\" isCollection=\"true\"><dmn:typeRef>number</dmn:typeRef></dmn:itemDefinition>");
+        sb.append("<dmn:inputData id=\"i_x\" name=\"X\"><dmn:variable id=\"v_x\" name=\"X\" typeRef=\"number\"/></dmn:inputData>");
+        sb.append("<dmn:inputData id=\"i_items\" name=\"Items\"><dmn:variable id=\"v_items\" name=\"Items\" typeRef=\"tNumbers\"/></dmn:inputData>");
+        bkm(sb, "double", "Double", "x", "number", "x * 2");
+        bkm(sb, "sum", "Sum", "l", "tNumbers", "sum(l)");
+        bkm(sb, "stamp", "Stamp", "x", "number", "if today() != null then x else 0");
+        bkm(sb, "usesStamp", "Uses Stamp", "x", "number", "Stamp(x) + 1", "stamp");
+        bkm(sb, "clock", "Clock", "x", "number", "if today() != null then x * 3 else 0");
+        bkm(sb, "kept", "Kept", "x", "number", "x");
+        decision(sb, "doubled", "Doubled", "Double(X) + Double(X) + Double(X + 1)", "#i_x", "#double");
+        decision(sb, "summed", "Summed", "Sum(Items) + Sum(Items) + Sum([1, 2, 3])", "#i_items", "#sum");
+        decision(sb, "stamped", "Stamped", "Uses Stamp(X) + Stamp(X)", "#i_x", "#usesStamp", "#stamp");
+        decision(sb, "declared", "Declared", "Clock(X) + Clock(X)", "#i_x", "#clock");
+        decision(sb, "excluded", "Excluded", "Kept(X) + Kept(X)", "#i_x", "#kept");
+        sb.append("</dmn:definitions>");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // a one parameter FEEL function BKM, optionally requiring other BKMs by id
+    private static void bkm(StringBuilder sb, String id, String name, String parameter, String parameterType, String body,
+                            String... requires) {
+        sb.append("<dmn:businessKnowledgeModel id=\"").append(id).append("\" name=\"").append(name).append("\">")
+                .append("<dmn:variable id=\"").append(id).append("_var\" name=\"").append(name).append("\"/>")
+                .append("<dmn:encapsulatedLogic id=\"").append(id).append("_fn\" kind=\"FEEL\">")
+                .append("<dmn:formalParameter id=\"").append(id).append("_p\" name=\"").append(parameter)
+                .append("\" typeRef=\"").append(parameterType).append("\"/>")
+                .append("<dmn:literalExpression id=\"").append(id).append("_body\"><dmn:text>").append(escape(body))
+                .append("</dmn:text></dmn:literalExpression></dmn:encapsulatedLogic>");
+        for (String required : requires) {
+            sb.append("<dmn:knowledgeRequirement id=\"").append(id).append("_kr_").append(required).append("\">")
+                    .append("<dmn:requiredKnowledge href=\"#").append(required).append("\"/></dmn:knowledgeRequirement>");
+        }
+        sb.append("</dmn:businessKnowledgeModel>");
+    }
+
+    // a number valued literal expression decision; hrefs starting "#i_" are inputs, the others BKMs
+    private static void decision(StringBuilder sb, String id, String name, String expression, String... requires) {
+        sb.append("<dmn:decision id=\"").append(id).append("\" name=\"").append(name).append("\">")
+                .append("<dmn:variable id=\"").append(id).append("_var\" name=\"").append(name).append("\" typeRef=\"number\"/>");
+        for (int r = 0; r < requires.length; r++) {
+            boolean input = requires[r].startsWith("#i_");
+            String requirement = input ? "informationRequirement" : "knowledgeRequirement";
+            sb.append("<dmn:").append(requirement).append(" id=\"").append(id).append("_req").append(r).append("\">")
+                    .append(input ? "<dmn:requiredInput" : "<dmn:requiredKnowledge").append(" href=\"").append(requires[r])
+                    .append("\"/></dmn:").append(requirement).append(">");
+        }
+        sb.append("<dmn:literalExpression id=\"").append(id).append("_expr\"><dmn:text>").append(escape(expression))
+                .append("</dmn:text></dmn:literalExpression></dmn:decision>");
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,142 @@
+package com.infinity.controller.dmn;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.ast.DecisionNode;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Closures computed by {@link DecisionPlan} and the per-registry plan cache of
+ * {@link DmnModelRegistry#plan}, on a model where E requires C, C requires A and B, B requires A,
+ * and D and the {@value #LEAVES} L decisions only read the input X.
+ */
+public class DecisionPlanTest {
+
+    private static final String NAMESPACE = "planTest";
+    private static final String MODEL = "plan";
+    private static final String PATH = "src/main/resources/com/infinity/test/plan.dmn";
+    private static final int LEAVES = 45;
+
+    private static DmnModelRegistry registry;
+    private static DMNModel model;
+
+    @BeforeClass
+    public static void compile() {
+        registry = registry();
+        model = registry.require(NAMESPACE, MODEL);
+    }
+
+    @Test
+    public void closuresListDependenciesFirst() {
+        DecisionPlan plan = DecisionPlan.compute(model, List.of("E"));
+        assertEquals(List.of("E"), plan.getTargetNames());
+        assertEquals(List.of("A", "B", "C", "E"), plan.getClosure());
+        assertEquals(LEAVES + 1, plan.getSkipped());
+    }
+
+    @Test
+    public void sharedDependenciesAreEvaluatedOnce() {
+        DecisionPlan plan = DecisionPlan.compute(model, List.of("C", "A", "D"));
+        assertEquals(List.of("C", "A", "D"), plan.getTargetNames());
+        assertEquals(List.of("A", "B", "C", "D"), plan.getClosure());
+    }
+
+    @Test
+    public void repeatedTargetsAreIgnored() {
+        assertEquals(List.of("A"), DecisionPlan.compute(model, List.of("A", "A")).getTargetNames());
+        assertEquals(DecisionPlan.cacheKey(model, List.of("A")), DecisionPlan.cacheKey(model, List.of("A", "A")));
+    }
+
+    @Test
+    public void unknownDecisionsAreRejected() {
+        try {
+            DecisionPlan.compute(model, List.of("A", "Nope"));
+            fail("Nope is not a decision of the model");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Decision not found: Nope in model " + MODEL, e.getMessage());
+        }
+    }
+
+    @Test
+    public void finalDecisionsAreTheOnesNothingRequires() {
+        Set<String> expected = new HashSet<>(List.of("D", "E"));
+        for (int i = 1; i <= LEAVES; i++) expected.add("L" + i);
+        List<String> finals = registry.finalDecisions(model);
+        assertEquals(expected.size(), finals.size());
+        assertEquals(expected, new HashSet<>(finals));
+    }
+
+    @Test
+    public void plansAreSharedWhateverTheTargetOrder() {
+        DecisionPlan plan = registry.plan(model, List.of("B", "D"));
+        assertSame(plan, registry.plan(model, List.of("D", "B")));
+        assertSame(plan, registry.plan(model, List.of("D", "B", "D")));
+        assertNotSame(plan, registry.plan(model, List.of("B")));
+    }
+
+    @Test
+    public void thePlanCacheIsBounded() {
+        DmnModelRegistry own = registry();
+        DMNModel m = own.require(NAMESPACE, MODEL);
+        List<String> names = new ArrayList<>();
+        for (DecisionNode node : m.getDecisions()) names.add(node.getName());
+        int subsets = 0;
+        for (int i = 0; i < names.size(); i++) {
+            for (int j = i + 1; j < names.size(); j++) {
+                own.plan(m, List.of(names.get(i), names.get(j)));
+                subsets++;
+            }
+        }
+        assertTrue(subsets > DmnModelRegistry.MAX_PLANS);
+        long cached = own.cachedPlans();
+        assertTrue("cached " + cached, cached > 0 && cached <= DmnModelRegistry.MAX_PLANS);
+        // an evicted plan is simply computed again
+        assertEquals(List.of("A", "B", "C", "E"), own.plan(m, List.of("E")).getClosure());
+    }
+
+    private static DmnModelRegistry registry() {
+        RulesetCompiler compiler = new RulesetCompiler(new DmnCompileMode(false, false));
+        return DmnModelRegistry.build(compiler.compile("plan", Map.of(PATH, dmn())));
+    }
+
+    private static byte[] dmn() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<dmn:definitions xmlns:dmn=\"http://www.omg.org/spec/DMN/20180521/MODEL/\"")
+                .append(" id=\"plan\" name=\"").append(MODEL).append("\" namespace=\"").append(NAMESPACE).append("\"")
+                .append(" expressionLanguage=\"http://www.omg.org/spec/DMN/20180521/FEEL/\"")
+                .append(" typeLanguage=\"http://www.omg.org/spec/DMN/20180521/FEEL/\">");
+        sb.append("<dmn:inputData id=\"i_x\" name=\"X\"><dmn:variable id=\"v_x\" name=\"X\" typeRef=\"number\"/></dmn:inputData>");
+        decision(sb, "a", "A", "X + 1", "#i_x");
+        decision(sb, "b", "B", "A * 2", "#a");
+        decision(sb, "c", "C", "A + B", "#a", "#b");
+        decision(sb, "d", "D", "X", "#i_x");
+        decision(sb, "e", "E", "C", "#c");
+        for (int i = 1; i <= LEAVES; i++) decision(sb, "l" + i, "L" + i, "X + " + i, "#i_x");
+        sb.append("</dmn:definitions>");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // a number valued literal expression decision; hrefs starting "#i_" are inputs, the others decisions
+    private static void decision(StringBuilder sb, String id, String name, String expression, String... requires) {
+        sb.append("<dmn:decision id=\"").append(id).append("\" name=\"").append(name).append("\">")
+                .append("<dmn:variable id=\"").append(id).append("_var\" name=\"").append(name).append("\" typeRef=\"number\"/>");
+        for (int r = 0; r < requires.length; r++) {
+            String element = requires[r].startsWith("#i_") ? "requiredInput" : "requiredDecision";
+            sb.append("<dmn:informationRequirement id=\"").append(id).append("_req").append(r).append("\">")
+                    .append("<dmn:").append(element).append(" href=\"").append(requires[r]).append("\"/>")
+                    .append("</dmn:informationRequirement>");
+        }
+        sb.append("<dmn:literalExpression id=\"").append(id).append("_expr\"><dmn:text>").append(expression)
+                .append("</dmn:text></dmn:literalExpression></dmn:decision>");
+    }
+}
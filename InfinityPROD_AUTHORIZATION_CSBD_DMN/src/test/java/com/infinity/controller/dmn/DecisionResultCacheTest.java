@@ -0,0 +1,194 @@
+package com.infinity.controller.dmn;
+
+import org.junit.Test;
+import org.kie.dmn.api.core.DMNModel;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Keys of {@link DecisionResultCache}, which must be equal exactly for requests that evaluate the
+ * same decisions of the same ruleset over the same values, and the entries dropped when a new
+ * version of a rule project is published.
+ */
+public class DecisionResultCacheTest {
+
+    private static final DMNModel MODEL = model("dmnRules", "quickwins");
+
+    @Test
+    public void keyOrderOfTheInputDoesNotMatter() {
+        Map<String, Object> a = new LinkedHashMap<>();
+        a.put("Code", "PHT");
+        a.put("Data", Map.of("x", 1, "y", List.of("a", "b")));
+        Map<String, Object> b = new LinkedHashMap<>();
+        b.put("Data", new TreeMap<>(Map.of("y", List.of("a", "b"), "x", 1)));
+        b.put("Code", "PHT");
+        assertEquals(key(a), key(b));
+    }
+
+    @Test
+    public void numbersAreComparedByValue() {
+        String one = key(Map.of("n", new BigDecimal("1")));
+        assertEquals(one, key(Map.of("n", new BigDecimal("1.00"))));
+        assertEquals(one, key(Map.of("n", new BigDecimal("1E0"))));
+        assertEquals(one, key(Map.of("n", 1)));
+        assertEquals(one, key(Map.of("n", 1L)));
+        assertEquals(one, key(Map.of("n", 1.0d)));
+        assertEquals(key(Map.of("n", BigDecimal.ZERO)), key(Map.of("n", new BigDecimal("-0.00"))));
+        assertNotEquals(one, key(Map.of("n", new BigDecimal("1.01"))));
+        assertNotEquals(one, key(Map.of("n", new BigDecimal("10"))));
+    }
+
+    @Test
+    public void valuesOfDifferentTypesDiffer() {
+        assertNotEquals(key(Map.of("v", "1")), key(Map.of("v", BigDecimal.ONE)));
+        assertNotEquals(key(Map.of("v", "2024-01-01")), key(Map.of("v", LocalDate.of(2024, 1, 1))));
+        assertNotEquals(key(Map.of("v", "true")), key(Map.of("v", true)));
+        assertNotEquals(key(Map.of("v", List.of())), key(Map.of("v", Map.of())));
+        Map<String, Object> nullValue = new HashMap<>();
+        nullValue.put("v", null);
+        assertNotEquals(key(Map.of()), key(nullValue));
+    }
+
+    @Test
+    public void listsKeepTheirOrder() {
+        assertNotEquals(key(Map.of("v", List.of("a", "b"))), key(Map.of("v", List.of("b", "a"))));
+        assertNotEquals(key(Map.of("v", List.of(List.of("a"), "b"))), key(Map.of("v", List.of("a", List.of("b")))));
+    }
+
+    @Test
+    public void targetsAreASetOfDecisions() {
+        Map<String, Object> input = Map.of("n", 1);
+        String ab = DecisionResultCache.key("r1", MODEL, List.of("A", "B"), input);
+        assertEquals(ab, DecisionResultCache.key("r1", MODEL, List.of("B", "A"), input));
+        assertEquals(ab, DecisionResultCache.key("r1", MODEL, List.of("A", "B", "A"), input));
+        assertNotEquals(ab, DecisionResultCache.key("r1", MODEL, List.of("A,B"), input));
+        assertNotEquals(ab, DecisionResultCache.key("r1", MODEL, List.of("A"), input));
+        assertNotEquals(ab, DecisionResultCache.key("r1", MODEL, null, input));
+    }
+
+    @Test
+    public void modelsAndVersionsArePartOfTheKey() {
+        Map<String, Object> input = Map.of("n", 1);
+        String key = DecisionResultCache.key("r1", MODEL, null, input);
+        assertNotEquals(key, DecisionResultCache.key("r2", MODEL, null, input));
+        assertNotEquals(key, DecisionResultCache.key("r1", model("dmnRules", "categories"), null, input));
+        assertNotEquals(key, DecisionResultCache.key("r1", model("other", "quickwins"), null, input));
+    }
+
+    @Test
+    public void repeatedRequestsAreServedFromTheCache() {
+        DecisionResultCache cache = new DecisionResultCache(true, 100, Duration.ofMinutes(5));
+        AtomicInteger evaluations = new AtomicInteger();
+        Map<String, Object> first = cache.get("r1", MODEL, List.of("A"), Map.of("n", 1), () -> evaluate(evaluations));
+        Map<String, Object> again = cache.get("r1", MODEL, List.of("A"), Map.of("n", new BigDecimal("1.0")), () -> evaluate(evaluations));
+        assertSame(first, again);
+        assertEquals(1, evaluations.get());
+        cache.get("r1", MODEL, List.of("A"), Map.of("n", 2), () -> evaluate(evaluations));
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    public void aDisabledCacheAlwaysEvaluates() {
+        DecisionResultCache cache = new DecisionResultCache(false, 100, Duration.ofMinutes(5));
+        AtomicInteger evaluations = new AtomicInteger();
+        for (int i = 0; i < 3; i++) cache.get("r1", MODEL, null, Map.of(), () -> evaluate(evaluations));
+        assertEquals(3, evaluations.get());
+    }
+
+    @Test
+    public void failuresAreNotCached() {
+        DecisionResultCache cache = new DecisionResultCache(true, 100, Duration.ofMinutes(5));
+        AtomicInteger evaluations = new AtomicInteger();
+        try {
+            cache.get("r1", MODEL, null, Map.of(), () -> {
+                evaluations.incrementAndGet();
+                throw new IllegalStateException("deadline");
+            });
+            fail("the evaluation failed");
+        } catch (IllegalStateException e) {
+            assertEquals("deadline", e.getMessage());
+        }
+        cache.get("r1", MODEL, null, Map.of(), () -> evaluate(evaluations));
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    public void identicalRequestsInFlightShareOneEvaluation() throws InterruptedException {
+        DecisionResultCache cache = new DecisionResultCache(true, 100, Duration.ofMinutes(5));
+        AtomicInteger evaluations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread first = new Thread(() -> cache.get("r1", MODEL, null, Map.of(), () -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return evaluate(evaluations);
+        }));
+        first.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread second = new Thread(() -> cache.get("r1", MODEL, null, Map.of(), () -> evaluate(evaluations)));
+        second.start();
+        release.countDown();
+        first.join();
+        second.join();
+        assertEquals(1, evaluations.get());
+    }
+
+    @Test
+    public void publishingDropsOlderVersionsOfTheSameProjectOnly() {
+        DecisionResultCache cache = new DecisionResultCache(true, 100, Duration.ofMinutes(5));
+        AtomicInteger evaluations = new AtomicInteger();
+        List<String> versions = List.of("r1", "r2", "claims-r1", "claims-r2");
+        for (String version : versions) cache.get(version, MODEL, null, Map.of(), () -> evaluate(evaluations));
+        assertEquals(4, evaluations.get());
+
+        cache.onRulesetPublished(new RulesetPublishedEvent(new Ruleset(null, "r2", "test", null), "r1"));
+        for (String version : versions) cache.get(version, MODEL, null, Map.of(), () -> evaluate(evaluations));
+        // only r1 was evaluated again
+        assertEquals(5, evaluations.get());
+
+        cache.onRulesetPublished(new RulesetPublishedEvent(new Ruleset("claims", "claims-r3", "test", null), "claims-r2"));
+        for (String version : versions) cache.get(version, MODEL, null, Map.of(), () -> evaluate(evaluations));
+        assertEquals(7, evaluations.get());
+    }
+
+    private static Map<String, Object> evaluate(AtomicInteger evaluations) {
+        return Map.of("A", evaluations.incrementAndGet());
+    }
+
+    private static String key(Map<String, Object> input) {
+        return DecisionResultCache.key("r1", MODEL, null, input);
+    }
+
+    private static DMNModel model(String namespace, String name) {
+        return (DMNModel) Proxy.newProxyInstance(DMNModel.class.getClassLoader(), new Class<?>[]{DMNModel.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getNamespace":
+                            return namespace;
+                        case "getName":
+                            return name;
+                        case "toString":
+                            return namespace + "#" + name;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
@@ -0,0 +1,255 @@
+package com.infinity.controller.dmn;
+
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.event.AfterEvaluateDecisionTableEvent;
+import org.kie.dmn.api.core.event.DMNRuntimeEventListener;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Dead rows found by {@link DecisionTableAnalyzer} on a small model written for each rule of the
+ * analysis, and results of the models compiled with and without those rows.
+ *
+ * The model has a Tier table over a Code input limited to "A","B","C" (its "Z" row cannot fire, so
+ * "platinum" is never an output), a Discount table over Tier, and a Band table over a number input.
+ */
+public class DecisionTableAnalyzerTest {
+
+    private static final String NAMESPACE = "analyzerTest";
+    private static final String MODEL = "analyzer";
+    private static final String PATH = "src/main/resources/com/infinity/test/analyzer.dmn";
+
+    private static DMNModel model;
+    private static Map<String, Object> report;
+
+    @BeforeClass
+    public static void analyze() {
+        RulesetCompiler compiler = new RulesetCompiler(new DmnCompileMode(false, false));
+        DmnModelRegistry registry = DmnModelRegistry.build(compiler.compile("analyzer", Map.of(PATH, dmn())));
+        model = registry.require(NAMESPACE, MODEL);
+        report = DecisionTableAnalyzer.analyze(model.getDefinitions()).getReport();
+    }
+
+    @Test
+    public void literalEntriesOutsideInputValuesAreUnreachable() {
+        Map<Integer, Map<String, Object>> dead = deadRows("Tier");
+        assertEquals(Set.of(3), dead.keySet());
+        assertEquals("unreachable", dead.get(3).get("reason"));
+        assertEquals("inputValues", dead.get(3).get("source"));
+        assertEquals(List.of("A", "B", "C"), dead.get(3).get("possibleValues"));
+    }
+
+    @Test
+    public void literalEntriesAreShadowedByEarlierSupersets() {
+        Map<String, Object> row = deadRows("Discount").get(4);
+        assertNotNull(row);
+        assertEquals("shadowed", row.get("reason"));
+        assertEquals(3, row.get("by"));
+    }
+
+    @Test
+    public void notEntriesCoverTheLiteralsTheyDoNotList() {
+        Map<Integer, Map<String, Object>> dead = deadRows("Discount");
+        assertEquals("shadowed", dead.get(6).get("reason"));
+        assertEquals(5, dead.get(6).get("by"));
+        // "-" accepts null too, which not("gold","silver") does not
+        assertFalse(dead.containsKey(7));
+    }
+
+    @Test
+    public void numericLiteralsAreComparedByValue() {
+        Map<Integer, Map<String, Object>> dead = deadRows("Band");
+        assertEquals(Set.of(2, 4, 6, 8), dead.keySet());
+        assertEquals(1, dead.get(2).get("by"));
+        assertEquals(3, dead.get(4).get("by"));
+        assertEquals(5, dead.get(6).get("by"));
+        assertEquals(7, dead.get(8).get("by"));
+    }
+
+    @Test
+    public void deadRowsFeedBackIntoRequiredDecisionOutputs() {
+        Map<String, Object> row = deadRows("Discount").get(1);
+        assertNotNull(row);
+        assertEquals("unreachable", row.get("reason"));
+        assertEquals("Tier", row.get("source"));
+        assertEquals(List.of("bronze", "gold", "silver"), row.get("possibleValues"));
+        assertEquals(8, report.get("deadRows"));
+    }
+
+    @Test
+    public void prunedModelGivesTheSameResults() {
+        Map<String, byte[]> sources = Map.of(PATH, dmn());
+        Comparison comparison = new Comparison(sources);
+        DMNModel unpruned = comparison.unpruned.require(NAMESPACE, MODEL);
+        DMNModel pruned = comparison.pruned.require(NAMESPACE, MODEL);
+        List<String> codes = Arrays.asList("A", "B", "C", "Z", "a", "", null);
+        List<Object> amounts = Arrays.asList(null, 0, new BigDecimal("-0.0"), 1, new BigDecimal("1.00"), 2,
+                new BigDecimal("2.5"), 3, -1);
+        for (String code : codes) {
+            for (Object amount : amounts) {
+                Map<String, Object> payload = new HashMap<>();
+                payload.put("Code", code);
+                payload.put("Amount", amount);
+                comparison.assertSame(unpruned, pruned, payload);
+            }
+        }
+    }
+
+    @Test
+    public void prunedClasspathModelsGiveTheSameResults() {
+        RulesetCompiler compiler = new RulesetCompiler(new DmnCompileMode(false, false));
+        Comparison comparison = new Comparison(compiler.readClasspathSources());
+        DmnMetadataIndex metadataIndex = new DmnMetadataIndex();
+        for (DMNModel unpruned : comparison.unpruned.getModels()) {
+            DMNModel pruned = comparison.pruned.require(unpruned.getNamespace(), unpruned.getName());
+            DmnMetadataIndex.ModelMetadata metadata = metadataIndex.find(unpruned.getName());
+            assertNotNull("metadata of " + unpruned.getName(), metadata);
+            for (Map<String, Object> payload : SchemaPayloads.forModel(metadata, 200, 11L, 0.1)) {
+                comparison.assertSame(unpruned, pruned, payload);
+            }
+        }
+    }
+
+    /** The same sources compiled with and without dead rows, recording the rules each table selects. */
+    private static final class Comparison {
+        final SelectedRules unprunedRules = new SelectedRules();
+        final SelectedRules prunedRules = new SelectedRules();
+        final DmnModelRegistry unpruned;
+        final DmnModelRegistry pruned;
+        final DecisionEvaluator evaluator = new DecisionEvaluator();
+
+        Comparison(Map<String, byte[]> sources) {
+            unpruned = compile(false, sources, unprunedRules);
+            pruned = compile(true, sources, prunedRules);
+        }
+
+        private static DmnModelRegistry compile(boolean prunedTables, Map<String, byte[]> sources, SelectedRules listener) {
+            RulesetCompiler compiler = new RulesetCompiler(new DmnCompileMode(false, prunedTables));
+            return DmnModelRegistry.build(compiler.compile(prunedTables ? "pruned" : "unpruned", sources), List.of(listener));
+        }
+
+        void assertSame(DMNModel unprunedModel, DMNModel prunedModel, Map<String, Object> payload) {
+            Object expected = evaluate(unpruned, unprunedModel, payload, unprunedRules);
+            Object actual = evaluate(pruned, prunedModel, payload, prunedRules);
+            String message = unprunedModel.getName() + " " + payload;
+            assertEquals(message, unprunedRules.selected, prunedRules.selected);
+            assertEquals(message, expected, actual);
+        }
+
+        // the decision results, or the failure when the payload does not bind
+        private Object evaluate(DmnModelRegistry registry, DMNModel model, Map<String, Object> payload, SelectedRules listener) {
+            listener.selected.clear();
+            try {
+                return evaluator.evaluate(registry, model, payload);
+            } catch (RuntimeException e) {
+                return e.getClass().getName() + ": " + e.getMessage();
+            }
+        }
+    }
+
+    /** The rules selected by each decision table of one evaluation; pruned tables report source rows. */
+    private static final class SelectedRules implements DMNRuntimeEventListener {
+        final List<String> selected = new ArrayList<>();
+
+        @Override
+        public void afterEvaluateDecisionTable(AfterEvaluateDecisionTableEvent event) {
+            selected.add(event.getNodeName() + " -> " + event.getSelected());
+        }
+    }
+
+    // dead rows of a decision's table by 1-based row number
+    @SuppressWarnings("unchecked")
+    private static Map<Integer, Map<String, Object>> deadRows(String decision) {
+        Map<Integer, Map<String, Object>> out = new TreeMap<>();
+        for (Map<String, Object> table : (List<Map<String, Object>>) report.get("tables")) {
+            if (!decision.equals(table.get("decision"))) continue;
+            for (Map<String, Object> row : (List<Map<String, Object>>) table.get("deadRows")) {
+                out.put((Integer) row.get("row"), row);
+            }
+        }
+        return out;
+    }
+
+    private static byte[] dmn() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>")
+                .append("<dmn:definitions xmlns:dmn=\"http://www.omg.org/spec/DMN/20180521/MODEL/\"")
+                .append(" xmlns:feel=\"http://www.omg.org/spec/DMN/20180521/FEEL/\"")
+                .append(" id=\"analyzer\" name=\"").append(MODEL).append("\" namespace=\"").append(NAMESPACE).append("\"")
+                .append(" expressionLanguage=\"http://www.omg.org/spec/DMN/20180521/FEEL/\"")
+                .append(" typeLanguage=\"http://www.omg.org/spec/DMN/20180521/FEEL/\">");
+        sb.append("<dmn:inputData id=\"i_code\" name=\"Code\"><dmn:variable id=\"v_code\" name=\"Code\" typeRef=\"string\"/></dmn:inputData>");
+        sb.append("<dmn:inputData id=\"i_amount\" name=\"Amount\"><dmn:variable id=\"v_amount\" name=\"Amount\" typeRef=\"number\"/></dmn:inputData>");
+        decision(sb, "tier", "Tier", "<dmn:requiredInput href=\"#i_code\"/>", "Code", "string", "\"A\",\"B\",\"C\"", "string",
+                new String[][]{
+                        {"\"A\"", "\"gold\""},
+                        {"\"B\"", "\"silver\""},
+                        {"\"Z\"", "\"platinum\""},
+                        {"-", "\"bronze\""}});
+        decision(sb, "discount", "Discount", "<dmn:requiredDecision href=\"#tier\"/>", "Tier", "string", null, "number",
+                new String[][]{
+                        {"\"platinum\"", "30"},
+                        {"\"gold\"", "20"},
+                        {"\"gold\",\"silver\"", "10"},
+                        {"\"silver\"", "5"},
+                        {"not(\"gold\",\"silver\")", "1"},
+                        {"\"bronze\"", "0"},
+                        {"-", "0"}});
+        decision(sb, "band", "Band", "<dmn:requiredInput href=\"#i_amount\"/>", "Amount", "number", null, "string",
+                new String[][]{
+                        {"1", "\"one\""},
+                        {"1.0", "\"one again\""},
+                        {"1.00, 2", "\"one or two\""},
+                        {"2.000", "\"two\""},
+                        {"0", "\"zero\""},
+                        {"-0.0", "\"negative zero\""},
+                        {"> 2", "\"more\""},
+                        {"> 2", "\"more again\""}});
+        sb.append("</dmn:definitions>");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // a decision with a single input, single output FIRST table
+    private static void decision(StringBuilder sb, String id, String name, String requirement, String input, String inputType,
+                                 String inputValues, String outputType, String[][] rows) {
+        sb.append("<dmn:decision id=\"").append(id).append("\" name=\"").append(name).append("\">")
+                .append("<dmn:variable id=\"").append(id).append("_var\" name=\"").append(name)
+                .append("\" typeRef=\"").append(outputType).append("\"/>")
+                .append("<dmn:informationRequirement id=\"").append(id).append("_req\">").append(requirement)
+                .append("</dmn:informationRequirement>")
+                .append("<dmn:decisionTable id=\"").append(id).append("_dt\" hitPolicy=\"FIRST\">")
+                .append("<dmn:input id=\"").append(id).append("_in\">")
+                .append("<dmn:inputExpression id=\"").append(id).append("_expr\" typeRef=\"").append(inputType).append("\">")
+                .append("<dmn:text>").append(input).append("</dmn:text></dmn:inputExpression>");
+        if (inputValues != null) {
+            sb.append("<dmn:inputValues id=\"").append(id).append("_values\"><dmn:text>")
+                    .append(escape(inputValues)).append("</dmn:text></dmn:inputValues>");
+        }
+        sb.append("</dmn:input>")
+                .append("<dmn:output id=\"").append(id).append("_out\" name=\"").append(name)
+                .append("\" typeRef=\"").append(outputType).append("\"/>");
+        for (int r = 0; r < rows.length; r++) {
+            String rule = id + "_r" + (r + 1);
+            sb.append("<dmn:rule id=\"").append(rule).append("\">")
+                    .append("<dmn:inputEntry id=\"").append(rule).append("_in\"><dmn:text>").append(escape(rows[r][0]))
+                    .append("</dmn:text></dmn:inputEntry>")
+                    .append("<dmn:outputEntry id=\"").append(rule).append("_out\"><dmn:text>").append(escape(rows[r][1]))
+                    .append("</dmn:text></dmn:outputEntry>")
+                    .append("</dmn:rule>");
+        }
+        sb.append("</dmn:decisionTable></dmn:decision>");
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,268 @@
+package com.infinity.controller.dmn;
+
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.kie.dmn.api.core.DMNModel;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Row edits of {@link DecisionTablePatcher} on a Tier table ("A" gold, "B" silver, "-" bronze), the
+ * rulesets they publish and the versions that refuse stale edits. Each test starts from the file
+ * written to a fresh {@code src/main/resources} directory.
+ */
+public class DecisionTablePatcherTest {
+
+    private static final String NAMESPACE = "patcherTest";
+    private static final String MODEL = "patcher";
+
+    private ExecutorService buildExecutor;
+    private DmnMetadataIndex metadataIndex;
+    private RulesetHolder holder;
+    private DecisionTablePatcher patcher;
+    private String path;
+
+    @Before
+    public void start() throws IOException {
+        Path file = Files.createTempDirectory("patcher").resolve("src/main/resources/com/infinity/test/patcher.dmn");
+        Files.createDirectories(file.getParent());
+        Files.write(file, dmn());
+        Resource resource = new FileSystemResource(file);
+        path = RulesetCompiler.kiePath(resource);
+        assertEquals("src/main/resources/com/infinity/test/patcher.dmn", path);
+
+        RulesetCompiler compiler = new RulesetCompiler(new DmnCompileMode(false, false));
+        DmnModelRegistry initial = DmnModelRegistry.build(compiler.compile("patcher", Map.of(path, dmn())));
+        buildExecutor = Executors.newSingleThreadExecutor();
+        holder = new RulesetHolder(null, "test", initial, compiler, buildExecutor, event -> { }, List.of());
+        metadataIndex = new DmnMetadataIndex(List.of(resource));
+        patcher = new DecisionTablePatcher(metadataIndex, holder);
+    }
+
+    @After
+    public void stop() {
+        buildExecutor.shutdownNow();
+    }
+
+    @Test
+    public void addedRowsArePublished() {
+        long base = modelVersion();
+        DecisionTablePatcher.Result result = patch(base, op("add", "index", 0,
+                "inputEntries", List.of("\"B\""), "outputEntries", List.of("\"platinum\"")));
+
+        assertTrue(result.isPublished());
+        assertEquals(result.getVersion(), holder.currentRuleset().getVersion());
+        assertEquals("platinum", tier("B"));
+        assertEquals("gold", tier("A"));
+        Map<String, Object> outcome = result.getOperations().get(0);
+        assertEquals("add", outcome.get("op"));
+        assertEquals(0, outcome.get("index"));
+        assertFalse(((String) outcome.get("ruleId")).isEmpty());
+        assertTrue(result.getModelVersion() != base);
+        assertEquals(result.getModelVersion(), modelVersion());
+        assertTrue(metadataIndex.require(MODEL).isEdited());
+    }
+
+    @Test
+    public void rowsAreAppendedWithoutAnIndex() {
+        patch(modelVersion(), op("delete", "index", 2),
+                op("add", "inputEntries", List.of("-"), "outputEntries", List.of("\"iron\"")));
+        assertEquals("iron", tier("Z"));
+        assertEquals(List.of("\"A\"", "\"B\"", "-"), inputEntries());
+    }
+
+    @Test
+    public void modifyKeepsTheEntriesGivenAsNull() {
+        List<String> outputs = new ArrayList<>();
+        outputs.add("\"GOLD\"");
+        List<String> inputs = new ArrayList<>();
+        inputs.add(null);
+        patch(modelVersion(), op("modify", "ruleId", "tier_r1", "inputEntries", inputs, "outputEntries", outputs));
+        assertEquals("GOLD", tier("A"));
+        assertEquals(List.of("\"A\"", "\"B\"", "-"), inputEntries());
+    }
+
+    @Test
+    public void movedRowsTakeTheirNewPosition() {
+        DecisionTablePatcher.Result result = patch(modelVersion(), op("move", "ruleId", "tier_r3", "to", 0));
+        assertEquals(0, result.getOperations().get(0).get("index"));
+        assertEquals("bronze", tier("A"));
+        assertEquals(List.of("-", "\"A\"", "\"B\""), inputEntries());
+    }
+
+    @Test
+    public void operationsApplyInOrder() {
+        DecisionTablePatcher.Result result = patch(modelVersion(), op("delete", "index", 0), op("delete", "index", 0));
+        assertEquals(-1, result.getOperations().get(1).get("index"));
+        assertEquals("tier_r2", result.getOperations().get(1).get("ruleId"));
+        assertEquals("bronze", tier("A"));
+        assertEquals(List.of("-"), inputEntries());
+    }
+
+    @Test
+    public void staleEditsAreRefusedAndNothingIsPublished() {
+        long base = modelVersion();
+        String published = holder.currentRuleset().getVersion();
+        try {
+            patch(base - 1, op("delete", "index", 0));
+            fail("the edit was made against another version");
+        } catch (DecisionTablePatcher.VersionConflictException e) {
+            assertEquals(MODEL, e.getModel());
+            assertEquals(base, e.getCurrentVersion());
+        }
+        assertEquals(published, holder.currentRuleset().getVersion());
+        assertEquals(base, modelVersion());
+        assertEquals("gold", tier("A"));
+    }
+
+    @Test
+    public void eachEditStartsFromThePreviousOne() {
+        long base = modelVersion();
+        DecisionTablePatcher.Result first = patch(base, op("delete", "ruleId", "tier_r1"));
+        DecisionTablePatcher.Result second = patch(first.getModelVersion(), op("delete", "ruleId", "tier_r2"));
+        assertTrue(second.isPublished());
+        assertEquals(List.of("-"), inputEntries());
+        assertEquals("bronze", tier("B"));
+        try {
+            patch(base, op("delete", "index", 0));
+            fail("the first edit changed the model");
+        } catch (DecisionTablePatcher.VersionConflictException e) {
+            assertEquals(second.getModelVersion(), e.getCurrentVersion());
+        }
+    }
+
+    @Test
+    public void invalidOperationsNameTheirPositionAndChangeNothing() {
+        long base = modelVersion();
+        assertInvalid("operations[1]: Unknown op 'frobnicate', expected add, modify, delete or move",
+                op("delete", "index", 0), op("frobnicate", "index", 0));
+        assertInvalid("operations[0]: Row index 4 out of range 0..3",
+                op("add", "index", 4, "inputEntries", List.of("\"C\""), "outputEntries", List.of("\"copper\"")));
+        assertInvalid("operations[0]: Row index 3 out of range 0..2", op("delete", "index", 3));
+        assertInvalid("operations[0]: No rule with id nope", op("modify", "ruleId", "nope"));
+        assertInvalid("operations[0]: inputEntries has 2 entries, the table has 1 columns",
+                op("add", "inputEntries", List.of("\"C\"", "-"), "outputEntries", List.of("\"copper\"")));
+        assertInvalid("operations[0]: move needs 'to'", op("move", "index", 0));
+        assertEquals(base, modelVersion());
+        assertEquals(List.of("\"A\"", "\"B\"", "-"), inputEntries());
+        assertEquals("gold", tier("A"));
+    }
+
+    @Test
+    public void refusedEditsAreNotPublished() {
+        long base = modelVersion();
+        String published = holder.currentRuleset().getVersion();
+        DecisionTablePatcher.Result result = patcher.patch(MODEL, "Tier", base, List.of(op("delete", "index", 0)), registry -> {
+            throw new IllegalStateException("regression");
+        });
+        assertFalse(result.isPublished());
+        assertEquals(base, result.getModelVersion());
+        assertEquals(published, holder.currentRuleset().getVersion());
+        assertEquals(base, modelVersion());
+        assertFalse(metadataIndex.require(MODEL).isEdited());
+        assertTrue(patcher.editedSources().isEmpty());
+    }
+
+    @Test
+    public void tablesAreReplacedWhateverTheVersionWithoutABase() {
+        patch(modelVersion(), op("delete", "index", 0));
+        String version = holder.nextVersion();
+        String table = "<dmn:decisionTable xmlns:dmn=\"" + DmnMetadataIndex.DMN_NS + "\" id=\"tier_dt\" hitPolicy=\"FIRST\">"
+                + "<dmn:input id=\"tier_in\"><dmn:inputExpression id=\"tier_expr\" typeRef=\"string\"><dmn:text>Code</dmn:text>"
+                + "</dmn:inputExpression></dmn:input><dmn:output id=\"tier_out\" name=\"Tier\" typeRef=\"string\"/>"
+                + "<dmn:rule id=\"only\"><dmn:inputEntry id=\"only_in\"><dmn:text>-</dmn:text></dmn:inputEntry>"
+                + "<dmn:outputEntry id=\"only_out\"><dmn:text>\"flat\"</dmn:text></dmn:outputEntry></dmn:rule></dmn:decisionTable>";
+        DecisionTablePatcher.Result result = patcher.replace(MODEL, "Tier", null, table, version, registry -> { });
+        assertTrue(result.isPublished());
+        assertEquals(version, holder.currentRuleset().getVersion());
+        assertEquals("flat", tier("A"));
+        assertEquals(List.of("-"), inputEntries());
+    }
+
+    @Test
+    public void editedSourcesCarryTheLiveDocument() {
+        assertTrue(patcher.editedSources().isEmpty());
+        patch(modelVersion(), op("add", "index", 0, "inputEntries", List.of("\"C\""), "outputEntries", List.of("\"copper\"")));
+        Map<String, byte[]> edited = patcher.editedSources();
+        assertEquals(Set.of(path), edited.keySet());
+        String xml = new String(edited.get(path), StandardCharsets.UTF_8);
+        assertTrue(xml.contains("copper"));
+        assertTrue(xml.indexOf("copper") < xml.indexOf("gold"));
+    }
+
+    @SafeVarargs
+    private DecisionTablePatcher.Result patch(long baseVersion, Map<String, Object>... operations) {
+        return patcher.patch(MODEL, "Tier", baseVersion, List.of(operations), registry -> registry.require(NAMESPACE, MODEL));
+    }
+
+    @SafeVarargs
+    private void assertInvalid(String message, Map<String, Object>... operations) {
+        try {
+            patch(modelVersion(), operations);
+            fail("expected " + message);
+        } catch (IllegalArgumentException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> op(String op, Object... entries) {
+        Map<String, Object> operation = new LinkedHashMap<>();
+        operation.put("op", op);
+        for (int i = 0; i < entries.length; i += 2) operation.put((String) entries[i], entries[i + 1]);
+        return operation;
+    }
+
+    private long modelVersion() {
+        return metadataIndex.require(MODEL).getVersion();
+    }
+
+    // input entries of the Tier table as the metadata index sees them
+    private List<Object> inputEntries() {
+        List<Object> entries = new ArrayList<>();
+        Map<?, ?> parsed = (Map<?, ?>) metadataIndex.require(MODEL).findTable("Tier").get("parsed");
+        for (Object rule : (List<?>) parsed.get("rules")) entries.addAll((List<?>) ((Map<?, ?>) rule).get("inputs"));
+        return entries;
+    }
+
+    private Object tier(String code) {
+        DmnModelRegistry registry = holder.current();
+        DMNModel model = registry.require(NAMESPACE, MODEL);
+        return new DecisionEvaluator().evaluate(registry, model, Map.of("Code", code)).get("Tier");
+    }
+
+    private static byte[] dmn() {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<dmn:definitions xmlns:dmn=\"" + DmnMetadataIndex.DMN_NS + "\" id=\"patcher\" name=\"" + MODEL + "\""
+                + " namespace=\"" + NAMESPACE + "\" expressionLanguage=\"http://www.omg.org/spec/DMN/20180521/FEEL/\""
+                + " typeLanguage=\"http://www.omg.org/spec/DMN/20180521/FEEL/\">"
+                + "<dmn:inputData id=\"i_code\" name=\"Code\"><dmn:variable id=\"v_code\" name=\"Code\" typeRef=\"string\"/></dmn:inputData>"
+                + "<dmn:decision id=\"tier\" name=\"Tier\"><dmn:variable id=\"tier_var\" name=\"Tier\" typeRef=\"string\"/>"
+                + "<dmn:informationRequirement id=\"tier_req\"><dmn:requiredInput href=\"#i_code\"/></dmn:informationRequirement>"
+                + "<dmn:decisionTable id=\"tier_dt\" hitPolicy=\"FIRST\">"
+                + "<dmn:input id=\"tier_in\"><dmn:inputExpression id=\"tier_expr\" typeRef=\"string\"><dmn:text>Code</dmn:text>"
+                + "</dmn:inputExpression></dmn:input><dmn:output id=\"tier_out\" name=\"Tier\" typeRef=\"string\"/>"
+                + rule("tier_r1", "\"A\"", "\"gold\"") + rule("tier_r2", "\"B\"", "\"silver\"") + rule("tier_r3", "-", "\"bronze\"")
+                + "</dmn:decisionTable></dmn:decision></dmn:definitions>";
+        return xml.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String rule(String id, String input, String output) {
+        return "<dmn:rule id=\"" + id + "\"><dmn:inputEntry id=\"" + id + "_in\"><dmn:text>" + input + "</dmn:text></dmn:inputEntry>"
+                + "<dmn:outputEntry id=\"" + id + "_out\"><dmn:text>" + output + "</dmn:text></dmn:outputEntry></dmn:rule>";
+    }
+}
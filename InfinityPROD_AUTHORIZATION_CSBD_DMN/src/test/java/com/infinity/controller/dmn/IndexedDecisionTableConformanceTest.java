@@ -0,0 +1,178 @@
+package com.infinity.controller.dmn;
+
+import com.infinity.controller.metadata.DmnMetadataIndex;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.kie.dmn.api.core.DMNModel;
+import org.kie.dmn.api.core.ast.DecisionNode;
+import org.kie.dmn.api.core.event.AfterEvaluateDecisionTableEvent;
+import org.kie.dmn.api.core.event.DMNRuntimeEventListener;
+import org.kie.dmn.model.api.DecisionTable;
+import org.kie.dmn.model.api.HitPolicy;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Evaluates every model of the classpath rules with FIRST tables compiled through the
+ * {@link FirstHitIndex} and with the plain row scan, and checks both select the same rule of every
+ * decision table and produce the same decision results.
+ *
+ * The payloads are generated from the model schema ({@link SchemaPayloads}), each also in three
+ * boundary variants: fields left null, numbers replaced by the numeric literals of the tables (and
+ * their neighbours) at different scales, and codes replaced by codes no row lists.
+ */
+public class IndexedDecisionTableConformanceTest {
+
+    private static final int PAYLOADS = 100;
+    private static final long SEED = 7L;
+    private static final String UNKNOWN_CODE = "ZZ_NOT_A_CODE";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w.])-?\\d+(?:\\.\\d+)?(?![\\w.])");
+
+    private static DmnModelRegistry indexed;
+    private static DmnModelRegistry scan;
+    private static DmnMetadataIndex metadataIndex;
+    private static final SelectedRules indexedRules = new SelectedRules();
+    private static final SelectedRules scanRules = new SelectedRules();
+
+    private final DecisionEvaluator evaluator = new DecisionEvaluator();
+
+    /** The rules selected by each decision table of one evaluation, in evaluation order. */
+    private static final class SelectedRules implements DMNRuntimeEventListener {
+        final List<String> selected = new ArrayList<>();
+
+        @Override
+        public void afterEvaluateDecisionTable(AfterEvaluateDecisionTableEvent event) {
+            selected.add(event.getNodeName() + " -> " + event.getSelected());
+        }
+    }
+
+    @BeforeClass
+    public static void compile() {
+        indexed = compile(true, indexedRules);
+        scan = compile(false, scanRules);
+        metadataIndex = new DmnMetadataIndex();
+    }
+
+    private static DmnModelRegistry compile(boolean indexedTables, SelectedRules listener) {
+        RulesetCompiler compiler = new RulesetCompiler(new DmnCompileMode(indexedTables, false));
+        String version = indexedTables ? "indexed" : "scan";
+        return DmnModelRegistry.build(compiler.compile(version, compiler.readClasspathSources()), List.of(listener));
+    }
+
+    @Test
+    public void indexedTablesSelectTheSameRulesAsTheScan() {
+        for (DMNModel scanModel : scan.getModels()) {
+            DMNModel indexedModel = indexed.require(scanModel.getNamespace(), scanModel.getName());
+            DmnMetadataIndex.ModelMetadata metadata = metadataIndex.find(scanModel.getName());
+            assertNotNull("metadata of " + scanModel.getName(), metadata);
+
+            Set<String> evaluated = new HashSet<>();
+            for (Map<String, Object> payload : payloads(metadata)) {
+                Object scanResult = evaluate(scan, scanModel, payload, scanRules);
+                Object indexedResult = evaluate(indexed, indexedModel, payload, indexedRules);
+                String message = scanModel.getName() + " " + payload;
+                assertEquals(message, scanRules.selected, indexedRules.selected);
+                assertEquals(message, scanResult, indexedResult);
+                for (String s : scanRules.selected) evaluated.add(s.substring(0, s.indexOf(" -> ")));
+            }
+            for (String table : firstTables(scanModel)) {
+                assertTrue(scanModel.getName() + ": table " + table + " was never evaluated", evaluated.contains(table));
+            }
+        }
+    }
+
+    // the decision results, or the failure when the payload does not bind
+    private Object evaluate(DmnModelRegistry registry, DMNModel model, Map<String, Object> payload, SelectedRules listener) {
+        listener.selected.clear();
+        try {
+            return evaluator.evaluate(registry, model, payload);
+        } catch (RuntimeException e) {
+            return e.getClass().getName() + ": " + e.getMessage();
+        }
+    }
+
+    private static List<String> firstTables(DMNModel model) {
+        List<String> out = new ArrayList<>();
+        for (DecisionNode decision : model.getDecisions()) {
+            if (decision.getDecision().getExpression() instanceof DecisionTable
+                    && ((DecisionTable) decision.getDecision().getExpression()).getHitPolicy() == HitPolicy.FIRST) {
+                out.add(decision.getName());
+            }
+        }
+        return out;
+    }
+
+    private static List<Map<String, Object>> payloads(DmnMetadataIndex.ModelMetadata metadata) {
+        Set<String> codes = new HashSet<>();
+        List<BigDecimal> numbers = new ArrayList<>();
+        literals(metadata, codes, numbers);
+        Random random = new Random(SEED);
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Map<String, Object> payload : SchemaPayloads.forModel(metadata, PAYLOADS, SEED, 0.1)) {
+            out.add(payload);
+            out.add(variant(payload, v -> random.nextBoolean() ? null : v));
+            out.add(variant(payload, v -> v instanceof Number && !numbers.isEmpty() ? boundary(numbers, random) : v));
+            out.add(variant(payload, v -> v instanceof String && codes.contains(v)
+                    ? (random.nextBoolean() ? UNKNOWN_CODE : ((String) v).toLowerCase(Locale.ROOT) + "_") : v));
+        }
+        return out;
+    }
+
+    // a numeric literal of the tables, or one of its neighbours, at a scale of 0 to 3
+    private static BigDecimal boundary(List<BigDecimal> numbers, Random random) {
+        BigDecimal n = numbers.get(random.nextInt(numbers.size())).add(BigDecimal.valueOf(random.nextInt(3) - 1));
+        int scale = Math.max(n.scale(), random.nextInt(4));
+        return n.setScale(scale);
+    }
+
+    // string and numeric literals of the decision table input entries
+    @SuppressWarnings("unchecked")
+    private static void literals(DmnMetadataIndex.ModelMetadata metadata, Set<String> codes, List<BigDecimal> numbers) {
+        Set<BigDecimal> distinct = new TreeSet<>();
+        for (Map<String, Object> decision : metadata.getDecisions()) {
+            Map<String, Object> table = metadata.findTable((String) decision.get("name"));
+            if (table == null || !(table.get("parsed") instanceof Map)) continue;
+            Object rules = ((Map<String, Object>) table.get("parsed")).get("rules");
+            if (!(rules instanceof List)) continue;
+            for (Map<String, Object> rule : (List<Map<String, Object>>) rules) {
+                for (String entry : (List<String>) rule.get("inputs")) {
+                    Matcher strings = STRING_LITERAL.matcher(entry);
+                    while (strings.find()) codes.add(strings.group(1));
+                    Matcher n = NUMBER_LITERAL.matcher(STRING_LITERAL.matcher(entry).replaceAll(""));
+                    while (n.find()) distinct.add(new BigDecimal(n.group()));
+                }
+            }
+        }
+        numbers.addAll(distinct);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> variant(Map<String, Object> payload, UnaryOperator<Object> leaf) {
+        return (Map<String, Object>) copy(payload, leaf);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copy(Object value, UnaryOperator<Object> leaf) {
+        if (value instanceof Map) {
+            Map<String, Object> out = new LinkedHashMap<>();
+            ((Map<String, Object>) value).forEach((k, v) -> out.put(k, copy(v, leaf)));
+            return out;
+        }
+        if (value instanceof List) {
+            List<Object> out = new ArrayList<>();
+            for (Object v : (List<Object>) value) out.add(copy(v, leaf));
+            return out;
+        }
+        return leaf.apply(value);
+    }
+}
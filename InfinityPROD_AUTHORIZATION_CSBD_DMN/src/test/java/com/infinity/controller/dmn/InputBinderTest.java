@@ -0,0 +1,212 @@
+package com.infinity.controller.dmn;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetTime;
+import java.time.ZonedDateTime;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Conversions and error reporting of {@link InputBinder}, on the streaming and the map path, over
+ * a type tree shaped like the claim models: {@code Data} with typed scalars, a {@code Line}
+ * composite and a list of codes.
+ */
+public class InputBinderTest {
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final InputBinder binder = new InputBinder("test", Map.of("Data", composite(fields(
+            "amount", scalar(InputBinder.Kind.NUMBER),
+            "urgent", scalar(InputBinder.Kind.BOOLEAN),
+            "serviceDate", scalar(InputBinder.Kind.DATE),
+            "receivedAt", scalar(InputBinder.Kind.DATE_TIME),
+            "cutOff", scalar(InputBinder.Kind.TIME),
+            "code", scalar(InputBinder.Kind.STRING),
+            "codes", list(scalar(InputBinder.Kind.STRING)),
+            "amounts", list(scalar(InputBinder.Kind.NUMBER)),
+            "Line", composite(fields("units", scalar(InputBinder.Kind.NUMBER)))))));
+
+    private static InputBinder.Node scalar(InputBinder.Kind kind) {
+        return new InputBinder.Node(kind, false, Collections.emptyMap(), null);
+    }
+
+    private static InputBinder.Node composite(Map<String, InputBinder.Node> fields) {
+        return new InputBinder.Node(InputBinder.Kind.COMPOSITE, false, fields, null);
+    }
+
+    private static InputBinder.Node list(InputBinder.Node element) {
+        return new InputBinder.Node(element.kind, true, element.fields, element);
+    }
+
+    private static Map<String, InputBinder.Node> fields(Object... nameAndNode) {
+        Map<String, InputBinder.Node> fields = new LinkedHashMap<>();
+        for (int i = 0; i < nameAndNode.length; i += 2) fields.put((String) nameAndNode[i], (InputBinder.Node) nameAndNode[i + 1]);
+        return fields;
+    }
+
+    @Test
+    public void textValuesBindToFeelTypes() throws IOException {
+        Map<String, Object> data = data(stream("{\"Data\": {\"amount\": \" 12.50 \", \"urgent\": \"TRUE\","
+                + " \"serviceDate\": \"2024-03-01\", \"receivedAt\": \"2024-03-01T10:15:00+01:00\","
+                + " \"cutOff\": \"17:30:00\", \"code\": 42}}"));
+        assertEquals(new BigDecimal("12.50"), data.get("amount"));
+        assertEquals(Boolean.TRUE, data.get("urgent"));
+        assertEquals(LocalDate.of(2024, 3, 1), data.get("serviceDate"));
+        assertTrue(data.get("receivedAt") instanceof ZonedDateTime);
+        assertEquals(LocalTime.of(17, 30), data.get("cutOff"));
+        assertEquals("42", data.get("code"));
+    }
+
+    @Test
+    public void localDateTimesAndOffsetTimesAreKept() throws IOException {
+        Map<String, Object> data = data(stream("{\"Data\": {\"receivedAt\": \"2024-03-01T10:15:00\", \"cutOff\": \"17:30:00Z\"}}"));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 10, 15), data.get("receivedAt"));
+        assertTrue(data.get("cutOff") instanceof OffsetTime);
+    }
+
+    @Test
+    public void jsonNumbersBindToBigDecimal() throws IOException {
+        Map<String, Object> data = data(stream("{\"Data\": {\"amount\": 3, \"amounts\": [1, 2.5], \"Line\": {\"units\": 1e2}}}"));
+        assertEquals(BigDecimal.valueOf(3), data.get("amount"));
+        assertEquals(List.of(BigDecimal.valueOf(1), new BigDecimal("2.5")), data.get("amounts"));
+        assertEquals(0, new BigDecimal("100").compareTo((BigDecimal) ((Map<?, ?>) data.get("Line")).get("units")));
+    }
+
+    @Test
+    public void undeclaredFieldsKeepTheirJsonValues() throws IOException {
+        Map<String, Object> bound = binder.bind(parser("{\"Data\": {\"extra\": {\"n\": 1, \"s\": \"x\"}}, \"Other\": [true]}"));
+        assertEquals(Map.of("n", BigDecimal.valueOf(1), "s", "x"), data(bound).get("extra"));
+        assertEquals(List.of(Boolean.TRUE), bound.get("Other"));
+    }
+
+    @Test
+    public void blankTextOfTypedFieldsBindsToNull() throws IOException {
+        String json = "{\"Data\": {\"amount\": \"\", \"urgent\": \" \", \"serviceDate\": \"\", \"receivedAt\": \"\","
+                + " \"cutOff\": \"\", \"code\": \"\"}}";
+        for (Map<String, Object> data : List.of(data(stream(json)), data(map(json)))) {
+            assertTrue(data.containsKey("amount"));
+            assertNull(data.get("amount"));
+            assertNull(data.get("urgent"));
+            assertNull(data.get("serviceDate"));
+            assertNull(data.get("receivedAt"));
+            assertNull(data.get("cutOff"));
+            assertEquals("", data.get("code"));
+        }
+    }
+
+    @Test
+    public void mapPayloadsBindLikeRequestBodies() throws IOException {
+        String json = "{\"Data\": {\"amount\": \"7\", \"urgent\": false, \"serviceDate\": \"2024-03-01\","
+                + " \"codes\": [\"A\", 1], \"Line\": {\"units\": 2}}}";
+        assertEquals(data(stream(json)), data(map(json)));
+    }
+
+    @Test
+    public void boundPayloadsBindToThemselves() throws IOException {
+        Map<String, Object> bound = stream("{\"Data\": {\"amount\": \"7\", \"serviceDate\": \"2024-03-01\"}}");
+        assertEquals(bound, binder.bind(bound));
+    }
+
+    @Test
+    public void typeErrorsAreCollectedWithTheirPath() throws IOException {
+        String json = "{\"Data\": {\"amount\": \"12,5\", \"urgent\": \"yes\", \"serviceDate\": \"03/01/2024\","
+                + " \"codes\": \"A\", \"amounts\": [1, \"x\"], \"Line\": {\"units\": {}}}}";
+        for (boolean streaming : new boolean[]{true, false}) {
+            InputBinder.InputBindingException e = bindingError(json, streaming);
+            Map<String, String> byPath = new LinkedHashMap<>();
+            for (Map<String, String> error : e.getErrors()) byPath.put(error.get("path"), error.get("expected") + " / " + error.get("actual"));
+            assertEquals(Map.of(
+                    "Data.amount", "number / \"12,5\"",
+                    "Data.urgent", "boolean / \"yes\"",
+                    "Data.serviceDate", "date / \"03/01/2024\"",
+                    "Data.codes", "list of string / \"A\"",
+                    "Data.amounts[1]", "number / \"x\"",
+                    "Data.Line.units", "number / object"), byPath);
+            assertEquals("Invalid input: Data.amount expected number but was \"12,5\" (and 5 more)", e.getMessage());
+        }
+    }
+
+    @Test
+    public void aNonObjectBodyIsOneError() throws IOException {
+        JsonParser p = JSON.createParser("[1, 2]");
+        p.nextToken();
+        try {
+            binder.bind(p);
+            fail("a list body must not bind");
+        } catch (InputBinder.InputBindingException e) {
+            assertEquals(1, e.getErrors().size());
+            assertEquals("$", e.getErrors().get(0).get("path"));
+            assertEquals("list", e.getErrors().get(0).get("actual"));
+        }
+    }
+
+    @Test
+    public void reportedErrorsAreCappedAtFiftyButCounted() throws IOException {
+        StringBuilder json = new StringBuilder("{\"Data\": {\"amounts\": [");
+        for (int i = 0; i < 120; i++) json.append(i == 0 ? "" : ", ").append("\"n").append(i).append('"');
+        json.append("]}}");
+        InputBinder.InputBindingException e = bindingError(json.toString(), true);
+        assertEquals(50, e.getErrors().size());
+        assertEquals("Data.amounts[49]", e.getErrors().get(49).get("path"));
+        assertTrue(e.getMessage(), e.getMessage().endsWith("(and 119 more)"));
+    }
+
+    @Test
+    public void theParserIsLeftAfterThePayloadWhenItHasErrors() throws IOException {
+        JsonParser p = JSON.createParser("{\"Data\": {\"amount\": \"x\", \"Line\": {\"units\": [1, {\"a\": 2}]}}} {\"Data\": {\"amount\": 1}}");
+        p.nextToken();
+        try {
+            binder.bind(p);
+            fail("the first payload has errors");
+        } catch (InputBinder.InputBindingException e) {
+            assertEquals(JsonToken.END_OBJECT, p.currentToken());
+        }
+        assertEquals(JsonToken.START_OBJECT, p.nextToken());
+        assertEquals(BigDecimal.valueOf(1), data(binder.bind(p)).get("amount"));
+    }
+
+    private InputBinder.InputBindingException bindingError(String json, boolean streaming) throws IOException {
+        try {
+            if (streaming) stream(json);
+            else map(json);
+        } catch (InputBinder.InputBindingException e) {
+            return e;
+        }
+        throw new AssertionError("expected binding errors for " + json);
+    }
+
+    private Map<String, Object> stream(String json) throws IOException {
+        return binder.bind(parser(json));
+    }
+
+    // the map path, on the plain values Jackson produces for the same JSON
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> map(String json) throws IOException {
+        Map<String, Object> plain = new com.fasterxml.jackson.databind.ObjectMapper().readValue(json, Map.class);
+        return binder.bind(plain);
+    }
+
+    private static JsonParser parser(String json) throws IOException {
+        JsonParser p = JSON.createParser(json);
+        p.nextToken();
+        return p;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> data(Map<String, Object> payload) {
+        return (Map<String, Object>) payload.get("Data");
+    }
+}
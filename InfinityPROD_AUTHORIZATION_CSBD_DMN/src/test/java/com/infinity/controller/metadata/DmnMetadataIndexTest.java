@@ -0,0 +1,145 @@
+package com.infinity.controller.metadata;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.w3c.dom.Document;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Lookups and versions of {@link DmnMetadataIndex}, the versions the metadata endpoints turn into
+ * ETags: an edit re-indexes one model and changes its version and the index's, but not the versions
+ * of the other models, whose cached responses stay valid.
+ */
+public class DmnMetadataIndexTest {
+
+    private DmnMetadataIndex index;
+
+    @Before
+    public void build() {
+        index = new DmnMetadataIndex(List.of(resource("Quickwins", "A"), resource("Categories", "A")));
+    }
+
+    @Test
+    public void modelsAreFoundWhateverTheCase() {
+        assertEquals("Quickwins", index.find("quickwins").getName());
+        assertEquals("Quickwins", index.find("QUICKWINS").getName());
+        assertNull(index.find("missing"));
+        assertNull(index.find(null));
+        try {
+            index.require("missing");
+            fail("missing is not indexed");
+        } catch (RuntimeException e) {
+            assertEquals("Model not found: missing", e.getMessage());
+        }
+    }
+
+    @Test
+    public void tablesAndInputPathsAreIndexed() {
+        DmnMetadataIndex.ModelMetadata m = index.require("quickwins");
+        Map<?, ?> parsed = (Map<?, ?>) m.findTable("tier").get("parsed");
+        assertEquals(List.of("Code"), parsed.get("inputs"));
+        assertEquals(List.of("Tier"), parsed.get("outputs"));
+        assertEquals(2, ((List<?>) parsed.get("rules")).size());
+        assertTrue(m.hasInputPath("Code"));
+        assertFalse(m.hasInputPath("Code.value"));
+        assertFalse(m.hasInputPath("Amount"));
+    }
+
+    @Test
+    public void duplicateModelsKeepTheFirstDefinition() {
+        DmnMetadataIndex dup = new DmnMetadataIndex(List.of(resource("Quickwins", "A"), resource("quickwins", "B")));
+        assertEquals(1, dup.getModels().size());
+        assertEquals("Quickwins", dup.require("quickwins").getName());
+    }
+
+    @Test
+    public void unreadableResourcesAreSkipped() {
+        Resource broken = new ByteArrayResource("<dmn:definitions".getBytes(StandardCharsets.UTF_8), "broken");
+        DmnMetadataIndex partial = new DmnMetadataIndex(List.of(broken, resource("Quickwins", "A")));
+        assertEquals(1, partial.getModels().size());
+    }
+
+    @Test
+    public void reindexingChangesOnlyTheEditedModelsVersion() throws Exception {
+        DmnMetadataIndex.ModelMetadata quickwins = index.require("quickwins");
+        DmnMetadataIndex.ModelMetadata categories = index.require("categories");
+        long indexVersion = index.getVersion();
+        assertFalse(quickwins.isEdited());
+
+        Resource edited = resource("Quickwins", "C");
+        Document doc = parse(edited);
+        DmnMetadataIndex.ModelMetadata reindexed = index.reindex(edited, doc);
+
+        assertSame(reindexed, index.require("quickwins"));
+        assertTrue(reindexed.isEdited());
+        assertSame(doc, reindexed.getDocument());
+        assertTrue(reindexed.getVersion() > quickwins.getVersion());
+        assertTrue(index.getVersion() > indexVersion);
+        assertSame(categories, index.require("categories"));
+        assertEquals(categories.getVersion(), index.require("categories").getVersion());
+        assertEquals(List.of("\"C\"", "-"), ruleInputs(reindexed.findTable("Tier")));
+    }
+
+    @Test
+    public void versionsAreNeverReused() throws Exception {
+        Set<Long> seen = new HashSet<>();
+        seen.add(index.getVersion());
+        seen.add(index.require("quickwins").getVersion());
+        seen.add(index.require("categories").getVersion());
+        for (int i = 0; i < 3; i++) {
+            Resource r = resource("Quickwins", "A");
+            assertTrue(seen.add(index.reindex(r, parse(r)).getVersion()));
+            assertTrue(seen.add(index.getVersion()));
+        }
+        long before = index.getVersion();
+        index.rebuild(List.of(resource("Quickwins", "A")));
+        assertNotEquals(before, index.getVersion());
+        assertTrue(seen.add(index.require("quickwins").getVersion()));
+        // a rebuild brings the stored sources back, so nothing is edited any more
+        assertFalse(index.require("quickwins").isEdited());
+        assertNull(index.find("categories"));
+    }
+
+    private static List<?> ruleInputs(Map<String, Object> table) {
+        List<Object> inputs = new ArrayList<>();
+        for (Object rule : (List<?>) ((Map<?, ?>) table.get("parsed")).get("rules")) {
+            inputs.addAll((List<?>) ((Map<?, ?>) rule).get("inputs"));
+        }
+        return inputs;
+    }
+
+    private static Document parse(Resource resource) throws Exception {
+        return DmnMetadataIndex.newDocumentBuilder().parse(new ByteArrayInputStream(((ByteArrayResource) resource).getByteArray()));
+    }
+
+    // a model with a Code input and a two row Tier table whose first row matches the given code
+    private static Resource resource(String model, String code) {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<dmn:definitions xmlns:dmn=\"" + DmnMetadataIndex.DMN_NS + "\" id=\"" + model + "\" name=\"" + model + "\""
+                + " namespace=\"metadataTest\">"
+                + "<dmn:inputData id=\"i_code\" name=\"Code\"><dmn:variable id=\"v_code\" name=\"Code\" typeRef=\"string\"/></dmn:inputData>"
+                + "<dmn:decision id=\"tier\" name=\"Tier\"><dmn:variable id=\"tier_var\" name=\"Tier\" typeRef=\"string\"/>"
+                + "<dmn:decisionTable id=\"tier_dt\" hitPolicy=\"FIRST\">"
+                + "<dmn:input id=\"tier_in\" label=\"Code\"><dmn:inputExpression id=\"tier_expr\" typeRef=\"string\"><dmn:text>Code</dmn:text></dmn:inputExpression></dmn:input>"
+                + "<dmn:output id=\"tier_out\" name=\"Tier\" typeRef=\"string\"/>"
+                + "<dmn:rule id=\"r1\"><dmn:inputEntry id=\"r1_in\"><dmn:text>\"" + code + "\"</dmn:text></dmn:inputEntry>"
+                + "<dmn:outputEntry id=\"r1_out\"><dmn:text>\"gold\"</dmn:text></dmn:outputEntry></dmn:rule>"
+                + "<dmn:rule id=\"r2\"><dmn:inputEntry id=\"r2_in\"><dmn:text>-</dmn:text></dmn:inputEntry>"
+                + "<dmn:outputEntry id=\"r2_out\"><dmn:text>\"bronze\"</dmn:text></dmn:outputEntry></dmn:rule>"
+                + "</dmn:decisionTable></dmn:decision></dmn:definitions>";
+        return new ByteArrayResource(xml.getBytes(StandardCharsets.UTF_8), model);
+    }
+}